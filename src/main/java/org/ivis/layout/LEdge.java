@@ -42,6 +42,12 @@ public class LEdge extends LGraphObject
 	 */
 	protected boolean isOverlapingSourceAndTarget = false;
 
+	/*
+	 * Clipping points of the end nodes, kept so that length updates do not
+	 * create garbage
+	 */
+	private double[] clipPointCoordinates = new double[4];
+
 	/*
 	 * Bend points for this edge
 	 */
@@ -248,7 +254,7 @@ public class LEdge extends LGraphObject
 	 */
 	public void updateLength()
 	{
-		double[] clipPointCoordinates = new double[4];
+		double[] clipPointCoordinates = this.clipPointCoordinates;
 
 		this.isOverlapingSourceAndTarget =
 			IGeometry.getIntersection(this.target.getRect(),
@@ -70,6 +70,24 @@ public class LGraph extends LGraphObject
 	 */
 	private boolean isConnected;
 
+	/*
+	 * Index of this graph in the inclusion tree index of its graph manager
+	 */
+	int inclusionTreeIndex = -1;
+
+	/*
+	 * Displacement of the parent (compound) node of this graph that is not
+	 * yet applied to the nodes of this graph (see addPendingDisplacement)
+	 */
+	private double pendingDisplacementX;
+	private double pendingDisplacementY;
+
+	/*
+	 * Whether bounds of this graph might be out of date due to moves recorded
+	 * since its last bounds update (see setBoundsDirty)
+	 */
+	private boolean boundsDirty;
+
 // -----------------------------------------------------------------------------
 // Section: Constructors and initialization
 // -----------------------------------------------------------------------------
@@ -299,6 +317,7 @@ public class LGraph extends LGraphObject
 		// now the node itself
 		assert (this.nodes.contains(node)) : "Node not in owner node list!";
 		this.nodes.remove(node);
+		this.graphManager.resetInclusionTreeIndex();
 	}
 
 	/**
@@ -389,6 +408,34 @@ public class LGraph extends LGraphObject
 	 */
 	public void updateBounds(boolean recursive)
 	{
+		this.updateBounds(recursive, false);
+	}
+
+	/**
+	 * This method updates the bounds of this graph, and recursively those of
+	 * the child graphs, only if it has been marked dirty. Clean subgraphs are
+	 * skipped altogether, so all moves since last bounds update should have
+	 * been recorded by setBoundsDirty (or addPendingDisplacement) for the
+	 * result to be correct. Compound nodes are fit to their child graphs
+	 * through LNode.wrapChildGraph.
+	 */
+	public void updateDirtyBounds()
+	{
+		if (this.boundsDirty)
+		{
+			this.updateBounds(true, true);
+		}
+	}
+
+	/*
+	 * This method updates the bounds of this graph, also recursively if
+	 * requested, dirty child graphs only or all of them. Pending displacement
+	 * is applied first.
+	 */
+	private void updateBounds(boolean recursive, boolean dirtyOnly)
+	{
+		this.applyPendingDisplacement();
+
 		// calculate bounds
 		int left = Integer.MAX_VALUE;
 		int right = -Integer.MAX_VALUE;
@@ -399,16 +446,23 @@ public class LGraph extends LGraphObject
 		int nodeTop;
 		int nodeBottom;
 
-		Iterator<LNode> itr = this.nodes.iterator();
-		
-		while (itr.hasNext())
+		for (int i = 0; i < this.nodes.size(); i++)
 		{
-			LNode lNode = itr.next();
+			LNode lNode = (LNode) this.nodes.get(i);
 
 			// if it is a recursive call, and current node is compound
 			if (recursive && lNode.child != null)
 			{
-				lNode.updateBounds();
+				if (!dirtyOnly)
+				{
+					lNode.updateBounds();
+				}
+				else if (lNode.child.boundsDirty &&
+					lNode.child.getNodes().size() != 0)
+				{
+					lNode.child.updateBounds(true, true);
+					lNode.wrapChildGraph();
+				}
 			}
 			nodeLeft = (int)(lNode.getLeft());
 			nodeRight = (int)(lNode.getRight());
@@ -436,9 +490,6 @@ public class LGraph extends LGraphObject
 			}
 		}
 
-		Rectangle boundingRect =
-			new Rectangle(left, top, right - left, bottom - top);
-
 		// Do we have any nodes in this graph?
 		if (left == Integer.MAX_VALUE)
 		{
@@ -448,11 +499,92 @@ public class LGraph extends LGraphObject
 			this.bottom = (int)(this.parent.getBottom());
 		}
 
-		this.left = boundingRect.x - this.margin;
-		this.right = boundingRect.x + boundingRect.width + this.margin;
-		this.top =  boundingRect.y - this.margin;
+		this.left = left - this.margin;
+		this.right = right + this.margin;
+		this.top =  top - this.margin;
 		// Label text dimensions are to be added for the bottom of the compound!
-		this.bottom = boundingRect.y + boundingRect.height + this.margin;
+		this.bottom = bottom + this.margin;
+
+		if (recursive)
+		{
+			this.boundsDirty = false;
+		}
+	}
+
+	/**
+	 * This method marks the bounds of this graph, and hence of all its
+	 * ancestors, as possibly out of date. It should be called whenever a
+	 * node of this graph is moved, for updateDirtyBounds to take the move
+	 * into account.
+	 */
+	public void setBoundsDirty()
+	{
+		LGraph graph = this;
+
+		// ancestors of a dirty graph are already dirty
+		while (graph != null && !graph.boundsDirty)
+		{
+			graph.boundsDirty = true;
+
+			if (graph.parent == null)
+			{
+				break;
+			}
+
+			graph = graph.parent.owner;
+		}
+	}
+
+	/**
+	 * This method records the input displacement of the parent (compound) node
+	 * of this graph to be applied to the nodes of this graph (and their
+	 * descendants) later on, instead of moving all of them right away. The
+	 * displacement is applied when bounds are updated, or on demand by
+	 * applyPendingDisplacement, so positions of the nodes should not be
+	 * relied on till then.
+	 */
+	public void addPendingDisplacement(double dx, double dy)
+	{
+		this.pendingDisplacementX += dx;
+		this.pendingDisplacementY += dy;
+		this.setBoundsDirty();
+	}
+
+	/**
+	 * This method applies pending displacement of this graph to its nodes.
+	 * Simple nodes are moved, whereas the displacement is passed on to the
+	 * child graphs of compound nodes (to be applied with their bounds
+	 * update), as bounds of compound nodes are calculated from their
+	 * children. Just like CoSENode.propogateDisplacementToChildren, empty
+	 * compound nodes are left as they are.
+	 */
+	public void applyPendingDisplacement()
+	{
+		if (this.pendingDisplacementX == 0 && this.pendingDisplacementY == 0)
+		{
+			return;
+		}
+
+		LNode lNode;
+
+		for (int i = 0; i < this.nodes.size(); i++)
+		{
+			lNode = (LNode) this.nodes.get(i);
+
+			if (lNode.child == null)
+			{
+				lNode.moveBy(this.pendingDisplacementX,
+					this.pendingDisplacementY);
+			}
+			else if (lNode.child.getNodes().size() != 0)
+			{
+				lNode.child.addPendingDisplacement(this.pendingDisplacementX,
+					this.pendingDisplacementY);
+			}
+		}
+
+		this.pendingDisplacementX = 0;
+		this.pendingDisplacementY = 0;
 	}
 
 	/**
@@ -65,6 +65,20 @@ public class LGraphManager
 	 * Cluster Manager of all graphs managed by this graph manager
 	 */
 	private ClusterManager clusterManager;
+
+	/*
+	 * Index over the inclusion tree (of graphs) answering ancestor and lowest
+	 * common ancestor queries. Graphs reachable from the root are kept in
+	 * depth-first order, index of a graph in this array being its inclusion
+	 * tree index; all descendants of a graph follow it, up to the index of
+	 * its last descendant. 2^k-th ancestors of graphs are kept for binary
+	 * lifting (ancestors of the root being the root itself). The index is
+	 * built on demand and discarded (nulled) when topology changes.
+	 */
+	private LGraph[] indexedGraphs;
+	private int[] graphDepths;
+	private int[] lastDescendants;
+	private int[][] graphAncestors;
 	
 // -----------------------------------------------------------------------------
 // Section: Constructors and initialization
@@ -96,6 +110,7 @@ public class LGraphManager
 		this.allNodesToApplyGravitation = null;
 		this.rootGraph = null;
 		this.clusterManager = new ClusterManager();
+		this.indexedGraphs = null;
 	}
 
 // -----------------------------------------------------------------------------
@@ -131,6 +146,7 @@ public class LGraphManager
 		assert (parentNode.child == null) : "Already has a child!";
 		newGraph.parent = parentNode;
 		parentNode.child = newGraph;
+		this.resetInclusionTreeIndex();
 
 		return newGraph;
 	}
@@ -228,6 +244,7 @@ public class LGraphManager
 
 		// also reset the parent of the graph
 		graph.parent = null;
+		this.resetInclusionTreeIndex();
 	}
 
 	/**
@@ -267,6 +284,15 @@ public class LGraphManager
 	{
 		this.rootGraph.updateBounds(true);
 	}
+
+	/**
+	 * This method updates the bounds of the graphs marked dirty, applying
+	 * their pending displacement as well (see LGraph.updateDirtyBounds).
+	 */
+	public void updateDirtyBounds()
+	{
+		this.rootGraph.updateDirtyBounds();
+	}
 // -----------------------------------------------------------------------------
 // Section: Accessors
 // -----------------------------------------------------------------------------
@@ -326,6 +352,18 @@ public class LGraphManager
 	public void resetAllNodes()
 	{
 		this.allNodes = null;
+		this.resetInclusionTreeIndex();
+	}
+
+	/**
+	 * This method discards the index used for ancestor and lowest common
+	 * ancestor queries so that it gets re-built with the next query. Needed
+	 * when nesting changes; topology methods of graphs and nodes call it
+	 * themselves.
+	 */
+	public void resetInclusionTreeIndex()
+	{
+		this.indexedGraphs = null;
 	}
 
 	/**
@@ -423,6 +461,7 @@ public class LGraphManager
 		assert (graph.getGraphManager() == this) : "Root not in this graph mgr!";
 
 		this.rootGraph = graph;
+		this.resetInclusionTreeIndex();
 
 		// root graph must have a root node associated with it for convenience
 		if (graph.parent == null)
@@ -467,35 +506,49 @@ public class LGraphManager
 			return true;
 		}
 
-		// Is second node an ancestor of the first one?
+		// Is second node an ancestor of the first one, or first node an
+		// ancestor of the second one?
 
-		LGraph ownerGraph = firstNode.getOwner();
-		LNode parentNode;
+		return isAncestor(secondNode, firstNode) ||
+			isAncestor(firstNode, secondNode);
+	}
 
-		do
+	/*
+	 * This method checks whether the first input node is a (proper) ancestor
+	 * of the second one, using the inclusion tree index of the graph manager
+	 * of the second node when the nodes are covered by it.
+	 */
+	private static boolean isAncestor(LNode ancestorNode, LNode node)
+	{
+		LGraph ownerGraph = node.getOwner();
+		LGraphManager graphManager = ownerGraph.getGraphManager();
+		int graphIndex = -1;
+
+		if (graphManager != null)
 		{
-			parentNode = ownerGraph.getParent();
+			graphIndex = graphManager.getInclusionTreeIndex(ownerGraph);
+		}
 
-			if (parentNode == null)
-			{
-				break;
-			}
+		if (graphIndex != -1)
+		{
+			// ancestors of an indexed graph are all indexed, and a node is
+			// an ancestor iff its child graph is an ancestor of the owner
+			LGraph childGraph = ancestorNode.child;
 
-			if (parentNode == secondNode)
+			if (childGraph == null || childGraph.parent != ancestorNode)
 			{
-				return true;
+				return false;
 			}
 
-			ownerGraph = parentNode.getOwner();
-			if(ownerGraph == null)
-			{
-				break;
-			}
-		} while (true);
+			int childIndex = graphManager.getInclusionTreeIndex(childGraph);
+
+			return childIndex != -1 &&
+				graphManager.isAncestor(childIndex, graphIndex);
+		}
 
-		// Is first node an ancestor of the second one?
+		// not covered by the index, walk up the nesting tree
 
-		ownerGraph = secondNode.getOwner();
+		LNode parentNode;
 
 		do
 		{
@@ -506,7 +559,7 @@ public class LGraphManager
 				break;
 			}
 
-			if (parentNode == firstNode)
+			if (parentNode == ancestorNode)
 			{
 				return true;
 			}
@@ -520,7 +573,7 @@ public class LGraphManager
 
 		return false;
 	}
-	
+
 	/**
 	 * This method calculates the lowest common ancestor of each edge.
 	 */
@@ -529,8 +582,9 @@ public class LGraphManager
 		LEdge edge;
 		LNode sourceNode;
 		LNode targetNode;
-		LGraph sourceAncestorGraph;
-		LGraph targetAncestorGraph;
+		int sourceGraph;
+		int targetGraph;
+		int lcaGraph;
 
 		for (Object obj : this.getAllEdges())
 		{
@@ -548,50 +602,90 @@ public class LGraphManager
 				continue;
 			}
 
-			sourceAncestorGraph = sourceNode.getOwner();
+			sourceGraph = this.getInclusionTreeIndex(sourceNode.getOwner());
+			targetGraph = this.getInclusionTreeIndex(targetNode.getOwner());
 
-			while (edge.lca == null)
+			if (sourceGraph == -1 || targetGraph == -1)
 			{
-				edge.targetInLca = targetNode;  
-				targetAncestorGraph = targetNode.getOwner();
+				this.calcLowestCommonAncestorByWalking(edge);
+				continue;
+			}
 
-				while (edge.lca == null)
-				{
-					if (targetAncestorGraph == sourceAncestorGraph)
-					{
-						edge.lca = targetAncestorGraph;
-						break;
-					}
-
-					if (targetAncestorGraph == this.rootGraph)
-					{
-						break;
-					}
-
-					assert edge.lca == null;
-					edge.targetInLca = targetAncestorGraph.getParent();
-					targetAncestorGraph = edge.targetInLca.getOwner();
-				}
+			lcaGraph = this.calcLowestCommonAncestor(sourceGraph, targetGraph);
+			edge.lca = this.indexedGraphs[lcaGraph];
+
+			// ancestors of the end nodes in the lowest common ancestor are the
+			// parents of the ancestor graphs right below it
 
-				if (sourceAncestorGraph == this.rootGraph)
+			if (sourceGraph != lcaGraph)
+			{
+				edge.sourceInLca = this.indexedGraphs[
+					this.getAncestorBelow(sourceGraph, lcaGraph)].getParent();
+			}
+
+			if (targetGraph != lcaGraph)
+			{
+				edge.targetInLca = this.indexedGraphs[
+					this.getAncestorBelow(targetGraph, lcaGraph)].getParent();
+			}
+		}
+	}
+
+	/*
+	 * This method calculates the lowest common ancestor of the input edge by
+	 * walking up the nesting tree from both ends. Used for edges not covered
+	 * by the inclusion tree index.
+	 */
+	private void calcLowestCommonAncestorByWalking(LEdge edge)
+	{
+		LNode sourceNode = edge.source;
+		LNode targetNode = edge.target;
+		LGraph sourceAncestorGraph;
+		LGraph targetAncestorGraph;
+
+		sourceAncestorGraph = sourceNode.getOwner();
+
+		while (edge.lca == null)
+		{
+			edge.targetInLca = targetNode;
+			targetAncestorGraph = targetNode.getOwner();
+
+			while (edge.lca == null)
+			{
+				if (targetAncestorGraph == sourceAncestorGraph)
 				{
+					edge.lca = targetAncestorGraph;
 					break;
 				}
 
-				if (edge.lca == null)
+				if (targetAncestorGraph == this.rootGraph)
 				{
-					edge.sourceInLca = sourceAncestorGraph.getParent();
-					sourceAncestorGraph = edge.sourceInLca.getOwner();
+					break;
 				}
+
+				assert edge.lca == null;
+				edge.targetInLca = targetAncestorGraph.getParent();
+				targetAncestorGraph = edge.targetInLca.getOwner();
 			}
 
-			assert edge.lca != null;
+			if (sourceAncestorGraph == this.rootGraph)
+			{
+				break;
+			}
+
+			if (edge.lca == null)
+			{
+				edge.sourceInLca = sourceAncestorGraph.getParent();
+				sourceAncestorGraph = edge.sourceInLca.getOwner();
+			}
 		}
+
+		assert edge.lca != null;
 	}
 
 	/**
 	 * This method finds the lowest common ancestor of given two nodes.
-	 * 
+	 *
 	 * @param firstNode
 	 * @param secondNode
 	 * @return lowest common ancestor
@@ -603,6 +697,17 @@ public class LGraphManager
 			return firstNode.getOwner();
 		}
 
+		int firstGraph = this.getInclusionTreeIndex(firstNode.getOwner());
+		int secondGraph = this.getInclusionTreeIndex(secondNode.getOwner());
+
+		if (firstGraph != -1 && secondGraph != -1)
+		{
+			return this.indexedGraphs[
+				this.calcLowestCommonAncestor(firstGraph, secondGraph)];
+		}
+
+		// not covered by the index, walk up the nesting tree
+
 		LGraph firstOwnerGraph = firstNode.getOwner();
 
 		do
@@ -613,9 +718,9 @@ public class LGraphManager
 			}
 
 			LGraph secondOwnerGraph = secondNode.getOwner();
-		
+
 			do
-			{			
+			{
 				if (secondOwnerGraph == null)
 				{
 					break;
@@ -625,7 +730,7 @@ public class LGraphManager
 				{
 					return secondOwnerGraph;
 				}
-				
+
 				secondOwnerGraph = secondOwnerGraph.getParent().getOwner();
 			} while (true);
 
@@ -681,6 +786,207 @@ public class LGraphManager
 		return false;
 	}
 	
+// -----------------------------------------------------------------------------
+// Section: Inclusion tree index
+// -----------------------------------------------------------------------------
+	/*
+	 * This method returns the inclusion tree index of the input graph, or -1
+	 * if the graph is not covered by the index (i.e. not reachable from the
+	 * root). The index is built first if needed.
+	 */
+	private int getInclusionTreeIndex(LGraph graph)
+	{
+		if (this.indexedGraphs == null)
+		{
+			this.buildInclusionTreeIndex();
+		}
+
+		int index = graph.inclusionTreeIndex;
+
+		if (index >= 0 &&
+			index < this.indexedGraphs.length &&
+			this.indexedGraphs[index] == graph)
+		{
+			return index;
+		}
+
+		return -1;
+	}
+
+	/*
+	 * This method builds the inclusion tree index over the graphs reachable
+	 * from the root graph.
+	 */
+	private void buildInclusionTreeIndex()
+	{
+		List<LGraph> graphList = new ArrayList<LGraph>();
+
+		if (this.rootGraph != null)
+		{
+			this.collectInclusionTree(this.rootGraph, graphList);
+		}
+
+		int noOfGraphs = graphList.size();
+		int[] parents = new int[noOfGraphs];
+		int maxDepth = 0;
+		int i;
+
+		this.indexedGraphs = graphList.toArray(new LGraph[noOfGraphs]);
+		this.graphDepths = new int[noOfGraphs];
+		this.lastDescendants = new int[noOfGraphs];
+
+		// parents precede their children in depth-first order
+
+		for (i = 0; i < noOfGraphs; i++)
+		{
+			this.lastDescendants[i] = i;
+
+			if (i > 0)
+			{
+				parents[i] = this.indexedGraphs[i].parent.owner.inclusionTreeIndex;
+				this.graphDepths[i] = this.graphDepths[parents[i]] + 1;
+				maxDepth = Math.max(maxDepth, this.graphDepths[i]);
+			}
+		}
+
+		for (i = noOfGraphs - 1; i > 0; i--)
+		{
+			this.lastDescendants[parents[i]] = Math.max(
+				this.lastDescendants[parents[i]], this.lastDescendants[i]);
+		}
+
+		// 2^k-th ancestors, for k such that 2^k does not exceed max depth
+
+		int noOfLevels = 1;
+
+		while ((1 << noOfLevels) <= maxDepth)
+		{
+			noOfLevels++;
+		}
+
+		this.graphAncestors = new int[noOfLevels][];
+		this.graphAncestors[0] = parents;
+
+		for (int k = 1; k < noOfLevels; k++)
+		{
+			int[] previous = this.graphAncestors[k - 1];
+			int[] current = new int[noOfGraphs];
+
+			for (i = 0; i < noOfGraphs; i++)
+			{
+				current[i] = previous[previous[i]];
+			}
+
+			this.graphAncestors[k] = current;
+		}
+	}
+
+	/*
+	 * This method adds the input graph and its descendants to the input list
+	 * in depth-first order, setting their inclusion tree indices. Only child
+	 * graphs consistently linked with their parent nodes are followed.
+	 */
+	private void collectInclusionTree(LGraph graph, List<LGraph> graphList)
+	{
+		LNode node;
+		LGraph childGraph;
+
+		graph.inclusionTreeIndex = graphList.size();
+		graphList.add(graph);
+
+		for (Object obj : graph.getNodes())
+		{
+			node = (LNode) obj;
+			childGraph = node.child;
+
+			if (childGraph != null &&
+				childGraph.parent == node &&
+				node.owner == graph &&
+				!this.isCollected(childGraph, graphList))
+			{
+				this.collectInclusionTree(childGraph, graphList);
+			}
+		}
+	}
+
+	/*
+	 * This method returns whether the input graph is already in the input
+	 * list being collected.
+	 */
+	private boolean isCollected(LGraph graph, List<LGraph> graphList)
+	{
+		int index = graph.inclusionTreeIndex;
+
+		return index >= 0 &&
+			index < graphList.size() &&
+			graphList.get(index) == graph;
+	}
+
+	/*
+	 * This method returns whether the first input graph is an ancestor of (or
+	 * the same as) the second one, both given with their indices.
+	 */
+	private boolean isAncestor(int ancestorGraph, int graph)
+	{
+		return ancestorGraph <= graph &&
+			graph <= this.lastDescendants[ancestorGraph];
+	}
+
+	/*
+	 * This method returns the lowest common ancestor of the input graphs, all
+	 * given with their indices.
+	 */
+	private int calcLowestCommonAncestor(int firstGraph, int secondGraph)
+	{
+		if (this.isAncestor(firstGraph, secondGraph))
+		{
+			return firstGraph;
+		}
+
+		if (this.isAncestor(secondGraph, firstGraph))
+		{
+			return secondGraph;
+		}
+
+		// climb from first graph as long as we don't reach an ancestor of
+		// the second one
+
+		int ancestor;
+
+		for (int k = this.graphAncestors.length - 1; k >= 0; k--)
+		{
+			ancestor = this.graphAncestors[k][firstGraph];
+
+			if (!this.isAncestor(ancestor, secondGraph))
+			{
+				firstGraph = ancestor;
+			}
+		}
+
+		return this.graphAncestors[0][firstGraph];
+	}
+
+	/*
+	 * This method returns the ancestor of the input graph that is a child of
+	 * the input ancestor graph, all given with their indices.
+	 */
+	private int getAncestorBelow(int graph, int ancestorGraph)
+	{
+		int ancestor;
+
+		for (int k = this.graphAncestors.length - 1; k >= 0; k--)
+		{
+			ancestor = this.graphAncestors[k][graph];
+
+			if (this.graphDepths[ancestor] > this.graphDepths[ancestorGraph])
+			{
+				graph = ancestor;
+			}
+		}
+
+		return graph;
+	}
+
 // -----------------------------------------------------------------------------
 // Section: Testing methods
 // -----------------------------------------------------------------------------
@@ -146,6 +146,11 @@ public class LNode extends LGraphObject implements Clustered
 			"Child has different graph mgr!";
 
 		this.child = child;
+
+		if (this.graphManager != null)
+		{
+			this.graphManager.resetInclusionTreeIndex();
+		}
 	}
 
 	/**
@@ -164,6 +169,11 @@ public class LNode extends LGraphObject implements Clustered
 	public void setOwner(LGraph owner)
 	{
 		this.owner = owner;
+
+		if (this.graphManager != null)
+		{
+			this.graphManager.resetInclusionTreeIndex();
+		}
 	}
 
 	/**
@@ -590,18 +600,27 @@ public class LNode extends LGraphObject implements Clustered
 		if (this.getChild().getNodes().size() != 0)
 		{
 			// wrap the children nodes by re-arranging the boundaries
-			LGraph childGraph = this.getChild();
-			childGraph.updateBounds(true);
+			this.getChild().updateBounds(true);
+			this.wrapChildGraph();
+		}
+	}
+
+	/**
+	 * This method sets the geometry of this compound node so that it wraps
+	 * its (non-empty) child graph, whose bounds are assumed to be up to date.
+	 */
+	public void wrapChildGraph()
+	{
+		LGraph childGraph = this.getChild();
 
-			this.rect.x =  childGraph.getLeft();
-			this.rect.y =  childGraph.getTop();
+		this.rect.x =  childGraph.getLeft();
+		this.rect.y =  childGraph.getTop();
 
-			this.setWidth(childGraph.getRight() - childGraph.getLeft() +
-				2 * LayoutConstants.COMPOUND_NODE_MARGIN);
-			this.setHeight(childGraph.getBottom() - childGraph.getTop() +
-				2 * LayoutConstants.COMPOUND_NODE_MARGIN +
-					LayoutConstants.LABEL_HEIGHT);
-		}
+		this.setWidth(childGraph.getRight() - childGraph.getLeft() +
+			2 * LayoutConstants.COMPOUND_NODE_MARGIN);
+		this.setHeight(childGraph.getBottom() - childGraph.getTop() +
+			2 * LayoutConstants.COMPOUND_NODE_MARGIN +
+				LayoutConstants.LABEL_HEIGHT);
 	}
 
 	/**
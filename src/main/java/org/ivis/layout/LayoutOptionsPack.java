@@ -54,23 +54,35 @@ public class LayoutOptionsPack implements Serializable
 		public int springStrength; // 0-100
 		public int repulsionStrength; // 0-100
 		public boolean smartRepulsionRangeCalc; // T-F
+		public boolean barnesHutRepulsionCalc; // T-F
+		public double barnesHutTheta; // 0.0-1.0
+		public boolean parallelForceCalc; // T-F
+		public int noOfForceThreads; // any positive int, 0 for no of processors
+		public boolean compactGraphCalc; // T-F
 		public int gravityStrength; // 0-100
 		public int gravityRange; // 0-100
 		public int compoundGravityStrength; // 0-100
 		public int compoundGravityRange; // 0-100
 		public boolean smartEdgeLengthCalc; // T-F
 		public boolean multiLevelScaling; // T-F
+		public boolean lazyCompoundDisplacement; // T-F
 
 		public int defaultIdealEdgeLength = CoSEConstants.DEFAULT_EDGE_LENGTH;
 		public int defaultSpringStrength = 50;
 		public int defaultRepulsionStrength = 50;
 		public boolean defaultSmartRepulsionRangeCalc = CoSEConstants.DEFAULT_USE_SMART_REPULSION_RANGE_CALCULATION;
+		public boolean defaultBarnesHutRepulsionCalc = CoSEConstants.DEFAULT_USE_BARNES_HUT_APPROXIMATION;
+		public double defaultBarnesHutTheta = CoSEConstants.DEFAULT_BARNES_HUT_THETA;
+		public boolean defaultParallelForceCalc = CoSEConstants.DEFAULT_USE_PARALLEL_FORCE_CALCULATION;
+		public int defaultNoOfForceThreads = 0;
+		public boolean defaultCompactGraphCalc = CoSEConstants.DEFAULT_USE_COMPACT_GRAPH;
 		public int defaultGravityStrength = 50;
 		public int defaultGravityRange = 50;
 		public int defaultCompoundGravityStrength = 50;
 		public int defaultCompoundGravityRange = 50;
 		public boolean defaultSmartEdgeLengthCalc = CoSEConstants.DEFAULT_USE_SMART_IDEAL_EDGE_LENGTH_CALCULATION;
 		public boolean defaultMultiLevelScaling = CoSEConstants.DEFAULT_USE_MULTI_LEVEL_SCALING;
+		public boolean defaultLazyCompoundDisplacement = CoSEConstants.DEFAULT_USE_LAZY_COMPOUND_DISPLACEMENT;
 	}
 
 	public class Cluster
@@ -120,10 +132,12 @@ public class LayoutOptionsPack implements Serializable
 		public int horizontalSpacing; // any positive int
 		public int verticalSpacing; // any positive int
 		public boolean vertical; // T-F
+		public boolean balancedCoordinateAssignment; // T-F
 
 		public int defaultHorizontalSpacing = SgymConstants.DEFAULT_HORIZONTAL_SPACING;
 		public int defaultVerticalSpacing = SgymConstants.DEFAULT_VERTICAL_SPACING;
 		public boolean defaultVertical = SgymConstants.DEFAULT_VERTICAL;
+		public boolean defaultBalancedCoordinateAssignment = SgymConstants.DEFAULT_BALANCED_COORDINATE_ASSIGNMENT;
 	}
 
 	private LayoutOptionsPack()
@@ -153,12 +167,18 @@ public class LayoutOptionsPack implements Serializable
 		this.coSE.springStrength = this.coSE.defaultSpringStrength ;
 		this.coSE.repulsionStrength = this.coSE.defaultRepulsionStrength ;
 		this.coSE.smartRepulsionRangeCalc = this.coSE.defaultSmartRepulsionRangeCalc ;
+		this.coSE.barnesHutRepulsionCalc = this.coSE.defaultBarnesHutRepulsionCalc;
+		this.coSE.barnesHutTheta = this.coSE.defaultBarnesHutTheta;
+		this.coSE.parallelForceCalc = this.coSE.defaultParallelForceCalc;
+		this.coSE.noOfForceThreads = this.coSE.defaultNoOfForceThreads;
+		this.coSE.compactGraphCalc = this.coSE.defaultCompactGraphCalc;
 		this.coSE.gravityStrength = this.coSE.defaultGravityStrength ;
 		this.coSE.gravityRange = this.coSE.defaultGravityRange ;
 		this.coSE.compoundGravityStrength = this.coSE.defaultCompoundGravityStrength ;
 		this.coSE.compoundGravityRange = this.coSE.defaultCompoundGravityRange ;
 		this.coSE.smartEdgeLengthCalc = this.coSE.defaultSmartEdgeLengthCalc ;
 		this.coSE.multiLevelScaling = this.coSE.defaultMultiLevelScaling ;
+		this.coSE.lazyCompoundDisplacement = this.coSE.defaultLazyCompoundDisplacement;
 
 		this.cluster.idealEdgeLength = this.cluster.defaultIdealEdgeLength;
 		this.cluster.clusterSeperation = this.cluster.defaultClusterSeperation;
@@ -178,6 +198,7 @@ public class LayoutOptionsPack implements Serializable
 		this.sgym.horizontalSpacing = this.sgym.defaultHorizontalSpacing;
 		this.sgym.verticalSpacing = this.sgym.defaultVerticalSpacing;
 		this.sgym.vertical = this.sgym.defaultVertical;
+		this.sgym.balancedCoordinateAssignment = this.sgym.defaultBalancedCoordinateAssignment;
 	}
 
 	public static LayoutOptionsPack getInstance()
@@ -3,6 +3,7 @@ package org.ivis.layout.avsdf;
 import java.util.*;
 
 import org.ivis.layout.*;
+import org.ivis.util.CircularCrossingCounter;
 
 /**
  * This class implements data and functionality required for AVSDF layout per
@@ -37,6 +38,19 @@ public class AVSDFCircle extends LGraph
  	 */
 	private Stack<AVSDFNode> stack;
 
+	/*
+	 * Indexed min-heap of the nodes of this circle not yet chosen to be
+	 * placed, keyed by degree, ties broken by the position of the node in the
+	 * node list. Nodes are kept in heapNodes by position; heap holds positions
+	 * and heapIndices the place of each position in heap (-1 if removed).
+	 */
+	private AVSDFNode[] heapNodes;
+	private int[] heapDegrees;
+	private int[] heap;
+	private int[] heapIndices;
+	private int heapSize;
+	private Map<AVSDFNode, Integer> heapPositions;
+
 	/*
 	 * Parameters that determine the size and position of this circle
 	 */
@@ -58,9 +72,43 @@ public class AVSDFCircle extends LGraph
 		stack = new Stack<AVSDFNode>();
 	}
 
+	/**
+	 * This method initializes the data used for ordering the nodes of this
+	 * circle: the min-heap of nodes keyed by degree and the neighbor arrays of
+	 * nodes.
+	 */
 	public void initOrdering()
 	{
-		inOrder = new AVSDFNode[getNodes().size()];
+		int noOfNodes = getNodes().size();
+		inOrder = new AVSDFNode[noOfNodes];
+		heapNodes = new AVSDFNode[noOfNodes];
+		heapDegrees = new int[noOfNodes];
+		heap = new int[noOfNodes];
+		heapIndices = new int[noOfNodes];
+		heapPositions = new HashMap<AVSDFNode, Integer>();
+
+		Iterator iterator = this.getNodes().iterator();
+		int i = 0;
+
+		while (iterator.hasNext())
+		{
+			AVSDFNode node = (AVSDFNode)iterator.next();
+			node.collectNeighbors();
+
+			heapNodes[i] = node;
+			heapDegrees[i] = node.getDegree();
+			heap[i] = i;
+			heapIndices[i] = i;
+			heapPositions.put(node, i);
+			i++;
+		}
+
+		heapSize = noOfNodes;
+
+		for (i = heapSize / 2 - 1; i >= 0; i--)
+		{
+			siftDown(i);
+		}
 	}
 
 // -----------------------------------------------------------------------------
@@ -109,25 +157,36 @@ public class AVSDFCircle extends LGraph
 
 	/**
 	 * This method calculates and returns the total number of crossings in this
-	 * circle by adding up the crossing number of individual nodes on it.
+	 * circle. Edges with an end not yet placed on the circle are not counted.
 	 */
 	public int getTotalCrossingOfCircle()
 	{
-		int crossingNumber = 0;
+		int[][] ends = this.getEdgeEndIndices();
 
-		for (int i = 0; i < inOrder.length; i++)
-		{
-			int nodeCrossing = inOrder[i].getTotalCrossingOfEdges();
+		return new CircularCrossingCounter(this.getSize()).
+			countCrossings(ends[0], ends[1]);
+	}
 
-			if (nodeCrossing == -1)
-			{
-				return -1;
-			}
+	/**
+	 * This method returns the indices of the source and target nodes of the
+	 * edges of this circle, in two arrays respectively.
+	 */
+	public int[][] getEdgeEndIndices()
+	{
+		List edgeList = this.getEdges();
+		int[][] ends = new int[2][edgeList.size()];
+		int i = 0;
 
-			crossingNumber += nodeCrossing;
+		for (Object obj : edgeList)
+		{
+			AVSDFEdge edge = (AVSDFEdge) obj;
+
+			ends[0][i] = ((AVSDFNode) edge.getSource()).getIndex();
+			ends[1][i] = ((AVSDFNode) edge.getTarget()).getIndex();
+			i++;
 		}
 
-		return crossingNumber / 4;
+		return ends;
 	}
 
 	/**
@@ -238,6 +297,8 @@ public class AVSDFCircle extends LGraph
 		// Add the unorderd neigbors of this node to the stack
 		if (sDegreeNode != null)
 		{
+			removeFromHeap(sDegreeNode);
+
 			AVSDFNode[] neighbors = sDegreeNode.getNeigborsSortedByDegree();
 
 			for (int i = neighbors.length-1; i >= 0; i--)
@@ -334,26 +395,121 @@ public class AVSDFCircle extends LGraph
 
 	/**
 	 * This method finds and returns the unordered smallest degree vertex on
-	 * this circle.
+	 * this circle, the first one in the node list in case of ties.
 	 */
 	private AVSDFNode findUnorderedSmallestDegreeNode()
 	{
-		int minDegree = Integer.MAX_VALUE;
-		AVSDFNode sDegreeNode = null;
+		// nodes are removed from the heap as they are chosen to be placed
+		while (heapSize > 0)
+		{
+			AVSDFNode node = heapNodes[heap[0]];
 
-		Iterator iterator = this.getNodes().iterator();
+			if (!node.isOrdered())
+			{
+				return node;
+			}
 
-		while (iterator.hasNext())
+			removeFromHeap(node);
+		}
+
+		return null;
+	}
+
+	/*
+	 * This method removes the input node from the heap, if not removed yet.
+	 */
+	private void removeFromHeap(AVSDFNode node)
+	{
+		Integer position = heapPositions.get(node);
+
+		if (position == null || heapIndices[position] == -1)
 		{
-			AVSDFNode node = (AVSDFNode)iterator.next();
+			return;
+		}
+
+		int i = heapIndices[position];
+		int last = heap[--heapSize];
+		heapIndices[position] = -1;
+
+		if (i < heapSize)
+		{
+			heap[i] = last;
+			heapIndices[last] = i;
+			siftUp(i);
+			siftDown(heapIndices[last]);
+		}
+	}
+
+	/*
+	 * This method moves the heap entry at the input index up to its place.
+	 */
+	private void siftUp(int i)
+	{
+		while (i > 0)
+		{
+			int parent = (i - 1) / 2;
 
-			if (node.getDegree() < minDegree && !node.isOrdered())
+			if (!isHeapKeyLess(heap[i], heap[parent]))
 			{
-				minDegree = node.getDegree();
-				sDegreeNode = node;
+				break;
 			}
+
+			swapHeapEntries(i, parent);
+			i = parent;
 		}
+	}
 
-		return sDegreeNode;
+	/*
+	 * This method moves the heap entry at the input index down to its place.
+	 */
+	private void siftDown(int i)
+	{
+		while (true)
+		{
+			int smallest = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+
+			if (left < heapSize && isHeapKeyLess(heap[left], heap[smallest]))
+			{
+				smallest = left;
+			}
+
+			if (right < heapSize && isHeapKeyLess(heap[right], heap[smallest]))
+			{
+				smallest = right;
+			}
+
+			if (smallest == i)
+			{
+				break;
+			}
+
+			swapHeapEntries(i, smallest);
+			i = smallest;
+		}
+	}
+
+	/*
+	 * This method returns whether the node at the first input position
+	 * precedes the one at the second input position in the heap.
+	 */
+	private boolean isHeapKeyLess(int position1, int position2)
+	{
+		return heapDegrees[position1] < heapDegrees[position2] ||
+			(heapDegrees[position1] == heapDegrees[position2] &&
+				position1 < position2);
+	}
+
+	/*
+	 * This method swaps the heap entries at the input indices.
+	 */
+	private void swapHeapEntries(int i, int j)
+	{
+		int temp = heap[i];
+		heap[i] = heap[j];
+		heap[j] = temp;
+		heapIndices[heap[i]] = i;
+		heapIndices[heap[j]] = j;
 	}
-}
\ No newline at end of file
+}
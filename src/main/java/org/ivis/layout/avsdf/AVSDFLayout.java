@@ -156,7 +156,18 @@ public class AVSDFLayout extends Layout
 			AVSDFNode node = (AVSDFNode)(array[i]);
 			int currentCrossingNumber = node.getTotalCrossingOfEdges();
 			int newCrossingNumber;
-			Set neighbors = node.getNeighborsList();
+
+			// Neighbors are visited in the order of edges rather than that of
+			// a hash set, for the result not to depend on identity hash codes
+			// (and hence on the thread running this layout).
+
+			Set neighbors = new LinkedHashSet();
+
+			for (Object obj : node.getEdges())
+			{
+				neighbors.add(((AVSDFEdge) obj).getOtherEnd(node));
+			}
+
 			Iterator iter = neighbors.iterator();
 
 			while (iter.hasNext())
@@ -7,6 +7,7 @@ import java.awt.Point;
 import org.ivis.layout.LNode;
 import org.ivis.layout.LGraphManager;
 import org.ivis.layout.LNodeDegreeSort;
+import org.ivis.util.CircularCrossingCounter;
 
 /**
  * This class implements data and functionality required for AVSDF layout per
@@ -43,6 +44,12 @@ public class AVSDFNode extends LNode
 	 */
 	private boolean isCrossingNumberValid = false;
 
+	/*
+	 * Neighbors of this node, one entry per incident edge, in the order of
+	 * edges
+	 */
+	private AVSDFNode[] neighbors;
+
 // -----------------------------------------------------------------------------
 // Section: Constructors and initialization
 // -----------------------------------------------------------------------------
@@ -95,38 +102,55 @@ public class AVSDFNode extends LNode
 	}
 
 	/**
-	 * This method returns the array of the neigbors of this node sorted in
-	 * ascending order.
+	 * This method collects the neigbors of this node, to be used by
+	 * subsequent calls to getNeigborsSortedByDegree. It should be called
+	 * again whenever the edges of this node change.
 	 */
-	public AVSDFNode[] getNeigborsSortedByDegree()
+	public void collectNeighbors()
 	{
-
 		Iterator iterator = this.getEdges().iterator();
-		ArrayList list = new ArrayList<AVSDFNode>();
+		AVSDFNode[] array = new AVSDFNode[this.getEdges().size()];
+		int i = 0;
 
 		while (iterator.hasNext())
 		{
 			AVSDFEdge edge = (AVSDFEdge)iterator.next();
-			AVSDFNode node = edge.getOtherEnd(this);
+			array[i++] = edge.getOtherEnd(this);
+		}
 
-			if (node.getIndex() == -1)
-			{
-				list.add(node);
-			}
+		this.neighbors = array;
+	}
+
+	/**
+	 * This method returns the array of the unordered neigbors of this node
+	 * sorted in ascending order of their degrees. Unordered neighbors are
+	 * sorted on each call rather than sorting all neighbors once, as the
+	 * sort is not stable: neighbors of equal degree would otherwise end up
+	 * in another order.
+	 */
+	public AVSDFNode[] getNeigborsSortedByDegree()
+	{
+		if (this.neighbors == null)
+		{
+			this.collectNeighbors();
 		}
 
-		Object[] temp = (list.toArray());
-		AVSDFNode[] array = new AVSDFNode[temp.length];
+		AVSDFNode[] array = new AVSDFNode[this.neighbors.length];
+		int count = 0;
 
-		for (int i = 0; i < array.length; i++)
+		for (int i = 0; i < this.neighbors.length; i++)
 		{
-			array[i] = (AVSDFNode)temp[i];
+			if (this.neighbors[i].getIndex() == -1)
+			{
+				array[count++] = this.neighbors[i];
+			}
 		}
 
-		LNodeDegreeSort sort = new LNodeDegreeSort(array);
-		if (array.length > 0)
+		array = Arrays.copyOf(array, count);
+
+		if (count > 0)
 		{
-			sort.quicksort();
+			new LNodeDegreeSort(array).quicksort();
 		}
 
 		return array;
@@ -240,19 +264,18 @@ public class AVSDFNode extends LNode
 	 */
 	public void calculateTotalCrossing()
 	{
-		Iterator iter = this.edges.iterator();
-		int count = 0;
-		ArrayList temp = new ArrayList();
+		AVSDFCircle circle = this.getCircle();
+		int[] otherEnds = new int[this.edges.size()];
+		int i = 0;
 
-		temp.addAll(getCircle().getEdges());
-		temp.removeAll(this.edges);
-
-		while (iter.hasNext())
+		for (Object obj : this.edges)
 		{
-			AVSDFEdge edge = (AVSDFEdge)iter.next();
-			count += edge.calculateTotalCrossingWithList(temp);
+			otherEnds[i++] = ((AVSDFEdge)obj).getOtherEnd(this).getIndex();
 		}
 
-		totalCrossingOfEdges = count;
+		int[][] ends = circle.getEdgeEndIndices();
+
+		totalCrossingOfEdges = new CircularCrossingCounter(circle.getSize()).
+			countCrossingsAt(this.circleIndex, otherEnds, ends[0], ends[1]);
 	}
 }
\ No newline at end of file
@@ -64,17 +64,6 @@ public class CiSECircle extends LGraph
 	 */
 	private double radius;
 
-	/**
-	 * Holds the pairwise ordering of on-circle nodes computed in earlier stages
-	 * of layout. Value at i,j means the following assuming u and v are
-	 * on-circle nodes with orderIndex i and j, respectively. Value at i,j is
-	 * true (false) if u and v are closer when we go from u to v in clockwise
-	 * (counter-clockwise) direction. Here we base distance on the angles of the
-	 * two nodes as opposed to their order indices (this might make a difference
-	 * due to non-uniform node sizes).  
-	 */
-	private boolean[][] orderMatrix = null;
-
 	/**
 	 * Whether or not this circle may be reserved for the purpose of improving
 	 * inter-cluster edge crossing number as we do not want to redundantly
@@ -84,6 +73,15 @@ public class CiSECircle extends LGraph
 	 */
 	private boolean mayBeReversed;
 
+	/*
+	 * Aligner used to decide whether a cluster should be reversed, shared by
+	 * all circles
+	 */
+	private static final IntSequenceAligner sequenceAligner =
+		new IntSequenceAligner(CiSEConstants.ALIGNMENT_MATCH_REWARD,
+			CiSEConstants.ALIGNMENT_MISMATCH_PENALTY,
+			CiSEConstants.ALIGNMENT_GAP_COST);
+
 // -----------------------------------------------------------------------------
 // Section: Constructors and initializations
 // -----------------------------------------------------------------------------
@@ -221,69 +219,43 @@ public class CiSECircle extends LGraph
 	}
 
 	/**
-	 * This method returns the pairwise order of the input nodes as computed and
-	 * held in orderMatrix.
+	 * This method returns the pairwise order of the input on-circle nodes: true
+	 * (false) if they are closer when we go from nodeA to nodeB in clockwise
+	 * (counter-clockwise) direction. Here we base distance on the current
+	 * angles of the two nodes as opposed to their order indices (this might
+	 * make a difference due to non-uniform node sizes). Since angles are kept
+	 * up to date as nodes are swapped, reversed or rotated, so is the order.
+	 * Exactly one of getOrder(nodeA, nodeB) and getOrder(nodeB, nodeA) is
+	 * true for distinct nodes; diametrically opposite nodes are closer going
+	 * from the one with the lower on-circle index.
 	 */
 	public boolean getOrder(CiSENode nodeA, CiSENode nodeB)
 	{
-		assert this.orderMatrix != null;
 		assert nodeA != null && nodeB != null &&
-			nodeA.getOnCircleNodeExt() != null && nodeA.getOnCircleNodeExt() != null;
-//		assert nodeA != nodeB;
-
-		return this.orderMatrix[nodeA.getOnCircleNodeExt().getIndex()][nodeB.getOnCircleNodeExt().getIndex()];
-	}
+			nodeA.getOnCircleNodeExt() != null &&
+			nodeB.getOnCircleNodeExt() != null;
 
-	/*
-	 * This method computes the order matrix of this circle. This should be
-	 * called only once at early stages of layout and is used to hold the order
-	 * of on-circle nodes as specified.
-	 */
-	public void computeOrderMatrix()
-	{
-		assert this.orderMatrix == null;
+		if (nodeA == nodeB)
+		{
+			return false;
+		}
 
-		int N = this.onCircleNodes.size();
-		this.orderMatrix = new boolean[N][N];
+		// measure the angle from the node with the lower index, so that a
+		// difference of exactly pi is counted in favor of that node only
+		boolean isAFirst = nodeA.getOnCircleNodeExt().getIndex() <
+			nodeB.getOnCircleNodeExt().getIndex();
+		CiSENode first = isAFirst ? nodeA : nodeB;
+		CiSENode second = isAFirst ? nodeB : nodeA;
 
-		Iterator nodeIterA = this.onCircleNodes.iterator();
-		Iterator nodeIterB;
-		CiSENode nodeA;
-		CiSENode nodeB;
-		double angleDiff;
+		double angleDiff = second.getOnCircleNodeExt().getAngle() -
+			first.getOnCircleNodeExt().getAngle();
 
-		for (int i = 0; i < N; i++)
+		if (angleDiff < 0)
 		{
-			nodeA = (CiSENode) nodeIterA.next();
-			nodeIterB = this.onCircleNodes.iterator();
-
-			for (int j = 0; j < N; j++)
-			{
-				nodeB = (CiSENode) nodeIterB.next();
-
-				if (j > i)
-				{
-					angleDiff = nodeB.getOnCircleNodeExt().getAngle() -
-						nodeA.getOnCircleNodeExt().getAngle();
-
-					if (angleDiff < 0)
-					{
-						angleDiff += IGeometry.TWO_PI;
-					}
-
-					if (angleDiff <= Math.PI)
-					{
-						this.orderMatrix[i][j] = true;
-						this.orderMatrix[j][i] = false;
-					}
-					else
-					{
-						this.orderMatrix[i][j] = false;
-						this.orderMatrix[j][i] = true;
-					}
-				}
-			}
+			angleDiff += IGeometry.TWO_PI;
 		}
+
+		return (angleDiff <= Math.PI) == isAFirst;
 	}
 
 	/**
@@ -468,7 +440,9 @@ public class CiSECircle extends LGraph
 
 	/**
 	 * This method swaps the nodes given as parameter and make necessary angle
-	 * and positioning updates.
+	 * and positioning updates. Note that swapping conditions of nodes are not
+	 * updated here; the layout updates them for all nodes before each swap
+	 * phase.
 	 */
 	public void swapNodes(CiSENode first, CiSENode second)
 	{
@@ -533,24 +507,6 @@ public class CiSECircle extends LGraph
 		secondExt.setIndex(tempIndex);
 		this.getOnCircleNodes().set(firstExt.getIndex(), first);
 		this.getOnCircleNodes().set(secondExt.getIndex(), second);
-
-		firstExt.updateSwappingConditions();
-		secondExt.updateSwappingConditions();
-
-		if (firstExt.getNextNode() == second)
-		{
-			firstExt.getPrevNode().getOnCircleNodeExt().
-				updateSwappingConditions();
-			secondExt.getNextNode().getOnCircleNodeExt().
-				updateSwappingConditions();
-		}
-		else
-		{
-			firstExt.getNextNode().getOnCircleNodeExt().
-				updateSwappingConditions();
-			secondExt.getPrevNode().getOnCircleNodeExt().
-				updateSwappingConditions();
-		}
 	}
 
 	/**
@@ -622,7 +578,7 @@ public class CiSECircle extends LGraph
 		// the cluster center and neighboring node center.
 		// In the meantime, calculate how many inter-cluster edge each on-circle
 		// node is incident with. This information will be used to duplicate
-		// char codes of those nodes with 2 or more inter-graph edge.
+		// indices of those nodes with 2 or more inter-graph edge.
 
 		double angle;
 		PointD clusterCenter = this.getParent().getCenter();
@@ -657,12 +613,12 @@ public class CiSECircle extends LGraph
 		Object[] onCircleNodes = this.onCircleNodes.toArray();
 
 		// Form arrays for current and reversed order of nodes of this cluster
-		// Take any repetitions into account (if node with char code 'b' is
-		// incident with 3 inter-cluster edges, then repeat 'b' 2 times)
+		// Take any repetitions into account (if node with index 1 is incident
+		// with 3 inter-cluster edges, then repeat 1 2 times)
 
 		int nodeCountWithRepetitions = nodeCount + noOfOnCircleNodesToBeRepeated;
-		char[] clusterNodes = new char[2 * nodeCountWithRepetitions];
-		char[] reversedClusterNodes = new char[2 * nodeCountWithRepetitions];
+		int[] clusterNodes = new int[2 * nodeCountWithRepetitions];
+		int[] reversedClusterNodes = new int[2 * nodeCountWithRepetitions];
 		CiSENode node;
 		int index = -1;
 
@@ -683,7 +639,7 @@ public class CiSECircle extends LGraph
 					clusterNodes[nodeCountWithRepetitions + index] =
 					reversedClusterNodes[nodeCountWithRepetitions - 1 - index] =
 					reversedClusterNodes[2 * nodeCountWithRepetitions - 1 - index] =
-						node.getOnCircleNodeExt().getCharCode();
+						node.getOnCircleNodeExt().getIndex();
 			}
 		}
 
@@ -696,51 +652,55 @@ public class CiSECircle extends LGraph
 
 		// Form an array for order of neighboring nodes of this cluster
 		
-		char[] neighborNodes = new char[interClusterEdgeInfos.length];
+		int[] neighborNodes = new int[interClusterEdgeInfos.length];
 
 		for (int i = 0; i < interClusterEdgeInfos.length; i++)
 		{
 			interClusterEdge = interClusterEdgeInfos[i].getEdge();
 			endInThisCluster = this.getThisEnd(interClusterEdge);
-			neighborNodes[i] = endInThisCluster.getOnCircleNodeExt().getCharCode();
+			neighborNodes[i] = endInThisCluster.getOnCircleNodeExt().getIndex();
 		}
 
 		// Now calculate a score for the alignment of the current order of the
 		// nodes of this cluster w.r.t. to their neighbors order
 
 		int alignmentScoreCurrent =
-			this.computeAlignmentScore(new CharArrayReader(clusterNodes),
-				new CharArrayReader(neighborNodes));
+			computeAlignmentScore(clusterNodes, neighborNodes);
 
 		// Then calculate a score for the alignment of the reversed order of the
 		// nodes of this cluster w.r.t. to their neighbors order
 
-		if (alignmentScoreCurrent != -1)
-		{
-			int alignmentScoreReversed =
-				this.computeAlignmentScore(new CharArrayReader(reversedClusterNodes),
-					new CharArrayReader(neighborNodes));
+		int alignmentScoreReversed =
+			computeAlignmentScore(reversedClusterNodes, neighborNodes);
 
-			// Check if reversed order is *substantially* better aligned with
-			// the order of the neighbors of this cluster around the cluster; if
-			// so, reverse the order
+		// Check if reversed order is *substantially* better aligned with the
+		// order of the neighbors of this cluster around the cluster; if so,
+		// reverse the order
 
-			if (alignmentScoreReversed != -1)
-			{
-				if (alignmentScoreReversed > alignmentScoreCurrent)
-				{
-					this.reverseNodes();
-					this.setMayNotBeReversed();
-//					System.out.println("! Reversal: " + this.getNodes().size() + " node cluster");
-					return true;
-				}
-			}
+		if (alignmentScoreReversed > alignmentScoreCurrent)
+		{
+			this.reverseNodes();
+			this.setMayNotBeReversed();
+//			System.out.println("! Reversal: " + this.getNodes().size() + " node cluster");
+			return true;
 		}
 
 //		System.out.println("=====================");
 		return false;
 	}
 
+	/**
+	 * This method computes the alignment score of the two input sequences of
+	 * node indices; the first one is the order of nodes of a cluster, repeated
+	 * twice to emulate a circular alignment. It returns Integer.MIN_VALUE if
+	 * either sequence is empty.
+	 */
+	public static int computeAlignmentScore(int[] clusterNodes,
+		int[] neighborNodes)
+	{
+		return sequenceAligner.computeScore(clusterNodes, neighborNodes);
+	}
+
 	/**
 	 * This method computes an alignment for the two input char arrays and
 	 * returns the alignment amount. If alignment is unsuccessful for some
@@ -752,7 +712,10 @@ public class CiSECircle extends LGraph
 		int alignmentScore;
 		PairwiseAlignmentAlgorithm aligner =
 			new NeedlemanWunsch();
-		aligner.setScoringScheme(new BasicScoringScheme(20, -1, -2));
+		aligner.setScoringScheme(new BasicScoringScheme(
+			CiSEConstants.ALIGNMENT_MATCH_REWARD,
+			CiSEConstants.ALIGNMENT_MISMATCH_PENALTY,
+			CiSEConstants.ALIGNMENT_GAP_COST));
 
 		try
 		{
@@ -769,7 +732,6 @@ public class CiSECircle extends LGraph
 
 		try
 		{
-			aligner.getPairwiseAlignment();
 			alignmentScore = aligner.getScore();
 //			System.out.println(aligner.getPairwiseAlignment().toString());
 		}
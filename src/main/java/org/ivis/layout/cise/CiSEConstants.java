@@ -85,4 +85,20 @@ public class CiSEConstants extends FDLayoutConstants
 	 * Number of iterations that should be done in between two flips.
 	 */
 	public static final int REVERSE_PERIOD = 25;
+
+	/**
+	 * Scores used in aligning the order of nodes of a cluster with the order
+	 * of their neighbors, to decide whether the cluster should be reversed
+	 */
+	public static final int ALIGNMENT_MATCH_REWARD = 20;
+	public static final int ALIGNMENT_MISMATCH_PENALTY = -1;
+	public static final int ALIGNMENT_GAP_COST = -2;
+
+	/**
+	 * Number of threads running AVSDF layouts of clusters in step 1, and
+	 * minimum number of on-circle nodes laid out per thread
+	 */
+	public static final int DEFAULT_NO_OF_CIRCLE_THREADS =
+		Runtime.getRuntime().availableProcessors();
+	public static final int MIN_NODES_PER_CIRCLE_THREAD = 100;
 }
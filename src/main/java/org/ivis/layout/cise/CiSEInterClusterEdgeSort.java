@@ -6,7 +6,7 @@ import org.ivis.util.QuickSort;
  * This class sorts the array of input edges based on the associated angles. If
  * angles turn out to be the same, then we sort the edges based on their
  * in-cluster end nodes' orders in clockwise direction. This information is
- * calculated beforehand and stored in a matrix in each associated circle.
+ * obtained from the current angles of those nodes on the associated circle.
  *
  * @author Ugur Dogrusoz
  *
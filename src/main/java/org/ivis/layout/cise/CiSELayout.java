@@ -1,8 +1,14 @@
 package org.ivis.layout.cise;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.ivis.layout.*;
+import org.ivis.layout.fd.FDForceTask;
 import org.ivis.layout.fd.FDLayout;
 import org.ivis.layout.fd.FDLayoutConstants;
 import org.ivis.layout.avsdf.*;
@@ -56,6 +62,13 @@ public class CiSELayout extends FDLayout
 	 */
 	public double maxRatioOfNodesInsideCircle;
 
+	/**
+	 * Number of threads to be used for calculations done separately for each
+	 * cluster, i.e. laying out clusters in step 1 and evaluating swaps of
+	 * nodes in step 4
+	 */
+	public int noOfCircleThreads = CiSEConstants.DEFAULT_NO_OF_CIRCLE_THREADS;
+
 	/**
 	 * Current step of the layout process
 	 */
@@ -71,6 +84,60 @@ public class CiSELayout extends FDLayout
 	 */
 	private Set<CiSEOnCircleNodePair> swappedPairsInLastIteration;
 
+	/*
+	 * Force calculation tasks of this layout, for each edge or non-on-circle
+	 * node
+	 */
+	private FDForceTask springForceTask = new FDForceTask()
+	{
+		public void run(int i)
+		{
+			CiSEEdge edge = (CiSEEdge) getAllEdges()[i];
+			CiSENode source = (CiSENode) edge.getSource();
+			CiSENode target = (CiSENode) edge.getTarget();
+
+			// Ignore intra-cluster edges (all steps 3 thru 5) except for
+			// those incident w/ any inner-nodes
+
+			if (edge.isIntraCluster &&
+				source.getOnCircleNodeExt() != null &&
+				target.getOnCircleNodeExt() != null)
+			{
+				return;
+			}
+
+			calcSpringForce(edge, edge.idealLength);
+		}
+	};
+
+	private FDForceTask repulsionForceTask = new FDForceTask()
+	{
+		public void run(int i)
+		{
+			CiSENode[] lNodes = getNonOnCircleNodes();
+			CiSENode nodeA = lNodes[i];
+			CiSENode nodeB;
+
+			for (int j = i + 1; j < lNodes.length; j++)
+			{
+				nodeB = lNodes[j];
+
+				assert nodeA.getOnCircleNodeExt() == null;
+				assert nodeB.getOnCircleNodeExt() == null;
+
+				calcRepulsionForce(nodeA, nodeB);
+			}
+		}
+	};
+
+	private FDForceTask gravitationalForceTask = new FDForceTask()
+	{
+		public void run(int i)
+		{
+			calcGravitationalForce(getNonOnCircleNodes()[i]);
+		}
+	};
+
 // -----------------------------------------------------------------------------
 // Section: Constructors and initializations
 // -----------------------------------------------------------------------------
@@ -463,6 +530,10 @@ public class CiSELayout extends FDLayout
 		this.repulsionConstant = FDLayoutConstants.DEFAULT_REPULSION_STRENGTH;
 		this.gravityConstant = FDLayoutConstants.DEFAULT_GRAVITY_STRENGTH;
 		this.incremental = true;
+
+		// forces are calculated on node objects (see calcSpringForces and
+		// calcRepulsionForces)
+		this.useCompactGraph = false;
 	}
 
 // -----------------------------------------------------------------------------
@@ -565,6 +636,10 @@ public class CiSELayout extends FDLayout
 		// We need this mapping for transferring positions and dimensions back 
 		HashMap<CiSENode, AVSDFNode> ciseToAvsdf = 
 			new HashMap<CiSENode, AVSDFNode> ();
+
+		// Circles and the AVSDF layouts created for them, in the same order
+		List<CiSECircle> ciseCircles = new ArrayList<CiSECircle>();
+		List<AVSDFLayout> avsdfLayouts = new ArrayList<AVSDFLayout>();
 		
 		for (Object graph : this.graphManager.getGraphs())
 		{
@@ -623,8 +698,21 @@ public class CiSELayout extends FDLayout
 				}
 			}
 
-			// Call AVSDF layout for this cluster
-			avsdfLayout.runLayout();
+			ciseCircles.add(ciseCircle);
+			avsdfLayouts.add(avsdfLayout);
+		}
+
+		// Clusters are independent of each other at this point, so their
+		// AVSDF layouts may run concurrently
+		this.runAVSDFLayouts(avsdfLayouts);
+
+		for (int i = 0; i < ciseCircles.size(); i++)
+		{
+			CiSECircle ciseCircle = ciseCircles.get(i);
+			AVSDFCircle avsdfCircle =
+				(AVSDFCircle) avsdfLayouts.get(i).getGraphManager().getRoot();
+			clusteredNodes = ciseCircle.getOnCircleNodes();
+			PointD loc;
 
 			// Reflect changes back to CiSENode's
 
@@ -657,6 +745,134 @@ public class CiSELayout extends FDLayout
 		}
 	}
 
+	/*
+	 * This method runs the input AVSDF layouts. Each layout works on its own
+	 * graph manager only, and is independent of the thread it runs on.
+	 */
+	private void runAVSDFLayouts(List<AVSDFLayout> avsdfLayouts)
+	{
+		List<Runnable> tasks = new ArrayList<Runnable>(avsdfLayouts.size());
+		int noOfNodes = 0;
+
+		for (final AVSDFLayout avsdfLayout : avsdfLayouts)
+		{
+			noOfNodes += avsdfLayout.getGraphManager().getRoot().getNodes().size();
+
+			tasks.add(new Runnable()
+			{
+				public void run()
+				{
+					avsdfLayout.runLayout();
+				}
+			});
+		}
+
+		this.runClusterTasks(tasks, noOfNodes);
+	}
+
+	/*
+	 * This method updates the conditions for swapping of all on-circle nodes
+	 * with their neighbors on their circles. Conditions of a node only depend
+	 * on the order of its own circle, so circles are handled concurrently.
+	 */
+	private void updateSwappingConditions()
+	{
+		List<Runnable> tasks = new ArrayList<Runnable>();
+		int noOfNodes = 0;
+
+		for (Object graph : this.graphManager.getGraphs())
+		{
+			if (graph == this.graphManager.getRoot())
+			{
+				continue;
+			}
+
+			final List<CiSENode> onCircleNodes =
+				((CiSECircle) graph).getOnCircleNodes();
+			noOfNodes += onCircleNodes.size();
+
+			tasks.add(new Runnable()
+			{
+				public void run()
+				{
+					for (CiSENode node : onCircleNodes)
+					{
+						node.getOnCircleNodeExt().updateSwappingConditions();
+					}
+				}
+			});
+		}
+
+		this.runClusterTasks(tasks, noOfNodes);
+	}
+
+	/*
+	 * This method runs the input tasks, each working on a separate cluster
+	 * with the input total number of on-circle nodes, and returns when all
+	 * are done. A number of threads is used if there are enough nodes.
+	 */
+	private void runClusterTasks(List<Runnable> tasks, int noOfNodes)
+	{
+		int noOfWorkers = Math.min(Math.min(this.noOfCircleThreads,
+			tasks.size()),
+			noOfNodes / CiSEConstants.MIN_NODES_PER_CIRCLE_THREAD);
+
+		if (noOfWorkers <= 1)
+		{
+			for (Runnable task : tasks)
+			{
+				task.run();
+			}
+
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(noOfWorkers,
+			new ThreadFactory()
+			{
+				public Thread newThread(Runnable runnable)
+				{
+					Thread thread = new Thread(runnable, "cise-circle-worker");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+
+		try
+		{
+			List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+
+			for (Runnable task : tasks)
+			{
+				futures.add(executor.submit(task));
+			}
+
+			for (Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+				"Interrupted during calculations on clusters", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
 	/**
 	 * This method runs a spring embedder on the cluster-graph (quotient graph
 	 * of the clustered graph) to determine initial layout.
@@ -1120,15 +1336,6 @@ public class CiSELayout extends FDLayout
 	 */
 	private void runSpringEmbedder()
 	{
-		if (this.step == CiSELayout.STEP_4)
-		{
-			for (int i = 0; i < this.getOnCircleNodes().length ; i++)
-			{
-				this.getOnCircleNodes()[i].getOnCircleNodeExt().
-					updateSwappingConditions();
-			}
-		}
-
 		this.totalDisplacement = 1000;
 		int iterations = 0;
 
@@ -1178,6 +1385,7 @@ public class CiSELayout extends FDLayout
 				else if (iterationInPeriod == 0)
 				{
 					this.phase = CiSELayout.PHASE_PERFORM_SWAP;
+					this.updateSwappingConditions();
 				}
 				else
 				{
@@ -1206,29 +1414,7 @@ public class CiSELayout extends FDLayout
 	 */
 	public void calcSpringForces()
 	{
-		Object[] lEdges = this.getAllEdges();
-		CiSEEdge edge;
-		CiSENode source;
-		CiSENode target;
-
-		for (int i = 0; i < lEdges.length; i++)
-		{
-			edge = (CiSEEdge) lEdges[i];
-			source = (CiSENode) edge.getSource();
-			target = (CiSENode) edge.getTarget();
-
-			// Ignore intra-cluster edges (all steps 3 thru 5) except for those
-			// incident w/ any inner-nodes
-			
-			if (edge.isIntraCluster &&
-				source.getOnCircleNodeExt() != null &&
-				target.getOnCircleNodeExt() != null)
-			{
-				continue;
-			}
-
-			this.calcSpringForce(edge, edge.idealLength);
-		}
+		this.runForceTask(this.getAllEdges().length, this.springForceTask);
 	}
 
 	/**
@@ -1237,24 +1423,8 @@ public class CiSELayout extends FDLayout
 	 */
 	public void calcRepulsionForces()
 	{
-		int i, j;
-		CiSENode nodeA, nodeB;
-		Object[] lNodes = this.getNonOnCircleNodes();
-
-		for (i = 0; i < lNodes.length; i++)
-		{
-			nodeA = (CiSENode) lNodes[i];
-
-			for (j = i + 1; j < lNodes.length; j++)
-			{
-				nodeB = (CiSENode) lNodes[j];
-
-				assert nodeA.getOnCircleNodeExt() == null;
-				assert nodeB.getOnCircleNodeExt() == null;
-
-				this.calcRepulsionForce(nodeA, nodeB);
-			}
-		}
+		this.runForceTask(this.getNonOnCircleNodes().length,
+			this.repulsionForceTask);
 		
 		// We need the calculate repulsion forces for in-circle nodes as well
 		// to keep them inside circle.
@@ -1291,14 +1461,8 @@ public class CiSELayout extends FDLayout
 
 		if (!this.getGraphManager().getRoot().isConnected())
 		{
-			lNodes = this.getNonOnCircleNodes();
-
-			for (int i = 0; i < lNodes.length; i++)
-			{
-				node = (CiSENode) lNodes[i];
-
-				this.calcGravitationalForce(node);
-			}
+			this.runForceTask(this.getNonOnCircleNodes().length,
+				this.gravitationalForceTask);
 		}
 		
 		// Calculate gravitational forces to keep in-circle nodes in the center
@@ -1689,9 +1853,9 @@ public class CiSELayout extends FDLayout
 	}
 
 	/**
-	 * This method prepares circles for possible reversal by computing the order
-	 * matrix of each circle. It also determines any circles that should never
-	 * be reversed (e.g. when it has no more than 1 inter-cluster edge).
+	 * This method prepares circles for possible reversal by determining any
+	 * circles that should never be reversed (e.g. when it has no more than 1
+	 * inter-cluster edge).
 	 */
 	private void prepareCirclesForReversal()
 	{
@@ -1711,8 +1875,6 @@ public class CiSELayout extends FDLayout
 				{
 					circle.setMayNotBeReversed();
 				}
-
-				circle.computeOrderMatrix();
 			}
 		}
 	}
@@ -1743,9 +1905,7 @@ public class CiSELayout extends FDLayout
 			node = nodeIterator.next();
 			circle = (CiSECircle) node.getChild();
 
-			if (circle != null &&
-				circle.mayBeReversed() &&
-				circle.getNodes().size() <= 52)
+			if (circle != null && circle.mayBeReversed())
 			{
 				if (circle.checkAndReverseIfReverseIsBetter())
 				{
@@ -135,7 +135,8 @@ public class CiSEOnCircleNodeExt
 	/**
 	 * This method returns the char code of this node based on the node index.
 	 * First node of the cluster is 'a', second one is 'b", and so on. We only
-	 * guarentee a unique char code up to 52 nodes in a cluster.
+	 * guarentee a unique char code up to 52 nodes in a cluster; use the index
+	 * itself where uniqueness matters.
 	 */
 	public char getCharCode()
 	{
@@ -301,68 +302,53 @@ public class CiSEOnCircleNodeExt
 	 */
 	public int calculateTotalCrossing()
 	{
-		Iterator iter = getIntraClusterEdges().iterator();
-		int count = 0;
-		ArrayList temp = new ArrayList();
-
-		temp.addAll(((CiSECircle) this.ciseNode.getOwner()).getIntraClusterEdges());
-		temp.removeAll(this.ciseNode.getEdges());
+		CiSECircle circle = (CiSECircle) this.ciseNode.getOwner();
+		List<CiSEEdge> circleEdges = circle.getIntraClusterEdges();
+		int[] sourceIndices = new int[circleEdges.size()];
+		int[] targetIndices = new int[circleEdges.size()];
+		int i = 0;
 
-		while (iter.hasNext())
+		for (CiSEEdge edge : circleEdges)
 		{
-			CiSEEdge edge = (CiSEEdge)iter.next();
-			count += edge.calculateTotalCrossingWithList(temp);
+			sourceIndices[i] = getIndexOf((CiSENode) edge.getSource());
+			targetIndices[i] = getIndexOf((CiSENode) edge.getTarget());
+			i++;
 		}
 
-		return count;
+		return new CircularCrossingCounter(circle.getOnCircleNodes().size()).
+			countCrossingsAt(this.orderIndex,
+				this.getIntraClusterNeighborIndices(),
+				sourceIndices,
+				targetIndices);
 	}
 
 	/*
 	 * This method updates the conditions for swapping of this node with its
-	 * previous and next neighbors on the associated circle.
+	 * previous and next neighbors on the associated circle. Swapping two
+	 * adjacent nodes only changes crossings between their own edges; hence
+	 * the change in crossings of this node is calculated from the edges of
+	 * the two nodes alone.
 	 */
 	public void updateSwappingConditions()
 	{
-		int currentCrossingNumber = this.calculateTotalCrossing();
-		int currentNodeIndex = this.orderIndex;
-
-		CiSEOnCircleNodeExt nextNodeExt = this.getNextNode().getOnCircleNodeExt();
-		this.orderIndex = nextNodeExt.getIndex();
-		nextNodeExt.setIndex(currentNodeIndex);
-
-		int tempCrossingNumber = this.calculateTotalCrossing();
-
-		if (tempCrossingNumber > currentCrossingNumber)
-		{
-			canSwapWithNext = false;
-		}
-		else
-		{
-			canSwapWithNext = true;
-		}
+		CiSECircle circle = (CiSECircle) this.ciseNode.getOwner();
+		CircularCrossingCounter counter =
+			new CircularCrossingCounter(circle.getOnCircleNodes().size());
+		int[] neighborIndices = this.getIntraClusterNeighborIndices();
 
-		nextNodeExt.setIndex(this.orderIndex);
+		CiSEOnCircleNodeExt nextNodeExt = this.getNextNodeExt();
 
-		this.setIndex(currentNodeIndex);
+		this.canSwapWithNext = counter.calcSwapDelta(
+			this.orderIndex, neighborIndices,
+			nextNodeExt.getIndex(), nextNodeExt.getIntraClusterNeighborIndices())
+				<= 0;
 
-		CiSEOnCircleNodeExt prevNodeExt = this.getPrevNode().getOnCircleNodeExt();
-		this.orderIndex = prevNodeExt.getIndex();
-		prevNodeExt.setIndex(currentNodeIndex);
+		CiSEOnCircleNodeExt prevNodeExt = this.getPrevNodeExt();
 
-		tempCrossingNumber = this.calculateTotalCrossing();
-
-		if (tempCrossingNumber > currentCrossingNumber)
-		{
-			canSwapWithPrevious = false;
-		}
-		else
-		{
-			canSwapWithPrevious = true;
-		}
-
-		prevNodeExt.setIndex(this.orderIndex);
-
-		this.setIndex(currentNodeIndex);
+		this.canSwapWithPrevious = counter.calcSwapDelta(
+			prevNodeExt.getIndex(), prevNodeExt.getIntraClusterNeighborIndices(),
+			this.orderIndex, neighborIndices)
+				<= 0;
 	}
 
 	/**
@@ -387,33 +373,68 @@ public class CiSEOnCircleNodeExt
 
 		List<CiSEEdge> thisInterClusterEdges = this.getInterClusterEdges();
 		List<CiSEEdge> otherInterClusterEdges = other.getInterClusterEdges();
+		int noOfOtherEdges = otherInterClusterEdges.size();
 
-		Iterator<CiSEEdge> iter1 = thisInterClusterEdges.iterator();
+		if (thisInterClusterEdges.isEmpty() || noOfOtherEdges == 0)
+		{
+			return 0;
+		}
 
-		while (iter1.hasNext())
+		// All edges of a node start at its center; gather the other ends of
+		// the edges of the other node once rather than for each pair
+
+		LNode[] otherEnds = new LNode[noOfOtherEdges];
+		double[] otherEndXs = new double[noOfOtherEdges];
+		double[] otherEndYs = new double[noOfOtherEdges];
+		double x1 = this.ciseNode.getCenterX();
+		double y1 = this.ciseNode.getCenterY();
+		double x3 = other.ciseNode.getCenterX();
+		double y3 = other.ciseNode.getCenterY();
+		double x2, y2, x4, y4;
+		boolean isPoint;
+		LNode end;
+
+		for (int i = 0; i < noOfOtherEdges; i++)
 		{
-			CiSEEdge edge = iter1.next();
-			PointD point1 = this.ciseNode.getCenter();
-			PointD point2 = edge.getOtherEnd(this.ciseNode).getCenter();
+			otherEnds[i] =
+				otherInterClusterEdges.get(i).getOtherEnd(other.ciseNode);
+			otherEndXs[i] = otherEnds[i].getCenterX();
+			otherEndYs[i] = otherEnds[i].getCenterY();
+		}
 
-			Iterator<CiSEEdge> iter2 = otherInterClusterEdges.iterator();
+		for (CiSEEdge edge : thisInterClusterEdges)
+		{
+			end = edge.getOtherEnd(this.ciseNode);
+			x2 = end.getCenterX();
+			y2 = end.getCenterY();
+			isPoint = x1 == x2 && y1 == y2;
 
-			while(iter2.hasNext())
+			for (int i = 0; i < noOfOtherEdges; i++)
 			{
-				CiSEEdge otherEdge = iter2.next();
-				PointD point3 = other.ciseNode.getCenter();
-				PointD point4 = otherEdge.getOtherEnd(other.ciseNode).getCenter();
+				if (end == otherEnds[i])
+				{
+					continue;
+				}
 
-				if (edge.getOtherEnd(this.ciseNode) !=
-					otherEdge.getOtherEnd(other.ciseNode))
+				x4 = otherEndXs[i];
+				y4 = otherEndYs[i];
+
+				// Segments may only intersect if their bounding boxes do,
+				// except that two zero length segments always intersect
+				// according to Line2D
+
+				if (!(isPoint && x3 == x4 && y3 == y4) &&
+					(Math.max(x1, x2) < Math.min(x3, x4) ||
+					Math.max(x3, x4) < Math.min(x1, x2) ||
+					Math.max(y1, y2) < Math.min(y3, y4) ||
+					Math.max(y3, y4) < Math.min(y1, y2)))
 				{
-					boolean result =
-						IGeometry.doIntersect(point1, point2, point3, point4);
+					continue;
+				}
 
-					if (result)
-					{
-						count++;
-					}
+				if (IGeometry.doIntersect(x1, y1, x2, y2, x3, y3, x4, y4))
+				{
+					count++;
 				}
 			}
 		}
@@ -446,6 +467,35 @@ public class CiSEOnCircleNodeExt
 		return interClusterEdges;
 	}
 
+	/*
+	 * This method returns the indices of the other ends of the intra cluster
+	 * edges of the associated node within their owner circle.
+	 */
+	private int[] getIntraClusterNeighborIndices()
+	{
+		List<CiSEEdge> edgeList = this.getIntraClusterEdges();
+		int[] indices = new int[edgeList.size()];
+
+		for (int i = 0; i < indices.length; i++)
+		{
+			indices[i] = getIndexOf(
+				(CiSENode) edgeList.get(i).getOtherEnd(this.ciseNode));
+		}
+
+		return indices;
+	}
+
+	/*
+	 * This method returns the index of the input node on its owner circle, -1
+	 * if it is not an on-circle node.
+	 */
+	private static int getIndexOf(CiSENode node)
+	{
+		CiSEOnCircleNodeExt nodeExt = node.getOnCircleNodeExt();
+
+		return nodeExt != null ? nodeExt.getIndex() : -1;
+	}
+
 	/**
 	 * This method returns the intra cluster edges of the associated node.
 	 */
@@ -89,6 +89,26 @@ public class ClusterGraphManager extends CoSEGraphManager
 	public void updateBounds()
 	{
 		super.updateBounds();
+		this.updatePolygons();
+	}
+
+	/**
+	 * This method updates the bounds of the graphs marked dirty, as done by
+	 * CoSE with lazy compound displacement, along with cluster polygons just
+	 * like updateBounds.
+	 */
+	public void updateDirtyBounds()
+	{
+		super.updateDirtyBounds();
+		this.updatePolygons();
+	}
+
+	/*
+	 * This method recalculates the polygons of all clusters, more often as
+	 * the layout cools down.
+	 */
+	private void updatePolygons()
+	{
 		ClusterLayout currentLayout = ((ClusterLayout) this.getLayout());
 		double coolingFactor = (currentLayout.coolingFactor);
 		int iterationFrequency =  (int) ((1 - coolingFactor) * 8) + 1 ;
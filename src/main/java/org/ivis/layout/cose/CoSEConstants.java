@@ -15,6 +15,7 @@ public class CoSEConstants extends FDLayoutConstants
 // Section: CoSE layout user options
 // -----------------------------------------------------------------------------
 	public static final boolean DEFAULT_USE_MULTI_LEVEL_SCALING = false;
+	public static final boolean DEFAULT_USE_LAZY_COMPOUND_DISPLACEMENT = false;
 	
 // -----------------------------------------------------------------------------
 // Section: CoSE layout remaining contants
@@ -26,7 +27,13 @@ public class CoSEConstants extends FDLayoutConstants
 		FDLayoutConstants.DEFAULT_EDGE_LENGTH;
 
 	/**
-	 * Default separation of trees in a forest when tiled to a grid
+	 * Default separation of trees in a forest when packed together
 	 */
 	public static final int DEFAULT_COMPONENT_SEPERATION = 60;
+
+	/**
+	 * Default desired ratio of the width of a forest to its height, when its
+	 * trees are packed together
+	 */
+	public static final double DEFAULT_COMPONENT_ASPECT_RATIO = 1.0;
 }
\ No newline at end of file
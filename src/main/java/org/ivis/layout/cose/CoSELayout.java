@@ -10,6 +10,7 @@ import java.awt.*;
 
 import org.ivis.layout.*;
 import org.ivis.layout.fd.*;
+import org.ivis.layout.util.SkylinePacking;
 import org.ivis.util.*;
 
 /**
@@ -36,6 +37,25 @@ public class CoSELayout extends FDLayout
 	 */
 	public boolean useMultiLevelScaling =
 		CoSEConstants.DEFAULT_USE_MULTI_LEVEL_SCALING;
+
+	/**
+	 * Whether or not displacement of compound nodes should be recorded on
+	 * their child graphs and applied lazily, with bounds updated only for
+	 * graphs that changed, instead of moving all descendants right away.
+	 * Displacements are then summed in a different order, so positions agree
+	 * with those of eager displacement only up to rounding errors, which the
+	 * layout amplifies: the two modes match for the first few iterations,
+	 * but end up with different layouts.
+	 */
+	public boolean useLazyCompoundDisplacement =
+		CoSEConstants.DEFAULT_USE_LAZY_COMPOUND_DISPLACEMENT;
+
+	/**
+	 * Desired ratio of the width of a forest to its height, when its trees
+	 * are packed together for initial positioning
+	 */
+	public double componentAspectRatio =
+		CoSEConstants.DEFAULT_COMPONENT_ASPECT_RATIO;
 	
 	/**
 	 * Level of the current graph manager in the coarsening process
@@ -123,6 +143,8 @@ public class CoSELayout extends FDLayout
 				layoutOptionsPack.smartEdgeLengthCalc;
 			this.useMultiLevelScaling =
 				layoutOptionsPack.multiLevelScaling;
+			this.useLazyCompoundDisplacement =
+				layoutOptionsPack.lazyCompoundDisplacement;
 			this.springConstant =
 				transform(layoutOptionsPack.springStrength,
 					FDLayoutConstants.DEFAULT_SPRING_STRENGTH, 5.0, 5.0);
@@ -296,7 +318,16 @@ public class CoSELayout extends FDLayout
 			this.calcRepulsionForces();
 			this.calcGravitationalForces();
 			this.moveNodes();
-			this.graphManager.updateBounds();
+
+			if (this.useLazyCompoundDisplacement)
+			{
+				// also applies pending displacement of compound nodes
+				this.graphManager.updateDirtyBounds();
+			}
+			else
+			{
+				this.graphManager.updateBounds();
+			}
 			
 			this.animate();
 			this.resetForces();
@@ -418,56 +449,44 @@ public class CoSELayout extends FDLayout
 	 */
 	protected void positionNodesRadially(ArrayList<ArrayList<LNode>> forest)
 	{
-		// We tile the trees to a grid row by row; first tree starts at (0,0)
-		Point currentStartingPoint = new Point(0, 0);
-		int numberOfColumns = (int) Math.ceil(Math.sqrt(forest.size()));
-		int height = 0;
-		int currentY = 0;
-		int currentX = 0;
-		PointD point = new PointD(0, 0);
-
-		for (int i = 0; i < forest.size(); i++)
+		// We lay out each tree with its top-left at (0,0), and then pack the
+		// trees together
+		Point startingPoint = new Point(0, 0);
+		double[] widths = new double[forest.size()];
+		double[] heights = new double[forest.size()];
+		PointD point;
+		int i;
+
+		for (i = 0; i < forest.size(); i++)
 		{
-			if (i % numberOfColumns == 0)
-			{
-				// Start of a new row, make the x coordinate 0, increment the
-				// y coordinate with the max height of the previous row
-				currentX = 0;
-				currentY = height;
-
-				if (i !=0)
-				{
-					currentY += CoSEConstants.DEFAULT_COMPONENT_SEPERATION;
-				}
-
-				height = 0;
-			}
-
 			ArrayList<LNode> tree = forest.get(i);
 
 			// Find the center of the tree
 			LNode centerNode = Layout.findCenterOfTree(tree);
 
-			// Set the staring point of the next tree
-			currentStartingPoint.x = currentX;
-			currentStartingPoint.y = currentY;
-
 			// Do a radial layout starting with the center
-			point =
-				CoSELayout.radialLayout(tree, centerNode, currentStartingPoint);
+			point = CoSELayout.radialLayout(tree, centerNode, startingPoint);
+
+			widths[i] = point.x;
+			heights[i] = point.y;
+		}
 
-			if (point.y > height)
+		SkylinePacking packing = new SkylinePacking(this.componentAspectRatio,
+			CoSEConstants.DEFAULT_COMPONENT_SEPERATION,
+			CoSEConstants.DEFAULT_COMPONENT_SEPERATION);
+		packing.pack(widths, heights);
+
+		for (i = 0; i < forest.size(); i++)
+		{
+			for (LNode node : forest.get(i))
 			{
-				height = (int) point.y;
+				node.moveBy(packing.getX(i), packing.getY(i));
 			}
-
-			currentX = (int)
-				(point.x + CoSEConstants.DEFAULT_COMPONENT_SEPERATION);
 		}
 
 		this.transform(
-			new PointD(LayoutConstants.WORLD_CENTER_X - point.x / 2,
-				LayoutConstants.WORLD_CENTER_Y - point.y / 2));
+			new PointD(LayoutConstants.WORLD_CENTER_X - packing.getWidth() / 2,
+				LayoutConstants.WORLD_CENTER_Y - packing.getHeight() / 2));
 	}
 
 	/**
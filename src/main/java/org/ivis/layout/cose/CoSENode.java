@@ -1,6 +1,6 @@
 package org.ivis.layout.cose;
 
-import java.util.Iterator;
+import java.util.List;
 import java.awt.Point;
 import java.awt.Dimension;
 
@@ -124,6 +124,13 @@ public class CoSENode extends FDLayoutNode
 		{
 			this.moveBy(this.displacementX, this.displacementY);
 		}
+		else if (layout.useLazyCompoundDisplacement)
+		// non-empty compound node, leave movement of children to be applied
+		// with the next bounds update
+		{
+			this.child.addPendingDisplacement(this.displacementX,
+				this.displacementY);
+		}
 		// non-empty compound node, propogate movement to children as well
 		else
 		{
@@ -131,6 +138,12 @@ public class CoSENode extends FDLayoutNode
 				this.displacementY);
 		}
 
+		if (layout.useLazyCompoundDisplacement &&
+			(this.displacementX != 0 || this.displacementY != 0))
+		{
+			this.owner.setBoundsDirty();
+		}
+
 //		System.out.printf("\t%s@[%5.1f,%5.1f] s=(%5.1f,%5.1f) r=(%5.1f,%5.1f) g=(%5.1f,%5.1f)\n",
 //			new Object [] {this.label,
 //			this.getLeft(), this.getTop(),
@@ -148,11 +161,11 @@ public class CoSENode extends FDLayoutNode
 	 */
 	public void propogateDisplacementToChildren(double dX, double dY)
 	{
-		Iterator nodeIter = this.getChild().getNodes().iterator();
+		List nodes = this.getChild().getNodes();
 
-		while (nodeIter.hasNext())
+		for (int i = 0; i < nodes.size(); i++)
 		{
-			CoSENode lNode = (CoSENode) nodeIter.next();
+			CoSENode lNode = (CoSENode) nodes.get(i);
 
 			if (lNode.getChild() == null)
 			{
@@ -0,0 +1,321 @@
+package org.ivis.layout.fd;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ivis.layout.LEdge;
+import org.ivis.layout.LNode;
+
+/**
+ * This class implements a compact, array based cache of the geometry of a
+ * graph laid out by a force-directed layout, used by spring and all pairs
+ * repulsion force calculations of FDLayout. Nodes and edges are identified by
+ * their indices in the node and edge arrays of the graph manager the cache is
+ * built from. Geometry, weights and owner graphs of nodes, end nodes and
+ * ideal lengths of edges are kept in primitive arrays, as well as the forces
+ * calculated, so that the quadratic repulsion loop scans memory sequentially
+ * instead of following object references. Edges incident to each node are
+ * kept in compressed sparse row form, so that spring forces can be summed up
+ * per node.
+ *
+ * Node objects remain the primary copy of the graph: geometry is read from
+ * them once per iteration (see readGeometry), and forces are added back to
+ * them after each calculation (see writeSpringForces and
+ * writeRepulsionForces). Gravitation, moving nodes and updating bounds work
+ * on node objects as usual.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class FDCompactGraph
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Node and edge arrays this graph is built from
+	 */
+	private Object[] nodes;
+	private Object[] edges;
+
+	/*
+	 * Number of nodes and edges
+	 */
+	int noOfNodes;
+	int noOfEdges;
+
+	/*
+	 * Geometry (top left corner and dimensions) of nodes
+	 */
+	double[] x;
+	double[] y;
+	double[] width;
+	double[] height;
+
+	/*
+	 * Number of children (weight) of nodes, and whether they are simple nodes
+	 */
+	int[] noOfChildren;
+	boolean[] isLeaf;
+
+	/*
+	 * Id of owner graph of each node, and the next node with the same owner
+	 * (-1 for the last one)
+	 */
+	int[] owner;
+	int[] nextInOwner;
+
+	/*
+	 * End nodes and ideal lengths of edges
+	 */
+	int[] edgeSource;
+	int[] edgeTarget;
+	double[] edgeIdealLength;
+
+	/*
+	 * Incidences of each node, in the order of edges: incidences of node i
+	 * are at indices [incidenceStart[i], incidenceStart[i + 1]), each with
+	 * the edge, its other end node, and whether the node is its source. A
+	 * self-loop has two incidences, the source one first.
+	 */
+	int[] incidenceStart;
+	int[] incidentEdge;
+	int[] adjacentNode;
+	boolean[] isOutgoing;
+
+	/*
+	 * Forces calculated on this graph, not yet added to the nodes
+	 */
+	double[] springForceX;
+	double[] springForceY;
+	double[] repulsionForceX;
+	double[] repulsionForceY;
+
+// -----------------------------------------------------------------------------
+// Section: Constructors and initialization
+// -----------------------------------------------------------------------------
+	/**
+	 * Constructor: builds the compact cache of the graph made up of the input
+	 * nodes (FDLayoutNode) and edges (FDLayoutEdge), which are expected to be
+	 * all nodes and all edges of a graph manager.
+	 */
+	public FDCompactGraph(Object[] nodes, Object[] edges)
+	{
+		Map<Object, Integer> nodeIndices = new HashMap<Object, Integer>();
+		Map<Object, Integer> ownerIds = new HashMap<Object, Integer>();
+		int[] lastInOwner;
+		LNode node;
+		LEdge edge;
+		Integer ownerId;
+		int i;
+
+		this.nodes = nodes;
+		this.edges = edges;
+		this.noOfNodes = nodes.length;
+		this.noOfEdges = edges.length;
+
+		this.x = new double[this.noOfNodes];
+		this.y = new double[this.noOfNodes];
+		this.width = new double[this.noOfNodes];
+		this.height = new double[this.noOfNodes];
+		this.noOfChildren = new int[this.noOfNodes];
+		this.isLeaf = new boolean[this.noOfNodes];
+		this.owner = new int[this.noOfNodes];
+		this.nextInOwner = new int[this.noOfNodes];
+		this.springForceX = new double[this.noOfNodes];
+		this.springForceY = new double[this.noOfNodes];
+		this.repulsionForceX = new double[this.noOfNodes];
+		this.repulsionForceY = new double[this.noOfNodes];
+
+		// nodes and owner graphs
+
+		lastInOwner = new int[this.noOfNodes];
+
+		for (i = 0; i < this.noOfNodes; i++)
+		{
+			node = (LNode) nodes[i];
+			nodeIndices.put(node, i);
+
+			ownerId = ownerIds.get(node.getOwner());
+
+			if (ownerId == null)
+			{
+				ownerId = ownerIds.size();
+				ownerIds.put(node.getOwner(), ownerId);
+			}
+			else
+			{
+				this.nextInOwner[lastInOwner[ownerId]] = i;
+			}
+
+			this.owner[i] = ownerId;
+			this.nextInOwner[i] = -1;
+			lastInOwner[ownerId] = i;
+			this.isLeaf[i] = node.getChild() == null;
+		}
+
+		// edges
+
+		this.edgeSource = new int[this.noOfEdges];
+		this.edgeTarget = new int[this.noOfEdges];
+		this.edgeIdealLength = new double[this.noOfEdges];
+
+		for (i = 0; i < this.noOfEdges; i++)
+		{
+			edge = (LEdge) edges[i];
+			this.edgeSource[i] = nodeIndices.get(edge.getSource());
+			this.edgeTarget[i] = nodeIndices.get(edge.getTarget());
+		}
+
+		this.buildIncidences();
+	}
+
+	/*
+	 * This method builds the incidence lists of nodes from end nodes of edges.
+	 */
+	private void buildIncidences()
+	{
+		int[] next = new int[this.noOfNodes];
+		int i;
+
+		this.incidenceStart = new int[this.noOfNodes + 1];
+		this.incidentEdge = new int[2 * this.noOfEdges];
+		this.adjacentNode = new int[2 * this.noOfEdges];
+		this.isOutgoing = new boolean[2 * this.noOfEdges];
+
+		// count incidences, then turn counts into start indices
+
+		for (i = 0; i < this.noOfEdges; i++)
+		{
+			this.incidenceStart[this.edgeSource[i] + 1]++;
+			this.incidenceStart[this.edgeTarget[i] + 1]++;
+		}
+
+		for (i = 0; i < this.noOfNodes; i++)
+		{
+			this.incidenceStart[i + 1] += this.incidenceStart[i];
+			next[i] = this.incidenceStart[i];
+		}
+
+		for (i = 0; i < this.noOfEdges; i++)
+		{
+			this.addIncidence(next, this.edgeSource[i], i,
+				this.edgeTarget[i], true);
+			this.addIncidence(next, this.edgeTarget[i], i,
+				this.edgeSource[i], false);
+		}
+	}
+
+	/*
+	 * This method adds the input incidence to the next free place of the
+	 * incidence list of the input node.
+	 */
+	private void addIncidence(int[] next,
+		int node,
+		int edge,
+		int otherNode,
+		boolean isSource)
+	{
+		int k = next[node]++;
+
+		this.incidentEdge[k] = edge;
+		this.adjacentNode[k] = otherNode;
+		this.isOutgoing[k] = isSource;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Accessors
+// -----------------------------------------------------------------------------
+	/**
+	 * This method returns whether this cache is built from the input node and
+	 * edge arrays, i.e. whether it is still valid for them.
+	 */
+	public boolean isBuiltFrom(Object[] nodes, Object[] edges)
+	{
+		return this.nodes == nodes && this.edges == edges;
+	}
+
+	/**
+	 * This method returns the number of nodes.
+	 */
+	public int getNoOfNodes()
+	{
+		return this.noOfNodes;
+	}
+
+	/**
+	 * This method returns the number of edges.
+	 */
+	public int getNoOfEdges()
+	{
+		return this.noOfEdges;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Synchronization with nodes
+// -----------------------------------------------------------------------------
+	/**
+	 * This method reads current geometry and weights of nodes and ideal
+	 * lengths of edges. It should be called whenever nodes have been moved
+	 * (i.e. once per iteration) before forces are calculated.
+	 */
+	public void readGeometry()
+	{
+		LNode node;
+		int i;
+
+		for (i = 0; i < this.noOfNodes; i++)
+		{
+			node = (LNode) this.nodes[i];
+
+			this.x[i] = node.getRect().x;
+			this.y[i] = node.getRect().y;
+			this.width[i] = node.getRect().width;
+			this.height[i] = node.getRect().height;
+			this.noOfChildren[i] = node.noOfChildren;
+		}
+
+		for (i = 0; i < this.noOfEdges; i++)
+		{
+			this.edgeIdealLength[i] = ((FDLayoutEdge) this.edges[i]).idealLength;
+		}
+	}
+
+	/**
+	 * This method adds calculated spring forces to the nodes, and clears them.
+	 */
+	public void writeSpringForces()
+	{
+		FDLayoutNode node;
+
+		for (int i = 0; i < this.noOfNodes; i++)
+		{
+			node = (FDLayoutNode) this.nodes[i];
+
+			node.springForceX += this.springForceX[i];
+			node.springForceY += this.springForceY[i];
+
+			this.springForceX[i] = 0;
+			this.springForceY[i] = 0;
+		}
+	}
+
+	/**
+	 * This method adds calculated repulsion forces to the nodes, and clears
+	 * them.
+	 */
+	public void writeRepulsionForces()
+	{
+		FDLayoutNode node;
+
+		for (int i = 0; i < this.noOfNodes; i++)
+		{
+			node = (FDLayoutNode) this.nodes[i];
+
+			node.repulsionForceX += this.repulsionForceX[i];
+			node.repulsionForceY += this.repulsionForceY[i];
+
+			this.repulsionForceX[i] = 0;
+			this.repulsionForceY[i] = 0;
+		}
+	}
+}
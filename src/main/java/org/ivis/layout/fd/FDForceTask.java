@@ -0,0 +1,20 @@
+package org.ivis.layout.fd;
+
+/**
+ * This is an interface for the force calculations that are performed for
+ * each item (node, edge, etc.) of an array during a layout iteration, and that
+ * can thus be distributed among worker threads.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public interface FDForceTask
+{
+	/**
+	 * Classes which implement this interface must calculate the forces of the
+	 * item with the given index. Forces should be applied through the apply
+	 * methods of the layout, never by writing node fields directly.
+	 *
+	 * @param index		index of the item whose forces are to be calculated
+	 */
+	public void run(int index);
+}
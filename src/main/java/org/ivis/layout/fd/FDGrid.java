@@ -0,0 +1,318 @@
+package org.ivis.layout.fd;
+
+import java.util.Arrays;
+
+/**
+ * This class implements the grid used by the FR-grid variant of repulsion
+ * force calculation. The area of the root graph is divided into square cells
+ * of repulsion range size, and each node is put into all cells its rectangle
+ * overlaps. Nodes of a cell are kept as a linked list of entries stored in
+ * flat integer arrays, which are reused (and only enlarged when needed) each
+ * time the grid is rebuilt.
+ *
+ * Stamps, again kept in integer arrays indexed by grid index of nodes, are used
+ * to tell whether a node has already been visited during the current search
+ * of surrounding nodes, and whether its surrounding has already been found in
+ * the current grid.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class FDGrid
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Nodes in this grid; index of a node in this array is its grid index
+	 */
+	private Object[] nodes;
+
+	/*
+	 * Number of cells in x and y directions
+	 */
+	private int sizeX;
+	private int sizeY;
+
+	/*
+	 * First entry of each cell, -1 for empty cells; cell (i, j) is at index
+	 * j * sizeX + i
+	 */
+	private int[] cellHead = new int[0];
+
+	/*
+	 * Next entry in the same cell (-1 for the last one) and grid index of the
+	 * node of each entry
+	 */
+	private int[] next = new int[0];
+	private int[] entryNode = new int[0];
+	private int noOfEntries;
+
+	/*
+	 * Stamps of nodes for the current search and the current grid
+	 */
+	private int[] visitStamp = new int[0];
+	private int[] processedStamp = new int[0];
+	private int currentVisitStamp;
+	private int currentProcessedStamp;
+
+	/*
+	 * Nodes found so far by the current search of surrounding nodes
+	 */
+	private Object[] surrounding = new Object[16];
+	private int noOfSurrounding;
+
+// -----------------------------------------------------------------------------
+// Section: Construction
+// -----------------------------------------------------------------------------
+	/**
+	 * This method (re)builds the grid over the input area and puts each input
+	 * node into proper cells, also setting its grid coordinates.
+	 */
+	public void build(Object[] nodes,
+		double left,
+		double top,
+		double right,
+		double bottom,
+		double cellSize)
+	{
+		FDLayoutNode node;
+		int i;
+
+		this.nodes = nodes;
+		this.sizeX = Math.max(1, (int) Math.ceil((right - left) / cellSize));
+		this.sizeY = Math.max(1, (int) Math.ceil((bottom - top) / cellSize));
+
+		if (this.cellHead.length < this.sizeX * this.sizeY)
+		{
+			this.cellHead = new int[this.sizeX * this.sizeY];
+		}
+
+		Arrays.fill(this.cellHead, 0, this.sizeX * this.sizeY, -1);
+
+		if (this.visitStamp.length < nodes.length)
+		{
+			this.visitStamp = new int[nodes.length];
+			this.processedStamp = new int[nodes.length];
+			this.currentVisitStamp = 0;
+			this.currentProcessedStamp = 0;
+		}
+
+		this.currentProcessedStamp = this.nextStamp(this.processedStamp,
+			this.currentProcessedStamp);
+		this.noOfEntries = 0;
+
+		// nodes are inserted to the head of cell lists in reverse order, so
+		// that nodes of a cell are listed in the order of the input array
+		for (i = nodes.length - 1; i >= 0; i--)
+		{
+			node = (FDLayoutNode) nodes[i];
+			node.gridIndex = i;
+			this.addNode(node, left, top, cellSize);
+		}
+	}
+
+	/*
+	 * This method puts the input node into the cells it overlaps.
+	 */
+	private void addNode(FDLayoutNode node,
+		double left,
+		double top,
+		double cellSize)
+	{
+		int startX = this.clamp(
+			(int) Math.floor((node.getRect().x - left) / cellSize), this.sizeX);
+		int finishX = this.clamp(
+			(int) Math.floor((node.getRect().x + node.getRect().width - left) /
+				cellSize), this.sizeX);
+		int startY = this.clamp(
+			(int) Math.floor((node.getRect().y - top) / cellSize), this.sizeY);
+		int finishY = this.clamp(
+			(int) Math.floor((node.getRect().y + node.getRect().height - top) /
+				cellSize), this.sizeY);
+		int cell;
+
+		for (int i = startX; i <= finishX; i++)
+		{
+			for (int j = startY; j <= finishY; j++)
+			{
+				if (this.noOfEntries == this.next.length)
+				{
+					int capacity = Math.max(16, 2 * this.next.length);
+					this.next = Arrays.copyOf(this.next, capacity);
+					this.entryNode = Arrays.copyOf(this.entryNode, capacity);
+				}
+
+				cell = j * this.sizeX + i;
+				this.next[this.noOfEntries] = this.cellHead[cell];
+				this.entryNode[this.noOfEntries] = node.gridIndex;
+				this.cellHead[cell] = this.noOfEntries;
+				this.noOfEntries++;
+			}
+		}
+
+		node.setGridCoordinates(startX, finishX, startY, finishY);
+	}
+
+	/*
+	 * This method returns the input cell coordinate limited to [0, size).
+	 */
+	private int clamp(int coordinate, int size)
+	{
+		return Math.max(0, Math.min(coordinate, size - 1));
+	}
+
+	/*
+	 * This method returns the stamp to be used after the input one, clearing
+	 * the stamps in case of an overflow.
+	 */
+	private int nextStamp(int[] stamps, int stamp)
+	{
+		if (stamp == Integer.MAX_VALUE)
+		{
+			Arrays.fill(stamps, 0);
+			stamp = 0;
+		}
+
+		return stamp + 1;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Accessors
+// -----------------------------------------------------------------------------
+	/**
+	 * This method returns the number of cells in x direction.
+	 */
+	public int getSizeX()
+	{
+		return this.sizeX;
+	}
+
+	/**
+	 * This method returns the number of cells in y direction.
+	 */
+	public int getSizeY()
+	{
+		return this.sizeY;
+	}
+
+	/**
+	 * This method returns the first entry of the cell at the input
+	 * coordinates, or -1 if the cell is empty or out of the grid.
+	 */
+	public int getFirstEntry(int i, int j)
+	{
+		if (i < 0 || j < 0 || i >= this.sizeX || j >= this.sizeY)
+		{
+			return -1;
+		}
+
+		return this.cellHead[j * this.sizeX + i];
+	}
+
+	/**
+	 * This method returns the entry following the input one in the same cell,
+	 * or -1 if it is the last one.
+	 */
+	public int getNextEntry(int entry)
+	{
+		return this.next[entry];
+	}
+
+	/**
+	 * This method returns the node of the input entry.
+	 */
+	public FDLayoutNode getNode(int entry)
+	{
+		return (FDLayoutNode) this.nodes[this.entryNode[entry]];
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Search of surrounding nodes
+// -----------------------------------------------------------------------------
+	/**
+	 * This method starts a new search of surrounding nodes.
+	 */
+	public void startSearch()
+	{
+		this.currentVisitStamp = this.nextStamp(this.visitStamp,
+			this.currentVisitStamp);
+		this.noOfSurrounding = 0;
+	}
+
+	/**
+	 * This method marks the input node as visited in the current search, and
+	 * returns whether it was not visited before.
+	 */
+	public boolean visit(FDLayoutNode node)
+	{
+		if (this.visitStamp[node.gridIndex] == this.currentVisitStamp)
+		{
+			return false;
+		}
+
+		this.visitStamp[node.gridIndex] = this.currentVisitStamp;
+
+		return true;
+	}
+
+	/**
+	 * This method adds the input node to the result of the current search.
+	 */
+	public void addSurrounding(FDLayoutNode node)
+	{
+		if (this.noOfSurrounding == this.surrounding.length)
+		{
+			this.surrounding = Arrays.copyOf(this.surrounding,
+				2 * this.surrounding.length);
+		}
+
+		this.surrounding[this.noOfSurrounding++] = node;
+	}
+
+	/**
+	 * This method returns the number of nodes found by the current search.
+	 */
+	public int getNoOfSurrounding()
+	{
+		return this.noOfSurrounding;
+	}
+
+	/**
+	 * This method copies the result of the current search to the head of an
+	 * array and returns it. The input array is reused if it is large enough;
+	 * otherwise a larger one with some room to grow is returned, so that
+	 * surroundings of slightly varying size do not cause reallocation.
+	 */
+	public Object[] getSurrounding(Object[] array)
+	{
+		if (array == null || array.length < this.noOfSurrounding)
+		{
+			array = new Object[this.noOfSurrounding +
+				this.noOfSurrounding / 2 + 1];
+		}
+
+		System.arraycopy(this.surrounding, 0, array, 0, this.noOfSurrounding);
+		Arrays.fill(array, this.noOfSurrounding, array.length, null);
+		Arrays.fill(this.surrounding, 0, this.noOfSurrounding, null);
+
+		return array;
+	}
+
+	/**
+	 * This method marks the input node as processed, meaning its surrounding
+	 * has been found in the current grid.
+	 */
+	public void setProcessed(FDLayoutNode node)
+	{
+		this.processedStamp[node.gridIndex] = this.currentProcessedStamp;
+	}
+
+	/**
+	 * This method returns whether the surrounding of the input node has been
+	 * found in the current grid.
+	 */
+	public boolean isProcessed(FDLayoutNode node)
+	{
+		return this.processedStamp[node.gridIndex] == this.currentProcessedStamp;
+	}
+}
@@ -1,7 +1,8 @@
 package org.ivis.layout.fd;
 
-import java.util.HashSet;
-import java.util.Vector;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.ivis.util.*;
 import org.ivis.layout.*;
@@ -70,6 +71,41 @@ public abstract class FDLayout extends Layout
 	 */
 	public boolean useFRGridVariant = 
 		FDLayoutConstants.DEFAULT_USE_SMART_REPULSION_RANGE_CALCULATION;
+
+	/**
+	 * Whether or not Barnes-Hut approximation should be used for repulsion
+	 * force calculations. When true, it takes precedence over FR grid variant.
+	 */
+	public boolean useBarnesHutApproximation =
+		FDLayoutConstants.DEFAULT_USE_BARNES_HUT_APPROXIMATION;
+
+	/**
+	 * Opening angle of Barnes-Hut approximation; a quadtree cell is treated as
+	 * a single node when its size over its distance is smaller than this.
+	 */
+	public double barnesHutTheta = FDLayoutConstants.DEFAULT_BARNES_HUT_THETA;
+
+	/**
+	 * Whether or not spring, repulsion and gravitation forces should be
+	 * calculated by multiple threads. Resulting layout does not depend on the
+	 * number of threads, but may differ from the one calculated with this
+	 * off due to rounding.
+	 */
+	public boolean useParallelForceCalculation =
+		FDLayoutConstants.DEFAULT_USE_PARALLEL_FORCE_CALCULATION;
+
+	/**
+	 * Number of threads to be used by parallel force calculation
+	 */
+	public int noOfForceThreads = FDLayoutConstants.DEFAULT_NO_OF_FORCE_THREADS;
+
+	/**
+	 * Whether or not spring and (all pairs) repulsion forces should be
+	 * calculated on a compact, array based cache of the graph geometry. It
+	 * only affects the force calculations of this class; layouts calculating
+	 * these forces on their own turn it off.
+	 */
+	public boolean useCompactGraph = FDLayoutConstants.DEFAULT_USE_COMPACT_GRAPH;
 	
 	/**
 	 * Factor used for cooling layout; starts from 1.0 and goes down towards
@@ -124,7 +160,132 @@ public abstract class FDLayout extends Layout
 	 * At each iteration, each node is placed in its grid square(s)
 	 * Grid is re-calculated after every tenth iteration.
 	 */
-	protected Vector[][] grid;
+	protected FDGrid grid;
+
+	/**
+	 * Quadtrees used by Barnes-Hut approximation, one for each graph; rebuilt
+	 * at every iteration.
+	 */
+	protected Map<LGraph, FDQuadTree> quadTrees =
+		new HashMap<LGraph, FDQuadTree>();
+
+	/*
+	 * Graph manager the quadtrees above were built for
+	 */
+	private LGraphManager quadTreeGraphManager;
+
+	/*
+	 * Temporary storage used by repulsion force calculations running on the
+	 * calling thread, so that no garbage is created per node pair; workers of
+	 * parallel force calculation use their own storage
+	 */
+	private double[] repulsionForce = new double[2];
+	private double[] overlapAmount = new double[2];
+	private double[] clipPoints = new double[4];
+	private RectangleD rectA = new RectangleD();
+	private RectangleD rectB = new RectangleD();
+
+	/**
+	 * Compact cache of the graph used when compact graph calculation is on;
+	 * rebuilt whenever nodes or edges of the graph manager change.
+	 */
+	protected FDCompactGraph compactGraph;
+
+	/*
+	 * Whether geometry in the compact graph is up to date; cleared when
+	 * forces are reset at the end of each iteration
+	 */
+	private boolean isCompactGraphRead;
+
+
+	/**
+	 * Distributes force calculations among threads when parallel force
+	 * calculation is on; created on demand.
+	 */
+	protected FDParallelForceCalculator parallelForceCalculator;
+
+	/*
+	 * Force calculation tasks of this layout, for each edge or node
+	 */
+	private FDForceTask springForceTask = new FDForceTask()
+	{
+		public void run(int index)
+		{
+			FDLayoutEdge edge = (FDLayoutEdge) getAllEdges()[index];
+			calcSpringForce(edge, edge.idealLength);
+		}
+	};
+
+	private FDForceTask repulsionForceTask = new FDForceTask()
+	{
+		public void run(int index)
+		{
+			Object[] lNodes = getAllNodes();
+			FDLayoutNode nodeA = (FDLayoutNode) lNodes[index];
+			FDLayoutNode nodeB;
+
+			for (int j = index + 1; j < lNodes.length; j++)
+			{
+				nodeB = (FDLayoutNode) lNodes[j];
+
+				// If both nodes are not members of the same graph, skip.
+				if (nodeA.getOwner() != nodeB.getOwner())
+				{
+					continue;
+				}
+
+				calcRepulsionForce(nodeA, nodeB);
+			}
+		}
+	};
+
+	private FDForceTask gridRepulsionForceTask = new FDForceTask()
+	{
+		public void run(int index)
+		{
+			calculateRepulsionForceOfANode(grid,
+				(FDLayoutNode) getAllNodes()[index]);
+		}
+	};
+
+	private FDForceTask barnesHutRepulsionForceTask = new FDForceTask()
+	{
+		public void run(int index)
+		{
+			FDLayoutNode node = (FDLayoutNode) getAllNodes()[index];
+			FDQuadTree quadTree = quadTrees.get(node.getOwner());
+
+			if (quadTree != null && isRepulsive(node))
+			{
+				quadTree.calcRepulsionForces(node, barnesHutTheta);
+			}
+		}
+	};
+
+	private FDForceTask compactSpringForceTask = new FDForceTask()
+	{
+		public void run(int index)
+		{
+			calcCompactSpringForces(index);
+		}
+	};
+
+	private FDForceTask compactRepulsionForceTask = new FDForceTask()
+	{
+		public void run(int index)
+		{
+			calcCompactRepulsionForces(index);
+		}
+	};
+
+	private FDForceTask gravitationalForceTask = new FDForceTask()
+	{
+		public void run(int index)
+		{
+			calcGravitationalForce(
+				(FDLayoutNode) getAllNodesToApplyGravitation()[index]);
+		}
+	};
 	
 // -----------------------------------------------------------------------------
 // Section: Constructors and initialization
@@ -163,6 +324,35 @@ public abstract class FDLayout extends Layout
 		this.notAnimatedIterations = 0;
 		
 		this.useFRGridVariant = layoutOptionsPack.smartRepulsionRangeCalc;
+		this.useBarnesHutApproximation = layoutOptionsPack.barnesHutRepulsionCalc;
+		this.barnesHutTheta = layoutOptionsPack.barnesHutTheta;
+		this.useParallelForceCalculation = layoutOptionsPack.parallelForceCalc;
+		this.useCompactGraph = layoutOptionsPack.compactGraphCalc;
+
+		if (layoutOptionsPack.noOfForceThreads > 0)
+		{
+			this.noOfForceThreads = layoutOptionsPack.noOfForceThreads;
+		}
+	}
+
+	/**
+	 * This method coordinates the layout operation, making sure worker threads
+	 * of parallel force calculation, if any, are released afterwards.
+	 */
+	public boolean runLayout()
+	{
+		try
+		{
+			return super.runLayout();
+		}
+		finally
+		{
+			if (this.parallelForceCalculator != null)
+			{
+				this.parallelForceCalculator.shutdown();
+				this.parallelForceCalculator = null;
+			}
+		}
 	}
 
 // -----------------------------------------------------------------------------
@@ -270,14 +460,16 @@ public abstract class FDLayout extends Layout
 	 */
 	public void calcSpringForces()
 	{
-		Object[] lEdges = this.getAllEdges();
-		FDLayoutEdge edge;
-
-		for (int i = 0; i < lEdges.length; i++)
+		if (this.useCompactGraph)
 		{
-			edge = (FDLayoutEdge) lEdges[i];
-
-			this.calcSpringForce(edge, edge.idealLength);
+			this.updateCompactGraph();
+			this.runForceTask(this.compactGraph.noOfNodes,
+				this.compactSpringForceTask);
+			this.compactGraph.writeSpringForces();
+		}
+		else
+		{
+			this.runForceTask(this.getAllEdges().length, this.springForceTask);
 		}
 	}
 
@@ -286,59 +478,45 @@ public abstract class FDLayout extends Layout
 	 */
 	public void calcRepulsionForces()
 	{
-		int i, j;
-		FDLayoutNode nodeA, nodeB;
+		int i;
+		FDLayoutNode nodeA;
 		Object[] lNodes = this.getAllNodes();
-		HashSet<FDLayoutNode> processedNodeSet;
 		
-		if (this.useFRGridVariant)
+		if (this.useBarnesHutApproximation)
+		{
+			this.calcBarnesHutRepulsionForces();
+		}
+		else if (this.useFRGridVariant)
 		{
-			// grid is a vector matrix that holds CoSENodes.
-			// be sure to convert the Object type to CoSENode.
-			
 			if (this.totalIterations % FDLayoutConstants.GRID_CALCULATION_CHECK_PERIOD == 1)
 			{
-				this.grid = this.calcGrid(this.graphManager.getRoot());
-				
 				// put all nodes to proper grid cells
+				this.calcGrid(this.graphManager.getRoot());
+				
+				// calculate repulsion forces between each nodes and its surrounding
 				for (i = 0; i < lNodes.length; i++)
 				{
 					nodeA = (FDLayoutNode) lNodes[i];
-					this.addNodeToGrid(nodeA, this.grid, 
-						this.graphManager.getRoot().getLeft(),
-						this.graphManager.getRoot().getTop());
+					this.calculateRepulsionForceOfANode(this.grid, nodeA);
+					this.grid.setProcessed(nodeA);
 				}
 			}
-			
-			processedNodeSet = new HashSet<FDLayoutNode>();
-			
-			// calculate repulsion forces between each nodes and its surrounding
-			for (i = 0; i < lNodes.length; i++)
+			else
+			// surroundings are known, no need to track processed nodes
 			{
-				nodeA = (FDLayoutNode) lNodes[i];
-				this.calculateRepulsionForceOfANode(this.grid, nodeA, processedNodeSet);
-				processedNodeSet.add(nodeA);
-			}			
+				this.runForceTask(lNodes.length, this.gridRepulsionForceTask);
+			}
+		}
+		else if (this.useCompactGraph)
+		{
+			this.updateCompactGraph();
+			this.runForceTask(this.compactGraph.noOfNodes,
+				this.compactRepulsionForceTask);
+			this.compactGraph.writeRepulsionForces();
 		}
 		else
 		{
-			for (i = 0; i < lNodes.length; i++)
-			{
-				nodeA = (FDLayoutNode) lNodes[i];
-
-				for (j = i + 1; j < lNodes.length; j++)
-				{
-					nodeB = (FDLayoutNode) lNodes[j];
-
-					// If both nodes are not members of the same graph, skip.
-					if (nodeA.getOwner() != nodeB.getOwner())
-					{
-						continue;
-					}
-
-					this.calcRepulsionForce(nodeA, nodeB);
-				}
-			}
+			this.runForceTask(lNodes.length, this.repulsionForceTask);
 		}
 	}
 
@@ -347,15 +525,8 @@ public abstract class FDLayout extends Layout
 	 */
 	public void calcGravitationalForces()
 	{
-		FDLayoutNode node;
-		Object[] lNodes = this.getAllNodesToApplyGravitation();
-
-		for (int i = 0; i < lNodes.length; i++)
-		{
-			node = (FDLayoutNode) lNodes[i];
-
-			this.calcGravitationalForce(node);
-		}
+		this.runForceTask(this.getAllNodesToApplyGravitation().length,
+			this.gravitationalForceTask);
 	}
 
 	/**
@@ -381,6 +552,9 @@ public abstract class FDLayout extends Layout
 		Object[] lNodes = this.getAllNodes();
 		FDLayoutNode node;
 
+		// nodes are to be moved before forces are calculated again
+		this.isCompactGraphRead = false;
+
 		for (int i = 0; i < lNodes.length; i++)
 		{
 			node = (FDLayoutNode) lNodes[i];
@@ -388,6 +562,179 @@ public abstract class FDLayout extends Layout
 		}
 	}
 
+	/**
+	 * This method runs the input force calculation task for each index in
+	 * [0, count). When parallel force calculation is on, indices are
+	 * distributed among worker threads, and forces applied by the task are
+	 * accumulated per partition and added to the nodes once all are done.
+	 * This is done even with a single thread, so that forces are the same
+	 * for any number of threads.
+	 */
+	protected void runForceTask(int count, FDForceTask task)
+	{
+		if (this.useParallelForceCalculation &&
+			count >= FDLayoutConstants.MIN_PARALLEL_FORCE_TASK_SIZE)
+		{
+			if (this.parallelForceCalculator == null)
+			{
+				this.parallelForceCalculator =
+					new FDParallelForceCalculator(this.noOfForceThreads);
+			}
+
+			this.parallelForceCalculator.prepare(this.getAllNodes());
+			this.parallelForceCalculator.run(count, task);
+		}
+		else
+		{
+			for (int i = 0; i < count; i++)
+			{
+				task.run(i);
+			}
+		}
+	}
+
+	/*
+	 * This method returns the force accumulator of the current thread if it
+	 * is running a parallel force calculation task, null otherwise.
+	 */
+	private FDParallelForceCalculator.Accumulator getForceAccumulator()
+	{
+		if (this.parallelForceCalculator == null)
+		{
+			return null;
+		}
+
+		return this.parallelForceCalculator.getAccumulator();
+	}
+
+	/**
+	 * This method adds the input spring force to the forces acting on the
+	 * input node. Force calculations should use this (and the similar methods
+	 * below) to be safely run in parallel.
+	 */
+	protected void applySpringForce(FDLayoutNode node,
+		double forceX,
+		double forceY)
+	{
+		FDParallelForceCalculator.Accumulator acc = this.getForceAccumulator();
+
+		if (acc == null)
+		{
+			node.springForceX += forceX;
+			node.springForceY += forceY;
+		}
+		else
+		{
+			acc.addSpringForce(node, forceX, forceY);
+		}
+	}
+
+	/**
+	 * This method adds the input repulsion force to the forces acting on the
+	 * input node.
+	 */
+	protected void applyRepulsionForce(FDLayoutNode node,
+		double forceX,
+		double forceY)
+	{
+		FDParallelForceCalculator.Accumulator acc = this.getForceAccumulator();
+
+		if (acc == null)
+		{
+			node.repulsionForceX += forceX;
+			node.repulsionForceY += forceY;
+		}
+		else
+		{
+			acc.addRepulsionForce(node, forceX, forceY);
+		}
+	}
+
+	/**
+	 * This method adds the input gravitation force to the forces acting on
+	 * the input node.
+	 */
+	protected void applyGravitationForce(FDLayoutNode node,
+		double forceX,
+		double forceY)
+	{
+		FDParallelForceCalculator.Accumulator acc = this.getForceAccumulator();
+
+		if (acc == null)
+		{
+			node.gravitationForceX += forceX;
+			node.gravitationForceY += forceY;
+		}
+		else
+		{
+			acc.addGravitationForce(node, forceX, forceY);
+		}
+	}
+
+	/*
+	 * This method returns the temporary storage to be used for the force of a
+	 * node pair or an edge by the current thread.
+	 */
+	private double[] getForceStorage()
+	{
+		FDParallelForceCalculator.Accumulator acc = this.getForceAccumulator();
+
+		if (acc == null)
+		{
+			return this.repulsionForce;
+		}
+
+		return acc.repulsionForce;
+	}
+
+	/*
+	 * This method returns the temporary rectangles to be used for the end
+	 * nodes of a node pair of the compact graph by the current thread.
+	 */
+	private RectangleD getRectangleStorage(boolean first)
+	{
+		FDParallelForceCalculator.Accumulator acc = this.getForceAccumulator();
+
+		if (acc == null)
+		{
+			return first ? this.rectA : this.rectB;
+		}
+
+		return first ? acc.rectA : acc.rectB;
+	}
+
+	/*
+	 * This method returns the temporary storage to be used for the overlap
+	 * amount of a node pair by the current thread.
+	 */
+	private double[] getOverlapAmountStorage()
+	{
+		FDParallelForceCalculator.Accumulator acc = this.getForceAccumulator();
+
+		if (acc == null)
+		{
+			return this.overlapAmount;
+		}
+
+		return acc.overlapAmount;
+	}
+
+	/*
+	 * This method returns the temporary storage to be used for the clipping
+	 * points of a node pair by the current thread.
+	 */
+	private double[] getClipPointStorage()
+	{
+		FDParallelForceCalculator.Accumulator acc = this.getForceAccumulator();
+
+		if (acc == null)
+		{
+			return this.clipPoints;
+		}
+
+		return acc.clipPoints;
+	}
+
 	/**
 	 * This method calculates the spring force for the ends of input edge based
 	 * on the input ideal length.
@@ -396,10 +743,7 @@ public abstract class FDLayout extends Layout
 	{
 		FDLayoutNode sourceNode = (FDLayoutNode) edge.getSource();
 		FDLayoutNode targetNode = (FDLayoutNode) edge.getTarget();
-		double length;
-		double springForce;
-		double springForceX;
-		double springForceY;
+		double[] springForce = this.getForceStorage();
 
 		// Update edge length
 
@@ -418,14 +762,37 @@ public abstract class FDLayout extends Layout
 			}
 		}
 
-		length = edge.getLength();
-		double dl = length - idealLength;
+		assert edge.getLength() != 0.0;
 
-		assert length != 0.0;
+		this.calcSpringForceVector(edge.getLengthX(),
+			edge.getLengthY(),
+			edge.getLength(),
+			idealLength,
+			springForce);
+
+		// Apply forces on the end nodes
+		this.applySpringForce(sourceNode, springForce[0], springForce[1]);
+		this.applySpringForce(targetNode, -springForce[0], -springForce[1]);
+	}
+
+	/**
+	 * This method calculates the spring force for an edge whose (positive)
+	 * length and its components in x and y directions are given, and stores
+	 * it into the input array: the source node is to be pulled by this amount
+	 * while the target node is to be pulled by the negative of it.
+	 */
+	protected void calcSpringForceVector(double lengthX,
+		double lengthY,
+		double length,
+		double idealLength,
+		double[] springForce)
+	{
+		double dl = length - idealLength;
+		double springForceMagnitude;
 
 		// Calculate spring forces
 
-		springForce = this.springConstant * dl;
+		springForceMagnitude = this.springConstant * dl;
 
 //		if (dl > 2.0 * idealLength)
 //		{
@@ -448,14 +815,8 @@ public abstract class FDLayout extends Layout
 	//			}
 
 		// Project force onto x and y axes
-		springForceX = springForce * (edge.getLengthX() / length);
-		springForceY = springForce * (edge.getLengthY() / length);
-
-		// Apply forces on the end nodes
-		sourceNode.springForceX += springForceX;
-		sourceNode.springForceY += springForceY;
-		targetNode.springForceX -= springForceX;
-		targetNode.springForceY -= springForceY;
+		springForce[0] = springForceMagnitude * (lengthX / length);
+		springForce[1] = springForceMagnitude * (lengthY / length);
 	}
 
 	/**
@@ -463,39 +824,52 @@ public abstract class FDLayout extends Layout
 	 */
 	protected void calcRepulsionForce(FDLayoutNode nodeA, FDLayoutNode nodeB)
 	{
-		double[] overlapAmount = new double[2];
-		double[] clipPoints = new double[4];
+		double[] repulsionForce = this.getForceStorage();
+
+		this.calcRepulsionForceVector(nodeA, nodeB, repulsionForce);
+
+		// Apply forces on the two nodes
+		this.applyRepulsionForce(nodeA, -repulsionForce[0], -repulsionForce[1]);
+		this.applyRepulsionForce(nodeB, repulsionForce[0], repulsionForce[1]);
+	}
+
+	/**
+	 * This method calculates the repulsion force nodeB exerts on nodeA, and
+	 * applies it on nodeA only. It is used when each node of a pair computes
+	 * its own forces (e.g. Barnes-Hut approximation).
+	 */
+	protected void calcRepulsionForceOnNode(FDLayoutNode nodeA,
+		FDLayoutNode nodeB)
+	{
+		double[] repulsionForce = this.getForceStorage();
+
+		this.calcRepulsionForceVector(nodeA, nodeB, repulsionForce);
+
+		this.applyRepulsionForce(nodeA, -repulsionForce[0], -repulsionForce[1]);
+	}
+
+	/**
+	 * This method calculates the repulsion force for the input node pair and
+	 * stores it into the input array: nodeB is to be pushed by this amount
+	 * while nodeA is to be pushed by the negative of it.
+	 */
+	protected void calcRepulsionForceVector(FDLayoutNode nodeA,
+		FDLayoutNode nodeB,
+		double[] repulsionForce)
+	{
+		double[] overlapAmount = this.getOverlapAmountStorage();
+		double[] clipPoints;
 		double distanceX;
 		double distanceY;
-		double distanceSquared;
-		double distance;
-		double repulsionForce;
-		double repulsionForceX;
-		double repulsionForceY;
 		
 		if (nodeA.calcOverlap(nodeB, overlapAmount))
 		// two nodes overlap
 		{
-			repulsionForceX = 2 * overlapAmount[0];
-			repulsionForceY = 2 * overlapAmount[1];
-			
-			/*assert ! (new RectangleD((rectA.x - repulsionForceX),
-				(rectA.y - repulsionForceY),
-				rectA.width,
-				rectA.height)).intersects(
-					new RectangleD((rectB.x + repulsionForceX),
-						(rectB.y + repulsionForceY),
-						rectB.width,
-						rectB.height));*/
-			
-			// This constant is to spread the forces in an inversely proportional way on overlapping nodes based on their weights. 
-			double childrenConstant = nodeA.noOfChildren * nodeB.noOfChildren / (double)(nodeA.noOfChildren + nodeB.noOfChildren);
-			
-			// Apply forces on the two nodes
-			nodeA.repulsionForceX -= childrenConstant * repulsionForceX;
-			nodeA.repulsionForceY -= childrenConstant * repulsionForceY;
-			nodeB.repulsionForceX += childrenConstant * repulsionForceX;
-			nodeB.repulsionForceY += childrenConstant * repulsionForceY;
+			this.calcOverlapRepulsionForceVector(overlapAmount[0],
+				overlapAmount[1],
+				nodeA.noOfChildren,
+				nodeB.noOfChildren,
+				repulsionForce);
 		}
 		else
 		// no overlap
@@ -514,6 +888,7 @@ public abstract class FDLayout extends Layout
 			else
 			// use clipping points
 			{
+				clipPoints = this.getClipPointStorage();
 				nodeA.calcIntersection(nodeB, clipPoints);
 
 				distanceX = clipPoints[2] - clipPoints[0];
@@ -522,39 +897,159 @@ public abstract class FDLayout extends Layout
 
 			// No repulsion range. FR grid variant should take care of this.
 
-			if (Math.abs(distanceX) < FDLayoutConstants.MIN_REPULSION_DIST)
-			{
-				distanceX = IMath.sign(distanceX) *
-					FDLayoutConstants.MIN_REPULSION_DIST;
-			}
+			this.calcRepulsionForceVector(distanceX,
+				distanceY,
+				nodeA.noOfChildren,
+				nodeB.noOfChildren,
+				repulsionForce);
+		}
+	}
 
-			if (Math.abs(distanceY) < FDLayoutConstants.MIN_REPULSION_DIST)
-			{
-				distanceY = IMath.sign(distanceY) *
-					FDLayoutConstants.MIN_REPULSION_DIST;
-			}
+	/**
+	 * This method calculates the repulsion force between two overlapping
+	 * nodes with the input weights, given the amount they should be separated
+	 * in x and y directions, and stores it into the input array the same way
+	 * calcRepulsionForceVector does.
+	 */
+	protected void calcOverlapRepulsionForceVector(double overlapX,
+		double overlapY,
+		double noOfChildrenA,
+		double noOfChildrenB,
+		double[] repulsionForce)
+	{
+		double repulsionForceX = 2 * overlapX;
+		double repulsionForceY = 2 * overlapY;
 
-			distanceSquared = distanceX * distanceX + distanceY * distanceY;
-			distance = Math.sqrt(distanceSquared);
+		// This constant is to spread the forces in an inversely proportional
+		// way on overlapping nodes based on their weights.
+		double childrenConstant = noOfChildrenA * noOfChildrenB /
+			(noOfChildrenA + noOfChildrenB);
 
-			repulsionForce = this.repulsionConstant * nodeA.noOfChildren * nodeB.noOfChildren / distanceSquared;
+		repulsionForce[0] = childrenConstant * repulsionForceX;
+		repulsionForce[1] = childrenConstant * repulsionForceY;
+	}
 
-//			// does not seem to be needed
-//			if (Math.abs(repulsionForce) > CoSEConstants.MAX_REPULSION_FORCE)
-//			{
-//				repulsionForce = IMath.sign(repulsionForce) * CoSEConstants.MAX_REPULSION_FORCE;
-//			}
+	/**
+	 * This method calculates the repulsion force between two non-overlapping
+	 * nodes with the input weights, whose distance in x and y directions is
+	 * given, and stores it into the input array the same way it is done for
+	 * a node pair.
+	 */
+	protected void calcRepulsionForceVector(double distanceX,
+		double distanceY,
+		double noOfChildrenA,
+		double noOfChildrenB,
+		double[] repulsionForce)
+	{
+		double distanceSquared;
+		double distance;
+		double repulsionForceMagnitude;
 
-			// Project force onto x and y axes
-			repulsionForceX = repulsionForce * distanceX / distance;
-			repulsionForceY = repulsionForce * distanceY / distance;
-			
-			// Apply forces on the two nodes
-			nodeA.repulsionForceX -= repulsionForceX;
-			nodeA.repulsionForceY -= repulsionForceY;
-			nodeB.repulsionForceX += repulsionForceX;
-			nodeB.repulsionForceY += repulsionForceY;
+		if (Math.abs(distanceX) < FDLayoutConstants.MIN_REPULSION_DIST)
+		{
+			distanceX = IMath.sign(distanceX) *
+				FDLayoutConstants.MIN_REPULSION_DIST;
 		}
+
+		if (Math.abs(distanceY) < FDLayoutConstants.MIN_REPULSION_DIST)
+		{
+			distanceY = IMath.sign(distanceY) *
+				FDLayoutConstants.MIN_REPULSION_DIST;
+		}
+
+		distanceSquared = distanceX * distanceX + distanceY * distanceY;
+		distance = Math.sqrt(distanceSquared);
+
+		repulsionForceMagnitude = this.repulsionConstant *
+			noOfChildrenA * noOfChildrenB / distanceSquared;
+
+//		// does not seem to be needed
+//		if (Math.abs(repulsionForce) > CoSEConstants.MAX_REPULSION_FORCE)
+//		{
+//			repulsionForce = IMath.sign(repulsionForce) * CoSEConstants.MAX_REPULSION_FORCE;
+//		}
+
+		// Project force onto x and y axes
+		repulsionForce[0] = repulsionForceMagnitude * distanceX / distance;
+		repulsionForce[1] = repulsionForceMagnitude * distanceY / distance;
+	}
+
+	/**
+	 * This method calculates the repulsion force a group of nodes exerts on
+	 * the input node, and applies it on the input node only. The group is
+	 * treated as a single pseudo-node of its total weight, centered at its
+	 * weighted center and of the input dimensions. Distance to the pseudo-node
+	 * is measured as it is for an actual node of the given kind (simple or
+	 * not) by calcRepulsionForceVector. This method returns false, applying no
+	 * force, if the pseudo-node overlaps the input node or is not farther
+	 * than the square root of the input squared distance.
+	 */
+	protected boolean calcFarRepulsionForceOnNode(FDLayoutNode node,
+		double weight,
+		double centerX,
+		double centerY,
+		double width,
+		double height,
+		boolean isSimple,
+		double minDistanceSquared)
+	{
+		double[] repulsionForce = this.getForceStorage();
+		double[] clipPoints = this.getClipPointStorage();
+		RectangleD rect = node.getRect();
+		double distanceX;
+		double distanceY;
+
+		if (IGeometry.getIntersection(rect.x,
+			rect.y,
+			rect.width,
+			rect.height,
+			centerX - width / 2,
+			centerY - height / 2,
+			width,
+			height,
+			clipPoints))
+		{
+			return false;
+		}
+
+		if (this.uniformLeafNodeSizes && isSimple && node.getChild() == null)
+		// simply base repulsion on distance of node centers
+		{
+			distanceX = centerX - rect.getCenterX();
+			distanceY = centerY - rect.getCenterY();
+		}
+		else
+		// use clipping points
+		{
+			distanceX = clipPoints[2] - clipPoints[0];
+			distanceY = clipPoints[3] - clipPoints[1];
+		}
+
+		if (distanceX * distanceX + distanceY * distanceY <= minDistanceSquared)
+		{
+			return false;
+		}
+
+		this.calcRepulsionForceVector(distanceX,
+			distanceY,
+			node.noOfChildren,
+			weight,
+			repulsionForce);
+
+		this.applyRepulsionForce(node, -repulsionForce[0], -repulsionForce[1]);
+
+		return true;
+	}
+
+	/**
+	 * This method returns whether the input node repels and is repelled by
+	 * the other nodes of its owner graph. Barnes-Hut approximation leaves out
+	 * the nodes for which this method returns false; layouts excluding some
+	 * nodes from repulsion should override it accordingly.
+	 */
+	protected boolean isRepulsive(FDLayoutNode node)
+	{
+		return true;
 	}
 
 	/**
@@ -594,8 +1089,9 @@ public abstract class FDLayout extends Layout
 
 			if (absDistanceX > estimatedSize || absDistanceY > estimatedSize)
 			{
-				node.gravitationForceX = -this.gravityConstant * distanceX;
-				node.gravitationForceY = -this.gravityConstant * distanceY;
+				this.applyGravitationForce(node,
+					-this.gravityConstant * distanceX,
+					-this.gravityConstant * distanceY);
 			}
 		}
 		else
@@ -606,10 +1102,11 @@ public abstract class FDLayout extends Layout
 
 			if (absDistanceX > estimatedSize || absDistanceY > estimatedSize)
 			{
-				node.gravitationForceX = -this.gravityConstant * distanceX *
-					this.compoundGravityConstant;
-				node.gravitationForceY = -this.gravityConstant * distanceY *
-					this.compoundGravityConstant;
+				this.applyGravitationForce(node,
+					-this.gravityConstant * distanceX *
+						this.compoundGravityConstant,
+					-this.gravityConstant * distanceY *
+						this.compoundGravityConstant);
 			}
 		}
 
@@ -661,61 +1158,362 @@ public abstract class FDLayout extends Layout
 	}
 	
 // -----------------------------------------------------------------------------
-// Section: FR-Grid Variant Repulsion Force Calculation
+// Section: Barnes-Hut Approximation of Repulsion Forces
 // -----------------------------------------------------------------------------
 	/**
-	 * This method creates the empty grid with proper dimensions
+	 * This method calculates the repulsion forces using Barnes-Hut
+	 * approximation. A quadtree is built over the nodes of each graph, and far
+	 * away groups of nodes of the same graph are treated as single nodes,
+	 * resulting in O(n log n) work per iteration while still accounting for
+	 * long range repulsion.
 	 */
-	protected Vector[][] calcGrid(LGraph g)
+	protected void calcBarnesHutRepulsionForces()
 	{
-		int i, j;
-		Vector[][] grid;
-		
-		int sizeX = 0;
-		int sizeY = 0;
-		
-		sizeX = (int) Math.ceil((g.getRight() - g.getLeft()) / this.repulsionRange);
-		sizeY = (int) Math.ceil((g.getBottom() - g.getTop()) / this.repulsionRange);
+		LGraph graph;
+		FDQuadTree quadTree;
 
-		grid = new Vector[sizeX][sizeY];
-		
-		for (i = 0; i < sizeX; i++)
+		if (this.quadTreeGraphManager != this.graphManager)
 		{
-			for (j = 0; j < sizeY; j++)
+			this.quadTrees.clear();
+			this.quadTreeGraphManager = this.graphManager;
+		}
+
+		List graphs = this.graphManager.getGraphs();
+
+		for (int i = 0; i < graphs.size(); i++)
+		{
+			graph = (LGraph) graphs.get(i);
+			quadTree = this.quadTrees.get(graph);
+
+			if (quadTree == null)
 			{
-				grid[i][j] = new Vector();
+				quadTree = new FDQuadTree(this);
+				this.quadTrees.put(graph, quadTree);
 			}
+
+			quadTree.build(graph.getNodes());
 		}
-		return grid;
+
+		this.runForceTask(this.getAllNodes().length,
+			this.barnesHutRepulsionForceTask);
 	}
-	
+
+// -----------------------------------------------------------------------------
+// Section: Compact Graph Force Calculation
+// -----------------------------------------------------------------------------
 	/**
-	 * This method adds input node v to the proper grid squares, 
-	 * and also sets the grid start and finish points of v 
+	 * This method makes sure the compact graph corresponds to the current
+	 * nodes and edges, and reads current geometry into it once per iteration
+	 * (i.e. unless it has been read since forces were last reset).
 	 */
-	protected void addNodeToGrid(FDLayoutNode v, 
-		Vector[][] grid, 
-		double left, 
-		double top)
+	protected void updateCompactGraph()
 	{
-		int startX = 0;
-		int finishX = 0;
-		int startY = 0;
-		int finishY = 0;
-		
-		startX = (int) Math.floor((v.getRect().x - left) / this.repulsionRange);
-		finishX = (int) Math.floor((v.getRect().width + v.getRect().x - left) / this.repulsionRange);
-		startY = (int) Math.floor((v.getRect().y - top) / this.repulsionRange);
-		finishY = (int) Math.floor((v.getRect().height + v.getRect().y - top) / this.repulsionRange);
-		
-		for (int i = startX; i <= finishX; i++)
+		Object[] nodes = this.getAllNodes();
+		Object[] edges = this.getAllEdges();
+
+		if (this.compactGraph == null ||
+			!this.compactGraph.isBuiltFrom(nodes, edges))
+		{
+			this.compactGraph = new FDCompactGraph(nodes, edges);
+			this.isCompactGraphRead = false;
+		}
+
+		if (!this.isCompactGraphRead)
+		{
+			this.compactGraph.readGeometry();
+			this.isCompactGraphRead = true;
+		}
+	}
+
+	/**
+	 * This method calculates the spring forces of the edges incident to the
+	 * input node of the compact graph, on that node only. Summing them up in
+	 * the order of edges, it ends up with the same force as calcSpringForce
+	 * called for each edge. As each node is written by a single call, nodes
+	 * can be processed in parallel without force accumulators, at the cost of
+	 * calculating the force of each edge twice.
+	 */
+	protected void calcCompactSpringForces(int node)
+	{
+		FDCompactGraph g = this.compactGraph;
+		double[] springForce = this.getForceStorage();
+		double forceX = 0.0;
+		double forceY = 0.0;
+
+		for (int k = g.incidenceStart[node]; k < g.incidenceStart[node + 1]; k++)
+		{
+			if (g.isOutgoing[k])
+			{
+				if (this.calcCompactSpringForceVector(node,
+					g.adjacentNode[k],
+					g.incidentEdge[k],
+					springForce))
+				{
+					forceX += springForce[0];
+					forceY += springForce[1];
+				}
+			}
+			else if (this.calcCompactSpringForceVector(g.adjacentNode[k],
+				node,
+				g.incidentEdge[k],
+				springForce))
+			{
+				forceX -= springForce[0];
+				forceY -= springForce[1];
+			}
+		}
+
+		g.springForceX[node] += forceX;
+		g.springForceY[node] += forceY;
+	}
+
+	/*
+	 * This method calculates the spring force of the input edge of the
+	 * compact graph between the input nodes into the input array: the source
+	 * is to be pulled by this amount while the target is to be pulled by the
+	 * negative of it. It is the counterpart of calcSpringForce, except that
+	 * length fields of the edge are not updated. It returns false if the end
+	 * nodes overlap, in which case there is no spring force.
+	 */
+	private boolean calcCompactSpringForceVector(int source,
+		int target,
+		int edge,
+		double[] springForce)
+	{
+		FDCompactGraph g = this.compactGraph;
+		double lengthX;
+		double lengthY;
+		double length;
+
+		// Calculate edge length
+
+		if (this.uniformLeafNodeSizes && g.isLeaf[source] && g.isLeaf[target])
 		{
-			for (int j = startY; j <= finishY; j++)
+			lengthX = (g.x[target] + g.width[target] / 2) -
+				(g.x[source] + g.width[source] / 2);
+			lengthY = (g.y[target] + g.height[target] / 2) -
+				(g.y[source] + g.height[source] / 2);
+		}
+		else
+		{
+			double[] clipPoints = this.getClipPointStorage();
+
+			if (IGeometry.getIntersection(g.x[target],
+				g.y[target],
+				g.width[target],
+				g.height[target],
+				g.x[source],
+				g.y[source],
+				g.width[source],
+				g.height[source],
+				clipPoints))
 			{
-				grid[i][j].add(v);
-				v.setGridCoordinates(startX, finishX, startY, finishY); 
+				return false;
 			}
+
+			lengthX = clipPoints[0] - clipPoints[2];
+			lengthY = clipPoints[1] - clipPoints[3];
+		}
+
+		if (Math.abs(lengthX) < 1.0)
+		{
+			lengthX = IMath.sign(lengthX);
+		}
+
+		if (Math.abs(lengthY) < 1.0)
+		{
+			lengthY = IMath.sign(lengthY);
 		}
+
+		length = Math.sqrt(lengthX * lengthX + lengthY * lengthY);
+
+		this.calcSpringForceVector(lengthX,
+			lengthY,
+			length,
+			g.edgeIdealLength[edge],
+			springForce);
+
+		return true;
+	}
+
+	/**
+	 * This method calculates the repulsion forces between the input node of
+	 * the compact graph and the nodes of the same graph following it, the
+	 * same way calcRepulsionForce does for node objects.
+	 */
+	protected void calcCompactRepulsionForces(int nodeA)
+	{
+		FDCompactGraph g = this.compactGraph;
+		FDParallelForceCalculator.Accumulator acc = this.getForceAccumulator();
+		double[] repulsionForce = this.getForceStorage();
+		double[] clipPoints;
+		double[] forceX;
+		double[] forceY;
+
+		if (acc == null)
+		{
+			forceX = g.repulsionForceX;
+			forceY = g.repulsionForceY;
+		}
+		else
+		{
+			forceX = acc.repulsionForceX;
+			forceY = acc.repulsionForceY;
+			acc.used = true;
+		}
+
+		double xA = g.x[nodeA];
+		double yA = g.y[nodeA];
+		double widthA = g.width[nodeA];
+		double heightA = g.height[nodeA];
+		boolean isSimpleA = this.uniformLeafNodeSizes && g.isLeaf[nodeA];
+		double xB;
+		double yB;
+		double widthB;
+		double heightB;
+		double distanceX;
+		double distanceY;
+
+		// force on nodeA is kept in local variables during the loop
+		double forceAX = forceX[nodeA];
+		double forceAY = forceY[nodeA];
+
+		for (int nodeB = g.nextInOwner[nodeA];
+			nodeB != -1;
+			nodeB = g.nextInOwner[nodeB])
+		{
+			xB = g.x[nodeB];
+			yB = g.y[nodeB];
+			widthB = g.width[nodeB];
+			heightB = g.height[nodeB];
+
+			if (IGeometry.intersects(xA, yA, widthA, heightA,
+				xB, yB, widthB, heightB))
+			// two nodes overlap
+			{
+				this.calcCompactOverlapRepulsionForceVector(nodeA,
+					nodeB,
+					repulsionForce);
+			}
+			else
+			// no overlap
+			{
+				if (isSimpleA && g.isLeaf[nodeB])
+				// simply base repulsion on distance of node centers
+				{
+					distanceX = (xB + widthB / 2) - (xA + widthA / 2);
+					distanceY = (yB + heightB / 2) - (yA + heightA / 2);
+				}
+				else
+				// use clipping points
+				{
+					clipPoints = this.calcCompactClipPoints(nodeA, nodeB);
+
+					distanceX = clipPoints[2] - clipPoints[0];
+					distanceY = clipPoints[3] - clipPoints[1];
+				}
+
+				this.calcRepulsionForceVector(distanceX,
+					distanceY,
+					g.noOfChildren[nodeA],
+					g.noOfChildren[nodeB],
+					repulsionForce);
+			}
+
+			// Apply forces on the two nodes
+			forceAX -= repulsionForce[0];
+			forceAY -= repulsionForce[1];
+			forceX[nodeB] += repulsionForce[0];
+			forceY[nodeB] += repulsionForce[1];
+		}
+
+		forceX[nodeA] = forceAX;
+		forceY[nodeA] = forceAY;
+	}
+
+	/*
+	 * This method calculates the clipping points of the input node pair of
+	 * the compact graph into the temporary storage of the current thread.
+	 */
+	private double[] calcCompactClipPoints(int nodeA, int nodeB)
+	{
+		FDCompactGraph g = this.compactGraph;
+		double[] clipPoints = this.getClipPointStorage();
+
+		IGeometry.getIntersection(g.x[nodeA],
+			g.y[nodeA],
+			g.width[nodeA],
+			g.height[nodeA],
+			g.x[nodeB],
+			g.y[nodeB],
+			g.width[nodeB],
+			g.height[nodeB],
+			clipPoints);
+
+		return clipPoints;
+	}
+
+	/*
+	 * This method calculates the repulsion force for the input overlapping
+	 * node pair of the compact graph.
+	 */
+	private void calcCompactOverlapRepulsionForceVector(int nodeA,
+		int nodeB,
+		double[] repulsionForce)
+	{
+		FDCompactGraph g = this.compactGraph;
+		double[] overlapAmount = this.getOverlapAmountStorage();
+
+		IGeometry.calcSeparationAmount(this.getRectangle(nodeA, true),
+			this.getRectangle(nodeB, false),
+			overlapAmount,
+			FDLayoutConstants.DEFAULT_EDGE_LENGTH / 2.0);
+
+		this.calcOverlapRepulsionForceVector(overlapAmount[0],
+			overlapAmount[1],
+			g.noOfChildren[nodeA],
+			g.noOfChildren[nodeB],
+			repulsionForce);
+	}
+
+	/*
+	 * This method returns a temporary rectangle of the current thread set to
+	 * the geometry of the input node of the compact graph. Two different
+	 * rectangles are used for the first and the second node of a pair.
+	 */
+	private RectangleD getRectangle(int node, boolean first)
+	{
+		RectangleD rect = this.getRectangleStorage(first);
+
+		rect.x = this.compactGraph.x[node];
+		rect.y = this.compactGraph.y[node];
+		rect.width = this.compactGraph.width[node];
+		rect.height = this.compactGraph.height[node];
+
+		return rect;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: FR-Grid Variant Repulsion Force Calculation
+// -----------------------------------------------------------------------------
+	/**
+	 * This method (re)builds the grid over the input graph with proper
+	 * dimensions, and puts all nodes to proper grid cells. Storage of the
+	 * previous grid is reused.
+	 */
+	protected void calcGrid(LGraph g)
+	{
+		if (this.grid == null)
+		{
+			this.grid = new FDGrid();
+		}
+
+		this.grid.build(this.getAllNodes(),
+			g.getLeft(),
+			g.getTop(),
+			g.getRight(),
+			g.getBottom(),
+			this.repulsionRange);
 	}
 	
 	/**
@@ -723,60 +1521,61 @@ public abstract class FDLayout extends Layout
 	 * And calculates the repulsion forces between nodeA and its surrounding.
 	 * During the calculation, ignores the nodes that have already been processed.
 	 */
-	protected void calculateRepulsionForceOfANode (Vector[][] grid, 
-		FDLayoutNode nodeA,
-		HashSet<FDLayoutNode> processedNodeSet)
+	protected void calculateRepulsionForceOfANode(FDGrid grid,
+		FDLayoutNode nodeA)
 	{
-		int i,j;
+		int i, j, entry;
 		
 		if (this.totalIterations % FDLayoutConstants.GRID_CALCULATION_CHECK_PERIOD == 1)
 		{
-			HashSet<Object> surrounding = new HashSet<Object>();
 			FDLayoutNode nodeB;
+
+			grid.startSearch();
 			
 			for (i = (nodeA.startX-1); i < (nodeA.finishX+2); i++)
 			{
 				for (j = (nodeA.startY-1); j < (nodeA.finishY+2); j++)
 				{
-					if (!((i < 0) || (j < 0) || (i >= grid.length) || (j >= grid[0].length)))
-					{
-						for (Object obj : grid[i][j])
-						{ 
-							nodeB = (FDLayoutNode) obj;
+					for (entry = grid.getFirstEntry(i, j);
+						entry != -1;
+						entry = grid.getNextEntry(entry))
+					{ 
+						nodeB = grid.getNode(entry);
+						
+						// If both nodes are not members of the same graph, 
+						// or both nodes are the same, skip.
+						if ((nodeA.getOwner() != nodeB.getOwner()) 
+							|| (nodeA == nodeB))
+						{
+							continue;
+						}
+						
+						// check if the repulsion force between 
+						// nodeA and nodeB has already been calculated
+						if (!grid.isProcessed(nodeB) && grid.visit(nodeB))
+						{	
+							double distanceX = Math.abs(nodeA.getCenterX()-nodeB.getCenterX()) - 
+								((nodeA.getWidth()/2) + (nodeB.getWidth()/2));
+							double distanceY = Math.abs(nodeA.getCenterY()-nodeB.getCenterY()) - 
+								((nodeA.getHeight()/2) + (nodeB.getHeight()/2));
 							
-							// If both nodes are not members of the same graph, 
-							// or both nodes are the same, skip.
-							if ((nodeA.getOwner() != nodeB.getOwner()) 
-								|| (nodeA == nodeB))
+							// if the distance between nodeA and nodeB 
+							// is less then calculation range
+							if ((distanceX <= this.repulsionRange) && (distanceY <= this.repulsionRange))
 							{
-								continue;
-							}
-							
-							// check if the repulsion force between 
-							// nodeA and nodeB has already been calculated
-							if (!processedNodeSet.contains(nodeB) && !surrounding.contains(nodeB))
-							{	
-								double distanceX = Math.abs(nodeA.getCenterX()-nodeB.getCenterX()) - 
-									((nodeA.getWidth()/2) + (nodeB.getWidth()/2));
-								double distanceY = Math.abs(nodeA.getCenterY()-nodeB.getCenterY()) - 
-									((nodeA.getHeight()/2) + (nodeB.getHeight()/2));
-								
-								// if the distance between nodeA and nodeB 
-								// is less then calculation range
-								if ((distanceX <= this.repulsionRange) && (distanceY <= this.repulsionRange))
-								{
-									//then add nodeB to surrounding of nodeA
-									surrounding.add(nodeB);
-								}
+								//then add nodeB to surrounding of nodeA
+								grid.addSurrounding(nodeB);
 							}
 						}
 					}
 				}
 			}
-			nodeA.surrounding = surrounding.toArray();
+
+			nodeA.surrounding = grid.getSurrounding(nodeA.surrounding);
+			nodeA.noOfSurrounding = grid.getNoOfSurrounding();
 		}
 
-		for (i = 0; i < nodeA.surrounding.length; i++)
+		for (i = 0; i < nodeA.noOfSurrounding; i++)
 		{
 			this.calcRepulsionForce(nodeA, (FDLayoutNode) nodeA.surrounding[i]);
 		}		
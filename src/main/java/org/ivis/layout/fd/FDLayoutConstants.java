@@ -24,6 +24,12 @@ public class FDLayoutConstants
 	public static final double DEFAULT_COMPOUND_GRAVITY_RANGE_FACTOR = 1.5;
 	public static final boolean DEFAULT_USE_SMART_IDEAL_EDGE_LENGTH_CALCULATION = true;
 	public static final boolean DEFAULT_USE_SMART_REPULSION_RANGE_CALCULATION = true;
+	public static final boolean DEFAULT_USE_BARNES_HUT_APPROXIMATION = false;
+	public static final double DEFAULT_BARNES_HUT_THETA = 0.8;
+	public static final boolean DEFAULT_USE_PARALLEL_FORCE_CALCULATION = false;
+	public static final int DEFAULT_NO_OF_FORCE_THREADS =
+		Runtime.getRuntime().availableProcessors();
+	public static final boolean DEFAULT_USE_COMPACT_GRAPH = false;
 	
 // -----------------------------------------------------------------------------
 // Section: remaining constants
@@ -60,4 +66,30 @@ public class FDLayoutConstants
 	 * Number of iterations that should be done in between grid calculations
 	 */
 	public static final int GRID_CALCULATION_CHECK_PERIOD = 10;
+
+	/**
+	 * Maximum depth of the quadtree used by Barnes-Hut approximation; nodes
+	 * closer than this allows are kept together in the same leaf
+	 */
+	public static final int BARNES_HUT_MAX_DEPTH = 20;
+
+	/**
+	 * Minimum number of items (nodes or edges) for which force calculations
+	 * are worth distributing among threads
+	 */
+	public static final int MIN_PARALLEL_FORCE_TASK_SIZE = 256;
+
+	/**
+	 * Number of partitions items of parallel force calculation are split
+	 * into, each with its own force accumulator. It is fixed, rather than the
+	 * number of threads, so that calculated forces do not depend on the
+	 * number of threads.
+	 */
+	public static final int NO_OF_PARALLEL_FORCE_PARTITIONS = 8;
+
+	/**
+	 * Number of chunks each partition of parallel force calculation gets, so
+	 * that uneven work per item is balanced out
+	 */
+	public static final int PARALLEL_CHUNKS_PER_PARTITION = 8;
 }
\ No newline at end of file
@@ -44,9 +44,21 @@ public abstract class FDLayoutNode extends LNode
 	public int finishY;
 	
 	/**
-	 * Geometric neighbors of this node 
+	 * Geometric neighbors of this node, kept at the head of the array
 	 */
 	public Object[] surrounding;
+	public int noOfSurrounding;
+
+	/**
+	 * Index of this node in the force accumulators of parallel force
+	 * calculation
+	 */
+	public int forceIndex;
+
+	/**
+	 * Index of this node in the FR grid it was last put into
+	 */
+	public int gridIndex;
 	
 // -----------------------------------------------------------------------------
 // Section: Constructors and initialization
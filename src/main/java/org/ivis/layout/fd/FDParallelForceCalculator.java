@@ -0,0 +1,493 @@
+package org.ivis.layout.fd;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.ivis.util.RectangleD;
+
+/**
+ * This class distributes force calculations of a force-directed layout among
+ * a number of worker threads. Items (nodes or edges) are split into chunks
+ * which are assigned to a fixed number of partitions in round-robin fashion,
+ * and partitions are in turn assigned to the workers. Forces calculated for
+ * a partition are added into its own accumulator, and accumulators are
+ * reduced into the force fields of the nodes in partition order once all
+ * workers are done. This way force fields of a node are never written
+ * concurrently, and are up to date by the time nodes are moved. Since neither
+ * the partitions nor the order of summation depend on the number of workers,
+ * neither do the resulting forces; they may differ from those calculated
+ * without this class only by rounding.
+ *
+ * Tasks submitted to the workers are created once, and the work to be done
+ * by them (calculation or reduction) is kept in the calculator, so that
+ * running a calculation does not create garbage other than the futures of
+ * the executor.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class FDParallelForceCalculator
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Number of workers, including the calling thread
+	 */
+	private int noOfWorkers;
+
+	/*
+	 * Executor running all workers but the first one, which runs on the
+	 * calling thread
+	 */
+	private ExecutorService executor;
+
+	/*
+	 * Force accumulators of the partitions
+	 */
+	private Accumulator[] accumulators;
+
+	/*
+	 * Accumulator of the partition being run on the current thread, if any
+	 */
+	private ThreadLocal<Accumulator> currentAccumulator;
+
+	/*
+	 * Nodes indexed for accumulation; index of a node in this array is its
+	 * force index
+	 */
+	private Object[] nodes;
+
+	/*
+	 * Tasks running the workers other than the first one on the executor,
+	 * and their futures for the current run
+	 */
+	private WorkerTask[] workerTasks;
+	private List<Future<Object>> futures;
+
+	/*
+	 * Work currently being done by the workers: either running the task for
+	 * indices in [0, count) in chunks of the given size, or reducing the
+	 * accumulators for ranges of nodes of the given size
+	 */
+	private boolean reducing;
+	private FDForceTask task;
+	private int count;
+	private int chunkSize;
+	private int rangeSize;
+
+// -----------------------------------------------------------------------------
+// Section: Constructors and initialization
+// -----------------------------------------------------------------------------
+	/**
+	 * Constructor
+	 */
+	public FDParallelForceCalculator(int noOfWorkers)
+	{
+		// more workers than partitions would be idle
+		this.noOfWorkers = Math.max(1, Math.min(noOfWorkers,
+			FDLayoutConstants.NO_OF_PARALLEL_FORCE_PARTITIONS));
+		this.accumulators =
+			new Accumulator[FDLayoutConstants.NO_OF_PARALLEL_FORCE_PARTITIONS];
+		this.currentAccumulator = new ThreadLocal<Accumulator>();
+
+		for (int i = 0; i < this.accumulators.length; i++)
+		{
+			this.accumulators[i] = new Accumulator();
+		}
+
+		this.workerTasks = new WorkerTask[this.noOfWorkers];
+		this.futures = new ArrayList<Future<Object>>(this.noOfWorkers);
+
+		for (int i = 1; i < this.noOfWorkers; i++)
+		{
+			this.workerTasks[i] = new WorkerTask(i);
+		}
+
+		if (this.noOfWorkers > 1)
+		{
+			this.executor = Executors.newFixedThreadPool(this.noOfWorkers - 1,
+				new ThreadFactory()
+				{
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "fd-force-worker");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		}
+	}
+
+	/**
+	 * This method assigns force indices to the input nodes, which should be
+	 * all nodes whose forces may be calculated in parallel. It is cheap to
+	 * call this method again with the same array.
+	 */
+	public void prepare(Object[] nodes)
+	{
+		if (this.nodes == nodes)
+		{
+			return;
+		}
+
+		this.nodes = nodes;
+
+		for (int i = 0; i < nodes.length; i++)
+		{
+			((FDLayoutNode) nodes[i]).forceIndex = i;
+		}
+
+		for (int i = 0; i < this.accumulators.length; i++)
+		{
+			this.accumulators[i].ensureCapacity(nodes.length);
+		}
+	}
+
+	/**
+	 * This method releases the worker threads. This object should not be used
+	 * afterwards.
+	 */
+	public void shutdown()
+	{
+		if (this.executor != null)
+		{
+			this.executor.shutdown();
+			this.executor = null;
+		}
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Accessors
+// -----------------------------------------------------------------------------
+	/**
+	 * This method returns the number of workers.
+	 */
+	public int getNoOfWorkers()
+	{
+		return this.noOfWorkers;
+	}
+
+	/**
+	 * This method returns the accumulator of the partition being run on the
+	 * current thread, or null if the current thread is not running a worker.
+	 */
+	public Accumulator getAccumulator()
+	{
+		return this.currentAccumulator.get();
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Remaining methods
+// -----------------------------------------------------------------------------
+	/**
+	 * This method runs the input task for each index in [0, count) using all
+	 * workers, and then adds the accumulated forces to the force fields of the
+	 * prepared nodes.
+	 */
+	public void run(int count, FDForceTask task)
+	{
+		this.reducing = false;
+		this.task = task;
+		this.count = count;
+		this.chunkSize = Math.max(1, count /
+			(this.accumulators.length *
+				FDLayoutConstants.PARALLEL_CHUNKS_PER_PARTITION));
+
+		try
+		{
+			this.runWorkers();
+		}
+		finally
+		{
+			this.task = null;
+		}
+
+		this.reduce();
+	}
+
+	/*
+	 * This method adds the forces accumulated for the partitions into the
+	 * force fields of the nodes, and clears the accumulators. Each node is
+	 * reduced by a single worker, summing accumulators in partition order.
+	 */
+	private void reduce()
+	{
+		boolean used = false;
+
+		for (int i = 0; i < this.accumulators.length; i++)
+		{
+			used |= this.accumulators[i].used;
+		}
+
+		if (!used)
+		{
+			return;
+		}
+
+		this.reducing = true;
+		this.rangeSize =
+			(this.nodes.length + this.noOfWorkers - 1) / this.noOfWorkers;
+
+		this.runWorkers();
+
+		for (int i = 0; i < this.accumulators.length; i++)
+		{
+			this.accumulators[i].used = false;
+		}
+	}
+
+	/*
+	 * This method runs the current work once for each worker index, the first
+	 * one on the calling thread, and waits for all of them to finish.
+	 */
+	private void runWorkers()
+	{
+		this.futures.clear();
+
+		for (int i = 1; i < this.noOfWorkers; i++)
+		{
+			this.futures.add(this.executor.submit(this.workerTasks[i]));
+		}
+
+		this.runWorker(0);
+
+		try
+		{
+			for (int i = 0; i < this.futures.size(); i++)
+			{
+				this.futures.get(i).get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+				"Interrupted during force calculation", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+		finally
+		{
+			this.futures.clear();
+		}
+	}
+
+	/*
+	 * This method does the current work of the worker with the input index
+	 * on the current thread.
+	 */
+	private void runWorker(int workerIndex)
+	{
+		if (this.reducing)
+		{
+			this.reduceRange(workerIndex);
+			return;
+		}
+
+		try
+		{
+			for (int partitionIndex = workerIndex;
+				partitionIndex < this.accumulators.length;
+				partitionIndex += this.noOfWorkers)
+			{
+				// make the accumulator of the partition available to the layout
+
+				this.currentAccumulator.set(this.accumulators[partitionIndex]);
+				this.runChunks(partitionIndex);
+			}
+		}
+		finally
+		{
+			this.currentAccumulator.remove();
+		}
+	}
+
+	/*
+	 * This method runs the current task for the indices in the chunks
+	 * assigned to the partition with the input index.
+	 */
+	private void runChunks(int partitionIndex)
+	{
+		int chunkStep = this.accumulators.length * this.chunkSize;
+		int chunkEnd;
+
+		for (int chunkStart = partitionIndex * this.chunkSize;
+			chunkStart < this.count;
+			chunkStart += chunkStep)
+		{
+			chunkEnd = Math.min(chunkStart + this.chunkSize, this.count);
+
+			for (int i = chunkStart; i < chunkEnd; i++)
+			{
+				this.task.run(i);
+			}
+		}
+	}
+
+	/*
+	 * This method adds the forces accumulated for all partitions on the nodes
+	 * in the range assigned to the worker with the input index.
+	 */
+	private void reduceRange(int workerIndex)
+	{
+		int start = workerIndex * this.rangeSize;
+		int end = Math.min(start + this.rangeSize, this.nodes.length);
+		FDLayoutNode node;
+		Accumulator acc;
+
+		for (int k = 0; k < this.accumulators.length; k++)
+		{
+			acc = this.accumulators[k];
+
+			if (!acc.used)
+			{
+				continue;
+			}
+
+			for (int i = start; i < end; i++)
+			{
+				node = (FDLayoutNode) this.nodes[i];
+
+				node.springForceX += acc.springForceX[i];
+				node.springForceY += acc.springForceY[i];
+				node.repulsionForceX += acc.repulsionForceX[i];
+				node.repulsionForceY += acc.repulsionForceY[i];
+				node.gravitationForceX += acc.gravitationForceX[i];
+				node.gravitationForceY += acc.gravitationForceY[i];
+
+				acc.springForceX[i] = 0;
+				acc.springForceY[i] = 0;
+				acc.repulsionForceX[i] = 0;
+				acc.repulsionForceY[i] = 0;
+				acc.gravitationForceX[i] = 0;
+				acc.gravitationForceY[i] = 0;
+			}
+		}
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Inner classes
+// -----------------------------------------------------------------------------
+	/*
+	 * Task running the current work of a single worker on the executor
+	 */
+	private class WorkerTask implements Callable<Object>
+	{
+		private int workerIndex;
+
+		WorkerTask(int workerIndex)
+		{
+			this.workerIndex = workerIndex;
+		}
+
+		public Object call()
+		{
+			runWorker(this.workerIndex);
+			return null;
+		}
+	}
+
+	/**
+	 * Forces calculated for a single partition, indexed by force index of
+	 * nodes. Also holds temporary storage needed by force calculations of the
+	 * partition.
+	 */
+	public static class Accumulator
+	{
+		double[] springForceX = new double[0];
+		double[] springForceY = new double[0];
+		double[] repulsionForceX = new double[0];
+		double[] repulsionForceY = new double[0];
+		double[] gravitationForceX = new double[0];
+		double[] gravitationForceY = new double[0];
+
+		/*
+		 * Whether any force has been accumulated since last reduction
+		 */
+		boolean used;
+
+		/**
+		 * Temporary storage for the force, overlap amount and clipping points
+		 * calculated for a node pair
+		 */
+		public double[] repulsionForce = new double[2];
+		public double[] overlapAmount = new double[2];
+		public double[] clipPoints = new double[4];
+		public RectangleD rectA = new RectangleD();
+		public RectangleD rectB = new RectangleD();
+
+		void ensureCapacity(int size)
+		{
+			if (this.springForceX.length < size)
+			{
+				this.springForceX = new double[size];
+				this.springForceY = new double[size];
+				this.repulsionForceX = new double[size];
+				this.repulsionForceY = new double[size];
+				this.gravitationForceX = new double[size];
+				this.gravitationForceY = new double[size];
+			}
+		}
+
+		/**
+		 * This method accumulates the input spring force on the input node.
+		 */
+		public void addSpringForce(FDLayoutNode node, double x, double y)
+		{
+			this.addSpringForce(node.forceIndex, x, y);
+		}
+
+		/**
+		 * This method accumulates the input spring force on the node with the
+		 * input force index.
+		 */
+		public void addSpringForce(int index, double x, double y)
+		{
+			this.springForceX[index] += x;
+			this.springForceY[index] += y;
+			this.used = true;
+		}
+
+		/**
+		 * This method accumulates the input repulsion force on the input node.
+		 */
+		public void addRepulsionForce(FDLayoutNode node, double x, double y)
+		{
+			this.addRepulsionForce(node.forceIndex, x, y);
+		}
+
+		/**
+		 * This method accumulates the input repulsion force on the node with
+		 * the input force index.
+		 */
+		public void addRepulsionForce(int index, double x, double y)
+		{
+			this.repulsionForceX[index] += x;
+			this.repulsionForceY[index] += y;
+			this.used = true;
+		}
+
+		/**
+		 * This method accumulates the input gravitation force on the input node.
+		 */
+		public void addGravitationForce(FDLayoutNode node, double x, double y)
+		{
+			this.gravitationForceX[node.forceIndex] += x;
+			this.gravitationForceY[node.forceIndex] += y;
+			this.used = true;
+		}
+	}
+}
@@ -0,0 +1,406 @@
+package org.ivis.layout.fd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class implements the quadtree used by the Barnes-Hut approximation of
+ * repulsion forces. A tree is built over the nodes of a single graph (nodes
+ * only repel the members of their owner graph), each cell keeping the total
+ * weight (number of children) of its nodes, and their weighted center and
+ * weighted average dimensions. Cells are pooled, so rebuilding the tree at
+ * each iteration does not create garbage once the pool has grown large enough.
+ *
+ * A far away cell is approximated by a pseudo-node of its weight, centered at
+ * its weighted center and of its average dimensions. Distances to pseudo-nodes
+ * are measured the same way as those to actual nodes (see
+ * FDLayout.calcFarRepulsionForceOnNode), both for deciding whether a cell is
+ * far enough and for calculating its force, so that a cell with a single node
+ * exerts the same force whether or not it is approximated. A cell is far
+ * enough if the extent of its nodes over their distance is below theta.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class FDQuadTree
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Layout whose repulsion constant and exact repulsion calculation are used
+	 */
+	private FDLayout layout;
+
+	/*
+	 * Pool of cells; first noOfCells of them make up the current tree whose
+	 * root is the first cell
+	 */
+	private List<Cell> cells;
+	private int noOfCells;
+
+// -----------------------------------------------------------------------------
+// Section: Constructors and initialization
+// -----------------------------------------------------------------------------
+	/**
+	 * Constructor
+	 */
+	public FDQuadTree(FDLayout layout)
+	{
+		this.layout = layout;
+		this.cells = new ArrayList<Cell>();
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Construction
+// -----------------------------------------------------------------------------
+	/**
+	 * This method (re)builds the tree over the input nodes, which are assumed
+	 * to be the nodes of a single graph. Nodes not taking part in repulsion
+	 * (see FDLayout.isRepulsive) are left out.
+	 */
+	public void build(List nodes)
+	{
+		double minX = Double.MAX_VALUE;
+		double minY = Double.MAX_VALUE;
+		double maxX = -Double.MAX_VALUE;
+		double maxY = -Double.MAX_VALUE;
+		FDLayoutNode node;
+		int i;
+
+		this.noOfCells = 0;
+
+		for (i = 0; i < nodes.size(); i++)
+		{
+			node = (FDLayoutNode) nodes.get(i);
+
+			if (!this.layout.isRepulsive(node))
+			{
+				continue;
+			}
+
+			minX = Math.min(minX, node.getCenterX());
+			minY = Math.min(minY, node.getCenterY());
+			maxX = Math.max(maxX, node.getCenterX());
+			maxY = Math.max(maxY, node.getCenterY());
+		}
+
+		// make the root cell square, slightly larger than the bounds
+		double size = Math.max(Math.max(maxX - minX, maxY - minY), 1.0) + 1.0;
+		Cell root = this.newCell(minX - 0.5, minY - 0.5, size);
+
+		for (i = 0; i < nodes.size(); i++)
+		{
+			node = (FDLayoutNode) nodes.get(i);
+
+			if (this.layout.isRepulsive(node))
+			{
+				this.insert(root, node);
+			}
+		}
+	}
+
+	/*
+	 * This method inserts the input node into the subtree rooted at the input
+	 * cell, updating weights, weighted centers and dimensions on the way down.
+	 */
+	private void insert(Cell cell, FDLayoutNode node)
+	{
+		double x = node.getCenterX();
+		double y = node.getCenterY();
+		int depth = 0;
+
+		while (true)
+		{
+			cell.add(node);
+
+			if (cell.isLeaf())
+			{
+				if (cell.node == null && cell.extraNodes == null)
+				// empty leaf, simply put the node here
+				{
+					cell.node = node;
+					return;
+				}
+				else if (depth >= FDLayoutConstants.BARNES_HUT_MAX_DEPTH)
+				// (almost) coincident nodes, keep them together in this leaf
+				{
+					if (cell.extraNodes == null)
+					{
+						cell.extraNodes = new ArrayList<FDLayoutNode>();
+					}
+
+					cell.extraNodes.add(node);
+					return;
+				}
+
+				// split the leaf and push its node one level down
+				FDLayoutNode oldNode = cell.node;
+				cell.node = null;
+				this.split(cell);
+
+				Cell quadrant = cell.quadrantOf(oldNode.getCenterX(),
+					oldNode.getCenterY());
+				quadrant.add(oldNode);
+				quadrant.node = oldNode;
+			}
+
+			cell = cell.quadrantOf(x, y);
+			depth++;
+		}
+	}
+
+	/*
+	 * This method creates the four quadrants of the input cell.
+	 */
+	private void split(Cell cell)
+	{
+		double half = cell.size / 2;
+
+		cell.children[0] = this.newCell(cell.left, cell.top, half);
+		cell.children[1] = this.newCell(cell.left + half, cell.top, half);
+		cell.children[2] = this.newCell(cell.left, cell.top + half, half);
+		cell.children[3] = this.newCell(cell.left + half, cell.top + half, half);
+	}
+
+	/*
+	 * This method returns a fresh cell from the pool.
+	 */
+	private Cell newCell(double left, double top, double size)
+	{
+		Cell cell;
+
+		if (this.noOfCells < this.cells.size())
+		{
+			cell = this.cells.get(this.noOfCells);
+		}
+		else
+		{
+			cell = new Cell();
+			this.cells.add(cell);
+		}
+
+		this.noOfCells++;
+		cell.reset(left, top, size);
+
+		return cell;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Force calculation
+// -----------------------------------------------------------------------------
+	/**
+	 * This method accumulates the repulsion forces acting on the input node
+	 * from the other nodes in the tree. Cells that look small enough from the
+	 * node, i.e. whose extent over distance is below theta, are approximated
+	 * by a single pseudo-node; remaining nodes are handled exactly. Only the
+	 * input node's forces are updated. The tree is not modified, so this
+	 * method may be called for different nodes from different threads.
+	 */
+	public void calcRepulsionForces(FDLayoutNode node, double theta)
+	{
+		if (this.noOfCells > 0)
+		{
+			this.calcRepulsionForces(this.cells.get(0),
+				node,
+				node.getCenterX(),
+				node.getCenterY(),
+				theta * theta);
+		}
+	}
+
+	/*
+	 * This method accumulates the repulsion forces acting on the input node
+	 * from the nodes in the subtree rooted at the input cell.
+	 */
+	private void calcRepulsionForces(Cell cell,
+		FDLayoutNode node,
+		double x,
+		double y,
+		double thetaSquared)
+	{
+		if (cell.weight == 0)
+		{
+			return;
+		}
+
+		if (cell.isLeaf())
+		{
+			if (cell.node != null && cell.node != node)
+			{
+				this.layout.calcRepulsionForceOnNode(node, cell.node);
+			}
+
+			if (cell.extraNodes != null)
+			{
+				for (int i = 0; i < cell.extraNodes.size(); i++)
+				{
+					FDLayoutNode other = cell.extraNodes.get(i);
+
+					if (other != node)
+					{
+						this.layout.calcRepulsionForceOnNode(node, other);
+					}
+				}
+			}
+
+			return;
+		}
+
+		double distanceX = cell.centerX - x;
+		double distanceY = cell.centerY - y;
+		double extent = Math.max(cell.maxX - cell.minX, cell.maxY - cell.minY);
+		double minDistanceSquared = extent * extent / thetaSquared;
+
+		// distance of centers is an upper bound of the actual distance, so
+		// it is checked first
+
+		if (!cell.contains(x, y) &&
+			distanceX * distanceX + distanceY * distanceY > minDistanceSquared &&
+			this.layout.calcFarRepulsionForceOnNode(node,
+				cell.weight,
+				cell.centerX,
+				cell.centerY,
+				cell.width,
+				cell.height,
+				!cell.hasCompound,
+				minDistanceSquared))
+		// far enough, the cell is used as a whole
+		{
+			return;
+		}
+
+		for (int i = 0; i < 4; i++)
+		{
+			this.calcRepulsionForces(cell.children[i],
+				node,
+				x,
+				y,
+				thetaSquared);
+		}
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Inner classes
+// -----------------------------------------------------------------------------
+	/*
+	 * A square cell of the quadtree
+	 */
+	private static class Cell
+	{
+		/*
+		 * Geometry of this cell
+		 */
+		double left;
+		double top;
+		double size;
+
+		/*
+		 * Total weight of the nodes in this cell, their weighted center and
+		 * weighted average dimensions, and whether any of them is a compound
+		 */
+		double weight;
+		double centerX;
+		double centerY;
+		double width;
+		double height;
+		boolean hasCompound;
+
+		/*
+		 * Bounds of the nodes in this cell
+		 */
+		double minX;
+		double minY;
+		double maxX;
+		double maxY;
+
+		/*
+		 * Quadrants of this cell; all null for a leaf
+		 */
+		Cell[] children = new Cell[4];
+
+		/*
+		 * Node(s) of a leaf cell; extra nodes are only needed when nodes are
+		 * too close to be separated by further splitting
+		 */
+		FDLayoutNode node;
+		List<FDLayoutNode> extraNodes;
+
+		void reset(double left, double top, double size)
+		{
+			this.left = left;
+			this.top = top;
+			this.size = size;
+			this.weight = 0;
+			this.centerX = 0;
+			this.centerY = 0;
+			this.width = 0;
+			this.height = 0;
+			this.hasCompound = false;
+			this.minX = Double.MAX_VALUE;
+			this.minY = Double.MAX_VALUE;
+			this.maxX = -Double.MAX_VALUE;
+			this.maxY = -Double.MAX_VALUE;
+			this.children[0] = null;
+			this.children[1] = null;
+			this.children[2] = null;
+			this.children[3] = null;
+			this.node = null;
+			this.extraNodes = null;
+		}
+
+		boolean isLeaf()
+		{
+			return this.children[0] == null;
+		}
+
+		boolean contains(double x, double y)
+		{
+			return x >= this.left && x < this.left + this.size &&
+				y >= this.top && y < this.top + this.size;
+		}
+
+		void add(FDLayoutNode node)
+		{
+			double w = node.noOfChildren;
+			double totalWeight = this.weight + w;
+
+			this.centerX = (this.centerX * this.weight +
+				node.getCenterX() * w) / totalWeight;
+			this.centerY = (this.centerY * this.weight +
+				node.getCenterY() * w) / totalWeight;
+			this.width = (this.width * this.weight +
+				node.getWidth() * w) / totalWeight;
+			this.height = (this.height * this.weight +
+				node.getHeight() * w) / totalWeight;
+			this.weight = totalWeight;
+
+			this.minX = Math.min(this.minX, node.getLeft());
+			this.minY = Math.min(this.minY, node.getTop());
+			this.maxX = Math.max(this.maxX, node.getRight());
+			this.maxY = Math.max(this.maxY, node.getBottom());
+
+			if (node.getChild() != null)
+			{
+				this.hasCompound = true;
+			}
+		}
+
+		Cell quadrantOf(double x, double y)
+		{
+			double half = this.size / 2;
+			int index = 0;
+
+			if (x >= this.left + half)
+			{
+				index += 1;
+			}
+
+			if (y >= this.top + half)
+			{
+				index += 2;
+			}
+
+			return this.children[index];
+		}
+	}
+}
@@ -58,6 +58,26 @@ public class SbgnPDConstants extends CoSEConstants
 	public static final int COMPLEX_MEM_VERTICAL_BUFFER = 5;
 	public static final int COMPLEX_MEM_MARGIN = 20;
 	public static final double COMPLEX_MIN_WIDTH = COMPLEX_MEM_MARGIN * 2;	
+
+	/**
+	 * Number of threads packing members of complexes at the same nesting
+	 * level, and minimum number of members packed per thread
+	 */
+	public static final int DEFAULT_NO_OF_PACKING_THREADS =
+		Runtime.getRuntime().availableProcessors();
+	public static final int MIN_MEMBERS_PER_PACKING_THREAD = 50;
+
+	/**
+	 * Desired ratio of the width of a complex to its height, when its members
+	 * are tiled
+	 */
+	public static final double DEFAULT_COMPLEX_ASPECT_RATIO = 1.0;
+
+	/**
+	 * Maximum number of member packings kept for reuse by complexes of the
+	 * same composition, in this and later layouts
+	 */
+	public static final int DEFAULT_PACKING_CACHE_SIZE = 1000;
 	
 	public static final int PHASE1_MAX_ITERATION_COUNT = 200;
 	public static int APPROXIMATION_DISTANCE = 10;
@@ -2,11 +2,16 @@ package org.ivis.layout.sbgn;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.ivis.layout.LEdge;
 import org.ivis.layout.LGraph;
@@ -15,6 +20,8 @@ import org.ivis.layout.LayoutConstants;
 import org.ivis.layout.cose.CoSELayout;
 import org.ivis.layout.cose.CoSENode;
 import org.ivis.layout.fd.FDLayoutConstants;
+import org.ivis.layout.fd.FDForceTask;
+import org.ivis.layout.fd.FDGrid;
 import org.ivis.layout.fd.FDLayoutEdge;
 import org.ivis.layout.fd.FDLayoutNode;
 import org.ivis.layout.sbgn.SbgnProcessNode.Orientation;
@@ -101,6 +108,81 @@ public class SbgnPDLayout extends CoSELayout
 	
 	public int totalEffCount;
 
+	/**
+	 * Number of threads to be used for packing members of complexes at the
+	 * same nesting level during tiling
+	 */
+	public int noOfPackingThreads =
+		SbgnPDConstants.DEFAULT_NO_OF_PACKING_THREADS;
+
+	/**
+	 * Desired ratio of the width of a complex to its height, when its members
+	 * are tiled
+	 */
+	public double complexAspectRatio =
+		SbgnPDConstants.DEFAULT_COMPLEX_ASPECT_RATIO;
+
+	/*
+	 * Force calculation tasks of this layout, for each edge or node
+	 */
+	private FDForceTask springForceTask = new FDForceTask()
+	{
+		public void run(int i)
+		{
+			FDLayoutEdge edge = (FDLayoutEdge) getAllEdges()[i];
+
+			if (!edge.type.equals(SbgnPDConstants.RIGID_EDGE))
+				calcSpringForce(edge, edge.idealLength);
+		}
+	};
+
+	private FDForceTask gridRepulsionForceTask = new FDForceTask()
+	{
+		public void run(int i)
+		{
+			calculateRepulsionForceOfANode(grid,
+					(FDLayoutNode) getAllNodes()[i]);
+		}
+	};
+
+	private FDForceTask repulsionForceTask = new FDForceTask()
+	{
+		public void run(int i)
+		{
+			Object[] lNodes = getAllNodes();
+			FDLayoutNode nodeA = (FDLayoutNode) lNodes[i];
+			FDLayoutNode nodeB;
+
+			for (int j = i + 1; j < lNodes.length; j++)
+			{
+				nodeB = (FDLayoutNode) lNodes[j];
+
+				// If both nodes are not members of the same graph,
+				// skip.
+				if (nodeA.getOwner() != nodeB.getOwner())
+				{
+					continue;
+				}
+
+				if (nodeA.type != null
+						&& nodeB.type != null
+						&& nodeA.getOwner().equals(nodeB.getOwner())
+						&& (nodeA.type
+								.equals(SbgnPDConstants.INPUT_PORT)
+								|| nodeA.type
+										.equals(SbgnPDConstants.OUTPUT_PORT)
+								|| nodeB.type
+										.equals(SbgnPDConstants.INPUT_PORT) || nodeB.type
+									.equals(SbgnPDConstants.OUTPUT_PORT)))
+				{
+					continue;
+				}
+
+				calcRepulsionForce(nodeA, nodeB);
+			}
+		}
+	};
+
 	/**
 	 * The constructor creates and associates with this layout a new graph
 	 * manager as well. No tiling performs CoSE Layout.
@@ -127,6 +209,19 @@ public class SbgnPDLayout extends CoSELayout
 			this.memberPackMap = new HashMap<SbgnPDNode, MemberPack>();
 	}
 
+	/**
+	 * This method is used to set all layout parameters to default values.
+	 * Compact graph calculation is turned off, as this layout calculates
+	 * spring and repulsion forces on node objects, leaving out rigid edges
+	 * and port nodes (see calcSpringForces and calcRepulsionForces).
+	 */
+	public void initParameters()
+	{
+		super.initParameters();
+
+		this.useCompactGraph = false;
+	}
+
 	/**
 	 * @Override This method performs the actual layout on the l-level compound
 	 *           graph. An update() needs to be called for changes to be
@@ -828,8 +923,8 @@ public class SbgnPDLayout extends CoSELayout
 		}
 		else if (compactionMethod == DefaultCompactionAlgorithm.TILING)
 		{
-			pack = new MemberPack(childGr);
-			memberPackMap.put(comp, pack);
+			// members are already packed by packComplexes
+			pack = memberPackMap.get(comp);
 		}
 
 		if (dummyComplexList.contains(comp))
@@ -896,6 +991,11 @@ public class SbgnPDLayout extends CoSELayout
 				DFSVisitComplex(comp);
 		}
 
+		if (compactionMethod == DefaultCompactionAlgorithm.TILING)
+		{
+			packComplexes();
+		}
+
 		// clear each complex
 		for (SbgnPDNode o : complexOrder)
 		{
@@ -934,6 +1034,168 @@ public class SbgnPDLayout extends CoSELayout
 		}
 	}
 
+	/**
+	 * This method packs the members of each complex in complexOrder by tiling,
+	 * before any child graph is cleared. Packing of a complex only depends on
+	 * the sizes of its members, and the size of a member complex is
+	 * determined by its own packing. Hence complexes are packed level by
+	 * level, starting with the ones containing no complexes, and complexes at
+	 * the same level are packed concurrently.
+	 */
+	private void packComplexes()
+	{
+		Map<SbgnPDNode, Integer> levels = new HashMap<SbgnPDNode, Integer>();
+		List<List<SbgnPDNode>> complexesAtLevels =
+			new ArrayList<List<SbgnPDNode>>();
+		int maxNoOfComplexesAtLevel = 0;
+		int noOfMembers = 0;
+		int level;
+
+		for (SbgnPDNode comp : complexOrder)
+		{
+			if (comp.getChild() == null || levels.containsKey(comp))
+				continue;
+
+			level = 0;
+
+			for (Object o : comp.getChild().getNodes())
+			{
+				level = Math.max(level,
+					calcComplexLevel((SbgnPDNode) o, levels) + 1);
+			}
+
+			levels.put(comp, level);
+
+			while (complexesAtLevels.size() <= level)
+				complexesAtLevels.add(new ArrayList<SbgnPDNode>());
+
+			complexesAtLevels.get(level).add(comp);
+			maxNoOfComplexesAtLevel = Math.max(maxNoOfComplexesAtLevel,
+				complexesAtLevels.get(level).size());
+			noOfMembers += comp.getChild().getNodes().size();
+		}
+
+		int noOfWorkers = Math.min(Math.min(this.noOfPackingThreads,
+			maxNoOfComplexesAtLevel),
+			noOfMembers / SbgnPDConstants.MIN_MEMBERS_PER_PACKING_THREAD);
+		ExecutorService executor = null;
+
+		if (noOfWorkers > 1)
+		{
+			executor = Executors.newFixedThreadPool(noOfWorkers,
+				new ThreadFactory()
+				{
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread =
+							new Thread(runnable, "sbgn-packing-worker");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		}
+
+		try
+		{
+			for (List<SbgnPDNode> complexes : complexesAtLevels)
+			{
+				packComplexesAtLevel(complexes, executor);
+
+				// sizes of these complexes are needed at the next level
+				for (SbgnPDNode comp : complexes)
+				{
+					MemberPack pack = memberPackMap.get(comp);
+					comp.setWidth(pack.getWidth());
+					comp.setHeight(pack.getHeight());
+				}
+			}
+		}
+		finally
+		{
+			if (executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * This method returns the nesting level of the deep-most complex in the
+	 * subtree of the given node (the node included), -1 if there is none.
+	 * Levels of complexes in this subtree should already be in the input map.
+	 */
+	private int calcComplexLevel(SbgnPDNode node,
+		Map<SbgnPDNode, Integer> levels)
+	{
+		Integer level = levels.get(node);
+
+		if (level != null)
+			return level;
+
+		int maxLevel = -1;
+
+		if (node.getChild() != null)
+		{
+			for (Object o : node.getChild().getNodes())
+			{
+				maxLevel = Math.max(maxLevel,
+					calcComplexLevel((SbgnPDNode) o, levels));
+			}
+		}
+
+		return maxLevel;
+	}
+
+	/**
+	 * This method packs the members of the given complexes, which are at the
+	 * same nesting level, on the given executor if any. Packings are put in
+	 * memberPackMap in the order of the input list.
+	 */
+	private void packComplexesAtLevel(List<SbgnPDNode> complexes,
+		ExecutorService executor)
+	{
+		if (executor == null || complexes.size() == 1)
+		{
+			for (SbgnPDNode comp : complexes)
+				memberPackMap.put(comp,
+					new MemberPack(comp.getChild(), complexAspectRatio));
+
+			return;
+		}
+
+		List<Future<MemberPack>> futures =
+			new ArrayList<Future<MemberPack>>(complexes.size());
+
+		try
+		{
+			for (final SbgnPDNode comp : complexes)
+			{
+				futures.add(executor.submit(new Callable<MemberPack>()
+				{
+					public MemberPack call()
+					{
+						return new MemberPack(comp.getChild(),
+							complexAspectRatio);
+					}
+				}));
+			}
+
+			for (int i = 0; i < complexes.size(); i++)
+				memberPackMap.put(complexes.get(i), futures.get(i).get());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(
+				"Interrupted during packing of complexes", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
 	/**
 	 * This method tiles the given list of nodes by using polyomino packing
 	 * algorithm.
@@ -1308,6 +1570,10 @@ public class SbgnPDLayout extends CoSELayout
 			this.graphManager.resetAllEdges();
 			this.calculateNodesToApplyGravitationTo();
 		}
+
+		// weights of nodes, port nodes included, for repulsion and moving
+		this.calcNoOfChildrenForAllNodes();
+
 		this.initSpringEmbedder();
 		this.runSpringEmbedder();
 
@@ -1321,16 +1587,7 @@ public class SbgnPDLayout extends CoSELayout
 	 */
 	public void calcSpringForces()
 	{
-		Object[] lEdges = this.getAllEdges();
-		FDLayoutEdge edge;
-
-		for (int i = 0; i < lEdges.length; i++)
-		{
-			edge = (FDLayoutEdge) lEdges[i];
-
-			if (!edge.type.equals(SbgnPDConstants.RIGID_EDGE))
-				this.calcSpringForce(edge, edge.idealLength);
-		}
+		this.runForceTask(this.getAllEdges().length, this.springForceTask);
 	}
 
 	@Override
@@ -1340,77 +1597,55 @@ public class SbgnPDLayout extends CoSELayout
 	 */
 	public void calcRepulsionForces()
 	{
-		int i, j;
-		FDLayoutNode nodeA, nodeB;
+		int i;
+		FDLayoutNode nodeA;
 		Object[] lNodes = this.getAllNodes();
-		HashSet<FDLayoutNode> processedNodeSet;
 
-		if (this.useFRGridVariant)
+		if (this.useBarnesHutApproximation)
+		{
+			// port nodes are left out (see isRepulsive)
+			this.calcBarnesHutRepulsionForces();
+		}
+		else if (this.useFRGridVariant)
 		{
-			// grid is a vector matrix that holds CoSENodes.
-			// be sure to convert the Object type to CoSENode.
-
 			if (this.totalIterations
 					% FDLayoutConstants.GRID_CALCULATION_CHECK_PERIOD == 1)
 			{
-				this.grid = this.calcGrid(this.graphManager.getRoot());
-
 				// put all nodes to proper grid cells
+				this.calcGrid(this.graphManager.getRoot());
+
+				// calculate repulsion forces between each nodes and its
+				// surrounding
 				for (i = 0; i < lNodes.length; i++)
 				{
 					nodeA = (FDLayoutNode) lNodes[i];
-					this.addNodeToGrid(nodeA, this.grid, this.graphManager
-							.getRoot().getLeft(), this.graphManager.getRoot()
-							.getTop());
+					this.calculateRepulsionForceOfANode(this.grid, nodeA);
+					this.grid.setProcessed(nodeA);
 				}
 			}
-
-			processedNodeSet = new HashSet<FDLayoutNode>();
-
-			// calculate repulsion forces between each nodes and its surrounding
-			for (i = 0; i < lNodes.length; i++)
+			else
+			// surroundings are known, no need to track processed nodes
 			{
-				nodeA = (FDLayoutNode) lNodes[i];
-				this.calculateRepulsionForceOfANode(this.grid, nodeA,
-						processedNodeSet);
-				processedNodeSet.add(nodeA);
+				this.runForceTask(lNodes.length, this.gridRepulsionForceTask);
 			}
 		}
 		else
 		{
-			for (i = 0; i < lNodes.length; i++)
-			{
-				nodeA = (FDLayoutNode) lNodes[i];
-
-				for (j = i + 1; j < lNodes.length; j++)
-				{
-					nodeB = (FDLayoutNode) lNodes[j];
-
-					// If both nodes are not members of the same graph, skip.
-					if (nodeA.getOwner() != nodeB.getOwner())
-					{
-						continue;
-					}
-
-					if (nodeA.type != null
-							&& nodeB.type != null
-							&& nodeA.getOwner().equals(nodeB.getOwner())
-							&& (nodeA.type.equals(SbgnPDConstants.INPUT_PORT)
-									|| nodeA.type
-											.equals(SbgnPDConstants.OUTPUT_PORT)
-									|| nodeB.type
-											.equals(SbgnPDConstants.INPUT_PORT) || nodeB.type
-										.equals(SbgnPDConstants.OUTPUT_PORT)))
-					{
-						continue;
-					}
-
-					this.calcRepulsionForce(nodeA, nodeB);
-				}
-			}
+			this.runForceTask(lNodes.length, this.repulsionForceTask);
 		}
 	}
 
+	@Override
+	/**
+	 * Port nodes neither repel nor are repelled by other nodes.
+	 */
+	protected boolean isRepulsive(FDLayoutNode node)
+	{
+		return node.type == null ||
+			!(node.type.equals(SbgnPDConstants.INPUT_PORT) ||
+				node.type.equals(SbgnPDConstants.OUTPUT_PORT));
+	}
+
 	@Override
 	/**
 	 * This method finds surrounding nodes of nodeA in repulsion range.
@@ -1418,82 +1653,81 @@ public class SbgnPDLayout extends CoSELayout
 	 * During the calculation, ignores the nodes that have already been processed.
 	 * Modification: Do not calculate repulsion for port & process nodes
 	 */
-	protected void calculateRepulsionForceOfANode(Vector[][] grid,
-			FDLayoutNode nodeA, HashSet<FDLayoutNode> processedNodeSet)
+	protected void calculateRepulsionForceOfANode(FDGrid grid,
+			FDLayoutNode nodeA)
 	{
-		int i, j;
+		int i, j, entry;
 
 		if (this.totalIterations
 				% FDLayoutConstants.GRID_CALCULATION_CHECK_PERIOD == 1)
 		{
-			HashSet<Object> surrounding = new HashSet<Object>();
 			FDLayoutNode nodeB;
 
+			grid.startSearch();
+
 			for (i = (nodeA.startX - 1); i < (nodeA.finishX + 2); i++)
 			{
 				for (j = (nodeA.startY - 1); j < (nodeA.finishY + 2); j++)
 				{
-					if (!((i < 0) || (j < 0) || (i >= grid.length) || (j >= grid[0].length)))
+					for (entry = grid.getFirstEntry(i, j); entry != -1;
+							entry = grid.getNextEntry(entry))
 					{
-						for (Object obj : grid[i][j])
-						{
-							nodeB = (FDLayoutNode) obj;
+						nodeB = grid.getNode(entry);
 
-							// If both nodes are not members of the same graph,
-							// or both nodes are the same, skip.
-							if ((nodeA.getOwner() != nodeB.getOwner())
-									|| (nodeA == nodeB))
-							{
-								continue;
-							}
+						// If both nodes are not members of the same graph,
+						// or both nodes are the same, skip.
+						if ((nodeA.getOwner() != nodeB.getOwner())
+								|| (nodeA == nodeB))
+						{
+							continue;
+						}
 
-							if (nodeA.type != null
-									&& nodeB.type != null
-									&& nodeA.getOwner()
-											.equals(nodeB.getOwner())
-									&& (nodeA.type
-											.equals(SbgnPDConstants.INPUT_PORT)
-											|| nodeA.type
-													.equals(SbgnPDConstants.OUTPUT_PORT)
-											|| nodeB.type
-													.equals(SbgnPDConstants.INPUT_PORT) || nodeB.type
-												.equals(SbgnPDConstants.OUTPUT_PORT)))
-							{
-								continue;
-							}
+						if (nodeA.type != null
+								&& nodeB.type != null
+								&& nodeA.getOwner()
+										.equals(nodeB.getOwner())
+								&& (nodeA.type
+										.equals(SbgnPDConstants.INPUT_PORT)
+										|| nodeA.type
+												.equals(SbgnPDConstants.OUTPUT_PORT)
+										|| nodeB.type
+												.equals(SbgnPDConstants.INPUT_PORT) || nodeB.type
+											.equals(SbgnPDConstants.OUTPUT_PORT)))
+						{
+							continue;
+						}
 
-							// check if the repulsion force between
-							// nodeA and nodeB has already been calculated
-							if (!processedNodeSet.contains(nodeB)
-									&& !surrounding.contains(nodeB))
+						// check if the repulsion force between
+						// nodeA and nodeB has already been calculated
+						if (!grid.isProcessed(nodeB) && grid.visit(nodeB))
+						{
+							double distanceX = Math.abs(nodeA.getCenterX()
+									- nodeB.getCenterX())
+									- ((nodeA.getWidth() / 2) + (nodeB
+											.getWidth() / 2));
+							double distanceY = Math.abs(nodeA.getCenterY()
+									- nodeB.getCenterY())
+									- ((nodeA.getHeight() / 2) + (nodeB
+											.getHeight() / 2));
+
+							// if the distance between nodeA and nodeB
+							// is less then calculation range
+							if ((distanceX <= this.repulsionRange)
+									&& (distanceY <= this.repulsionRange))
 							{
-								double distanceX = Math.abs(nodeA.getCenterX()
-										- nodeB.getCenterX())
-										- ((nodeA.getWidth() / 2) + (nodeB
-												.getWidth() / 2));
-								double distanceY = Math.abs(nodeA.getCenterY()
-										- nodeB.getCenterY())
-										- ((nodeA.getHeight() / 2) + (nodeB
-												.getHeight() / 2));
-
-								// if the distance between nodeA and nodeB
-								// is less then calculation range
-								if ((distanceX <= this.repulsionRange)
-										&& (distanceY <= this.repulsionRange))
-								{
-									// then add nodeB to surrounding of nodeA
-									surrounding.add(nodeB);
-								}
+								// then add nodeB to surrounding of nodeA
+								grid.addSurrounding(nodeB);
 							}
-
 						}
+
 					}
 				}
 			}
-			nodeA.surrounding = surrounding.toArray();
+			nodeA.surrounding = grid.getSurrounding(nodeA.surrounding);
+			nodeA.noOfSurrounding = grid.getNoOfSurrounding();
 		}
 
-		for (i = 0; i < nodeA.surrounding.length; i++)
+		for (i = 0; i < nodeA.noOfSurrounding; i++)
 		{
 			this.calcRepulsionForce(nodeA, (FDLayoutNode) nodeA.surrounding[i]);
 		}
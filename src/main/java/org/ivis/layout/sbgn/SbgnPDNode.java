@@ -200,36 +200,30 @@ public class SbgnPDNode extends CoSENode
 	}
 
 	/**
-	 * This method updates the bounds of this compound node. If the node is a
-	 * dummy compound, do not include label and extra margins.
+	 * This method sets the geometry of this compound node to wrap its child
+	 * graph. If the node is a dummy compound, do not include label and extra
+	 * margins.
 	 */
 	@Override
-	public void updateBounds()
+	public void wrapChildGraph()
 	{
-		assert this.getChild() != null;
+		LGraph childGraph = this.getChild();
 
-		if (this.getChild().getNodes().size() != 0)
-		{
-			// wrap the children nodes by re-arranging the boundaries
-			LGraph childGraph = this.getChild();
-			childGraph.updateBounds(true);
-
-			this.rect.x = childGraph.getLeft();
-			this.rect.y = childGraph.getTop();
+		this.rect.x = childGraph.getLeft();
+		this.rect.y = childGraph.getTop();
 
-			if (this.type != null && this.type.equals(SbgnPDConstants.DUMMY_COMPOUND))
-			{
-				this.setWidth(childGraph.getRight() - childGraph.getLeft());
-				this.setHeight(childGraph.getBottom() - childGraph.getTop());
-			}
-			else
-			{
-				this.setWidth(childGraph.getRight() - childGraph.getLeft() + 2
-						* LayoutConstants.COMPOUND_NODE_MARGIN);
-				this.setHeight(childGraph.getBottom() - childGraph.getTop() + 2
-						* LayoutConstants.COMPOUND_NODE_MARGIN
-						+ LayoutConstants.LABEL_HEIGHT);
-			}
+		if (this.type != null && this.type.equals(SbgnPDConstants.DUMMY_COMPOUND))
+		{
+			this.setWidth(childGraph.getRight() - childGraph.getLeft());
+			this.setHeight(childGraph.getBottom() - childGraph.getTop());
+		}
+		else
+		{
+			this.setWidth(childGraph.getRight() - childGraph.getLeft() + 2
+					* LayoutConstants.COMPOUND_NODE_MARGIN);
+			this.setHeight(childGraph.getBottom() - childGraph.getTop() + 2
+					* LayoutConstants.COMPOUND_NODE_MARGIN
+					+ LayoutConstants.LABEL_HEIGHT);
 		}
 	}
 }
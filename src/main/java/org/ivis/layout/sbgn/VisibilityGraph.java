@@ -1,12 +1,15 @@
 package org.ivis.layout.sbgn;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.ivis.layout.LGraph;
 import org.ivis.layout.LGraphManager;
 import org.ivis.layout.sbgn.SbgnPDNode;
 import org.ivis.layout.sbgn.Compaction.CompactionDirection;
-import org.ivis.util.RectangleD;
 
 /**
  * This class implements CoSE specific data and functionality for graphs.
@@ -31,233 +34,152 @@ public class VisibilityGraph extends LGraph
 	}
 
 	/**
-	 * Create a new visibility graph. Compare each vertices in the graph to see
-	 * if they are visible to each other. If two vertices can see each other and
-	 * they see each other in the desired direction, add an edge between them.
+	 * Create a new visibility graph. Two vertices are visible to each other if
+	 * there exists a ray in the desired direction that intersects both without
+	 * intersecting any other vertex in between; in that case, add an edge
+	 * between them.
+	 * 
+	 * Vertices are swept in the desired direction (e.g. from top to bottom for
+	 * vertical) while keeping, for each interval on the sweep line, the last
+	 * swept vertex covering it in a balanced search tree. A vertex sees the
+	 * vertices keeping the intervals it covers, and then takes them over. This
+	 * takes O(n log n + k) time for n vertices and k edges, assuming vertices
+	 * do not overlap. Edges are created in the order of vertex pairs.
+	 * 
+	 * Rays are strips of any positive width, at exact coordinates. Where
+	 * vertices overlap, a vertex sees the vertices last swept on parts of its
+	 * interval, including those it overlaps, but not ones hidden behind them.
 	 */
 	public void construct(CompactionDirection d, ArrayList<SbgnPDNode> vertices)
 	{
 		init(vertices);
 
-		ArrayList<SbgnPDNode> nodes = (ArrayList<SbgnPDNode>) this.getNodes();
+		final ArrayList<SbgnPDNode> nodes =
+			(ArrayList<SbgnPDNode>) this.getNodes();
 		this.direction = d;
 
-		// check the visibility between each two vertex
-		for (int i = 0; i < nodes.size(); i++)
-		{
-			for (int j = i + 1; j < nodes.size(); j++)
-			{
-				SbgnPDNode node1 = nodes.get(i);
-				SbgnPDNode node2 = nodes.get(j);
+		int noOfNodes = nodes.size();
+		Integer[] sweepOrder = new Integer[noOfNodes];
 
-				int result = findVisibilityDirection(node1, node2);
-
-				// if they are visible, create edge.
-				if (result != 0)
-				{
-					createEdge(node1, node2);
-				}
-			}
-		}
-	}
-
-	/**
-	 * This method adds the given nodes to the graph.
-	 */
-	private void init(ArrayList<SbgnPDNode> vertices)
-	{
-		// create the new graph with given vertices
-		for (SbgnPDNode s : vertices)
-			this.add(s);
-	}
-
-	/**
-	 * Given two nodes, check their visibility. Two nodes are visible to each
-	 * other if there exists an infinite ray that intersects them without
-	 * intersecting any other nodes in between those two.
-	 * 
-	 * @return 1: vertical, 2: horizontal (if any edge found). Otherwise, return
-	 *         0
-	 */
-	private int findVisibilityDirection(SbgnPDNode p, SbgnPDNode q)
-	{
-		if (direction == CompactionDirection.VERTICAL)
+		for (int i = 0; i < noOfNodes; i++)
 		{
-			// ensure that p points to the leftmost element
-			if (q.getLeft() < p.getLeft()
-					&& p.getLeft() < q.getLeft() + q.getWidth())
-			{
-				SbgnPDNode temp = p;
-				p = q;
-				q = temp;
-			}
-
-			// check if there exists a ray
-			if (p.getLeft() <= q.getLeft()
-					&& q.getLeft() <= p.getLeft() + p.getWidth())
-			{
-				if (sweepIntersectedArea(p, q))
-					return 1;
-			}
+			sweepOrder[i] = i;
 		}
 
-		else if (direction == CompactionDirection.HORIZONTAL)
+		// sort stably on the coordinate in the desired direction
+		Arrays.sort(sweepOrder, new Comparator<Integer>()
 		{
-			// ensure that p points to the upper element
-			if (q.getTop() < p.getTop()
-					&& p.getTop() < q.getTop() + q.getHeight())
+			public int compare(Integer i, Integer j)
 			{
-				SbgnPDNode temp = p;
-				p = q;
-				q = temp;
+				return Double.compare(getSweepStart(nodes.get(i)),
+					getSweepStart(nodes.get(j)));
 			}
+		});
 
-			// check if there exists a ray
-			if (p.getTop() <= q.getTop()
-					&& q.getTop() <= p.getTop() + p.getHeight())
-			{
-				if (sweepIntersectedArea(p, q))
-					return 2;
-			}
-		}
-		return 0;
-	}
+		// Intervals on the sweep line, keyed by their start points, with the
+		// index of the vertex last swept on each (-1 if none)
+		TreeMap<Double, Integer> intervals = new TreeMap<Double, Integer>();
+		intervals.put(Double.NEGATIVE_INFINITY, -1);
 
-	/**
-	 * Starting from the intersection area between p and q, walk on a line
-	 * perpendicular to the desired direction. If there is an edge that does not
-	 * intersect with any other nodes, this is a valid edge.
-	 * 
-	 * @return true if an edge exists. false otherwise.
-	 */
-	private boolean sweepIntersectedArea(SbgnPDNode p, SbgnPDNode q)
-	{
-		RectangleD edge;
-		boolean isValid;
-		int start = 0, end = 0, result;
+		ArrayList<Long> visiblePairs = new ArrayList<Long>();
+		int[] lastSeenBy = new int[noOfNodes];
+		Arrays.fill(lastSeenBy, -1);
 
-		// find the sweep line borders
-		if (direction == CompactionDirection.VERTICAL)
-		{
-			start = (int) q.getLeft();
-			end = (int) Math.min(p.getRight(), q.getRight());
-		}
-		else if (direction == CompactionDirection.HORIZONTAL)
+		for (int k = 0; k < noOfNodes; k++)
 		{
-			start = (int) q.getTop();
-			end = (int) Math.min(p.getBottom(), q.getBottom());
-		}
+			int index = sweepOrder[k];
+			SbgnPDNode node = nodes.get(index);
+			double low = getIntervalStart(node);
+			double high = getIntervalEnd(node);
 
-		// if they intersect only on the borders, immediately return false.
-		if (start == end)
-			return false;
+			if (!(low < high))
+			{
+				continue;
+			}
 
-		// check for all intersected area
-		for (int sweepPoint = start; sweepPoint <= end; sweepPoint++)
-		{
-			isValid = true;
-			edge = tryConstructingEdge(p, q, sweepPoint);
+			Integer endValue = intervals.floorEntry(high).getValue();
+			Map.Entry<Double, Integer> entry = intervals.floorEntry(low);
 
-			// if an edge is constructed, check its validity
-			if (edge != null)
+			// find the vertices seen over a positive length, removing the
+			// intervals covered by this vertex on the way
+			while (entry != null && entry.getKey() < high)
 			{
-				result = checkIntermediateNodes(p, q, edge, sweepPoint);
+				double start = entry.getKey();
+				int other = entry.getValue();
+				Map.Entry<Double, Integer> nextEntry =
+					intervals.higherEntry(start);
+				double end = (nextEntry == null) ?
+					Double.POSITIVE_INFINITY : nextEntry.getKey();
+
+				if (other != -1 && lastSeenBy[other] != index &&
+					Math.max(start, low) < Math.min(end, high))
+				{
+					lastSeenBy[other] = index;
+					visiblePairs.add((long) Math.min(index, other) * noOfNodes +
+						Math.max(index, other));
+				}
 
-				if (sweepPoint == result)
-					isValid = true;
-				else
+				if (start >= low)
 				{
-					sweepPoint = result;
-					isValid = false;
+					intervals.remove(start);
 				}
+
+				entry = nextEntry;
 			}
-			if (isValid)
-				return true;
-		}
 
-		return false;
-	}
+			intervals.put(low, index);
 
-	/**
-	 * This method tries to construct an edge(RectangleD shape) between two
-	 * nodes. The parameter i indicates the starting point of the edge. For
-	 * example, if a vertical edge to be constructed, i is the top coordinate.
-	 * For horizontal, i is the leftmost coordinate.
-	 * 
-	 * @return edge. if no edge can be constructed, returns null.
-	 */
-	private RectangleD tryConstructingEdge(SbgnPDNode p, SbgnPDNode q, int i)
-	{
-		if (direction == CompactionDirection.VERTICAL)
-		{
-			// create an edge from upper to lower or return false:does not
-			// exist
-			if (p.getTop() < q.getTop() && p.getBottom() <= q.getTop())
+			if (!intervals.containsKey(high))
 			{
-				return new RectangleD(i, (int) (p.getBottom()), 1,
-						(int) (q.getTop() - p.getBottom()));
+				intervals.put(high, endValue);
 			}
-			else if (q.getTop() < p.getTop()
-					&& q.getTop() + q.getHeight() <= p.getTop())
-			{
-				return new RectangleD(i, (int) (q.getBottom()), 1,
-						(int) (p.getTop() - q.getBottom()));
-			}
-			else
-				return null;
 		}
-		else if (direction == CompactionDirection.HORIZONTAL)
-		{
-			// create an edge from leftmost to right or return false:does
-			// not exist
-			if (p.getLeft() < q.getLeft() && p.getRight() <= q.getLeft())
-			{
-				return new RectangleD((int) (p.getRight()), i,
-						(int) (q.getLeft() - p.getRight()), 1);
-			}
-			else if (q.getLeft() < p.getLeft() && q.getRight() <= p.getLeft())
 
-			{
-				return new RectangleD((int) (q.getRight()), i,
-						(int) (p.getLeft() - q.getRight()), 1);
-			}
-			else
-				return null;
-		}
+		// create edges in the order of vertex pairs
+		Long[] pairs = visiblePairs.toArray(new Long[visiblePairs.size()]);
+		Arrays.sort(pairs);
 
-		return null;
+		for (int i = 0; i < pairs.length; i++)
+		{
+			createEdge(nodes.get((int) (pairs[i] / noOfNodes)),
+				nodes.get((int) (pairs[i] % noOfNodes)));
+		}
 	}
 
-	/**
-	 * This method checks if the given edge intersects any nodes except the
-	 * source and target nodes. If an intersection is found, update the sweep
-	 * point to the end of the intersected node. Otherwise, do not change the
-	 * point.
+	/*
+	 * This method returns the coordinate of the input node in the desired
+	 * direction, on which nodes are swept.
 	 */
-	private int checkIntermediateNodes(SbgnPDNode p, SbgnPDNode q,
-			RectangleD edge, int sweepPoint)
+	private double getSweepStart(SbgnPDNode node)
 	{
-		for (int j = 0; j < this.getNodes().size(); j++)
-		{
-			SbgnPDNode intermediateNode = (SbgnPDNode) this.getNodes().get(j);
+		return (direction == CompactionDirection.VERTICAL) ?
+			node.getTop() : node.getLeft();
+	}
 
-			if (!intermediateNode.equals(p) && !intermediateNode.equals(q))
-			{
-				// if there is an intersection, edge is not valid
-				if (edge.intersects(intermediateNode.getRect()))
-				{
-					// jump to the end of intersected node
-					if (direction == CompactionDirection.VERTICAL)
-						sweepPoint = (int) (intermediateNode.getRight() + 1);
-					else if (direction == CompactionDirection.HORIZONTAL)
-						sweepPoint = (int) (intermediateNode.getBottom() + 1);
+	/*
+	 * These methods return the end points of the interval the input node
+	 * covers on the sweep line.
+	 */
+	private double getIntervalStart(SbgnPDNode node)
+	{
+		return (direction == CompactionDirection.VERTICAL) ?
+			node.getLeft() : node.getTop();
+	}
 
-					break;
-				}
-			}
-		}
+	private double getIntervalEnd(SbgnPDNode node)
+	{
+		return (direction == CompactionDirection.VERTICAL) ?
+			node.getRight() : node.getBottom();
+	}
 
-		return sweepPoint;
+	/**
+	 * This method adds the given nodes to the graph.
+	 */
+	private void init(ArrayList<SbgnPDNode> vertices)
+	{
+		// create the new graph with given vertices
+		for (SbgnPDNode s : vertices)
+			this.add(s);
 	}
 
 	/**
@@ -292,16 +214,22 @@ public class VisibilityGraph extends LGraph
 
 	/**
 	 * For each edge having s as its target node, find and return the shortest
-	 * one. Returns null if could not find an edge.
+	 * one. Returns null if could not find an edge. Only the edges of s are
+	 * visited, which are in the same order as in this graph.
 	 */
 	public VisibilityEdge findShortestEdge(SbgnPDNode s)
 	{
 		VisibilityEdge shortestEdge = null;
 		int minLength = Integer.MAX_VALUE;
 
-		for (int i = 0; i < this.getEdges().size(); i++)
+		for (int i = 0; i < s.getEdges().size(); i++)
 		{
-			VisibilityEdge e = (VisibilityEdge) this.getEdges().get(i);
+			if (!(s.getEdges().get(i) instanceof VisibilityEdge))
+			{
+				continue;
+			}
+
+			VisibilityEdge e = (VisibilityEdge) s.getEdges().get(i);
 
 			e.updateLength();
 			if (e.getTarget().equals(s) && e.getLength() < minLength)
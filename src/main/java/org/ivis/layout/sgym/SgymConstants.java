@@ -17,4 +17,10 @@ public class SgymConstants
 	public static final int DEFAULT_VERTICAL_SPACING = 80;
 
 	public static final boolean DEFAULT_VERTICAL = true;
+
+	/**
+	 * Whether grid positions of nodes are assigned by the Brandes-Koepf method
+	 * rather than by moving nodes to their barycenters
+	 */
+	public static final boolean DEFAULT_BALANCED_COORDINATE_ASSIGNMENT = false;
 }
@@ -0,0 +1,644 @@
+package org.ivis.layout.sgym;
+
+import java.util.*;
+
+import org.ivis.layout.LEdge;
+import org.ivis.layout.LNode;
+
+/**
+ * This class assigns grid positions to the nodes of a layered graph, whose
+ * nodes are already ordered within their levels, as described by Brandes and
+ * Koepf (U. Brandes and B. Koepf, "Fast and simple horizontal coordinate
+ * assignment," in GD '01, ser. LNCS, P. Mutzel, M. Junger and S. Leipert,
+ * Eds., vol. 2265, 2002, pp. 31-44). Nodes are aligned with their median
+ * neighbors into vertical blocks for each of the four combinations of
+ * vertical (top-down, bottom-up) and horizontal (left, right) directions,
+ * blocks are compacted, and the resulting four positions of each node are
+ * balanced. Run time is linear in the number of nodes, including dummy
+ * nodes, and edges between adjacent levels.
+ *
+ * Only neighbors on adjacent levels are considered; hence edges spanning
+ * more levels should be split by dummy nodes beforehand. Positions of nodes
+ * on the same level preserve their order and are at least one apart.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class SgymCoordinateAssignment
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Nodes of the layered graph, by node id
+	 */
+	private SgymNode[] nodes;
+
+	/*
+	 * Ids of the nodes on each level, in order
+	 */
+	private int[][] levelNodes;
+
+	/*
+	 * Position of each node on its level
+	 */
+	private int[] positions;
+
+	/*
+	 * Ids of the neighbors of each node on the level above and below it,
+	 * sorted on their positions
+	 */
+	private int[][] upperNeighbors;
+	private int[][] lowerNeighbors;
+
+	/*
+	 * Segments (edges between adjacent levels) crossing an inner segment (an
+	 * edge between two dummy nodes), keyed by the ids of their end nodes; such
+	 * segments are not used for alignment
+	 */
+	private Set<Long> conflicts;
+
+	/*
+	 * Data of the directions being processed: position of each node on its
+	 * level in the horizontal direction, node preceding each node on its
+	 * level (-1 if none), root of the block of each node, next node in that
+	 * block (cyclically), sink of the class of each block root, and
+	 * coordinates of nodes
+	 */
+	private int[] order;
+	private int[] predecessors;
+	private int[] roots;
+	private int[] aligns;
+	private int[] sinks;
+	private double[] x;
+
+// -----------------------------------------------------------------------------
+// Section: Constructors and initialization
+// -----------------------------------------------------------------------------
+	/**
+	 * Constructor: creates a coordinate assignment for the input levels, each
+	 * being a vector of the nodes on that level in order.
+	 */
+	public SgymCoordinateAssignment(Vector levels)
+	{
+		int noOfLevels = levels.size();
+		Map<SgymNode, Integer> ids = new HashMap<SgymNode, Integer>();
+		List<SgymNode> nodeList = new ArrayList<SgymNode>();
+		int[] levelIndices;
+		int i, j;
+
+		this.levelNodes = new int[noOfLevels][];
+
+		for (i = 0; i < noOfLevels; i++)
+		{
+			Vector level = (Vector) levels.get(i);
+			this.levelNodes[i] = new int[level.size()];
+
+			for (j = 0; j < level.size(); j++)
+			{
+				SgymNode node = (SgymNode) level.get(j);
+				ids.put(node, nodeList.size());
+				this.levelNodes[i][j] = nodeList.size();
+				nodeList.add(node);
+			}
+		}
+
+		int noOfNodes = nodeList.size();
+		this.nodes = nodeList.toArray(new SgymNode[noOfNodes]);
+		this.positions = new int[noOfNodes];
+		levelIndices = new int[noOfNodes];
+
+		for (i = 0; i < noOfLevels; i++)
+		{
+			for (j = 0; j < this.levelNodes[i].length; j++)
+			{
+				this.positions[this.levelNodes[i][j]] = j;
+				levelIndices[this.levelNodes[i][j]] = i;
+			}
+		}
+
+		this.upperNeighbors = new int[noOfNodes][];
+		this.lowerNeighbors = new int[noOfNodes][];
+
+		for (int v = 0; v < noOfNodes; v++)
+		{
+			this.upperNeighbors[v] =
+				this.findNeighbors(v, levelIndices, ids, levelIndices[v] - 1);
+			this.lowerNeighbors[v] =
+				this.findNeighbors(v, levelIndices, ids, levelIndices[v] + 1);
+		}
+
+		this.markConflicts();
+	}
+
+	/*
+	 * This method returns the ids of the neighbors of the input node on the
+	 * input level, sorted on their positions. Inter-graph edges are ignored.
+	 */
+	private int[] findNeighbors(int v,
+		int[] levelIndices,
+		Map<SgymNode, Integer> ids,
+		int levelIndex)
+	{
+		if (levelIndex < 0 || levelIndex >= this.levelNodes.length)
+		{
+			return new int[0];
+		}
+
+		List edges = this.nodes[v].getEdges();
+		int[] neighborPositions = new int[edges.size()];
+		int count = 0;
+
+		for (int i = 0; i < edges.size(); i++)
+		{
+			LEdge edge = (LEdge) edges.get(i);
+
+			if (edge.isInterGraph())
+			{
+				continue;
+			}
+
+			LNode neighbor = edge.getOtherEnd(this.nodes[v]);
+			Integer id = ids.get(neighbor);
+
+			if (id != null && id != v && levelIndices[id] == levelIndex)
+			{
+				neighborPositions[count++] = this.positions[id];
+			}
+		}
+
+		neighborPositions = Arrays.copyOf(neighborPositions, count);
+		Arrays.sort(neighborPositions);
+
+		int[] neighbors = new int[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			neighbors[i] = this.levelNodes[levelIndex][neighborPositions[i]];
+		}
+
+		return neighbors;
+	}
+
+	/*
+	 * This method marks the segments crossing inner segments (type 1
+	 * conflicts), so that inner segments are aligned in favor of others.
+	 */
+	private void markConflicts()
+	{
+		this.conflicts = new HashSet<Long>();
+
+		for (int i = 0; i < this.levelNodes.length - 1; i++)
+		{
+			int[] upperLevel = this.levelNodes[i];
+			int[] lowerLevel = this.levelNodes[i + 1];
+			int k0 = 0;
+			int l = 0;
+
+			for (int l1 = 0; l1 < lowerLevel.length; l1++)
+			{
+				int innerNeighbor = this.findInnerSegmentEnd(lowerLevel[l1]);
+
+				if (l1 != lowerLevel.length - 1 && innerNeighbor == -1)
+				{
+					continue;
+				}
+
+				int k1 = upperLevel.length - 1;
+
+				if (innerNeighbor != -1)
+				{
+					k1 = this.positions[innerNeighbor];
+				}
+
+				for (; l <= l1; l++)
+				{
+					int v = lowerLevel[l];
+
+					for (int k = 0; k < this.upperNeighbors[v].length; k++)
+					{
+						int u = this.upperNeighbors[v][k];
+
+						if (this.positions[u] < k0 || this.positions[u] > k1)
+						{
+							this.conflicts.add(this.getSegmentKey(u, v));
+						}
+					}
+				}
+
+				k0 = k1;
+			}
+		}
+	}
+
+	/*
+	 * This method returns the upper end of the inner segment the input node is
+	 * incident to, or -1 if there is no such segment.
+	 */
+	private int findInnerSegmentEnd(int v)
+	{
+		if (!this.nodes[v].isDummy)
+		{
+			return -1;
+		}
+
+		for (int k = 0; k < this.upperNeighbors[v].length; k++)
+		{
+			if (this.nodes[this.upperNeighbors[v][k]].isDummy)
+			{
+				return this.upperNeighbors[v][k];
+			}
+		}
+
+		return -1;
+	}
+
+	/*
+	 * This method returns the key of the segment between the input nodes.
+	 */
+	private long getSegmentKey(int u, int v)
+	{
+		return (long) Math.min(u, v) * this.nodes.length + Math.max(u, v);
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Remaining methods
+// -----------------------------------------------------------------------------
+	/**
+	 * This method calculates and sets the grid positions of the nodes. The
+	 * smallest grid position is 0.
+	 */
+	public void assignGridPositions()
+	{
+		int noOfNodes = this.nodes.length;
+
+		if (noOfNodes == 0)
+		{
+			return;
+		}
+
+		// Positions for top-down and bottom-up directions, each to the left
+		// and to the right
+
+		double[][] coordinates = new double[4][];
+		double[] minCoordinates = new double[4];
+		double[] maxCoordinates = new double[4];
+		int narrowest = 0;
+		int k, v;
+
+		for (k = 0; k < 4; k++)
+		{
+			coordinates[k] = this.calcCoordinates(k < 2, k % 2 == 1);
+			minCoordinates[k] = Double.MAX_VALUE;
+			maxCoordinates[k] = -Double.MAX_VALUE;
+
+			for (v = 0; v < noOfNodes; v++)
+			{
+				minCoordinates[k] = Math.min(minCoordinates[k],
+					coordinates[k][v]);
+				maxCoordinates[k] = Math.max(maxCoordinates[k],
+					coordinates[k][v]);
+			}
+
+			if (maxCoordinates[k] - minCoordinates[k] <
+				maxCoordinates[narrowest] - minCoordinates[narrowest])
+			{
+				narrowest = k;
+			}
+		}
+
+		// Align the left ones to the left, and the right ones to the right of
+		// the narrowest one
+
+		double[] shifts = new double[4];
+
+		for (k = 0; k < 4; k++)
+		{
+			if (k % 2 == 0)
+			{
+				shifts[k] = minCoordinates[narrowest] - minCoordinates[k];
+			}
+			else
+			{
+				shifts[k] = maxCoordinates[narrowest] - maxCoordinates[k];
+			}
+		}
+
+		// Balance by taking the average of the two median positions, which
+		// keeps nodes on a level at least one apart even after rounding
+
+		int[] gridPositions = new int[noOfNodes];
+		double[] values = new double[4];
+		int minGridPosition = Integer.MAX_VALUE;
+
+		for (v = 0; v < noOfNodes; v++)
+		{
+			for (k = 0; k < 4; k++)
+			{
+				values[k] = coordinates[k][v] + shifts[k];
+			}
+
+			Arrays.sort(values);
+			gridPositions[v] = (int) Math.round((values[1] + values[2]) / 2);
+			minGridPosition = Math.min(minGridPosition, gridPositions[v]);
+		}
+
+		for (v = 0; v < noOfNodes; v++)
+		{
+			this.nodes[v].setGridPosition(gridPositions[v] - minGridPosition);
+		}
+	}
+
+	/*
+	 * This method calculates the positions of nodes in the input directions,
+	 * aligning each node with its median neighbors on the preceding level
+	 * (above the node when top-down) and placing blocks of aligned nodes as
+	 * close to the left (or right) as possible.
+	 */
+	private double[] calcCoordinates(boolean topDown, boolean toRight)
+	{
+		int noOfNodes = this.nodes.length;
+		int noOfLevels = this.levelNodes.length;
+		int[][] levels = new int[noOfLevels][];
+		int[][] neighbors = topDown ? this.upperNeighbors : this.lowerNeighbors;
+		int i, j, v;
+
+		this.order = new int[noOfNodes];
+		this.predecessors = new int[noOfNodes];
+
+		// Levels in the order they are processed, each ordered in the
+		// horizontal direction
+
+		for (i = 0; i < noOfLevels; i++)
+		{
+			int[] level = this.levelNodes[topDown ? i : noOfLevels - 1 - i];
+			levels[i] = new int[level.length];
+
+			for (j = 0; j < level.length; j++)
+			{
+				v = level[toRight ? level.length - 1 - j : j];
+				levels[i][j] = v;
+				this.order[v] = j;
+				this.predecessors[v] = j > 0 ? levels[i][j - 1] : -1;
+			}
+		}
+
+		// Vertical alignment: each node is aligned with a median neighbor
+		// unless the segment between is in conflict or crosses an already
+		// aligned one
+
+		this.roots = new int[noOfNodes];
+		this.aligns = new int[noOfNodes];
+
+		for (v = 0; v < noOfNodes; v++)
+		{
+			this.roots[v] = v;
+			this.aligns[v] = v;
+		}
+
+		for (i = 1; i < noOfLevels; i++)
+		{
+			int lastAligned = -1;
+
+			for (j = 0; j < levels[i].length; j++)
+			{
+				v = levels[i][j];
+				int degree = neighbors[v].length;
+
+				if (degree == 0)
+				{
+					continue;
+				}
+
+				for (int m = (degree - 1) / 2;
+					m <= degree / 2 && this.aligns[v] == v;
+					m++)
+				{
+					int u = neighbors[v][toRight ? degree - 1 - m : m];
+
+					if (lastAligned < this.order[u] &&
+						!this.conflicts.contains(this.getSegmentKey(u, v)))
+					{
+						this.aligns[u] = v;
+						this.roots[v] = this.roots[u];
+						this.aligns[v] = this.roots[v];
+						lastAligned = this.order[u];
+					}
+				}
+			}
+		}
+
+		// Horizontal compaction: blocks are placed relative to each other
+		// within classes, and then classes are shifted
+
+		this.sinks = new int[noOfNodes];
+		this.x = new double[noOfNodes];
+		boolean[] isPlaced = new boolean[noOfNodes];
+		int[] blockStack = new int[noOfNodes];
+		int[] memberStack = new int[noOfNodes];
+
+		for (v = 0; v < noOfNodes; v++)
+		{
+			this.sinks[v] = v;
+		}
+
+		for (i = 0; i < noOfLevels; i++)
+		{
+			for (j = 0; j < levels[i].length; j++)
+			{
+				v = levels[i][j];
+
+				if (this.roots[v] == v && !isPlaced[v])
+				{
+					this.placeBlock(v, isPlaced, blockStack, memberStack);
+				}
+			}
+		}
+
+		double[] classShifts = this.calcClassShifts(levels);
+		double[] coordinates = new double[noOfNodes];
+
+		for (v = 0; v < noOfNodes; v++)
+		{
+			if (classShifts == null)
+			{
+				// should not happen; fall back to positions on the levels
+				coordinates[v] = this.order[v];
+			}
+			else
+			{
+				coordinates[v] = this.x[this.roots[v]] +
+					classShifts[this.sinks[this.roots[v]]];
+			}
+
+			if (toRight)
+			{
+				coordinates[v] = -coordinates[v];
+			}
+		}
+
+		return coordinates;
+	}
+
+	/*
+	 * This method places the block with the input root, after the blocks
+	 * preceding it in the same class, at the leftmost position possible. An
+	 * explicit stack (of blocks being placed and their members being
+	 * processed) is used instead of recursion, as chains of preceding blocks
+	 * may be long.
+	 */
+	private void placeBlock(int root,
+		boolean[] isPlaced,
+		int[] blockStack,
+		int[] memberStack)
+	{
+		int top = 0;
+
+		blockStack[top] = root;
+		memberStack[top] = root;
+		isPlaced[root] = true;
+		this.x[root] = 0;
+		top++;
+
+		while (top > 0)
+		{
+			int v = blockStack[top - 1];
+			int w = memberStack[top - 1];
+
+			if (this.predecessors[w] != -1)
+			{
+				int u = this.roots[this.predecessors[w]];
+
+				if (!isPlaced[u])
+				{
+					// place the preceding block first
+					blockStack[top] = u;
+					memberStack[top] = u;
+					isPlaced[u] = true;
+					this.x[u] = 0;
+					top++;
+					continue;
+				}
+
+				if (this.sinks[v] == v)
+				{
+					this.sinks[v] = this.sinks[u];
+				}
+
+				if (this.sinks[v] == this.sinks[u])
+				{
+					this.x[v] = Math.max(this.x[v], this.x[u] + 1);
+				}
+			}
+
+			w = this.aligns[w];
+
+			if (w == v)
+			{
+				top--;
+			}
+			else
+			{
+				memberStack[top - 1] = w;
+			}
+		}
+	}
+
+	/*
+	 * This method calculates the shift of each class (identified by its sink)
+	 * so that adjacent nodes of different classes are at least one apart. A
+	 * class is shifted no more than required by the classes preceding it. It
+	 * returns null if classes cannot be ordered.
+	 */
+	private double[] calcClassShifts(int[][] levels)
+	{
+		int[] roots = this.roots;
+		int[] sinks = this.sinks;
+		double[] x = this.x;
+		int noOfNodes = this.nodes.length;
+		int[] noOfPredecessors = new int[noOfNodes];
+		int[] successorStart = new int[noOfNodes + 1];
+		int i, j, v;
+
+		// Constraints between classes of adjacent nodes, grouped by the class
+		// on the left
+
+		for (i = 0; i < levels.length; i++)
+		{
+			for (j = 1; j < levels[i].length; j++)
+			{
+				int leftSink = sinks[roots[levels[i][j - 1]]];
+				int rightSink = sinks[roots[levels[i][j]]];
+
+				if (leftSink != rightSink)
+				{
+					successorStart[leftSink + 1]++;
+					noOfPredecessors[rightSink]++;
+				}
+			}
+		}
+
+		for (v = 0; v < noOfNodes; v++)
+		{
+			successorStart[v + 1] += successorStart[v];
+		}
+
+		int[] successors = new int[successorStart[noOfNodes]];
+		double[] separations = new double[successors.length];
+		int[] next = Arrays.copyOf(successorStart, noOfNodes);
+
+		for (i = 0; i < levels.length; i++)
+		{
+			for (j = 1; j < levels[i].length; j++)
+			{
+				int leftRoot = roots[levels[i][j - 1]];
+				int rightRoot = roots[levels[i][j]];
+
+				if (sinks[leftRoot] != sinks[rightRoot])
+				{
+					successors[next[sinks[leftRoot]]] = sinks[rightRoot];
+					separations[next[sinks[leftRoot]]++] =
+						x[leftRoot] - x[rightRoot] + 1;
+				}
+			}
+		}
+
+		// Shift classes in topological order
+
+		double[] shifts = new double[noOfNodes];
+		int[] queue = new int[noOfNodes];
+		int head = 0;
+		int tail = 0;
+		int noOfClasses = 0;
+
+		for (v = 0; v < noOfNodes; v++)
+		{
+			if (sinks[v] == v && roots[v] == v)
+			{
+				noOfClasses++;
+
+				if (noOfPredecessors[v] == 0)
+				{
+					queue[tail++] = v;
+				}
+			}
+		}
+
+		while (head < tail)
+		{
+			v = queue[head++];
+
+			for (int k = successorStart[v]; k < successorStart[v + 1]; k++)
+			{
+				int w = successors[k];
+				shifts[w] = Math.max(shifts[w], shifts[v] + separations[k]);
+
+				if (--noOfPredecessors[w] == 0)
+				{
+					queue[tail++] = w;
+				}
+			}
+		}
+
+		return tail == noOfClasses ? shifts : null;
+	}
+}
@@ -92,6 +92,13 @@ public class SgymLayout extends Layout
 
 	private int verticalSpacing = SgymConstants.DEFAULT_VERTICAL_SPACING;
 
+	/**
+	 * whether grid positions are assigned by the Brandes-Koepf method instead
+	 * of moving nodes to their barycenters
+	 */
+	protected boolean balancedCoordinateAssignment =
+		SgymConstants.DEFAULT_BALANCED_COORDINATE_ASSIGNMENT;
+
 // -----------------------------------------------------------------------------
 // Section: Constructors and initializations
 // -----------------------------------------------------------------------------
@@ -186,8 +193,17 @@ public class SgymLayout extends Layout
 		solveEdgeCrosses(nodes, levels);
 
 		// adjust vertices horizontally to minimize edge lengths
-		// move all nodes into the barycenter
-		moveToBarycenter(nodes, levels);
+		if (balancedCoordinateAssignment)
+		{
+			// align nodes with their median neighbors in four directions and
+			// balance the results
+			new SgymCoordinateAssignment(levels).assignGridPositions();
+		}
+		else
+		{
+			// move all nodes into the barycenter
+			moveToBarycenter(nodes, levels);
+		}
 
 		// finds the spacings between levels and nodes
 		PointD min = this.findMinimumAndSpacing(nodes, spacing);
@@ -303,6 +319,7 @@ public class SgymLayout extends Layout
 							SgymNode dummy = (SgymNode) dummies.get(i);
 							dummy.setLevel(level);
 							dummy.visited = true;
+							dummy.isDummy = true;
 							Vector v = (Vector)levels.get(level);
 							dummy.addToEdgeCrossesIndicator(v.size());
 							v.add(dummy);
@@ -1423,6 +1440,8 @@ public class SgymLayout extends Layout
 		this.horizontalSpacing = layoutOptionsPack.horizontalSpacing;
 		this.verticalSpacing = layoutOptionsPack.verticalSpacing;
 		this.vertical = layoutOptionsPack.vertical;
+		this.balancedCoordinateAssignment =
+			layoutOptionsPack.balancedCoordinateAssignment;
 	}
 
 	/**
@@ -46,6 +46,11 @@ public class SgymNode extends LNode implements Comparable
 	 */
 	int priority = 0;
 
+	/**
+	 * whether this node is a dummy node created for a bendpoint
+	 */
+	boolean isDummy = false;
+
 	// used for dfs
 	int color = 0;
 	SgymNode ancestor = null;
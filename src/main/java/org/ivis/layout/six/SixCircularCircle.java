@@ -1,6 +1,8 @@
 package org.ivis.layout.six;
 
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 import org.ivis.layout.cise.*;
 import org.ivis.layout.LGraphManager;
@@ -36,113 +38,165 @@ public class SixCircularCircle extends CiSECircle
 // -----------------------------------------------------------------------------
 	/**
 	 * This method calculates the optimal orientation of this circle by rotating
-	 * its nodes in an exhaustive fashion as described in the paper.
+	 * its nodes in an exhaustive fashion as described in the paper. Rather than
+	 * moving all nodes for each rotation, only the out nodes are placed at
+	 * their locations for that rotation (angles being found from cumulative
+	 * angular offsets of nodes), and all nodes are moved once, to the optimal
+	 * orientation.
 	 */
 	public void calculateOptimalOrientation()
 	{
-		int noOfNodesOnCircle = this.getOnCircleNodes().size();
+		List onCircleNodes = this.getOnCircleNodes();
+		int noOfNodesOnCircle = onCircleNodes.size();
 
-		// First rotate w/ the current ordering and find the minimum
+		if (noOfNodesOnCircle == 0)
+		{
+			return;
+		}
+
+		// Nodes in the current ordering and in the reverse ordering
+
+		CiSENode[] inOrder = new CiSENode[noOfNodesOnCircle];
+		CiSENode[] inReverseOrder = new CiSENode[noOfNodesOnCircle];
+		Iterator iterator = onCircleNodes.iterator();
+		CiSENode node;
+		int index;
+
+		while (iterator.hasNext())
+		{
+			node = (CiSENode)iterator.next();
+			index = node.getOnCircleNodeExt().getIndex();
+
+			inOrder[index] = node;
+			inReverseOrder[(noOfNodesOnCircle - index) % noOfNodesOnCircle] =
+				node;
+		}
+
+		// First rotate w/ the current ordering and find the minimum, starting
+		// with the current locations of nodes
 
 		double minimalPotentialEnergy = this.calcPotentialEnergy();
 		int minimalPotentialIndex = 0;
-		double potentialEnergy;
+		double[] potentialEnergies = this.calcPotentialEnergies(inOrder);
+		int i;
 
-		for (int i = 1; i < noOfNodesOnCircle; i++)
+		for (i = 1; i < noOfNodesOnCircle; i++)
 		{
-			this.rotateNodes();
-			potentialEnergy = this.calcPotentialEnergy();
-
-			if (potentialEnergy < minimalPotentialEnergy)
+			if (potentialEnergies[i] < minimalPotentialEnergy)
 			{
-				minimalPotentialEnergy = potentialEnergy;
+				minimalPotentialEnergy = potentialEnergies[i];
 				minimalPotentialIndex = i;
 			}
 		}
 
-		// To get back to original orientation
-		this.rotateNodes();
-
-		// Now reverse the order of the nodes on the circle
-		this.reverseNodes();
-
 		// Do the rotation again w/ reversed order to see if we can improve
 
 		boolean reverseOrderIsBetter = false;
+		potentialEnergies = this.calcPotentialEnergies(inReverseOrder);
 
-		for (int i = 0; i < noOfNodesOnCircle; i++)
+		for (i = 0; i < noOfNodesOnCircle; i++)
 		{
-			potentialEnergy = this.calcPotentialEnergy();
-
-			if (potentialEnergy < minimalPotentialEnergy)
+			if (potentialEnergies[i] < minimalPotentialEnergy)
 			{
-				minimalPotentialEnergy = potentialEnergy;
+				minimalPotentialEnergy = potentialEnergies[i];
 				minimalPotentialIndex = i;
 				reverseOrderIsBetter = true;
 			}
-
-			this.rotateNodes();
 		}
 
-		if (!reverseOrderIsBetter)
+		// Now move the nodes to the optimal orientation
+
+		CiSENode[] optimalOrder = reverseOrderIsBetter ? inReverseOrder : inOrder;
+
+		for (i = 0; i < noOfNodesOnCircle; i++)
 		{
-			// Revert the order
-			this.reverseNodes();
+			optimalOrder[i].getOnCircleNodeExt().setIndex(
+				(i + minimalPotentialIndex) % noOfNodesOnCircle);
 		}
 
-		this.rotateNodesToOptimal(minimalPotentialIndex);
+		this.reCalculateNodeAnglesAndPositions();
 	}
 
-	/**
-	 * This method rotates the nodes of this circle clockwise by one.
+	/*
+	 * This method calculates the potential energy of this cluster for each
+	 * rotation of the input ordering of its on-circle nodes, rotation i moving
+	 * the node at position j of the ordering to position (j + i) mod n. Only
+	 * out nodes are moved for this purpose; other nodes are left as they are.
 	 */
-	private void rotateNodes()
+	private double[] calcPotentialEnergies(CiSENode[] inOrder)
 	{
-		Iterator iterator = this.getOnCircleNodes().iterator();
-		int noOfNodesOnCircle = this.getOnCircleNodes().size();
+		CiSELayout layout = (CiSELayout)(this.getGraphManager().getLayout());
+		int nodeSeparation = layout.getNodeSeparation();
+		int noOfNodesOnCircle = inOrder.length;
+		double parentCenterX = this.getParent().getCenterX();
+		double parentCenterY = this.getParent().getCenterY();
+		double radius = this.getRadius();
+		int i, j;
+
+		// Angular offset of each position from position 0, calculated the same
+		// way node angles are; the last entry is the offset of a full turn
+
+		double[] offsets = new double[noOfNodesOnCircle + 1];
 		CiSENode node;
-		int index;
+		CiSENode previousNode;
 
-		while (iterator.hasNext())
+		for (j = 1; j <= noOfNodesOnCircle; j++)
 		{
-			node = (CiSENode)iterator.next();
-			index = node.getOnCircleNodeExt().getIndex();
-			node.getOnCircleNodeExt().setIndex((index + 1) % noOfNodesOnCircle);
+			node = inOrder[j % noOfNodesOnCircle];
+			previousNode = inOrder[j - 1];
+
+			offsets[j] = offsets[j - 1] +
+				(node.getHalfTheDiagonal() + nodeSeparation +
+					previousNode.getHalfTheDiagonal()) / radius;
 		}
 
-		this.reCalculateNodeAnglesAndPositions();
-	}
+		// Out nodes and their positions in the ordering
 
-	/*
-	 * This method rotates nodes back to the orientation where optimal was
-	 * achieved.
-	 */
-	private void rotateNodesToOptimal(int minimalPotentialIndex)
-	{
-		int noOfNodesOnCircle = this.getOnCircleNodes().size();
+		Set<CiSENode> outNodes = this.getOutNodes();
+		CiSENode[] outNodesInOrder = new CiSENode[outNodes.size()];
+		int[] outNodePositions = new int[outNodes.size()];
+		int noOfOutNodes = 0;
 
-		if (minimalPotentialIndex == 0)
-		// Current orientation is optimal
+		for (j = 0; j < noOfNodesOnCircle; j++)
 		{
-			return;
+			if (outNodes.contains(inOrder[j]))
+			{
+				outNodesInOrder[noOfOutNodes] = inOrder[j];
+				outNodePositions[noOfOutNodes] = j;
+				noOfOutNodes++;
+			}
 		}
 
-		// Rotate each node to increase its index by the calculated amount
+		// For each rotation, the node moved to position 0 has angle 0, and
+		// others are placed w.r.t. their angular offsets from that node
 
-		Iterator iterator = this.getOnCircleNodes().iterator();
-		CiSENode node;
-		CiSEOnCircleNodeExt nodeExt;
+		double[] potentialEnergies = new double[noOfNodesOnCircle];
+		int firstPosition;
+		double angle;
 
-		while (iterator.hasNext())
+		for (i = 0; i < noOfNodesOnCircle; i++)
 		{
-			node = (CiSENode)iterator.next();
-			nodeExt = node.getOnCircleNodeExt();
+			firstPosition = (noOfNodesOnCircle - i) % noOfNodesOnCircle;
+
+			for (int k = 0; k < noOfOutNodes; k++)
+			{
+				j = outNodePositions[k];
+				angle = offsets[j] - offsets[firstPosition];
 
-			nodeExt.setIndex((nodeExt.getIndex() + minimalPotentialIndex) %
-				noOfNodesOnCircle);
+				if (j < firstPosition)
+				{
+					angle += offsets[noOfNodesOnCircle];
+				}
+
+				outNodesInOrder[k].setCenter(
+					parentCenterX + radius * Math.cos(angle),
+					parentCenterY + radius * Math.sin(angle));
+			}
+
+			potentialEnergies[i] = this.calcPotentialEnergy();
 		}
 
-		this.reCalculateNodeAnglesAndPositions();
+		return potentialEnergies;
 	}
 
 	/**
@@ -61,6 +61,10 @@ public class SixCircularLayout extends CiSELayout
 		{
 			this.repulsionConstant *= 3.5;
 		}
+
+		// forces are calculated on node objects (see calcSpringForces and
+		// calcRepulsionForces)
+		this.useCompactGraph = false;
 	}
 // -----------------------------------------------------------------------------
 // Section: Layout related
@@ -32,4 +32,15 @@ public class SpringConstants
 				{0.0D, 1.0D, 2.0D, 3.0D, 4.0D, 5.0D};
 
 		public static final double DEFAULT_ANTICOLLISION_SPRING_STRENGTH = 100D;
+
+		/**
+		 * Number of threads calculating node distances (0 means as many as the
+		 * available processors)
+		 */
+		public static final int DEFAULT_NO_OF_DISTANCE_THREADS = 0;
+
+		/**
+		 * Minimum number of nodes per thread calculating node distances
+		 */
+		public static final int MIN_NODES_PER_DISTANCE_THREAD = 500;
 }
@@ -0,0 +1,164 @@
+package org.ivis.layout.spring;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps graph theoretic distances between all pairs of nodes in a
+ * compact form. Since distances are symmetric, only the upper triangle is
+ * stored: row i holds the distances from node i to nodes i+1, ..., n-1.
+ * Entries are bytes or shorts rather than ints whenever the maximum distance
+ * to be stored allows it, the largest value of the entry type standing for
+ * infinity (i.e. no path between the nodes).
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class SpringDistanceMatrix
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Number of nodes
+	 */
+	private int noOfNodes;
+
+	/*
+	 * Rows of the upper triangle; only one of these is used depending on the
+	 * maximum distance
+	 */
+	private byte[][] byteRows;
+	private short[][] shortRows;
+	private int[][] intRows;
+
+// -----------------------------------------------------------------------------
+// Section: Constructors and initialization
+// -----------------------------------------------------------------------------
+	/**
+	 * Constructor: creates a matrix for the input number of nodes, able to
+	 * keep finite distances up to the input maximum. All distances are
+	 * initially infinite.
+	 */
+	public SpringDistanceMatrix(int noOfNodes, int maxDistance)
+	{
+		this.noOfNodes = noOfNodes;
+
+		if (maxDistance < 0xFF)
+		{
+			this.byteRows = new byte[noOfNodes][];
+
+			for (int i = 0; i < noOfNodes; i++)
+			{
+				this.byteRows[i] = new byte[noOfNodes - i - 1];
+				Arrays.fill(this.byteRows[i], (byte) 0xFF);
+			}
+		}
+		else if (maxDistance < 0xFFFF)
+		{
+			this.shortRows = new short[noOfNodes][];
+
+			for (int i = 0; i < noOfNodes; i++)
+			{
+				this.shortRows[i] = new short[noOfNodes - i - 1];
+				Arrays.fill(this.shortRows[i], (short) 0xFFFF);
+			}
+		}
+		else
+		{
+			this.intRows = new int[noOfNodes][];
+
+			for (int i = 0; i < noOfNodes; i++)
+			{
+				this.intRows[i] = new int[noOfNodes - i - 1];
+				Arrays.fill(this.intRows[i],
+					SpringNodeDistances.INFINITY);
+			}
+		}
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Accessors
+// -----------------------------------------------------------------------------
+	/**
+	 * This method returns the number of nodes.
+	 */
+	public int getNoOfNodes()
+	{
+		return this.noOfNodes;
+	}
+
+	/**
+	 * This method returns the distance between the nodes with input indices,
+	 * SpringNodeDistances.INFINITY if they are not connected.
+	 */
+	public int getDistance(int i, int j)
+	{
+		if (i == j)
+		{
+			return 0;
+		}
+
+		if (i > j)
+		{
+			int temp = i;
+			i = j;
+			j = temp;
+		}
+
+		int distance;
+
+		if (this.byteRows != null)
+		{
+			distance = this.byteRows[i][j - i - 1] & 0xFF;
+
+			return distance == 0xFF ? SpringNodeDistances.INFINITY : distance;
+		}
+		else if (this.shortRows != null)
+		{
+			distance = this.shortRows[i][j - i - 1] & 0xFFFF;
+
+			return distance == 0xFFFF ? SpringNodeDistances.INFINITY : distance;
+		}
+
+		return this.intRows[i][j - i - 1];
+	}
+
+	/**
+	 * This method sets row i of this matrix from the input array of distances
+	 * from node i to all nodes; only distances to nodes with greater indices
+	 * are used. Different rows may be set concurrently.
+	 */
+	public void setRow(int i, int[] distances)
+	{
+		int j;
+
+		if (this.byteRows != null)
+		{
+			byte[] row = this.byteRows[i];
+
+			for (j = i + 1; j < this.noOfNodes; j++)
+			{
+				if (distances[j] != SpringNodeDistances.INFINITY)
+				{
+					row[j - i - 1] = (byte) distances[j];
+				}
+			}
+		}
+		else if (this.shortRows != null)
+		{
+			short[] row = this.shortRows[i];
+
+			for (j = i + 1; j < this.noOfNodes; j++)
+			{
+				if (distances[j] != SpringNodeDistances.INFINITY)
+				{
+					row[j - i - 1] = (short) distances[j];
+				}
+			}
+		}
+		else
+		{
+			System.arraycopy(distances, i + 1,
+				this.intRows[i], 0, this.noOfNodes - i - 1);
+		}
+	}
+}
@@ -7,7 +7,6 @@ import org.ivis.layout.LNode;
 import org.ivis.layout.Layout;
 import org.ivis.layout.LayoutConstants;
 import org.ivis.layout.LayoutOptionsPack;
-import org.ivis.util.PointD;
 
 /**
  * This class lays out the given Chisio graph model using a Spring Embedder
@@ -36,12 +35,26 @@ public class SpringLayout extends Layout
 
 	protected double anticollisionSpringStrength;
 
-	protected double nodeDistanceSpringStrengths[][];
-
-	protected double nodeDistanceSpringRestLengths[][];
+	/*
+	 * Graph theoretic distances between nodes; null if node distance springs
+	 * are not used, in which case their strengths and rest lengths are zero
+	 */
+	protected SpringDistanceMatrix nodeDistances;
 
 	List nodeList;
 
+	/*
+	 * Nodes being laid out, their positions and radii, and partial
+	 * derivatives of the energy with respect to their positions, all indexed
+	 * by node index (see SpringNode.index)
+	 */
+	protected SpringNode nodes[];
+
+	protected double nodeXs[], nodeYs[], nodeRadii[];
+
+	protected double partialXs[], partialYs[],
+		partialXXs[], partialYYs[], partialXYs[], euclideanDistances[];
+
 	public double totalEnergy = 0.0D;
 
 	/**
@@ -76,47 +89,49 @@ public class SpringLayout extends Layout
 			(((double) nodeCount * averageIterationsPerNode)
 				/ (double) numLayoutPasses);
 
-		List partials_list = new ArrayList();
-		SpringNode furthest_node_partials = null;
+		initNodeArrays();
+
+		int furthest_node = -1;
 
 		for (layoutPass = 0; layoutPass < numLayoutPasses; layoutPass++)
 		{
 			setupNodeDistanceSprings();
 			totalEnergy = 0.0D;
-			partials_list.clear();
-			Iterator node_views_iterator = nodeList.iterator();
 
-			do
+			for (int node_i = 0; node_i < nodeCount; node_i++)
 			{
-				if (!node_views_iterator.hasNext())
-				{
-					break;
-				}
+				calculatePartials(node_i, false, false);
 
-				SpringNode partials = (SpringNode) node_views_iterator.next();
-				calculatePartials(partials, null, false);
-				partials_list.add(partials);
-
-				if (furthest_node_partials == null ||
-					partials.euclideanDistance >
-						furthest_node_partials.euclideanDistance)
+				if (furthest_node == -1 ||
+					euclideanDistances[node_i] >
+						euclideanDistances[furthest_node])
 				{
-					furthest_node_partials = partials;
+					furthest_node = node_i;
 				}
 			}
-			while (true);
 
 			for (int iterations_i = 0;
 				iterations_i < num_iterations &&
-					furthest_node_partials.euclideanDistance >=
+					euclideanDistances[furthest_node] >=
 						euclidean_distance_threshold;
 				iterations_i++)
 			{
-				furthest_node_partials = moveNode(furthest_node_partials,
-					partials_list);
+				furthest_node = moveNode(furthest_node);
 			}
 		}
 
+		// keep final partials on nodes as well
+		for (int node_i = 0; node_i < nodeCount; node_i++)
+		{
+			SpringNode node = nodes[node_i];
+			node.x = partialXs[node_i];
+			node.y = partialYs[node_i];
+			node.xx = partialXXs[node_i];
+			node.yy = partialYYs[node_i];
+			node.xy = partialXYs[node_i];
+			node.euclideanDistance = euclideanDistances[node_i];
+		}
+
 		// Resize compounds according to their children
 		List graphs = this.graphManager.getGraphs();
 
@@ -127,6 +142,40 @@ public class SpringLayout extends Layout
 		}
 	}
 
+	/**
+	 * This method indexes the nodes to be laid out, and creates arrays of
+	 * their positions and partial derivatives.
+	 */
+	protected void initNodeArrays()
+	{
+		nodes = new SpringNode[nodeCount];
+		nodeXs = new double[nodeCount];
+		nodeYs = new double[nodeCount];
+		nodeRadii = new double[nodeCount];
+		partialXs = new double[nodeCount];
+		partialYs = new double[nodeCount];
+		partialXXs = new double[nodeCount];
+		partialYYs = new double[nodeCount];
+		partialXYs = new double[nodeCount];
+		euclideanDistances = new double[nodeCount];
+
+		for (int node_i = 0; node_i < nodeCount; node_i++)
+		{
+			SpringNode node = (SpringNode) nodeList.get(node_i);
+			node.index = node_i;
+			nodes[node_i] = node;
+			nodeXs[node_i] = node.getRect().x;
+			nodeYs[node_i] = node.getRect().y;
+			nodeRadii[node_i] = node.getWidth();
+		}
+	}
+
+	/**
+	 * This method calculates graph theoretic distances between nodes, from
+	 * which node distance spring strengths and rest lengths are derived on
+	 * the fly (see calculatePartials). Distances don't change during layout,
+	 * so this is done once, in the first pass.
+	 */
 	protected void setupNodeDistanceSprings()
 	{
 		if (layoutPass != 0)
@@ -134,8 +183,7 @@ public class SpringLayout extends Layout
 			return;
 		}
 
-		nodeDistanceSpringRestLengths = new double[nodeCount][nodeCount];
-		nodeDistanceSpringStrengths = new double[nodeCount][nodeCount];
+		nodeDistances = null;
 
 		if (nodeDistanceSpringScalars[layoutPass] == 0.0D)
 		{
@@ -143,496 +191,253 @@ public class SpringLayout extends Layout
 		}
 
 		SpringNodeDistances ind = new SpringNodeDistances(nodeList);
-		int node_distances[][] = ind.calculate();
-
-		if (node_distances == null)
-		{
-			return;
-		}
-
-		double node_distance_strength_constant = nodeDistanceStrengthConstant;
-		double node_distance_rest_length_constant =
-			nodeDistanceRestLengthConstant;
-
-		for (int node_i = 0; node_i < nodeCount; node_i++)
-		{
-			for (int node_j = node_i + 1; node_j < nodeCount; node_j++)
-			{
-				if (node_distances[node_i][node_j] ==
-					SpringNodeDistances.INFINITY)
-				{
-					nodeDistanceSpringRestLengths[node_i][node_j] =
-						disconnectedNodeDistanceSpringRestLength;
-				}
-				else
-				{
-					nodeDistanceSpringRestLengths[node_i][node_j] =
-						node_distance_rest_length_constant
-							* (double) node_distances[node_i][node_j];
-				}
-
-				nodeDistanceSpringRestLengths[node_j][node_i] =
-					nodeDistanceSpringRestLengths[node_i][node_j];
-
-				if (node_distances[node_i][node_j] ==
-					SpringNodeDistances.INFINITY)
-				{
-					nodeDistanceSpringStrengths[node_i][node_j]
-						= disconnectedNodeDistanceSpringStrength;
-				}
-				else
-				{
-					nodeDistanceSpringStrengths[node_i][node_j] =
-						node_distance_strength_constant /
-							(double) (node_distances[node_i][node_j] *
-								node_distances[node_i][node_j]);
-				}
-
-				nodeDistanceSpringStrengths[node_j][node_i] =
-					nodeDistanceSpringStrengths[node_i][node_j];
-			}
-		}
+		ind.setNoOfThreads(SpringConstants.DEFAULT_NO_OF_DISTANCE_THREADS);
+		nodeDistances = ind.calculateCompact();
 	}
 
-	protected SpringNode calculatePartials(SpringNode partials,
-		List partials_list,
+	/**
+	 * This method calculates the partial derivatives of the energy with
+	 * respect to the position of the node with input index, from scratch.
+	 * If others are to be updated as well, the contribution of this node to
+	 * the partial derivatives of every other node is added (or subtracted, if
+	 * reversed, in which case partials of this node are simply cleared). The
+	 * index of the node with the largest partials is returned.
+	 */
+	protected int calculatePartials(int node,
+		boolean updateOthers,
 		boolean reversed)
 	{
-		partials.reset();
-		LNode node = partials;
-		int node_view_index = nodeList.indexOf(node);
-		double node_view_radius = node.getWidth();
-		double node_view_x = node.getRect().x;
-		double node_view_y = node.getRect().y;
-		SpringNode other_node_partials = null;
-		SpringNode furthest_partials = null;
-		Iterator iterator;
-
-		if (partials_list == null)
+		double node_distance_spring_scalar =
+			nodeDistanceSpringScalars[layoutPass];
+		double anticollision_spring_scalar =
+			anticollisionSpringScalars[layoutPass];
+		double node_view_radius = nodeRadii[node];
+		double node_view_x = nodeXs[node];
+		double node_view_y = nodeYs[node];
+		double direction = reversed ? -1.0D : 1.0D;
+		double partial_x = 0.0D;
+		double partial_y = 0.0D;
+		double partial_xx = 0.0D;
+		double partial_yy = 0.0D;
+		double partial_xy = 0.0D;
+		int furthest_node = -1;
+
+		for (int other_node = 0; other_node < nodeCount; other_node++)
 		{
-			iterator = nodeList.iterator();
-		}
-		else
-		{
-			iterator = partials_list.iterator();
-		}
-
-		do
-		{
-			if (!iterator.hasNext())
+			if (other_node == node)
 			{
-				break;
+				continue;
 			}
 
-			LNode other_node;
+			double strength = 0.0D;
+			double rest_length = 0.0D;
 
-			if (partials_list == null)
-			{
-				other_node = (LNode) iterator.next();
-			}
-			else
+			if (nodeDistances != null)
 			{
-				other_node_partials = (SpringNode) iterator.next();
-				other_node = other_node_partials;
-			}
+				int node_distance = nodeDistances.getDistance(node, other_node);
 
-			if (nodeList.indexOf(node) != nodeList.indexOf(other_node))
-			{
-				int other_node_view_index = nodeList.indexOf(other_node);
-				double other_node_view_radius = other_node.getWidth();
-				double delta_x = node_view_x - other_node.getRect().x;
-				double delta_y = node_view_y - other_node.getRect().y;
-				double euclidean_distance =
-					Math.sqrt(delta_x * delta_x + delta_y * delta_y);
-				double euclidean_distance_cubed =
-					Math.pow(euclidean_distance, 3D);
-				double distance_from_touching = euclidean_distance -
-					(node_view_radius + other_node_view_radius);
-				double incremental_change =
-					nodeDistanceSpringScalars[layoutPass] *
-						(nodeDistanceSpringStrengths[node_view_index]
-							[other_node_view_index]	*
-							(delta_x - (
-							nodeDistanceSpringRestLengths[node_view_index]
-								[other_node_view_index]	* delta_x) /
-								euclidean_distance));
-
-				if (!reversed)
-				{
-					partials.x += incremental_change;
-				}
-
-				if (other_node_partials != null)
+				if (node_distance == SpringNodeDistances.INFINITY)
 				{
-					incremental_change = nodeDistanceSpringScalars[layoutPass]
-						* (
-						nodeDistanceSpringStrengths[other_node_view_index]
-							[node_view_index]
-							* (-delta_x - (
-							nodeDistanceSpringRestLengths[other_node_view_index]
-								[node_view_index]
-								* -delta_x) / euclidean_distance));
-
-					if (reversed)
-					{
-						other_node_partials.x -= incremental_change;
-					}
-					else
-					{
-						other_node_partials.x += incremental_change;
-					}
-				}
-
-				if (distance_from_touching < 0.0D)
-				{
-					incremental_change = anticollisionSpringScalars[layoutPass]
-						* (anticollisionSpringStrength * (delta_x -
-						((node_view_radius + other_node_view_radius) * delta_x)
-							/ euclidean_distance));
-
-					if (!reversed)
-					{
-						partials.x += incremental_change;
-					}
-
-					if (other_node_partials != null)
-					{
-						incremental_change =
-							anticollisionSpringScalars[layoutPass] * (
-								anticollisionSpringStrength * (-delta_x - (
-									(node_view_radius + other_node_view_radius)
-										* -delta_x) / euclidean_distance));
-
-						if (reversed)
-						{
-							other_node_partials.x -= incremental_change;
-						}
-						else
-						{
-							other_node_partials.x += incremental_change;
-						}
-					}
-				}
-
-				incremental_change = nodeDistanceSpringScalars[layoutPass] * (
-					nodeDistanceSpringStrengths[node_view_index]
-						[other_node_view_index]
-						* (delta_y - (
-						nodeDistanceSpringRestLengths[node_view_index]
-							[other_node_view_index]
-							* delta_y) / euclidean_distance));
-
-				if (!reversed)
-				{
-					partials.y += incremental_change;
-				}
-
-				if (other_node_partials != null)
-				{
-					incremental_change = nodeDistanceSpringScalars[layoutPass]
-						* (
-						nodeDistanceSpringStrengths[other_node_view_index]
-							[node_view_index]
-							* (-delta_y - (
-							nodeDistanceSpringRestLengths[other_node_view_index]
-								[node_view_index]
-								* -delta_y) / euclidean_distance));
-
-					if (reversed)
-					{
-						other_node_partials.y -= incremental_change;
-					}
-					else
-					{
-						other_node_partials.y += incremental_change;
-					}
-				}
-
-				if (distance_from_touching < 0.0D)
-				{
-					incremental_change = anticollisionSpringScalars[layoutPass]
-						* (anticollisionSpringStrength * (delta_y -
-						((node_view_radius + other_node_view_radius) * delta_y)
-							/ euclidean_distance));
-
-					if (!reversed)
-					{
-						partials.y += incremental_change;
-					}
-
-					if (other_node_partials != null)
-					{
-						incremental_change =
-							anticollisionSpringScalars[layoutPass] * (
-								anticollisionSpringStrength * (-delta_y - (
-									(node_view_radius + other_node_view_radius)
-										* -delta_y) / euclidean_distance));
-
-						if (reversed)
-						{
-							other_node_partials.y -= incremental_change;
-						}
-						else
-						{
-							other_node_partials.y += incremental_change;
-						}
-					}
-				}
-
-				incremental_change = nodeDistanceSpringScalars[layoutPass] * (
-					nodeDistanceSpringStrengths[node_view_index]
-						[other_node_view_index]
-						* (1.0D - (
-						nodeDistanceSpringRestLengths[node_view_index]
-							[other_node_view_index]
-							* (delta_y * delta_y)) / euclidean_distance_cubed));
-
-				if (reversed)
-				{
-					if (other_node_partials != null)
-					{
-						other_node_partials.xx -= incremental_change;
-					}
+					strength = disconnectedNodeDistanceSpringStrength;
+					rest_length = disconnectedNodeDistanceSpringRestLength;
 				}
 				else
 				{
-					partials.xx += incremental_change;
-
-					if (other_node_partials != null)
-					{
-						other_node_partials.xx += incremental_change;
-					}
-				}
-
-				if (distance_from_touching < 0.0D)
-				{
-					incremental_change = anticollisionSpringScalars[layoutPass]
-						* (anticollisionSpringStrength * (1.0D -
-						((node_view_radius + other_node_view_radius) * (delta_y
-							* delta_y)) / euclidean_distance_cubed));
-
-					if (reversed)
-					{
-						if (other_node_partials != null)
-						{
-							other_node_partials.xx -= incremental_change;
-						}
-					}
-					else
-					{
-						partials.xx += incremental_change;
-
-						if (other_node_partials != null)
-						{
-							other_node_partials.xx += incremental_change;
-						}
-					}
+					strength = nodeDistanceStrengthConstant /
+						(double) (node_distance * node_distance);
+					rest_length = nodeDistanceRestLengthConstant *
+						(double) node_distance;
 				}
+			}
 
-				incremental_change = nodeDistanceSpringScalars[layoutPass] * (
-					nodeDistanceSpringStrengths[node_view_index]
-						[other_node_view_index]
-						* (1.0D - (
-						nodeDistanceSpringRestLengths[node_view_index]
-							[other_node_view_index]
-							* (delta_x * delta_x)) / euclidean_distance_cubed));
-
-				if (reversed)
-				{
-					if (other_node_partials != null)
-					{
-						other_node_partials.yy -= incremental_change;
-					}
-				}
-				else
-				{
-					partials.yy += incremental_change;
+			double other_node_view_radius = nodeRadii[other_node];
+			double delta_x = node_view_x - nodeXs[other_node];
+			double delta_y = node_view_y - nodeYs[other_node];
+			double euclidean_distance =
+				Math.sqrt(delta_x * delta_x + delta_y * delta_y);
+			double euclidean_distance_cubed =
+				Math.pow(euclidean_distance, 3D);
+			double distance_from_touching = euclidean_distance -
+				(node_view_radius + other_node_view_radius);
+			boolean colliding = distance_from_touching < 0.0D;
+			double collision_length =
+				node_view_radius + other_node_view_radius;
+
+			// Each term is accumulated for this node, and with the same value
+			// (negated for first order partials) for the other node
+
+			double change_x = node_distance_spring_scalar * (strength *
+				(delta_x - (rest_length * delta_x) / euclidean_distance));
+			double change_y = node_distance_spring_scalar * (strength *
+				(delta_y - (rest_length * delta_y) / euclidean_distance));
+			double change_xx = node_distance_spring_scalar * (strength *
+				(1.0D - (rest_length * (delta_y * delta_y)) /
+					euclidean_distance_cubed));
+			double change_yy = node_distance_spring_scalar * (strength *
+				(1.0D - (rest_length * (delta_x * delta_x)) /
+					euclidean_distance_cubed));
+			double change_xy = node_distance_spring_scalar * (strength *
+				((rest_length * (delta_x * delta_y)) /
+					euclidean_distance_cubed));
+			double distance_from_rest = euclidean_distance - rest_length;
+			double change_energy = node_distance_spring_scalar * ((strength *
+				(distance_from_rest * distance_from_rest)) / 2D);
+
+			double collision_x = 0.0D;
+			double collision_y = 0.0D;
+			double collision_xx = 0.0D;
+			double collision_yy = 0.0D;
+			double collision_xy = 0.0D;
+			double collision_energy = 0.0D;
+
+			if (colliding)
+			{
+				collision_x = anticollision_spring_scalar *
+					(anticollisionSpringStrength * (delta_x -
+						(collision_length * delta_x) / euclidean_distance));
+				collision_y = anticollision_spring_scalar *
+					(anticollisionSpringStrength * (delta_y -
+						(collision_length * delta_y) / euclidean_distance));
+				collision_xx = anticollision_spring_scalar *
+					(anticollisionSpringStrength * (1.0D -
+						(collision_length * (delta_y * delta_y)) /
+							euclidean_distance_cubed));
+				collision_yy = anticollision_spring_scalar *
+					(anticollisionSpringStrength * (1.0D -
+						(collision_length * (delta_x * delta_x)) /
+							euclidean_distance_cubed));
+				collision_xy = anticollision_spring_scalar *
+					(anticollisionSpringStrength * (
+						(collision_length * (delta_x * delta_y)) /
+							euclidean_distance_cubed));
+				collision_energy = anticollision_spring_scalar *
+					((anticollisionSpringStrength * (distance_from_touching
+						* distance_from_touching)) / 2D);
+			}
 
-					if (other_node_partials != null)
-					{
-						other_node_partials.yy += incremental_change;
-					}
-				}
+			if (!reversed)
+			{
+				partial_x += change_x;
+				partial_y += change_y;
+				partial_xx += change_xx;
+				partial_yy += change_yy;
+				partial_xy += change_xy;
 
-				if (distance_from_touching < 0.0D)
-				{
-					incremental_change = anticollisionSpringScalars[layoutPass]
-						* (anticollisionSpringStrength * (1.0D -
-						((node_view_radius + other_node_view_radius) * (delta_x
-							* delta_x)) / euclidean_distance_cubed));
-
-					if (reversed)
-					{
-						if (other_node_partials != null)
-						{
-							other_node_partials.yy -= incremental_change;
-						}
-					}
-					else
-					{
-						partials.yy += incremental_change;
-
-						if (other_node_partials != null)
-						{
-							other_node_partials.yy += incremental_change;
-						}
-					}
-				}
-				incremental_change = nodeDistanceSpringScalars[layoutPass] * (
-					nodeDistanceSpringStrengths[node_view_index]
-						[other_node_view_index]
-						* ((
-						nodeDistanceSpringRestLengths[node_view_index]
-							[other_node_view_index]
-							* (delta_x * delta_y)) / euclidean_distance_cubed));
-
-				if (reversed)
+				if (colliding)
 				{
-					if (other_node_partials != null)
-					{
-						other_node_partials.xy -= incremental_change;
-					}
+					partial_x += collision_x;
+					partial_y += collision_y;
+					partial_xx += collision_xx;
+					partial_yy += collision_yy;
+					partial_xy += collision_xy;
 				}
-				else
-				{
-					partials.xy += incremental_change;
+			}
 
-					if (other_node_partials != null)
-					{
-						other_node_partials.xy += incremental_change;
-					}
-				}
+			this.addEnergy(change_energy, reversed, updateOthers);
 
-				if (distance_from_touching < 0.0D)
-				{
-					incremental_change = anticollisionSpringScalars[layoutPass]
-						* (anticollisionSpringStrength * (
-						((node_view_radius + other_node_view_radius) * (delta_x
-							* delta_y)) / euclidean_distance_cubed));
-
-					if (reversed)
-					{
-						if (other_node_partials != null)
-						{
-							other_node_partials.xy -= incremental_change;
-						}
-					}
-					else
-					{
-						partials.xy += incremental_change;
-
-						if (other_node_partials != null)
-						{
-							other_node_partials.xy += incremental_change;
-						}
-					}
-				}
+			if (colliding)
+			{
+				this.addEnergy(collision_energy, reversed, updateOthers);
+			}
 
-				double distance_from_rest = euclidean_distance
-					- nodeDistanceSpringRestLengths[node_view_index]
-					[other_node_view_index];
-				incremental_change = nodeDistanceSpringScalars[layoutPass] * ((
-					nodeDistanceSpringStrengths[node_view_index]
-						[other_node_view_index]
-						* (distance_from_rest * distance_from_rest)) / 2D);
+			if (!updateOthers)
+			{
+				continue;
+			}
 
-				if (reversed)
-				{
-					if (other_node_partials != null)
-					{
-						totalEnergy -= incremental_change;
-					}
-				}
-				else
-				{
-					totalEnergy += incremental_change;
+			partialXs[other_node] -= direction * change_x;
+			partialYs[other_node] -= direction * change_y;
+			partialXXs[other_node] += direction * change_xx;
+			partialYYs[other_node] += direction * change_yy;
+			partialXYs[other_node] += direction * change_xy;
 
-					if (other_node_partials != null)
-					{
-						totalEnergy += incremental_change;
-					}
-				}
+			if (colliding)
+			{
+				partialXs[other_node] -= direction * collision_x;
+				partialYs[other_node] -= direction * collision_y;
+				partialXXs[other_node] += direction * collision_xx;
+				partialYYs[other_node] += direction * collision_yy;
+				partialXYs[other_node] += direction * collision_xy;
+			}
 
-				if (distance_from_touching < 0.0D)
-				{
-					incremental_change = anticollisionSpringScalars[layoutPass]
-						* ((anticollisionSpringStrength * (
-						distance_from_touching * distance_from_touching)) / 2D);
-
-					if (reversed)
-					{
-						if (other_node_partials != null)
-						{
-							totalEnergy -= incremental_change;
-						}
-					}
-					else
-					{
-						totalEnergy += incremental_change;
-
-						if (other_node_partials != null)
-						{
-							totalEnergy += incremental_change;
-						}
-					}
-				}
+			euclideanDistances[other_node] = Math.sqrt(
+				partialXs[other_node] * partialXs[other_node] +
+					partialYs[other_node] * partialYs[other_node]);
 
-				if (other_node_partials != null)
-				{
-					other_node_partials.euclideanDistance = Math.sqrt(
-						other_node_partials.x * other_node_partials.x
-							+ other_node_partials.y * other_node_partials.y);
-
-					if (furthest_partials == null ||
-						other_node_partials.euclideanDistance >
-							furthest_partials.euclideanDistance)
-					{
-						furthest_partials = other_node_partials;
-					}
-				}
+			if (furthest_node == -1 ||
+				euclideanDistances[other_node] >
+					euclideanDistances[furthest_node])
+			{
+				furthest_node = other_node;
 			}
 		}
-		while (true);
 
-		if (!reversed)
+		partialXs[node] = partial_x;
+		partialYs[node] = partial_y;
+		partialXXs[node] = partial_xx;
+		partialYYs[node] = partial_yy;
+		partialXYs[node] = partial_xy;
+		euclideanDistances[node] = reversed ? 0.0D :
+			Math.sqrt(partial_x * partial_x + partial_y * partial_y);
+
+		if (furthest_node == -1 ||
+			euclideanDistances[node] > euclideanDistances[furthest_node])
 		{
-			partials.euclideanDistance =
-				Math.sqrt(partials.x * partials.x + partials.y * partials.y);
+			furthest_node = node;
 		}
 
-		if (furthest_partials == null ||
-			partials.euclideanDistance > furthest_partials.euclideanDistance)
+		return furthest_node;
+	}
+
+	/*
+	 * This method adds the input energy of a spring between two nodes to
+	 * total energy, once for each node whose partials are being updated.
+	 */
+	private void addEnergy(double energy,
+		boolean reversed,
+		boolean updateOthers)
+	{
+		if (reversed)
 		{
-			furthest_partials = partials;
+			if (updateOthers)
+			{
+				totalEnergy -= energy;
+			}
 		}
+		else
+		{
+			totalEnergy += energy;
 
-		return furthest_partials;
+			if (updateOthers)
+			{
+				totalEnergy += energy;
+			}
+		}
 	}
 
-	protected SpringNode moveNode(SpringNode partials,
-		List partials_list)
+	/**
+	 * This method moves the node with input index by a Newton-Raphson step,
+	 * updating partial derivatives of all nodes incrementally: contribution
+	 * of the node at its old position is taken out first, and then that of
+	 * the new position is put in. The index of the node with the largest
+	 * partials is returned.
+	 */
+	protected int moveNode(int node)
 	{
+		double denomenator = partialXXs[node] * partialYYs[node] -
+			partialXYs[node] * partialXYs[node];
+		double delta_x = (-partialXs[node] * partialYYs[node] -
+			-partialYs[node] * partialXYs[node]) / denomenator;
+		double delta_y = (-partialYs[node] * partialXXs[node] -
+			-partialXs[node] * partialXYs[node]) / denomenator;
 
-		SpringNode starting_partials = new SpringNode(partials);
-		calculatePartials(partials, partials_list, true);
-		simpleMoveNode(starting_partials, partials);
+		calculatePartials(node, true, true);
 
-		return calculatePartials(partials,
-			partials_list,
-			false);
-	}
+		nodeXs[node] += delta_x;
+		nodeYs[node] += delta_y;
+		nodes[node].setLocation(nodeXs[node], nodeYs[node]);
 
-	protected void simpleMoveNode(SpringNode partialsInfo,
-		SpringNode partials)
-	{
-		double denomenator = partialsInfo.xx * partialsInfo.yy -
-			partialsInfo.xy * partialsInfo.xy;
-		double delta_x = (-partialsInfo.x * partialsInfo.yy	- -partialsInfo.y *
-			partialsInfo.xy) / denomenator;
-		double delta_y = (-partialsInfo.y * partialsInfo.xx	- -partialsInfo.x *
-			partialsInfo.xy) / denomenator;
-		PointD p = partials.getLocation();
-		partials.setLocation(p.x + delta_x, p.y + delta_y);
+		return calculatePartials(node, true, false);
 	}
 
 	/**
@@ -19,6 +19,11 @@ public class SpringNode extends LNode
 
 	public double xy, euclideanDistance;
 
+	/**
+	 * Index of this node among the nodes laid out by Spring Layout
+	 */
+	public int index = -1;
+
 	public void reset()
 	{
 		x = 0.0D;
@@ -1,12 +1,19 @@
 package org.ivis.layout.spring;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.ivis.layout.LNode;
 
 /**
- * This class is used in Spring Layout to calculate the euclidean distances
- * between nodes.
+ * This class is used in Spring Layout to calculate the graph theoretic
+ * distances between nodes, by a breadth-first search from each node over the
+ * adjacency lists of nodes (kept as index arrays). Searches from different
+ * sources are independent, and may be run by a number of threads.
  *
  * @author Class is taken from GINY library
  * @author Cihan Kucukkececi (modified by)
@@ -19,12 +26,29 @@ public class SpringNodeDistances
 
 	protected int distances[][];
 
-	protected boolean directed, done, canceled;
+	protected boolean directed, done;
+
+	protected volatile boolean canceled;
 
 	protected int currentProgress, lengthOfTask;
 
 	protected String statusMessage;
 
+	/*
+	 * Number of threads searching from different sources
+	 */
+	protected int noOfThreads = 1;
+
+	/*
+	 * Nodes in the list, and their adjacency lists: neighbors of node i are
+	 * at indices [adjacencyStart[i], adjacencyStart[i+1]) of adjacentNodes
+	 */
+	private Object nodes[];
+
+	private int adjacencyStart[];
+
+	private int adjacentNodes[];
+
 	/**
 	 * @deprecated Method SpringNodeDistances is deprecated
 	 */
@@ -97,187 +121,362 @@ public class SpringNodeDistances
 		return canceled;
 	}
 
+	/**
+	 * This method sets the number of threads to be used for the calculation;
+	 * 0 means as many as the available processors. Small graphs are always
+	 * handled by the calling thread.
+	 */
+	public void setNoOfThreads(int noOfThreads)
+	{
+		if (noOfThreads <= 0)
+		{
+			noOfThreads = Runtime.getRuntime().availableProcessors();
+		}
+
+		this.noOfThreads = noOfThreads;
+	}
+
+	/**
+	 * This method calculates the distances between all pairs of nodes into a
+	 * dense matrix, indexed by the positions of nodes in the input list. It
+	 * returns null if the calculation is canceled or the node list is
+	 * invalid.
+	 */
 	public int[][] calculate()
 	{
-		currentProgress = 0;
-		lengthOfTask = distances.length;
-		done = false;
-		canceled = false;
-		LNode nodes[] = new LNode[nodesList.size()];
-		Integer integers[] = new Integer[nodes.length];
-
-		for (int i = 0; i < nodes.length; i++)
+		if (!this.prepare())
 		{
-			LNode from_node = (LNode) nodesList.get(i);
+			return null;
+		}
+
+		final int noOfNodes = this.nodesList.size();
 
-			if (from_node == null)
+		this.runSearches(new Search()
+		{
+			public void run(int source, int[] distance, int[] queue)
 			{
-				continue;
+				if (distances[source] == null)
+				{
+					distances[source] = new int[noOfNodes];
+				}
+
+				Arrays.fill(distances[source], INFINITY);
+				search(source, distances[source], queue);
 			}
+		});
 
-			int index = nodesList.indexOf(from_node);
+		return this.finish() ? distances : null;
+	}
 
-			if (index < 0 || index >= nodes.length)
+	/**
+	 * This method calculates the distances between all pairs of nodes into a
+	 * compact (upper triangular, byte or short if possible) matrix, indexed
+	 * by the positions of nodes in the input list. It returns null if the
+	 * calculation is canceled or the node list is invalid.
+	 */
+	public SpringDistanceMatrix calculateCompact()
+	{
+		if (!this.prepare())
+		{
+			return null;
+		}
+
+		final SpringDistanceMatrix matrix = new SpringDistanceMatrix(
+			this.nodesList.size(), this.calcMaxDistance());
+
+		this.runSearches(new Search()
+		{
+			public void run(int source, int[] distance, int[] queue)
 			{
-				System.err.println("WARNING: GraphLNode \"" + from_node
-					+ "\" has an index value that is out of range: " + index
-					+ ".  Graph indices should be maintained such "
-					+ "that no index is unused.");
-				return null;
+				Arrays.fill(distance, INFINITY);
+				search(source, distance, queue);
+				matrix.setRow(source, distance);
 			}
+		});
 
-			if (nodes[index] != null)
+		return this.finish() ? matrix : null;
+	}
+
+	public int[][] getDistances()
+	{
+		return distances;
+	}
+
+	/*
+	 * This method resets the progress of the calculation and builds adjacency
+	 * lists of nodes. It returns false if the node list is invalid, i.e. it
+	 * contains a node more than once.
+	 */
+	private boolean prepare()
+	{
+		int noOfNodes = this.nodesList.size();
+		Map<Object, Integer> indices = new HashMap<Object, Integer>();
+		List<int[]> neighborLists = new ArrayList<int[]>(noOfNodes);
+		LNode node;
+		Integer index;
+		int i;
+
+		this.currentProgress = 0;
+		this.lengthOfTask = noOfNodes;
+		this.done = false;
+		this.canceled = false;
+		this.nodes = this.nodesList.toArray();
+
+		for (i = 0; i < noOfNodes; i++)
+		{
+			node = (LNode) this.nodes[i];
+
+			if (node == null)
 			{
-				System.err.println("WARNING: GraphLNode \"" + from_node
-					+ "\" has an index value ( " + index
-					+ " ) that is the same as "
-					+ "that of another GraphLNode ( \"" + nodes[index]
-					+ "\" ).  Graph indices should be maintained such "
-					+ "that indices are unique.");
-				return null;
+				continue;
 			}
 
-			nodes[index] = from_node;
-			Integer in = new Integer(index);
-			integers[index] = in;
+			index = indices.put(node, i);
+
+			if (index != null)
+			{
+				System.err.println("WARNING: GraphLNode \"" + node
+					+ "\" appears more than once in the node list, at "
+					+ "positions " + index + " and " + i
+					+ ".  Nodes should be listed only once.");
+				return false;
+			}
 		}
 
-		LinkedList queue = new LinkedList();
-		boolean completed_nodes[] = new boolean[nodes.length];
+		// neighbors not in the node list are ignored
+
+		this.adjacencyStart = new int[noOfNodes + 1];
 
-		for (int from_node_index = 0; from_node_index < nodes.length;
-			 from_node_index++)
+		for (i = 0; i < noOfNodes; i++)
 		{
-			if (canceled)
+			node = (LNode) this.nodes[i];
+			int[] neighbors = new int[0];
+
+			if (node != null)
 			{
-				distances = null;
-				return distances;
+				Set neighborSet = node.getNeighborsList();
+				neighbors = new int[neighborSet.size()];
+				int count = 0;
+
+				for (Object obj : neighborSet)
+				{
+					index = indices.get(obj);
+
+					if (index != null)
+					{
+						neighbors[count++] = index;
+					}
+				}
+
+				neighbors = Arrays.copyOf(neighbors, count);
 			}
 
-			LNode from_node = nodes[from_node_index];
+			neighborLists.add(neighbors);
+			this.adjacencyStart[i + 1] = this.adjacencyStart[i] +
+				neighbors.length;
+		}
+
+		this.adjacentNodes = new int[this.adjacencyStart[noOfNodes]];
+
+		for (i = 0; i < noOfNodes; i++)
+		{
+			System.arraycopy(neighborLists.get(i), 0,
+				this.adjacentNodes, this.adjacencyStart[i],
+				neighborLists.get(i).length);
+		}
+
+		return true;
+	}
+
+	/*
+	 * This method marks the calculation as done unless it was canceled, in
+	 * which case it returns false.
+	 */
+	private boolean finish()
+	{
+		this.nodes = null;
+		this.adjacencyStart = null;
+		this.adjacentNodes = null;
 
-			if (from_node == null)
+		if (this.canceled)
+		{
+			this.distances = null;
+			return false;
+		}
+
+		this.done = true;
+		this.currentProgress = this.lengthOfTask;
+
+		return true;
+	}
+
+	/*
+	 * This method searches the graph breadth-first from the input source,
+	 * setting the distances of reached nodes in the input array, which should
+	 * initially be INFINITY for all nodes. It returns the number of reached
+	 * nodes, which are left in the input queue in the order they are reached.
+	 * Nothing is reached from a null entry of the node list.
+	 */
+	private int search(int source, int[] distance, int[] queue)
+	{
+		int head = 0;
+		int tail = 0;
+		int node;
+		int nextDistance;
+		int neighbor;
+
+		if (this.nodes[source] == null)
+		{
+			return 0;
+		}
+
+		distance[source] = 0;
+		queue[tail++] = source;
+
+		while (head < tail)
+		{
+			node = queue[head++];
+			nextDistance = distance[node] + 1;
+
+			for (int k = this.adjacencyStart[node];
+				k < this.adjacencyStart[node + 1];
+				k++)
 			{
-				if (distances[from_node_index] == null)
+				neighbor = this.adjacentNodes[k];
+
+				if (distance[neighbor] == INFINITY)
 				{
-					distances[from_node_index] = new int[nodes.length];
+					distance[neighbor] = nextDistance;
+					queue[tail++] = neighbor;
 				}
+			}
+		}
+
+		return tail;
+	}
+
+	/*
+	 * This method returns an upper bound of the largest finite distance
+	 * between two nodes: twice the largest eccentricity of an arbitrary node
+	 * in each connected component.
+	 */
+	private int calcMaxDistance()
+	{
+		int noOfNodes = this.nodesList.size();
+		int[] distance = new int[noOfNodes];
+		int[] queue = new int[noOfNodes];
+		boolean[] reached = new boolean[noOfNodes];
+		int maxDistance = 0;
+		int noOfReached;
 
-				Arrays.fill(distances[from_node_index], INFINITY);
+		Arrays.fill(distance, INFINITY);
+
+		for (int i = 0; i < noOfNodes; i++)
+		{
+			if (reached[i])
+			{
 				continue;
 			}
 
-			if (distances[from_node_index] == null)
+			noOfReached = this.search(i, distance, queue);
+
+			if (noOfReached == 0)
 			{
-				distances[from_node_index] = new int[nodes.length];
+				continue;
 			}
 
-			Arrays.fill(distances[from_node_index], INFINITY);
-			distances[from_node_index][from_node_index] = 0;
-			Arrays.fill(completed_nodes, false);
-			queue.add(integers[from_node_index]);
+			// the last node reached is the furthest one
+			maxDistance = Math.max(maxDistance,
+				2 * distance[queue[noOfReached - 1]]);
 
-			while (!queue.isEmpty())
+			for (int k = 0; k < noOfReached; k++)
 			{
-				if (canceled)
-				{
-					distances = null;
-					return distances;
-				}
+				reached[queue[k]] = true;
+				distance[queue[k]] = INFINITY;
+			}
+		}
+
+		return maxDistance;
+	}
 
-				int index = ((Integer) queue.removeFirst()).intValue();
+	/*
+	 * This method runs the input search from each node, using the specified
+	 * number of threads for large enough graphs.
+	 */
+	private void runSearches(final Search search)
+	{
+		final int noOfNodes = this.nodesList.size();
+		final AtomicInteger nextSource = new AtomicInteger();
+		int noOfWorkers = Math.min(this.noOfThreads,
+			noOfNodes / SpringConstants.MIN_NODES_PER_DISTANCE_THREAD);
 
-				if (!completed_nodes[index])
+		Runnable worker = new Runnable()
+		{
+			public void run()
+			{
+				int[] distance = new int[noOfNodes];
+				int[] queue = new int[noOfNodes];
+				int source;
+
+				while (!canceled &&
+					(source = nextSource.getAndIncrement()) < noOfNodes)
 				{
-					completed_nodes[index] = true;
-					LNode to_node = nodes[index];
-					int to_node_distance = distances[from_node_index][index];
+					search.run(source, distance, queue);
 
-					if (index < from_node_index)
-					{
-						int i = 0;
-
-						while (i < nodes.length)
-						{
-							if (distances[index][i] != INFINITY)
-							{
-								int distance_through_to_node = to_node_distance
-									+ distances[index][i];
-
-								if (distance_through_to_node
-									<= distances[from_node_index][i])
-								{
-									if (distances[index][i] == 1)
-									{
-										completed_nodes[i] = true;
-									}
-
-									distances[from_node_index][i] =
-										distance_through_to_node;
-								}
-							}
-
-							i++;
-						}
-					}
-					else
-					{
-						Iterator neighbors =
-							to_node.getNeighborsList().iterator();
-
-						while (neighbors.hasNext())
-						{
-							if (canceled)
-							{
-								distances = null;
-
-								return distances;
-							}
-
-							LNode neighbor = (LNode) neighbors.next();
-							int neighbor_index = nodesList.indexOf(neighbor);
-
-							if (neighbor_index >= 0)
-							{
-								if (nodes[neighbor_index] == null)
-								{
-									distances[from_node_index][neighbor_index]
-										= INFINITY;
-								}
-								else if (!completed_nodes[neighbor_index])
-								{
-									int neighbor_distance =
-										distances[from_node_index]
-											[neighbor_index];
-
-									if (to_node_distance != INFINITY &&
-										neighbor_distance > to_node_distance +1)
-									{
-										distances[from_node_index]
-											[neighbor_index] =
-											to_node_distance + 1;
-										queue.addLast(integers[neighbor_index]);
-									}
-								}
-							}
-						}
-					}
+					currentProgress = Math.min(nextSource.get(), noOfNodes);
+					double percentDone = (currentProgress * 100) / lengthOfTask;
+					statusMessage = "Completed " + percentDone + "%.";
 				}
 			}
+		};
 
-			currentProgress++;
-			double percentDone = (currentProgress * 100) / lengthOfTask;
-			statusMessage = "Completed " + percentDone + "%.";
+		if (noOfWorkers <= 1)
+		{
+			worker.run();
+			return;
 		}
 
-		done = true;
-		currentProgress = lengthOfTask;
-		
-		return distances;
+		ExecutorService executor = Executors.newFixedThreadPool(noOfWorkers);
+
+		try
+		{
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+
+			for (int i = 0; i < noOfWorkers; i++)
+			{
+				futures.add(executor.submit(worker));
+			}
+
+			for (Future<?> future : futures)
+			{
+				future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			this.canceled = true;
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new IllegalStateException(e.getCause());
+		}
+		finally
+		{
+			executor.shutdown();
+		}
 	}
 
-	public int[][] getDistances()
+	/*
+	 * Work done for a single source, given temporary arrays of the thread
+	 */
+	private interface Search
 	{
-		return distances;
+		public void run(int source, int[] distance, int[] queue);
 	}
 }
\ No newline at end of file
@@ -1,77 +1,85 @@
 package org.ivis.layout.util;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import org.ivis.layout.LGraph;
+import org.ivis.layout.sbgn.SbgnPDConstants;
 import org.ivis.layout.sbgn.SbgnPDNode;
 
+/**
+ * This class tiles members of a complex by skyline packing, leaving margins
+ * around them. Packings are shared through a cache by complexes whose members
+ * are of the same sizes, in all layouts in the same JVM.
+ */
 public class MemberPack
 {
+	private static final PackingCache cache =
+		new PackingCache(SbgnPDConstants.DEFAULT_PACKING_CACHE_SIZE);
+
 	private List<SbgnPDNode> members;
-	public Organization org;
+	public SkylinePacking packing;
+
+	/**
+	 * This method returns the cache of packings shared by all member packs,
+	 * e.g. to change its capacity.
+	 */
+	public static PackingCache getCache()
+	{
+		return cache;
+	}
 
 	public MemberPack(LGraph childG)
+	{
+		this(childG, SbgnPDConstants.DEFAULT_COMPLEX_ASPECT_RATIO);
+	}
+
+	public MemberPack(LGraph childG, double aspectRatio)
 	{
 		members = new ArrayList<SbgnPDNode>();
 		members.addAll(childG.getNodes());
-		org = new Organization();
+		packing = new SkylinePacking(aspectRatio,
+				SbgnPDConstants.COMPLEX_MEM_HORIZONTAL_BUFFER,
+				SbgnPDConstants.COMPLEX_MEM_VERTICAL_BUFFER);
+		packing.setCache(cache);
 
 		layout();
-
-		SbgnPDNode[] nodes = new SbgnPDNode[childG.getNodes().size()];
-
-		for (int i = 0; i < childG.getNodes().size(); i++)
-		{
-			nodes[i] = (SbgnPDNode) childG.getNodes().get(i);
-		}
 	}
 
 	public void layout()
 	{
-		ComparableNode[] compar = new ComparableNode[members.size()];
-
-		int i = 0;
-		for (SbgnPDNode node : members)
-		{
-			compar[i++] = new ComparableNode(node);
-
-		}
-
-		Arrays.sort(compar);
-
-		members.clear();
-
-		for (ComparableNode com : compar)
-		{
-			members.add(com.getNode());
-		}
+		double[] widths = new double[members.size()];
+		double[] heights = new double[members.size()];
 
-		for (SbgnPDNode node : members)
+		for (int i = 0; i < members.size(); i++)
 		{
-			org.insertNode(node);
+			widths[i] = members.get(i).getWidth();
+			heights[i] = members.get(i).getHeight();
 		}
 
-		// Compaction c = new Compaction(
-		// (ArrayList<SbgnPDNode>) members);
-		// c.perform();
-
+		packing.pack(widths, heights);
 	}
 
 	public double getWidth()
 	{
-		return org.getWidth();
+		return packing.getWidth() + SbgnPDConstants.COMPLEX_MEM_MARGIN * 2;
 	}
 
 	public double getHeight()
 	{
-		return org.getHeight();
+		return packing.getHeight() + SbgnPDConstants.COMPLEX_MEM_MARGIN * 2;
 	}
 
 	public void adjustLocations(double x, double y)
 	{
-		org.adjustLocations(x, y);
+		x += SbgnPDConstants.COMPLEX_MEM_MARGIN;
+		y += SbgnPDConstants.COMPLEX_MEM_MARGIN;
+
+		for (int i = 0; i < members.size(); i++)
+		{
+			members.get(i).setLocation(x + packing.getX(i),
+					y + packing.getY(i));
+		}
 	}
 
 	public List<SbgnPDNode> getMembers()
@@ -0,0 +1,189 @@
+package org.ivis.layout.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the results of recent packings, so that packing the same
+ * set of rectangles again (e.g. members of complexes of the same composition)
+ * takes no more than a look up. A packing is identified by a signature made
+ * up of the packing parameters and the sizes of rectangles in a canonical
+ * order, and kept as the size of the drawing followed by the positions of
+ * rectangles in the same order.
+ *
+ * The cache is bounded by the number of packings it keeps; when full, the
+ * least recently used packing is evicted. A cache may be shared by layouts
+ * running concurrently, as its methods are synchronized.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class PackingCache
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Maximum number of packings kept, 0 if caching is disabled
+	 */
+	private int capacity;
+
+	/*
+	 * Packings mapped by their signatures, in access order
+	 */
+	private LinkedHashMap<Signature, double[]> packings;
+
+	/*
+	 * Number of successful and failed look ups so far
+	 */
+	private long noOfHits;
+	private long noOfMisses;
+
+// -----------------------------------------------------------------------------
+// Section: Constructors and initialization
+// -----------------------------------------------------------------------------
+	/**
+	 * Constructor: creates an empty cache keeping at most the input number of
+	 * packings.
+	 */
+	public PackingCache(int capacity)
+	{
+		this.capacity = Math.max(capacity, 0);
+		this.packings =
+			new LinkedHashMap<Signature, double[]>(16, 0.75f, true)
+			{
+				protected boolean removeEldestEntry(
+					Map.Entry<Signature, double[]> eldest)
+				{
+					return this.size() > PackingCache.this.capacity;
+				}
+			};
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Accessors
+// -----------------------------------------------------------------------------
+	/**
+	 * This method returns the maximum number of packings kept.
+	 */
+	public synchronized int getCapacity()
+	{
+		return this.capacity;
+	}
+
+	/**
+	 * This method sets the maximum number of packings kept, evicting the least
+	 * recently used ones as needed. A capacity of 0 disables caching.
+	 */
+	public synchronized void setCapacity(int capacity)
+	{
+		this.capacity = Math.max(capacity, 0);
+
+		Iterator<Signature> iter = this.packings.keySet().iterator();
+
+		while (this.packings.size() > this.capacity)
+		{
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	/**
+	 * This method returns the number of packings currently kept.
+	 */
+	public synchronized int size()
+	{
+		return this.packings.size();
+	}
+
+	/**
+	 * This method returns the number of look ups that found a packing.
+	 */
+	public synchronized long getNoOfHits()
+	{
+		return this.noOfHits;
+	}
+
+	/**
+	 * This method returns the number of look ups that found no packing.
+	 */
+	public synchronized long getNoOfMisses()
+	{
+		return this.noOfMisses;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Remaining methods
+// -----------------------------------------------------------------------------
+	/**
+	 * This method returns the packing with the input signature, null if it is
+	 * not in the cache. The returned array should not be modified.
+	 */
+	public synchronized double[] get(double[] signature)
+	{
+		double[] packing = this.packings.get(new Signature(signature));
+
+		if (packing != null)
+		{
+			this.noOfHits++;
+		}
+		else
+		{
+			this.noOfMisses++;
+		}
+
+		return packing;
+	}
+
+	/**
+	 * This method puts the input packing in the cache with the input
+	 * signature. Neither array should be modified afterwards.
+	 */
+	public synchronized void put(double[] signature, double[] packing)
+	{
+		if (this.capacity > 0)
+		{
+			this.packings.put(new Signature(signature), packing);
+		}
+	}
+
+	/**
+	 * This method removes all packings from the cache and resets statistics.
+	 */
+	public synchronized void clear()
+	{
+		this.packings.clear();
+		this.noOfHits = 0;
+		this.noOfMisses = 0;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Inner classes
+// -----------------------------------------------------------------------------
+	/*
+	 * Signature of a packing, compared by value
+	 */
+	private static class Signature
+	{
+		private double[] values;
+		private int hashCode;
+
+		Signature(double[] values)
+		{
+			this.values = values;
+			this.hashCode = Arrays.hashCode(values);
+		}
+
+		public int hashCode()
+		{
+			return this.hashCode;
+		}
+
+		public boolean equals(Object obj)
+		{
+			return obj instanceof Signature &&
+				Arrays.equals(this.values, ((Signature) obj).values);
+		}
+	}
+}
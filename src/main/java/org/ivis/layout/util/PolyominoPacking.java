@@ -2,13 +2,18 @@ package org.ivis.layout.util;
 
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
  * This class implements a polyomino packing algorithm. A polyomino is a finite
  * set of cells in the infinite planar square grid. The algorithms finds a
  * placement of polyominoes such that the bounding square is minimized.
- * 
+ *
+ * Occupied cells of the grid are kept as bitsets, both row by row and column
+ * by column, and each polyomino as a bitmask of its rows, so that placement
+ * tests and searches for free cells work on 64 cells at a time.
+ *
  */
 public class PolyominoPacking
 {
@@ -23,9 +28,47 @@ public class PolyominoPacking
 	Rectangle[] rect;
 
 	/**
-	 * The grid
+	 * Cells of the polyominoes as bitmasks; row r of the mask of polyomino i
+	 * is in words [r * maskWords[i], (r + 1) * maskWords[i]), bit k standing
+	 * for the cell (rect[i].x + k, rect[i].y + r).
 	 */
-	byte[][] grid;
+	long[][] masks;
+
+	/**
+	 * Number of words in a row of the mask of each polyomino
+	 */
+	int[] maskWords;
+
+	/**
+	 * A few cells of each polyomino (the first, middle and last cells of its
+	 * first, middle and last rows), checked first to rule out many places
+	 * at once
+	 */
+	int[][] sampleX, sampleY;
+
+	/**
+	 * The grid: bit x of row y in rowBits and bit y of column x in columnBits
+	 * are set if cell (x, y) is occupied. Each row (column) has a spare zero
+	 * word at its end.
+	 */
+	long[] rowBits;
+	long[] columnBits;
+
+	/**
+	 * Number of words in a row / a column of the grid
+	 */
+	int rowWords, columnWords;
+
+	/**
+	 * Allocated size of the grid, a multiple of 64 in both dimensions
+	 */
+	int capacityX, capacityY;
+
+	/**
+	 * Allocated position of the cell (0,0). The grid is enlarged by moving
+	 * these, so occupied cells never have to be marked again.
+	 */
+	int originX, originY;
 
 	/**
 	 * Center point of the grid
@@ -64,15 +107,26 @@ public class PolyominoPacking
 	{
 		polyominoes = pm;
 		rect = new Rectangle[pcount];
-
-		// make the initial grid
+		masks = new long[pcount][];
+		maskWords = new int[pcount];
+		sampleX = new int[pcount][];
+		sampleY = new int[pcount][];
+
+		// make the initial grid, dropping any grid of a previous packing
+		rowBits = null;
+		columnBits = null;
+		originX = originY = 0;
+		gcx = gcy = 0;
 		makeGrid(100, 100, 0);
 
 		// make the random permutation of polyomino cells and
 		// calculate the bounding rectangles.
 		Rgen = new Random(1);
 		for (int k = 0; k < pcount; k++)
+		{
 			RandomizeMino(k);
+			makeMask(k);
+		}
 
 		// order the polyominoes in increasing size
 		double[] key = new double[pcount];
@@ -91,18 +145,12 @@ public class PolyominoPacking
 	}
 
 	/**
-	 * This creates the grid of given dimensions and fills it with the already
-	 * placed polyominoes.
+	 * This creates the grid of given dimensions, keeping the already placed
+	 * polyominoes in the center. Their cells stay where they are in the
+	 * bitsets; only their coordinates change.
 	 */
 	void makeGrid(int dimx, int dimy, int mN)
 	{
-		int i;
-
-		// allocate the grid
-		grid = new byte[dimy][];
-		for (i = 0; i < dimy; i++)
-			grid[i] = new byte[dimx];
-
 		int dx = dimx / 2 - gcx;
 		int dy = dimy / 2 - gcy;
 		gcx = dimx / 2;
@@ -110,42 +158,122 @@ public class PolyominoPacking
 		sizeX = dimx;
 		sizeY = dimy;
 
-		// mark the positions occupied with the already placed
-		// polyominoes.
-		for (i = 0; i < mN; i++)
+		if (rowBits == null)
+		{
+			capacityX = (dimx + 63) / 64 * 64;
+			capacityY = (dimy + 63) / 64 * 64;
+			originX = originY = 0;
+			rowWords = capacityX / 64 + 1;
+			columnWords = capacityY / 64 + 1;
+			rowBits = new long[capacityY * rowWords];
+			columnBits = new long[capacityX * columnWords];
+			return;
+		}
+
+		// move the already placed polyominoes
+		for (int i = 0; i < mN; i++)
 		{
 			Polyomino p = polyominoes[ind[i]];
 			p.x += dx;
 			p.y += dy;
+		}
 
-			for (int k = 0; k < p.l; k++)
-			{
-				int xx = (int) (p.coord[k].getX() + p.x);
-				int yy = (int) (p.coord[k].getY() + p.y);
-				grid[yy][xx] = 1;
-			}
+		originX -= dx;
+		originY -= dy;
+
+		while (originX < 0 || originY < 0 || originX + sizeX > capacityX
+				|| originY + sizeY > capacityY)
+		{
+			enlargeBitsets();
 		}
 	}
 
 	/**
-	 * This method checks whether p can be placed in (x,y). For each polyomino,
-	 * check if the (x,y) is occupied/fits in the grid.
+	 * This method allocates larger bitsets for the grid, adding the same
+	 * (word aligned) space to both sides of each dimension.
 	 */
-	boolean IsFreePlace(int x, int y, Polyomino p)
+	void enlargeBitsets()
 	{
-		for (int k = 0; k < p.l; k++)
+		int shiftX = (capacityX / 2 + 63) / 64 * 64;
+		int shiftY = (capacityY / 2 + 63) / 64 * 64;
+		int newCapacityX = capacityX + 2 * shiftX;
+		int newCapacityY = capacityY + 2 * shiftY;
+		int newRowWords = newCapacityX / 64 + 1;
+		int newColumnWords = newCapacityY / 64 + 1;
+		long[] newRowBits = new long[newCapacityY * newRowWords];
+		long[] newColumnBits = new long[newCapacityX * newColumnWords];
+		int i;
+
+		for (i = 0; i < capacityY; i++)
+		{
+			System.arraycopy(rowBits, i * rowWords, newRowBits, (i + shiftY)
+					* newRowWords + shiftX / 64, rowWords);
+		}
+
+		for (i = 0; i < capacityX; i++)
+		{
+			System.arraycopy(columnBits, i * columnWords, newColumnBits,
+					(i + shiftX) * newColumnWords + shiftY / 64, columnWords);
+		}
+
+		rowBits = newRowBits;
+		columnBits = newColumnBits;
+		rowWords = newRowWords;
+		columnWords = newColumnWords;
+		capacityX = newCapacityX;
+		capacityY = newCapacityY;
+		originX += shiftX;
+		originY += shiftY;
+	}
+
+	/**
+	 * This method marks the cell (x,y) of the grid as occupied.
+	 */
+	void occupy(int x, int y)
+	{
+		int bx = originX + x;
+		int by = originY + y;
+
+		rowBits[by * rowWords + (bx >>> 6)] |= 1L << (bx & 63);
+		columnBits[bx * columnWords + (by >>> 6)] |= 1L << (by & 63);
+	}
+
+	/**
+	 * This method checks whether polyomino pi can be placed in (x,y). Each row
+	 * of the polyomino is checked against the grid 64 cells at a time.
+	 */
+	boolean IsFreePlace(int x, int y, int pi)
+	{
+		Rectangle r = rect[pi];
+		int left = x + r.x;
+		int top = y + r.y;
+
+		// return false if the polyomino goes outside the grid
+		if (left < 0 || top < 0 || left + r.width >= sizeX
+				|| top + r.height >= sizeY)
+			return false;
+
+		// or any of its cells is occupied
+		long[] mask = masks[pi];
+		int words = maskWords[pi];
+		int bx = originX + left;
+		int offset = (originY + top) * rowWords;
+		int k = 0;
+
+		for (int row = 0; row <= r.height; row++)
 		{
-			int xx = (int) (p.coord[k].getX() + x);
-			int yy = (int) (p.coord[k].getY() + y);
-			// return false if the polyomino goes outside the grid
-			if (xx < 0 || yy < 0 || xx >= sizeX || yy >= sizeY)
-				return false;
-			// or the position is occupied
-			if (grid[yy][xx] != 0)
-				return false;
+			for (int j = 0; j < words; j++, k++)
+			{
+				if (mask[k] != 0
+						&& (extractBits(rowBits, offset, bx + 64 * j) & mask[k]) != 0)
+					return false;
+			}
+
+			offset += rowWords;
 		}
 
 		// remember the position
+		Polyomino p = polyominoes[pi];
 		p.x = x;
 		p.y = y;
 		return true;
@@ -154,35 +282,256 @@ public class PolyominoPacking
 	/**
 	 * This tries to find a free place in the grid. The function returns true if
 	 * the placement is successful.
+	 *
+	 * Places are tried in the increasing distance from the center, on the
+	 * boundary of a square at each distance d. Around the square, the i-th
+	 * trial is (-d, -i1), (d, i1), (-i1, d) and (i1, -d) relative to the
+	 * center, in this order, where i1 is 0, then 1 and -1 alternating in an
+	 * order depending on d, then 2 and -2 and so on. On each side of the
+	 * square, only places where the sample cells of the polyomino are free
+	 * are tried, 64 places being ruled out at a time.
 	 */
 	boolean tryPlacing(int pi)
 	{
-		Polyomino p = polyominoes[pi];
-
 		int cx = gcx - (int) (rect[pi].getMaxX() + rect[pi].getMinX()) / 2;
 		int cy = gcy - (int) (rect[pi].getMaxY() + rect[pi].getMinY()) / 2;
 
 		// see if the center point is not occupied
-		if (IsFreePlace(cx, cy, p))
+		if (IsFreePlace(cx, cy, pi))
 			return true;
 
 		// try placing in the increasing distance from the center
 		for (int d = 1; d < sizeX / 2; d++)
 		{
-			for (int i = -d; i < d; i++)
+			int rank = Integer.MAX_VALUE;
+
+			rank = trySide(pi, d, false, cx - d, cy, -1, rank);
+			rank = trySide(pi, d, false, cx + d, cy, 1, rank);
+			rank = trySide(pi, d, true, cy + d, cx, -1, rank);
+			rank = trySide(pi, d, true, cy - d, cx, 1, rank);
+
+			if (rank != Integer.MAX_VALUE)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * This method tries to place polyomino pi on a side of the square at
+	 * distance d from the center, at (fixed, base + sign * i1) if the side
+	 * is vertical or (base + sign * i1, fixed) if it is horizontal. Only
+	 * places whose rank (the index of their trial at this distance) is
+	 * less than the input one are tried. The method returns the rank of the
+	 * place found, which is the new position of the polyomino, or the input
+	 * rank if there is no such place.
+	 */
+	int trySide(int pi, int d, boolean horizontal, int fixed, int base,
+			int sign, int rank)
+	{
+		Rectangle r = rect[pi];
+		int fixedMin, fixedSize, varyingMin, varyingExtent, varyingSize;
+		int position;
+
+		if (horizontal)
+		{
+			fixedMin = r.y;
+			fixedSize = sizeY - r.height;
+			varyingMin = r.x;
+			varyingExtent = r.width;
+			varyingSize = sizeX;
+			position = originX + base;
+		}
+		else
+		{
+			fixedMin = r.x;
+			fixedSize = sizeX - r.width;
+			varyingMin = r.y;
+			varyingExtent = r.height;
+			varyingSize = sizeY;
+			position = originY + base;
+		}
+
+		// the side may be totally outside the grid
+		if (fixed + fixedMin < 0 || fixed + fixedMin >= fixedSize)
+			return rank;
+
+		// range of i1 around the square, restricted to places in the grid
+		int low = (d % 2 == 1) ? -d : -(d - 1);
+		int high = (d % 2 == 0) ? d : d - 1;
+		int first = -varyingMin - base;
+		int last = varyingSize - 1 - varyingExtent - varyingMin - base;
+
+		if (sign > 0)
+		{
+			low = Math.max(low, first);
+			high = Math.min(high, last);
+		}
+		else
+		{
+			low = Math.max(low, -last);
+			high = Math.min(high, -first);
+		}
+
+		if (low > high)
+			return rank;
+
+		if (low <= 0 && high >= 0 && rank > 0)
+		{
+			if ((calcViablePlaces(pi, horizontal, fixed, position) & 1) != 0
+					&& IsFreePlace(horizontal ? base : fixed,
+					horizontal ? fixed : base, pi))
+				return 0;
+		}
+
+		int positive = Integer.MIN_VALUE;
+		int negative = Integer.MIN_VALUE;
+
+		if (Math.max(low, 1) <= high)
+			positive = findViableI1(pi, horizontal, fixed, position, sign,
+					Math.max(low, 1), high);
+
+		if (Math.min(high, -1) >= low)
+			negative = findViableI1(pi, horizontal, fixed, position, sign,
+					Math.min(high, -1), low);
+
+		while (positive != Integer.MIN_VALUE || negative != Integer.MIN_VALUE)
+		{
+			int i1;
+
+			if (negative == Integer.MIN_VALUE)
+				i1 = positive;
+			else if (positive == Integer.MIN_VALUE)
+				i1 = negative;
+			else
+				i1 = (calcRank(positive, d) < calcRank(negative, d))
+						? positive : negative;
+
+			int i1Rank = calcRank(i1, d);
+
+			if (i1Rank >= rank)
+				break;
+
+			int varying = base + sign * i1;
+
+			if (IsFreePlace(horizontal ? varying : fixed,
+					horizontal ? fixed : varying, pi))
+				return i1Rank;
+
+			if (i1 > 0)
+				positive = (i1 < high) ? findViableI1(pi, horizontal, fixed,
+						position, sign, i1 + 1, high) : Integer.MIN_VALUE;
+			else
+				negative = (i1 > low) ? findViableI1(pi, horizontal, fixed,
+						position, sign, i1 - 1, low) : Integer.MIN_VALUE;
+		}
+
+		return rank;
+	}
+
+	/**
+	 * This method returns the rank of offset i1 among the trials at distance
+	 * d: 0 for 0, then 2m - 1 and 2m for m and -m, or -m and m if d is odd.
+	 */
+	static int calcRank(int i1, int d)
+	{
+		if (i1 == 0)
+			return 0;
+
+		int m = Math.abs(i1);
+
+		return ((i1 > 0) == (d % 2 == 0)) ? 2 * m - 1 : 2 * m;
+	}
+
+	/**
+	 * This method returns the first i1 from i1From towards i1To (both
+	 * included, the range being nonempty) such that the sample cells of
+	 * polyomino pi are all free when it is placed on a side of a square as
+	 * in trySide, Integer.MIN_VALUE if there is no such i1. Position is the
+	 * allocated coordinate of the place with i1 = 0 along the side.
+	 */
+	int findViableI1(int pi, boolean horizontal, int fixed, int position,
+			int sign, int i1From, int i1To)
+	{
+		int from = position + sign * i1From;
+		int to = position + sign * i1To;
+		long viable;
+		int start, length;
+
+		if (from <= to)
+		{
+			for (start = from; start <= to; start += 64)
 			{
-				int i1 = (i + d + 1) / 2 * (((i & 1) == 1) ? 1 : -1);
-				if (IsFreePlace(-d + cx, -i1 + cy, p))
-					return true;
-				if (IsFreePlace(d + cx, i1 + cy, p))
-					return true;
-				if (IsFreePlace(cx - i1, d + cy, p))
-					return true;
-				if (IsFreePlace(i1 + cx, -d + cy, p))
-					return true;
+				viable = calcViablePlaces(pi, horizontal, fixed, start);
+				length = to - start + 1;
+
+				if (length < 64)
+					viable &= (1L << length) - 1;
+
+				if (viable != 0)
+					return (start + Long.numberOfTrailingZeros(viable)
+							- position) * sign;
 			}
 		}
-		return false;
+		else
+		{
+			for (; from >= to; from = start - 1)
+			{
+				start = Math.max(to, from - 63);
+				viable = calcViablePlaces(pi, horizontal, fixed, start);
+				length = from - start + 1;
+
+				if (length < 64)
+					viable &= (1L << length) - 1;
+
+				if (viable != 0)
+					return (start + 63 - Long.numberOfLeadingZeros(viable)
+							- position) * sign;
+			}
+		}
+
+		return Integer.MIN_VALUE;
+	}
+
+	/**
+	 * This method returns a word whose bit k is set if none of the sample
+	 * cells of polyomino pi is occupied when it is placed at allocated
+	 * coordinate start + k along a side, its other coordinate being fixed.
+	 * Words of the grid fully occupied under a sample cell are hence skipped
+	 * at once.
+	 */
+	long calcViablePlaces(int pi, boolean horizontal, int fixed, int start)
+	{
+		int[] xs = sampleX[pi];
+		int[] ys = sampleY[pi];
+		long viable = -1L;
+
+		for (int k = 0; k < xs.length && viable != 0; k++)
+		{
+			if (horizontal)
+				viable &= ~extractBits(rowBits,
+						(originY + fixed + ys[k]) * rowWords, start + xs[k]);
+			else
+				viable &= ~extractBits(columnBits,
+						(originX + fixed + xs[k]) * columnWords, start + ys[k]);
+		}
+
+		return viable;
+	}
+
+	/**
+	 * This method returns the 64 bits of the given line of the bitset
+	 * starting at the given bit.
+	 */
+	static long extractBits(long[] bits, int lineOffset, int bit)
+	{
+		int index = lineOffset + (bit >>> 6);
+		int shift = bit & 63;
+		long word = bits[index] >>> shift;
+
+		if (shift != 0)
+			word |= bits[index + 1] << (64 - shift);
+
+		return word;
 	}
 
 	/**
@@ -205,9 +554,8 @@ public class PolyominoPacking
 		// mark the positions occupied
 		for (int k = 0; k < p.l; k++)
 		{
-			int xx = (int) (p.coord[k].getX() + p.x);
-			int yy = (int) (p.coord[k].getY() + p.y);
-			grid[yy][xx] = 1;
+			occupy((int) (p.coord[k].getX() + p.x),
+					(int) (p.coord[k].getY() + p.y));
 		}
 
 	}
@@ -257,4 +605,77 @@ public class PolyominoPacking
 		rect[pi].width = maxX - minX;
 		rect[pi].height = maxY - minY;
 	}
+
+	/**
+	 * This method makes the bitmask of the cells of the polyomino, relative to
+	 * its bounding rectangle, and chooses its sample cells.
+	 */
+	void makeMask(int pi)
+	{
+		Polyomino p = polyominoes[pi];
+		Rectangle r = rect[pi];
+		int words = r.width / 64 + 1;
+
+		maskWords[pi] = words;
+		masks[pi] = new long[(r.height + 1) * words];
+
+		for (int k = 0; k < p.l; k++)
+		{
+			int xx = (int) p.coord[k].getX() - r.x;
+			int yy = (int) p.coord[k].getY() - r.y;
+			masks[pi][yy * words + (xx >>> 6)] |= 1L << (xx & 63);
+		}
+
+		int[] rows = { r.y, r.y + r.height / 2, r.y + r.height };
+		int[] xs = new int[3 * rows.length];
+		int[] ys = new int[3 * rows.length];
+		int count = 0;
+
+		for (int i = 0; i < rows.length; i++)
+		{
+			if (i > 0 && rows[i] == rows[i - 1])
+				continue;
+
+			int minX = Integer.MAX_VALUE;
+			int maxX = Integer.MIN_VALUE;
+			int midX = Integer.MAX_VALUE;
+			int center = r.x + r.width / 2;
+
+			for (int k = 0; k < p.l; k++)
+			{
+				if ((int) p.coord[k].getY() != rows[i])
+					continue;
+
+				int xx = (int) p.coord[k].getX();
+				minX = Math.min(minX, xx);
+				maxX = Math.max(maxX, xx);
+
+				if (midX == Integer.MAX_VALUE
+						|| Math.abs(xx - center) < Math.abs(midX - center))
+					midX = xx;
+			}
+
+			// only the middle row may have no cells
+			if (minX == Integer.MAX_VALUE)
+				continue;
+
+			xs[count] = minX;
+			ys[count++] = rows[i];
+
+			if (midX != minX && midX != maxX)
+			{
+				xs[count] = midX;
+				ys[count++] = rows[i];
+			}
+
+			if (maxX != minX)
+			{
+				xs[count] = maxX;
+				ys[count++] = rows[i];
+			}
+		}
+
+		sampleX[pi] = Arrays.copyOf(xs, count);
+		sampleY[pi] = Arrays.copyOf(ys, count);
+	}
 }
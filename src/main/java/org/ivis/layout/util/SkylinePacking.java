@@ -0,0 +1,654 @@
+package org.ivis.layout.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+/**
+ * This class packs rectangles, given by their widths and heights, into a
+ * compact drawing of a desired aspect ratio (width / height). It is used for
+ * tiling members of complexes as well as arranging disconnected components
+ * of a graph.
+ *
+ * Rectangles are packed by the best-fit skyline heuristic: the skyline is
+ * the bottom boundary of the rectangles placed so far (the drawing grows
+ * downwards), made up of horizontal segments. Its top-most segment is filled
+ * with the widest remaining rectangle fitting in it, placed next to the lower
+ * one of the neighboring segments; if no rectangle fits, the segment is
+ * lowered to the level of the higher one of its neighbors, leaving a gap.
+ * Since both the segments and the remaining rectangles are kept sorted,
+ * packing n rectangles takes O(n log n) time.
+ *
+ * Width of the drawing is first estimated from the total area of rectangles
+ * and the aspect ratio, and then refined using the resulting height.
+ *
+ * If a cache is set, results are looked up in (and put in) it by the sizes
+ * of rectangles in sorted order, which determines the resulting drawing.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class SkylinePacking
+{
+// -----------------------------------------------------------------------------
+// Section: Class variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Maximum number of times the width of the drawing is refined, and the
+	 * relative difference from the desired aspect ratio that is good enough
+	 */
+	private static final int NO_OF_WIDTH_REFINEMENTS = 3;
+	private static final double ASPECT_RATIO_TOLERANCE = 0.05;
+
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Desired ratio of the width of the drawing to its height
+	 */
+	private double aspectRatio;
+
+	/*
+	 * Minimum horizontal and vertical distances between rectangles
+	 */
+	private double horizontalGap;
+	private double verticalGap;
+
+	/*
+	 * Resulting top-left positions of the rectangles
+	 */
+	private double[] x;
+	private double[] y;
+
+	/*
+	 * Size of the resulting drawing
+	 */
+	private double width;
+	private double height;
+
+	/*
+	 * Sizes of rectangles to be packed, each including the gaps to its right
+	 * and bottom
+	 */
+	private double[] pieceWidths;
+	private double[] pieceHeights;
+
+	/*
+	 * Indices of rectangles sorted by width, then by height, and their widths
+	 * in this order
+	 */
+	private int[] sortedPieces;
+	private double[] sortedWidths;
+
+	/*
+	 * Used for finding the last remaining rectangle up to a position in the
+	 * sorted order: following the links from a position (compressing paths on
+	 * the way) leads to the first position not linked, whose rectangle
+	 * remains, or to -1 if there is none
+	 */
+	private int[] previousRemaining;
+
+	/*
+	 * Cache of packings to be used, null if none
+	 */
+	private PackingCache cache;
+
+// -----------------------------------------------------------------------------
+// Section: Constructors and initialization
+// -----------------------------------------------------------------------------
+	/**
+	 * Constructor: creates a packing with the input desired aspect ratio and
+	 * gaps between rectangles.
+	 */
+	public SkylinePacking(double aspectRatio,
+		double horizontalGap,
+		double verticalGap)
+	{
+		this.aspectRatio = aspectRatio;
+		this.horizontalGap = horizontalGap;
+		this.verticalGap = verticalGap;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Accessors
+// -----------------------------------------------------------------------------
+	/**
+	 * This method returns the left of the rectangle with the input index in
+	 * the resulting drawing, whose top-left is (0,0).
+	 */
+	public double getX(int index)
+	{
+		return this.x[index];
+	}
+
+	/**
+	 * This method returns the top of the rectangle with the input index in
+	 * the resulting drawing, whose top-left is (0,0).
+	 */
+	public double getY(int index)
+	{
+		return this.y[index];
+	}
+
+	/**
+	 * This method returns the width of the resulting drawing.
+	 */
+	public double getWidth()
+	{
+		return this.width;
+	}
+
+	/**
+	 * This method returns the height of the resulting drawing.
+	 */
+	public double getHeight()
+	{
+		return this.height;
+	}
+
+	/**
+	 * This method sets the cache of packings to be used, null for none.
+	 */
+	public void setCache(PackingCache cache)
+	{
+		this.cache = cache;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Remaining methods
+// -----------------------------------------------------------------------------
+	/**
+	 * This method packs the rectangles with the input widths and heights.
+	 * Results are available through the accessors.
+	 */
+	public void pack(double[] widths, double[] heights)
+	{
+		assert widths.length == heights.length;
+
+		int noOfRectangles = widths.length;
+		double totalArea = 0.0;
+		double maxWidth = 0.0;
+
+		this.x = new double[noOfRectangles];
+		this.y = new double[noOfRectangles];
+		this.width = 0.0;
+		this.height = 0.0;
+
+		if (noOfRectangles == 0)
+		{
+			return;
+		}
+
+		this.pieceWidths = new double[noOfRectangles];
+		this.pieceHeights = new double[noOfRectangles];
+
+		for (int i = 0; i < noOfRectangles; i++)
+		{
+			this.pieceWidths[i] = widths[i] + this.horizontalGap;
+			this.pieceHeights[i] = heights[i] + this.verticalGap;
+			maxWidth = Math.max(maxWidth, this.pieceWidths[i]);
+		}
+
+		this.sortPieces();
+
+		// sum areas in sorted order, so that the drawing (like the cached one)
+		// does not depend on the order rectangles are given in, to the bit
+
+		for (int i = 0; i < noOfRectangles; i++)
+		{
+			int piece = this.sortedPieces[i];
+			totalArea += this.pieceWidths[piece] * this.pieceHeights[piece];
+		}
+
+		double[] signature = null;
+
+		if (this.cache != null)
+		{
+			signature = this.calcSignature(widths, heights);
+
+			if (this.applyPacking(this.cache.get(signature)))
+			{
+				this.clearPieces();
+				return;
+			}
+		}
+
+		double[] packedX = new double[noOfRectangles];
+		double[] packedY = new double[noOfRectangles];
+		double containerWidth =
+			Math.max(maxWidth, Math.sqrt(totalArea * this.aspectRatio));
+		double bestScore = Double.MAX_VALUE;
+
+		for (int k = 0; k <= NO_OF_WIDTH_REFINEMENTS; k++)
+		{
+			this.packInto(containerWidth, packedX, packedY);
+
+			// measure the drawing, excluding the gaps at its right and bottom
+
+			double packedWidth = 0.0;
+			double packedHeight = 0.0;
+
+			for (int i = 0; i < noOfRectangles; i++)
+			{
+				packedWidth = Math.max(packedWidth,
+					packedX[i] + this.pieceWidths[i]);
+				packedHeight = Math.max(packedHeight,
+					packedY[i] + this.pieceHeights[i]);
+			}
+
+			packedWidth -= this.horizontalGap;
+			packedHeight -= this.verticalGap;
+
+			// area of the smallest rectangle of the desired aspect ratio
+			// enclosing the drawing
+
+			double score =
+				Math.max(packedWidth, packedHeight * this.aspectRatio) *
+				Math.max(packedHeight, packedWidth / this.aspectRatio);
+
+			if (score < bestScore)
+			{
+				bestScore = score;
+				System.arraycopy(packedX, 0, this.x, 0, noOfRectangles);
+				System.arraycopy(packedY, 0, this.y, 0, noOfRectangles);
+				this.width = packedWidth;
+				this.height = packedHeight;
+			}
+
+			if (Math.abs(packedWidth / (packedHeight * this.aspectRatio) - 1.0)
+				< ASPECT_RATIO_TOLERANCE)
+			{
+				break;
+			}
+
+			double nextWidth = Math.max(maxWidth, Math.sqrt(
+				(packedWidth + this.horizontalGap) *
+				(packedHeight + this.verticalGap) * this.aspectRatio));
+
+			if (nextWidth == containerWidth)
+			{
+				break;
+			}
+
+			containerWidth = nextWidth;
+		}
+
+		if (this.cache != null)
+		{
+			this.cache.put(signature, this.extractPacking());
+		}
+
+		this.clearPieces();
+	}
+
+	/*
+	 * This method returns the signature of packing the input rectangles, made
+	 * up of the packing parameters and the sizes of rectangles in sorted
+	 * order. Rectangles are assumed to be sorted already.
+	 */
+	private double[] calcSignature(double[] widths, double[] heights)
+	{
+		int noOfPieces = this.sortedPieces.length;
+		double[] signature = new double[3 + 2 * noOfPieces];
+
+		signature[0] = this.aspectRatio;
+		signature[1] = this.horizontalGap;
+		signature[2] = this.verticalGap;
+
+		for (int i = 0; i < noOfPieces; i++)
+		{
+			signature[3 + 2 * i] = widths[this.sortedPieces[i]];
+			signature[4 + 2 * i] = heights[this.sortedPieces[i]];
+		}
+
+		return signature;
+	}
+
+	/*
+	 * This method returns the resulting drawing as its size followed by the
+	 * positions of rectangles in sorted order.
+	 */
+	private double[] extractPacking()
+	{
+		int noOfPieces = this.sortedPieces.length;
+		double[] packing = new double[2 + 2 * noOfPieces];
+
+		packing[0] = this.width;
+		packing[1] = this.height;
+
+		for (int i = 0; i < noOfPieces; i++)
+		{
+			packing[2 + 2 * i] = this.x[this.sortedPieces[i]];
+			packing[3 + 2 * i] = this.y[this.sortedPieces[i]];
+		}
+
+		return packing;
+	}
+
+	/*
+	 * This method sets the resulting drawing from the input one, given as by
+	 * extractPacking. Returns false, without changing the result, if there is
+	 * no input drawing.
+	 */
+	private boolean applyPacking(double[] packing)
+	{
+		if (packing == null)
+		{
+			return false;
+		}
+
+		this.width = packing[0];
+		this.height = packing[1];
+
+		for (int i = 0; i < this.sortedPieces.length; i++)
+		{
+			this.x[this.sortedPieces[i]] = packing[2 + 2 * i];
+			this.y[this.sortedPieces[i]] = packing[3 + 2 * i];
+		}
+
+		return true;
+	}
+
+	/*
+	 * This method releases the data used during packing.
+	 */
+	private void clearPieces()
+	{
+		this.pieceWidths = null;
+		this.pieceHeights = null;
+		this.sortedPieces = null;
+		this.sortedWidths = null;
+		this.previousRemaining = null;
+	}
+
+	/*
+	 * This method sorts the rectangles to be packed by width, then by height.
+	 */
+	private void sortPieces()
+	{
+		int noOfPieces = this.pieceWidths.length;
+		Integer[] order = new Integer[noOfPieces];
+
+		for (int i = 0; i < noOfPieces; i++)
+		{
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>()
+		{
+			public int compare(Integer i, Integer j)
+			{
+				int result = Double.compare(pieceWidths[i], pieceWidths[j]);
+
+				if (result == 0)
+				{
+					result = Double.compare(pieceHeights[i], pieceHeights[j]);
+				}
+
+				return (result != 0) ? result : i.compareTo(j);
+			}
+		});
+
+		this.sortedPieces = new int[noOfPieces];
+		this.sortedWidths = new double[noOfPieces];
+		this.previousRemaining = new int[noOfPieces];
+
+		for (int i = 0; i < noOfPieces; i++)
+		{
+			this.sortedPieces[i] = order[i];
+			this.sortedWidths[i] = this.pieceWidths[order[i]];
+		}
+	}
+
+	/*
+	 * This method returns the position in the sorted order of the widest
+	 * (then the tallest) remaining rectangle not wider than the input width,
+	 * -1 if there is none.
+	 */
+	private int findWidestFitting(double maxWidth)
+	{
+		// find the last position with a width not more than the input one
+
+		int low = 0;
+		int high = this.sortedWidths.length;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (this.sortedWidths[middle] <= maxWidth)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		// then the last remaining one up to there
+
+		int position = low - 1;
+		int root = position;
+
+		while (root >= 0 && this.previousRemaining[root] != root)
+		{
+			root = this.previousRemaining[root];
+		}
+
+		while (position >= 0 && this.previousRemaining[position] != position)
+		{
+			int next = this.previousRemaining[position];
+			this.previousRemaining[position] = root;
+			position = next;
+		}
+
+		return root;
+	}
+
+	/*
+	 * This method packs the rectangles to be packed into a container of the
+	 * input width, setting their top-left positions in the input arrays.
+	 */
+	private void packInto(double containerWidth,
+		double[] packedX,
+		double[] packedY)
+	{
+		int noOfRemaining = this.pieceWidths.length;
+
+		for (int i = 0; i < noOfRemaining; i++)
+		{
+			this.previousRemaining[i] = i;
+		}
+
+		// segments of the skyline ordered by level, then from left to right
+
+		TreeSet<Segment> skyline = new TreeSet<Segment>(new Comparator<Segment>()
+		{
+			public int compare(Segment s1, Segment s2)
+			{
+				int result = Double.compare(s1.y, s2.y);
+
+				return (result != 0) ? result : Double.compare(s1.x, s2.x);
+			}
+		});
+
+		skyline.add(new Segment(0.0, containerWidth, 0.0));
+
+		while (noOfRemaining > 0)
+		{
+			Segment segment = skyline.pollFirst();
+
+			// find the widest (then the tallest) rectangle fitting in
+
+			int position = this.findWidestFitting(segment.width);
+
+			if (position < 0)
+			{
+				this.lowerSegment(segment, skyline);
+				continue;
+			}
+
+			int piece = this.sortedPieces[position];
+			this.previousRemaining[position] = position - 1;
+			noOfRemaining--;
+
+			// place it next to the lower neighbor, a side of the container
+			// being the lowest
+
+			double leftLevel = (segment.prev == null) ?
+				Double.MAX_VALUE : segment.prev.y;
+			double rightLevel = (segment.next == null) ?
+				Double.MAX_VALUE : segment.next.y;
+			double pieceWidth = this.pieceWidths[piece];
+			Segment placed;
+
+			if (pieceWidth >= segment.width)
+			{
+				placed = segment;
+			}
+			else if (rightLevel > leftLevel)
+			{
+				placed = new Segment(segment.x + segment.width - pieceWidth,
+					pieceWidth,
+					segment.y);
+				segment.width -= pieceWidth;
+				placed.insertAfter(segment);
+				skyline.add(segment);
+			}
+			else
+			{
+				placed = new Segment(segment.x, pieceWidth, segment.y);
+				segment.x += pieceWidth;
+				segment.width -= pieceWidth;
+				placed.insertBefore(segment);
+				skyline.add(segment);
+			}
+
+			packedX[piece] = placed.x;
+			packedY[piece] = placed.y;
+			placed.y += this.pieceHeights[piece];
+
+			this.mergeWithNeighbors(placed, skyline);
+			skyline.add(placed);
+		}
+	}
+
+	/*
+	 * This method lowers the input segment, which is not in the skyline set,
+	 * to the level of the higher one of its neighbors, and merges them.
+	 */
+	private void lowerSegment(Segment segment, TreeSet<Segment> skyline)
+	{
+		if (segment.prev == null && segment.next == null)
+		{
+			throw new IllegalStateException(
+				"Container is narrower than a rectangle");
+		}
+
+		if (segment.prev == null)
+		{
+			segment.y = segment.next.y;
+		}
+		else if (segment.next == null)
+		{
+			segment.y = segment.prev.y;
+		}
+		else
+		{
+			segment.y = Math.min(segment.prev.y, segment.next.y);
+		}
+
+		this.mergeWithNeighbors(segment, skyline);
+		skyline.add(segment);
+	}
+
+	/*
+	 * This method merges the input segment, which is not in the skyline set,
+	 * with its neighbors at the same level.
+	 */
+	private void mergeWithNeighbors(Segment segment, TreeSet<Segment> skyline)
+	{
+		Segment neighbor = segment.prev;
+
+		if (neighbor != null && neighbor.y == segment.y)
+		{
+			skyline.remove(neighbor);
+			segment.x = neighbor.x;
+			segment.width += neighbor.width;
+			segment.prev = neighbor.prev;
+
+			if (segment.prev != null)
+			{
+				segment.prev.next = segment;
+			}
+		}
+
+		neighbor = segment.next;
+
+		if (neighbor != null && neighbor.y == segment.y)
+		{
+			skyline.remove(neighbor);
+			segment.width += neighbor.width;
+			segment.next = neighbor.next;
+
+			if (segment.next != null)
+			{
+				segment.next.prev = segment;
+			}
+		}
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Inner classes
+// -----------------------------------------------------------------------------
+	/*
+	 * A horizontal segment of the skyline, linked to its neighbors
+	 */
+	private static class Segment
+	{
+		double x;
+		double width;
+		double y;
+		Segment prev;
+		Segment next;
+
+		Segment(double x, double width, double y)
+		{
+			this.x = x;
+			this.width = width;
+			this.y = y;
+		}
+
+		/*
+		 * This method links this segment right before the input one.
+		 */
+		void insertBefore(Segment segment)
+		{
+			this.prev = segment.prev;
+			this.next = segment;
+
+			if (this.prev != null)
+			{
+				this.prev.next = this;
+			}
+
+			segment.prev = this;
+		}
+
+		/*
+		 * This method links this segment right after the input one.
+		 */
+		void insertAfter(Segment segment)
+		{
+			this.next = segment.next;
+			this.prev = segment;
+
+			if (this.next != null)
+			{
+				this.next.prev = this;
+			}
+
+			segment.next = this;
+		}
+	}
+}
@@ -0,0 +1,339 @@
+package org.ivis.util;
+
+import java.util.Arrays;
+
+/**
+ * This class counts crossings between chords of a circle, whose end points
+ * are given by their positions (indices) on the circle. Two chords cross iff
+ * their four end points are distinct and interleaved along the circle; hence
+ * chords sharing an end point never cross. A chord with a negative end
+ * point (i.e. an end not yet placed on the circle) crosses no other chord.
+ *
+ * Total number of crossings is found by sorting chords on their lower end
+ * points and counting interleaved pairs with a binary indexed (Fenwick) tree
+ * in O(E log E) time. Crossings of the chords incident to a single position
+ * and the change in total crossings when two adjacent positions are swapped
+ * only require the chords of the associated positions to be sorted.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class CircularCrossingCounter
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Number of positions on the circle
+	 */
+	private int noOfPositions;
+
+	/*
+	 * Binary indexed tree over positions, used for total crossing counts
+	 */
+	private int[] tree;
+
+// -----------------------------------------------------------------------------
+// Section: Constructors and initialization
+// -----------------------------------------------------------------------------
+	/**
+	 * Constructor: creates a counter for a circle with the input number of
+	 * positions, numbered 0 thru noOfPositions - 1.
+	 */
+	public CircularCrossingCounter(int noOfPositions)
+	{
+		this.noOfPositions = noOfPositions;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Accessors
+// -----------------------------------------------------------------------------
+	/**
+	 * This method returns the number of positions on the circle.
+	 */
+	public int getNoOfPositions()
+	{
+		return this.noOfPositions;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Remaining methods
+// -----------------------------------------------------------------------------
+	/**
+	 * This method returns the total number of crossing pairs of the input
+	 * chords, the end points of chord i being ends1[i] and ends2[i].
+	 */
+	public int countCrossings(int[] ends1, int[] ends2)
+	{
+		assert ends1.length == ends2.length;
+
+		int noOfChords = ends1.length;
+		int[] chordStart = new int[this.noOfPositions + 1];
+		int[] upperEnds = new int[noOfChords];
+		int low, high;
+		int i;
+
+		// Bucket chords on their lower end points, keeping upper end points
+
+		for (i = 0; i < noOfChords; i++)
+		{
+			if (this.isValidChord(ends1[i], ends2[i]))
+			{
+				chordStart[Math.min(ends1[i], ends2[i]) + 1]++;
+			}
+		}
+
+		for (i = 0; i < this.noOfPositions; i++)
+		{
+			chordStart[i + 1] += chordStart[i];
+		}
+
+		int[] next = Arrays.copyOf(chordStart, this.noOfPositions);
+
+		for (i = 0; i < noOfChords; i++)
+		{
+			if (this.isValidChord(ends1[i], ends2[i]))
+			{
+				low = Math.min(ends1[i], ends2[i]);
+				high = Math.max(ends1[i], ends2[i]);
+				upperEnds[next[low]++] = high;
+			}
+		}
+
+		// Chord (a, b) crosses chord (c, d) with a < c iff c < b < d. Sweep the
+		// lower end points in increasing order, keeping the upper end points
+		// of already swept chords in the tree. Chords with the same lower end
+		// point share it, so they are queried before any one is added.
+
+		if (this.tree == null || this.tree.length < this.noOfPositions + 1)
+		{
+			this.tree = new int[this.noOfPositions + 1];
+		}
+		else
+		{
+			Arrays.fill(this.tree, 0);
+		}
+
+		int crossingCount = 0;
+
+		for (low = 0; low < this.noOfPositions; low++)
+		{
+			for (i = chordStart[low]; i < chordStart[low + 1]; i++)
+			{
+				crossingCount += this.calcPrefixSum(upperEnds[i] - 1) -
+					this.calcPrefixSum(low);
+			}
+
+			for (i = chordStart[low]; i < chordStart[low + 1]; i++)
+			{
+				this.addToTree(upperEnds[i]);
+			}
+		}
+
+		return crossingCount;
+	}
+
+	/**
+	 * This method returns the number of crossings of the chords incident to
+	 * the input position, whose other end points are given, with the input
+	 * chords. Input chords incident to the position are ignored.
+	 */
+	public int countCrossingsAt(int position,
+		int[] otherEnds,
+		int[] ends1,
+		int[] ends2)
+	{
+		assert ends1.length == ends2.length;
+
+		if (position < 0)
+		{
+			return 0;
+		}
+
+		int[] offsets = this.calcSortedOffsets(position, otherEnds);
+		int crossingCount = 0;
+		int offset1, offset2;
+
+		if (offsets.length == 0)
+		{
+			return 0;
+		}
+
+		// Chord (0, q) crosses chord (a, b) with a < b iff a < q < b, all
+		// positions taken relative to the input position
+
+		for (int i = 0; i < ends1.length; i++)
+		{
+			if (!this.isValidChord(ends1[i], ends2[i]) ||
+				ends1[i] == position || ends2[i] == position)
+			{
+				continue;
+			}
+
+			offset1 = this.calcOffset(position, ends1[i]);
+			offset2 = this.calcOffset(position, ends2[i]);
+
+			crossingCount +=
+				this.countLessThan(offsets, Math.max(offset1, offset2)) -
+				this.countLessThan(offsets, Math.min(offset1, offset2) + 1);
+		}
+
+		return crossingCount;
+	}
+
+	/**
+	 * This method returns the change in the total number of crossings when
+	 * the two input positions, which are adjacent on the circle (the second
+	 * one following the first one), swap their chords. The other end points
+	 * of the chords incident to each position are given.
+	 */
+	public int calcSwapDelta(int position1,
+		int[] otherEnds1,
+		int position2,
+		int[] otherEnds2)
+	{
+		if (position1 < 0 || position2 < 0 || position1 == position2)
+		{
+			return 0;
+		}
+
+		assert (position1 + 1) % this.noOfPositions == position2;
+
+		// Only crossings between chords (position1, x) and (position2, y) with
+		// distinct x and y change; such a pair crosses iff x precedes y, when
+		// positions are taken relative to position1, and the swap toggles it.
+
+		int[] offsets1 = this.calcSortedOffsets(position1, otherEnds1);
+		int[] offsets2 = this.calcSortedOffsets(position1, otherEnds2);
+		int skipped = this.countLessThan(offsets2, 2);
+		int noOfPairs = 0;
+		int noOfCrossings = 0;
+		int less = 0;
+		int notGreater = 0;
+
+		for (int i = 0; i < offsets1.length; i++)
+		{
+			if (offsets1[i] < 2)
+			{
+				continue;
+			}
+
+			while (less < offsets2.length && offsets2[less] < offsets1[i])
+			{
+				less++;
+			}
+
+			while (notGreater < offsets2.length &&
+				offsets2[notGreater] <= offsets1[i])
+			{
+				notGreater++;
+			}
+
+			noOfCrossings += offsets2.length - notGreater;
+			noOfPairs += offsets2.length - skipped - (notGreater - less);
+		}
+
+		// Pairs not crossing now will cross after the swap and vice versa
+
+		return noOfPairs - 2 * noOfCrossings;
+	}
+
+	/*
+	 * This method returns whether the chord with input end points may cross
+	 * other chords, i.e. it is placed on the circle and not a loop.
+	 */
+	private boolean isValidChord(int end1, int end2)
+	{
+		return end1 >= 0 && end2 >= 0 && end1 != end2;
+	}
+
+	/*
+	 * This method returns the input position relative to the input origin.
+	 */
+	private int calcOffset(int origin, int position)
+	{
+		int offset = position - origin;
+
+		if (offset < 0)
+		{
+			offset += this.noOfPositions;
+		}
+
+		return offset;
+	}
+
+	/*
+	 * This method returns the sorted offsets of the input end points relative
+	 * to the input origin, leaving out the ones not placed or at the origin.
+	 */
+	private int[] calcSortedOffsets(int origin, int[] ends)
+	{
+		int[] offsets = new int[ends.length];
+		int count = 0;
+
+		for (int i = 0; i < ends.length; i++)
+		{
+			if (ends[i] >= 0 && ends[i] != origin)
+			{
+				offsets[count++] = this.calcOffset(origin, ends[i]);
+			}
+		}
+
+		offsets = Arrays.copyOf(offsets, count);
+		Arrays.sort(offsets);
+
+		return offsets;
+	}
+
+	/*
+	 * This method returns the number of entries of the input sorted array
+	 * that are less than the input value.
+	 */
+	private int countLessThan(int[] sorted, int value)
+	{
+		int low = 0;
+		int high = sorted.length;
+
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+
+			if (sorted[middle] < value)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/*
+	 * This method adds an upper end point at the input position to the tree.
+	 */
+	private void addToTree(int position)
+	{
+		for (int i = position + 1; i <= this.noOfPositions; i += i & -i)
+		{
+			this.tree[i]++;
+		}
+	}
+
+	/*
+	 * This method returns the number of upper end points in the tree at
+	 * positions up to (and including) the input one.
+	 */
+	private int calcPrefixSum(int position)
+	{
+		int sum = 0;
+
+		for (int i = position + 1; i > 0; i -= i & -i)
+		{
+			sum += this.tree[i];
+		}
+
+		return sum;
+	}
+}
@@ -34,10 +34,6 @@ abstract public class IGeometry
 	{
 		assert rectA.intersects(rectB);
 
-		double[] directions = new double[2];
-
-		IGeometry.decideDirectionsForOverlappingNodes(rectA, rectB, directions);
-		
 		overlapAmount[0] = Math.min(rectA.getRight(), rectB.getRight()) -
 			Math.max(rectA.x, rectB.x);
 		overlapAmount[1] = Math.min(rectA.getBottom(), rectB.getBottom()) -
@@ -151,8 +147,12 @@ abstract public class IGeometry
 		// return half the amount so that if each rectangle is moved by these
 		// amounts in opposite directions, overlap will be resolved
 		
-        overlapAmount[0] = -1 * directions[0] * ((moveByX / 2) + separationBuffer);
-        overlapAmount[1] = -1 * directions[1] * ((moveByY / 2) + separationBuffer);
+		// overlap amounts are no longer needed, so directions are stored into
+		// the same array to avoid creating one per call
+		IGeometry.decideDirectionsForOverlappingNodes(rectA, rectB, overlapAmount);
+
+        overlapAmount[0] = -1 * overlapAmount[0] * ((moveByX / 2) + separationBuffer);
+        overlapAmount[1] = -1 * overlapAmount[1] * ((moveByY / 2) + separationBuffer);
 	}
 
 	/**
@@ -195,16 +195,42 @@ abstract public class IGeometry
 	public static boolean getIntersection(RectangleD rectA,
 		RectangleD rectB,
 		double[] result)
+	{
+		return IGeometry.getIntersection(rectA.x,
+			rectA.y,
+			rectA.width,
+			rectA.height,
+			rectB.x,
+			rectB.y,
+			rectB.width,
+			rectB.height,
+			result);
+	}
+
+	/**
+	 * This method is the same as the one above, except that the rectangles
+	 * are given by their top left corners and dimensions.
+	 */
+	public static boolean getIntersection(double xA,
+		double yA,
+		double widthA,
+		double heightA,
+		double xB,
+		double yB,
+		double widthB,
+		double heightB,
+		double[] result)
 	{
 		//result[0-1] will contain clipPoint of rectA, result[2-3] will contain clipPoint of rectB
 
-		double p1x = rectA.getCenterX();
-		double p1y = rectA.getCenterY();		
-		double p2x = rectB.getCenterX();
-		double p2y = rectB.getCenterY();
+		double p1x = xA + widthA / 2;
+		double p1y = yA + heightA / 2;		
+		double p2x = xB + widthB / 2;
+		double p2y = yB + heightB / 2;
 		
 		//if two rectangles intersect, then clipping points are centers
-		if (rectA.intersects(rectB))
+		if (IGeometry.intersects(xA, yA, widthA, heightA,
+			xB, yB, widthB, heightB))
 		{
 			result[0] = p1x;
 			result[1] = p1y;
@@ -214,24 +240,24 @@ abstract public class IGeometry
 		}
 		
 		//variables for rectA
-		double topLeftAx = rectA.getX();
-		double topLeftAy = rectA.getY();
-		double topRightAx = rectA.getRight();
-		double bottomLeftAx = rectA.getX();
-		double bottomLeftAy = rectA.getBottom();
-		double bottomRightAx = rectA.getRight();
-		double halfWidthA = rectA.getWidthHalf();
-		double halfHeightA = rectA.getHeightHalf();
+		double topLeftAx = xA;
+		double topLeftAy = yA;
+		double topRightAx = xA + widthA;
+		double bottomLeftAx = xA;
+		double bottomLeftAy = yA + heightA;
+		double bottomRightAx = xA + widthA;
+		double halfWidthA = widthA / 2;
+		double halfHeightA = heightA / 2;
 		
 		//variables for rectB
-		double topLeftBx = rectB.getX();
-		double topLeftBy = rectB.getY();
-		double topRightBx = rectB.getRight();
-		double bottomLeftBx = rectB.getX();
-		double bottomLeftBy = rectB.getBottom();
-		double bottomRightBx = rectB.getRight();
-		double halfWidthB = rectB.getWidthHalf();
-		double halfHeightB = rectB.getHeightHalf();
+		double topLeftBx = xB;
+		double topLeftBy = yB;
+		double topRightBx = xB + widthB;
+		double bottomLeftBx = xB;
+		double bottomLeftBy = yB + heightB;
+		double bottomRightBx = xB + widthB;
+		double halfWidthB = widthB / 2;
+		double halfHeightB = heightB / 2;
 
 		//flag whether clipping points are found
 		boolean clipPointAFound = false;
@@ -289,8 +315,8 @@ abstract public class IGeometry
 		else
 		{
 			//slopes of rectA's and rectB's diagonals
-			double slopeA = rectA.height / rectA.width;
-			double slopeB = rectB.height / rectB.width;
+			double slopeA = heightA / widthA;
+			double slopeB = heightB / widthB;
 			
 			//slope of line between center of rectA and center of rectB
 			double slopePrime = (p2y - p1y) / (p2x - p1x);
@@ -465,6 +491,25 @@ abstract public class IGeometry
 		return false;
 	}
 	
+	/**
+	 * This method returns whether the two input rectangles, given by their top
+	 * left corners and dimensions, intersect (see RectangleD.intersects).
+	 */
+	public static boolean intersects(double xA,
+		double yA,
+		double widthA,
+		double heightA,
+		double xB,
+		double yB,
+		double widthB,
+		double heightB)
+	{
+		return !(xA + widthA < xB) &&
+			!(yA + heightA < yB) &&
+			!(xB + widthB < xA) &&
+			!(yB + heightB < yA);
+	}
+	
 	/**
 	 * This method returns in which cardinal direction does input point stays
 	 * 1: North
@@ -587,6 +632,18 @@ abstract public class IGeometry
 		return result;
 	}
 
+	/**
+	 * This method is the same as the one above, with points given by their
+	 * coordinates.
+	 */
+	public static boolean doIntersect(double x1, double y1,
+		double x2, double y2,
+		double x3, double y3,
+		double x4, double y4)
+	{
+		return Line2D.linesIntersect(x1, y1, x2, y2, x3, y3, x4, y4);
+	}
+
 	/**
 	* Given a vector as a PointD object, returns the normalized form of
 	* the vector in [-1, 1] scale.  
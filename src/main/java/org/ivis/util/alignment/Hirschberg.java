@@ -0,0 +1,474 @@
+package org.ivis.util.alignment;
+
+/**
+ * This class computes the same kind of alignment as NeedlemanWunsch (with
+ * beginning and end gaps ignored), in linear rather than quadratic space, due
+ * to D.S.Hirschberg (1975).
+ *
+ * The first and last positions of a best alignment are found first, as in the
+ * score only computation, keeping a single row of the matrix along with the
+ * position on row 0 or column 0 each best path starts from. The (plain
+ * global) alignment in between is then built by divide and conquer: the
+ * middle row is crossed by a best path at the column maximizing the sum of
+ * the score of the upper half (computed forward) and the score of the lower
+ * half (computed backward), and both halves are aligned recursively. Time
+ * required is still O(mn), about twice that of building the whole matrix.
+ *
+ * The alignment built is a best one, though not necessarily the same as the
+ * one built by NeedlemanWunsch when there are more than one.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class Hirschberg extends NeedlemanWunsch
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Alignment being built, from its first position to the last one
+	 */
+	private StringBuffer gappedSeq1;
+	private StringBuffer scoreTagLine;
+	private StringBuffer gappedSeq2;
+
+// -----------------------------------------------------------------------------
+// Section: Alignment
+// -----------------------------------------------------------------------------
+	/**
+	 * This method builds a best alignment between the loaded sequences in
+	 * linear space.
+	 */
+	protected PairwiseAlignment computePairwiseAlignment()
+		throws IncompatibleScoringSchemeException
+	{
+		int rows = this.seq1.length();
+		int cols = this.seq2.length();
+		int[] row = new int[cols + 1];
+		int maxScoreInLastCol = Integer.MIN_VALUE;
+		int maxScoreInLastRow = Integer.MIN_VALUE;
+		int endRowInLastCol = -1;
+		int endColInLastRow = -1;
+		int startInLastCol = 0;
+		int startInLastRow = 0;
+		int diagonal, up, ins, sub, del;
+
+		// Starts of best paths to positions of the current row: a positive
+		// value r stands for position (r, 0), others -c for position (0, c)
+		int[] start = new int[cols + 1];
+		int diagonalStart, upStart;
+
+		for (int c = 0; c <= cols; c++)
+		{
+			start[c] = -c;
+		}
+
+		// find the last position of a best alignment as NeedlemanWunsch does:
+		// a position of the last column first, then one of the last row if its
+		// score is strictly greater
+
+		for (int r = 1; r <= rows; r++)
+		{
+			diagonal = 0;
+			diagonalStart = start[0];
+			start[0] = r;
+
+			for (int c = 1; c <= cols; c++)
+			{
+				up = row[c];
+				upStart = start[c];
+				ins = row[c - 1] + this.scoreInsertion(this.seq2.charAt(c));
+				sub = diagonal + this.scoreSubstitution(this.seq1.charAt(r),
+					this.seq2.charAt(c));
+				del = up + this.scoreDeletion(this.seq1.charAt(r));
+				row[c] = this.max(ins, sub, del);
+
+				if (row[c] == sub)
+				{
+					start[c] = diagonalStart;
+
+					if (c == cols && row[c] > maxScoreInLastCol)
+					{
+						maxScoreInLastCol = row[c];
+						endRowInLastCol = r;
+						startInLastCol = diagonalStart;
+					}
+
+					if (r == rows && row[c] > maxScoreInLastRow)
+					{
+						maxScoreInLastRow = row[c];
+						endColInLastRow = c;
+						startInLastRow = diagonalStart;
+					}
+				}
+				else if (row[c] == ins)
+				{
+					start[c] = start[c - 1];
+				}
+				else
+				{
+					start[c] = upStart;
+				}
+
+				diagonal = up;
+				diagonalStart = upStart;
+			}
+		}
+
+		int endRow = endRowInLastCol;
+		int endCol = cols;
+		int startPosition = startInLastCol;
+		int maxScore = maxScoreInLastCol;
+
+		if (maxScoreInLastRow > maxScoreInLastCol)
+		{
+			endRow = rows;
+			endCol = endColInLastRow;
+			startPosition = startInLastRow;
+			maxScore = maxScoreInLastRow;
+		}
+
+		assert endRow > 0 && endCol > 0;
+
+		int startRow = Math.max(startPosition, 0);
+		int startCol = Math.max(-startPosition, 0);
+
+		this.gappedSeq1 = new StringBuffer();
+		this.scoreTagLine = new StringBuffer();
+		this.gappedSeq2 = new StringBuffer();
+
+		this.alignGlobal(startRow + 1, endRow - 1, startCol + 1, endCol - 1);
+		this.appendSubstitution(endRow, endCol);
+
+		PairwiseAlignment alignment = new PairwiseAlignment(
+			this.gappedSeq1.toString(),
+			this.scoreTagLine.toString(),
+			this.gappedSeq2.toString(),
+			maxScore);
+
+		this.gappedSeq1 = null;
+		this.scoreTagLine = null;
+		this.gappedSeq2 = null;
+
+		return alignment;
+	}
+
+	/*
+	 * This method appends a best global alignment of the input ranges of the
+	 * first and second sequences.
+	 */
+	private void alignGlobal(int firstRow,
+		int lastRow,
+		int firstCol,
+		int lastCol)
+		throws IncompatibleScoringSchemeException
+	{
+		if (firstRow > lastRow)
+		{
+			for (int c = firstCol; c <= lastCol; c++)
+			{
+				this.appendInsertion(c);
+			}
+
+			return;
+		}
+
+		if (firstCol > lastCol)
+		{
+			for (int r = firstRow; r <= lastRow; r++)
+			{
+				this.appendDeletion(r);
+			}
+
+			return;
+		}
+
+		if (firstRow == lastRow)
+		{
+			this.alignInMatrix(firstRow, lastRow, firstCol, lastCol);
+			return;
+		}
+
+		int midRow = (firstRow + lastRow) / 2;
+		int[] forward =
+			this.calcForwardScores(firstRow, midRow, firstCol, lastCol);
+		int[] backward =
+			this.calcBackwardScores(midRow + 1, lastRow, firstCol, lastCol);
+		int midCol = firstCol - 1 + this.findBestSplit(forward, backward);
+
+		this.alignGlobal(firstRow, midRow, firstCol, midCol);
+		this.alignGlobal(midRow + 1, lastRow, midCol + 1, lastCol);
+	}
+
+	/*
+	 * This method returns the offset (from the column before the first one)
+	 * of the column where a best path crosses the split row, given scores of
+	 * the upper and lower parts for each such column.
+	 */
+	private int findBestSplit(int[] forward, int[] backward)
+	{
+		int bestOffset = 0;
+
+		for (int k = 1; k < forward.length; k++)
+		{
+			if (forward[k] + backward[k] >
+				forward[bestOffset] + backward[bestOffset])
+			{
+				bestOffset = k;
+			}
+		}
+
+		return bestOffset;
+	}
+
+	/*
+	 * This method returns the scores of the best global alignments of the
+	 * input range of rows of the first sequence with the second sequence from
+	 * the input first column up to each column; entry k corresponds to the
+	 * alignment ending at column firstCol - 1 + k.
+	 */
+	private int[] calcForwardScores(int firstRow,
+		int lastRow,
+		int firstCol,
+		int lastCol)
+		throws IncompatibleScoringSchemeException
+	{
+		int noOfCols = lastCol - firstCol + 1;
+		int[] row = new int[noOfCols + 1];
+		int diagonal, up, left;
+		char rowChar, colChar;
+
+		for (int k = 1; k <= noOfCols; k++)
+		{
+			row[k] = row[k - 1] +
+				this.scoreInsertion(this.seq2.charAt(firstCol - 1 + k));
+		}
+
+		for (int r = firstRow; r <= lastRow; r++)
+		{
+			rowChar = this.seq1.charAt(r);
+			diagonal = row[0];
+			row[0] += this.scoreDeletion(rowChar);
+			left = row[0];
+
+			for (int k = 1; k <= noOfCols; k++)
+			{
+				colChar = this.seq2.charAt(firstCol - 1 + k);
+				up = row[k];
+				left = this.max(left + this.scoreInsertion(colChar),
+					diagonal + this.scoreSubstitution(rowChar, colChar),
+					up + this.scoreDeletion(rowChar));
+				diagonal = up;
+				row[k] = left;
+			}
+		}
+
+		return row;
+	}
+
+	/*
+	 * This method returns the scores of the best global alignments of the
+	 * input range of rows of the first sequence with the second sequence from
+	 * each column on to the input last column; entry k corresponds to the
+	 * alignment starting after column firstCol - 1 + k.
+	 */
+	private int[] calcBackwardScores(int firstRow,
+		int lastRow,
+		int firstCol,
+		int lastCol)
+		throws IncompatibleScoringSchemeException
+	{
+		int noOfCols = lastCol - firstCol + 1;
+		int[] row = new int[noOfCols + 1];
+		int diagonal, down, right;
+		char rowChar, colChar;
+
+		for (int k = noOfCols - 1; k >= 0; k--)
+		{
+			row[k] = row[k + 1] +
+				this.scoreInsertion(this.seq2.charAt(firstCol + k));
+		}
+
+		for (int r = lastRow; r >= firstRow; r--)
+		{
+			rowChar = this.seq1.charAt(r);
+			diagonal = row[noOfCols];
+			row[noOfCols] += this.scoreDeletion(rowChar);
+			right = row[noOfCols];
+
+			for (int k = noOfCols - 1; k >= 0; k--)
+			{
+				colChar = this.seq2.charAt(firstCol + k);
+				down = row[k];
+				right = this.max(right + this.scoreInsertion(colChar),
+					diagonal + this.scoreSubstitution(rowChar, colChar),
+					down + this.scoreDeletion(rowChar));
+				diagonal = down;
+				row[k] = right;
+			}
+		}
+
+		return row;
+	}
+
+	/*
+	 * This method appends a best global alignment of the input ranges of the
+	 * first and second sequences by building the whole matrix of the ranges,
+	 * which is used when the range of rows is short enough.
+	 */
+	private void alignInMatrix(int firstRow,
+		int lastRow,
+		int firstCol,
+		int lastCol)
+		throws IncompatibleScoringSchemeException
+	{
+		int noOfRows = lastRow - firstRow + 1;
+		int noOfCols = lastCol - firstCol + 1;
+		int[][] matrix = new int[noOfRows + 1][noOfCols + 1];
+		int i, j;
+
+		for (i = 1; i <= noOfRows; i++)
+		{
+			matrix[i][0] = matrix[i - 1][0] +
+				this.scoreDeletion(this.seq1.charAt(firstRow - 1 + i));
+		}
+
+		for (j = 1; j <= noOfCols; j++)
+		{
+			matrix[0][j] = matrix[0][j - 1] +
+				this.scoreInsertion(this.seq2.charAt(firstCol - 1 + j));
+		}
+
+		for (i = 1; i <= noOfRows; i++)
+		{
+			for (j = 1; j <= noOfCols; j++)
+			{
+				matrix[i][j] = this.max(
+					matrix[i][j - 1] + this.scoreInsertion(
+						this.seq2.charAt(firstCol - 1 + j)),
+					matrix[i - 1][j - 1] + this.scoreSubstitution(
+						this.seq1.charAt(firstRow - 1 + i),
+						this.seq2.charAt(firstCol - 1 + j)),
+					matrix[i - 1][j] + this.scoreDeletion(
+						this.seq1.charAt(firstRow - 1 + i)));
+			}
+		}
+
+		// trace back, recording the operations in reverse order
+
+		int[] operations = new int[noOfRows + noOfCols];
+		int noOfOperations = 0;
+		int r, c;
+
+		i = noOfRows;
+		j = noOfCols;
+
+		while (i > 0 || j > 0)
+		{
+			r = firstRow - 1 + i;
+			c = firstCol - 1 + j;
+
+			if (i > 0 && j > 0 &&
+				matrix[i][j] == matrix[i - 1][j - 1] + this.scoreSubstitution(
+					this.seq1.charAt(r), this.seq2.charAt(c)))
+			{
+				operations[noOfOperations++] = SUBSTITUTION;
+				i--;
+				j--;
+			}
+			else if (j > 0 &&
+				matrix[i][j] == matrix[i][j - 1] +
+					this.scoreInsertion(this.seq2.charAt(c)))
+			{
+				operations[noOfOperations++] = INSERTION;
+				j--;
+			}
+			else
+			{
+				operations[noOfOperations++] = DELETION;
+				i--;
+			}
+		}
+
+		// then append them in order
+
+		for (int k = noOfOperations - 1; k >= 0; k--)
+		{
+			if (operations[k] == SUBSTITUTION)
+			{
+				this.appendSubstitution(firstRow + i, firstCol + j);
+				i++;
+				j++;
+			}
+			else if (operations[k] == INSERTION)
+			{
+				this.appendInsertion(firstCol + j);
+				j++;
+			}
+			else
+			{
+				this.appendDeletion(firstRow + i);
+				i++;
+			}
+		}
+	}
+
+	/*
+	 * This method appends a substitution of the characters at input positions
+	 * of the first and second sequences.
+	 */
+	private void appendSubstitution(int r, int c)
+		throws IncompatibleScoringSchemeException
+	{
+		char char1 = this.seq1.charAt(r);
+		char char2 = this.seq2.charAt(c);
+
+		this.gappedSeq1.append(char1);
+
+		if (char1 == char2)
+		{
+			this.scoreTagLine.append(this.useMatchTag() ? MATCH_TAG : char1);
+		}
+		else if (this.scoreSubstitution(char1, char2) > 0)
+		{
+			this.scoreTagLine.append(APPROXIMATE_MATCH_TAG);
+		}
+		else
+		{
+			this.scoreTagLine.append(MISMATCH_TAG);
+		}
+
+		this.gappedSeq2.append(char2);
+	}
+
+	/*
+	 * This method appends an insertion of the character at input position of
+	 * the second sequence.
+	 */
+	private void appendInsertion(int c)
+	{
+		this.gappedSeq1.append(GAP_CHARACTER);
+		this.scoreTagLine.append(GAP_TAG);
+		this.gappedSeq2.append(this.seq2.charAt(c));
+	}
+
+	/*
+	 * This method appends a deletion of the character at input position of
+	 * the first sequence.
+	 */
+	private void appendDeletion(int r)
+	{
+		this.gappedSeq1.append(this.seq1.charAt(r));
+		this.scoreTagLine.append(GAP_TAG);
+		this.gappedSeq2.append(GAP_CHARACTER);
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Class constants
+// -----------------------------------------------------------------------------
+	/*
+	 * Operations of an alignment, recorded during trace back
+	 */
+	private static final int SUBSTITUTION = 0;
+	private static final int INSERTION = 1;
+	private static final int DELETION = 2;
+}
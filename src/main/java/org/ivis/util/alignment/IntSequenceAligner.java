@@ -0,0 +1,97 @@
+package org.ivis.util.alignment;
+
+/**
+ * This class computes global alignment scores of sequences of integers, such
+ * as node indices, which (unlike characters of a CharSequence) need not come
+ * from a small alphabet. It uses the Needleman-Wunsch algorithm as modified in
+ * NeedlemanWunsch, with a basic scoring scheme given at construction: gaps at
+ * the beginning and end of sequences are not penalized (row 0 and column 0
+ * are initialized to all 0's), and the score is the maximum of the entries in
+ * the last row and column that are reached by a substitution.
+ *
+ * Only the current row of the dynamic programming matrix is kept, so memory
+ * needed is linear in the length of the second sequence. An instance holds no
+ * state other than its scores, and thus may be shared, even among threads.
+ *
+ * Copyright: i-Vis Research Group, Bilkent University, 2007 - present
+ */
+public class IntSequenceAligner
+{
+// -----------------------------------------------------------------------------
+// Section: Instance variables
+// -----------------------------------------------------------------------------
+	/*
+	 * Reward for a match (a substitution of equal integers)
+	 */
+	private final int matchReward;
+
+	/*
+	 * Penalty for a mismatch (a substitution of different integers)
+	 */
+	private final int mismatchPenalty;
+
+	/*
+	 * Cost of a gap (an insertion or deletion of an integer)
+	 */
+	private final int gapCost;
+
+// -----------------------------------------------------------------------------
+// Section: Constructors and initialization
+// -----------------------------------------------------------------------------
+	/**
+	 * Constructor: creates an aligner with the input scores, as in
+	 * BasicScoringScheme.
+	 */
+	public IntSequenceAligner(int matchReward, int mismatchPenalty, int gapCost)
+	{
+		this.matchReward = matchReward;
+		this.mismatchPenalty = mismatchPenalty;
+		this.gapCost = gapCost;
+	}
+
+// -----------------------------------------------------------------------------
+// Section: Alignment
+// -----------------------------------------------------------------------------
+	/**
+	 * This method computes the score of the best alignment of the input
+	 * sequences. It returns Integer.MIN_VALUE if either sequence is empty,
+	 * in which case there is no alignment with a substitution.
+	 */
+	public int computeScore(int[] sequence1, int[] sequence2)
+	{
+		int rows = sequence1.length + 1;
+		int cols = sequence2.length + 1;
+		int[] row = new int[cols];
+		int maxScore = Integer.MIN_VALUE;
+		int diagonal, up, sub, value, element;
+
+		for (int r = 1; r < rows; r++)
+		{
+			element = sequence1[r - 1];
+
+			// row[c] holds entry (r, c) for c < current column, and entry
+			// (r-1, c) otherwise; column 0 stays 0
+			diagonal = 0;
+
+			for (int c = 1; c < cols; c++)
+			{
+				up = row[c];
+				sub = diagonal + (element == sequence2[c - 1] ?
+					this.matchReward : this.mismatchPenalty);
+				value = Math.max(Math.max(row[c - 1], up) + this.gapCost, sub);
+
+				if (value == sub &&
+					value > maxScore &&
+					(r == rows - 1 || c == cols - 1))
+				{
+					maxScore = value;
+				}
+
+				diagonal = up;
+				row[c] = value;
+			}
+		}
+
+		return maxScore;
+	}
+}
@@ -67,7 +67,9 @@ import java.io.IOException;
  * <P>If the similarity value only is needed (and not the alignment itself), it is easy to
  * reduce the space requirement to O(n) by keeping just the last row or column in memory.
  * This is precisely what is done by the {@link #computeScore computeScore} method. Note
- * that it still requires O(n<SUP>2</SUP>) time.</P>
+ * that it still requires O(n<SUP>2</SUP>) time, unless the computation is restricted to
+ * a band around the diagonal of the matrix (see {@link #setBandWidth setBandWidth}).
+ * For the alignment itself in linear space, see the {@linkplain Hirschberg} algorithm.</P>
  *
  * <P>For a more efficient approach to the global alignment problem, see the
  * {@linkplain CrochemoreLandauZivUkelson} algorithm. For local alignment, see the
@@ -107,6 +109,21 @@ public class NeedlemanWunsch extends PairwiseAlignmentAlgorithm
 	 */
 	protected int[][] matrix;
 
+	/**
+	 * Value of positions of the matrix that are out of the band when computing the score
+	 * only. It is low enough never to be chosen, yet far from overflowing when scores
+	 * are added to it.
+	 */
+	protected static final int OUT_OF_BAND = Integer.MIN_VALUE / 2;
+
+	/**
+	 * Width of the band of the matrix computed by the <CODE>computeScore</CODE> method,
+	 * 0 meaning that the whole matrix is computed.
+	 *
+	 * @see #computeScore
+	 */
+	protected int band_width = 0;
+
 	/**
 	 * Loads sequences into {@linkplain CharSequence} instances. In case of any error,
 	 * an exception is raised by the constructor of <CODE>CharSequence</CODE> (please
@@ -316,93 +333,157 @@ public class NeedlemanWunsch extends PairwiseAlignmentAlgorithm
 
 	/**
 	 * Computes the score of the best global alignment between the two sequences using the
-	 * scoring scheme previously set. This method calculates the similarity value only
-	 * (doesn't build the whole matrix so the alignment cannot be recovered, however it
-	 * has the advantage of requiring O(n) space only).
+	 * scoring scheme previously set, with the same initial and terminating conditions as
+	 * the <CODE>computeMatrix</CODE> and <CODE>buildOptimalAlignment</CODE> methods. This
+	 * method calculates the similarity value only (doesn't build the whole matrix so the
+	 * alignment cannot be recovered, however it has the advantage of requiring O(n) space
+	 * only, n being the length of the shorter sequence). Just two rows are kept, one for
+	 * the previous and one for the current row of the matrix; the matrix is transposed if
+	 * needed so that rows go along the shorter sequence.
+	 *
+	 * <P>If a band width is set, only positions of the matrix within that many columns
+	 * of its diagonal (from the upper-left to the lower-right position) are computed,
+	 * reducing the time requirement to O(m * band width). The score is exact as long as a
+	 * best alignment stays within the band.</P>
 	 *
 	 * @return score of the best global alignment between the loaded sequences
 	 * @throws IncompatibleScoringSchemeException If the scoring scheme is not compatible
 	 * with the loaded sequences.
+	 * @see #setBandWidth
 	 */
 	protected int computeScore () throws IncompatibleScoringSchemeException
 	{
-		int[]	array;
-		int		r, c, rows, cols, tmp, ins, del, sub;
-
-		rows = seq1.length()+1;
-		cols = seq2.length()+1;
+		boolean	transposed;
+		int[]	previous, current, tmp;
+		int		outer_length, inner_length, i, j, first, last, next_last;
+		int		ins, del, sub, max_score;
+		char	outer_char, inner_char;
+
+		transposed = seq1.length() < seq2.length();
+		outer_length = transposed ? seq2.length() : seq1.length();
+		inner_length = transposed ? seq1.length() : seq2.length();
+
+		// initiate row 0 (UD: all 0's to trim beginning and end gaps)
+		previous = new int [inner_length + 1];
+		current = new int [inner_length + 1];
+
+		//UD: max is searched for in the last row and column, among the positions
+		//UD: reached by a substitution
+		max_score = Integer.MIN_VALUE;
 
-		if (rows <= cols)
+		for (i = 1; i <= outer_length; i++)
 		{
-			// goes columnwise
-			array = new int [rows];
+			first = bandStart (i, outer_length, inner_length);
+			last = bandEnd (i, outer_length, inner_length);
+			outer_char = transposed ? seq2.charAt(i) : seq1.charAt(i);
 
-			// initiate first column
-			array[0] = 0;
-			for (r = 1; r < rows; r++)
-				array[r] = array[r-1] + scoreDeletion(seq1.charAt(r));
+			// initiate column 0 (UD: all 0's), or mark the position to the left of the
+			// band as never to be chosen
+			current[first - 1] = (first == 1) ? 0 : OUT_OF_BAND;
 
-			// calculate the similarity matrix (keep current column only)
-			for (c = 1; c < cols; c++)
+			for (j = first; j <= last; j++)
 			{
-				// initiate first row (tmp hold values
-				// that will be later moved to the array)
-				tmp = array[0] + scoreInsertion(seq2.charAt(c));
+				inner_char = transposed ? seq1.charAt(j) : seq2.charAt(j);
 
-				for (r = 1; r < rows; r++)
+				if (transposed)
+				{
+					ins = previous[j] + scoreInsertion(outer_char);
+					sub = previous[j-1] + scoreSubstitution(inner_char, outer_char);
+					del = current[j-1] + scoreDeletion(inner_char);
+				}
+				else
 				{
-					ins = array[r] + scoreInsertion(seq2.charAt(c));
-					sub = array[r-1] + scoreSubstitution(seq1.charAt(r), seq2.charAt(c));
-					del = tmp + scoreDeletion(seq1.charAt(r));
+					ins = current[j-1] + scoreInsertion(inner_char);
+					sub = previous[j-1] + scoreSubstitution(outer_char, inner_char);
+					del = previous[j] + scoreDeletion(outer_char);
+				}
 
-					// move the temp value to the array
-					array[r-1] = tmp;
+				// choose the greatest
+				current[j] = max (ins, sub, del);
 
-					// choose the greatest
-					tmp = max (ins, sub, del);
+				if ((i == outer_length || j == inner_length) &&
+					current[j] == sub && current[j] > max_score)
+				{
+					max_score = current[j];
 				}
+			}
+
+			// mark positions to the right of the band that are in the band of the next
+			// row as never to be chosen
+			if (i < outer_length)
+			{
+				next_last = bandEnd (i + 1, outer_length, inner_length);
 
-				// move the temp value to the array
-				array[rows - 1] = tmp;
+				for (j = last + 1; j <= next_last; j++)
+					current[j] = OUT_OF_BAND;
 			}
 
-			return array[rows - 1];
+			tmp = previous;
+			previous = current;
+			current = tmp;
 		}
-		else
-		{
-			// goes rowwise
-			array = new int [cols];
 
-			// initiate first row
-			array[0] = 0;
-			for (c = 1; c < cols; c++)
-				array[c] = array[c-1] + scoreInsertion(seq2.charAt(c));
+		return max_score;
+	}
 
-			// calculate the similarity matrix (keep current row only)
-			for (r = 1; r < rows; r++)
-			{
-				// initiate first column (tmp hold values
-				// that will be later moved to the array)
-				tmp = array[0] + scoreDeletion(seq1.charAt(r));
+	/**
+	 * Returns the first column of the band in the given row of a matrix with the given
+	 * number of rows and columns (excluding row 0 and column 0).
+	 *
+	 * @param row the row
+	 * @param rows number of rows
+	 * @param cols number of columns
+	 * @return first column of the band in the row
+	 */
+	protected int bandStart (int row, int rows, int cols)
+	{
+		if (band_width == 0)
+			return 1;
 
-				for (c = 1; c < cols; c++)
-				{
-					ins = tmp + scoreInsertion(seq2.charAt(c));
-					sub = array[c-1] + scoreSubstitution(seq1.charAt(r), seq2.charAt(c));
-					del = array[c] + scoreDeletion(seq1.charAt(r));
+		return Math.max (1, (int) ((long) row * cols / rows) - band_width);
+	}
 
-					// move the temp value to the array
-					array[c-1] = tmp;
+	/**
+	 * Returns the last column of the band in the given row of a matrix with the given
+	 * number of rows and columns (excluding row 0 and column 0).
+	 *
+	 * @param row the row
+	 * @param rows number of rows
+	 * @param cols number of columns
+	 * @return last column of the band in the row
+	 */
+	protected int bandEnd (int row, int rows, int cols)
+	{
+		if (band_width == 0)
+			return cols;
 
-					// choose the greatest
-					tmp = max (ins, sub, del);
-				}
+		return Math.min (cols, (int) ((long) row * cols / rows) + band_width);
+	}
 
-				// move the temp value to the array
-				array[cols - 1] = tmp;
-			}
+	/**
+	 * Sets the width of the band of the dynamic programming matrix computed when just
+	 * the score is requested. Any score already computed is lost.
+	 *
+	 * @param band_width the band width, 0 meaning that the whole matrix is computed
+	 * @see #computeScore
+	 */
+	public void setBandWidth (int band_width)
+	{
+		if (band_width < 0)
+			throw new IllegalArgumentException ("Negative band width.");
 
-			return array[cols - 1];
-		}
+		this.band_width = band_width;
+		this.score_computed = false;
+	}
+
+	/**
+	 * Returns the width of the band of the dynamic programming matrix computed when just
+	 * the score is requested.
+	 *
+	 * @return the band width, 0 meaning that the whole matrix is computed
+	 */
+	public int getBandWidth ()
+	{
+		return band_width;
 	}
 }
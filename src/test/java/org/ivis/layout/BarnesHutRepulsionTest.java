@@ -0,0 +1,164 @@
+package org.ivis.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.cose.CoSELayout;
+import org.ivis.layout.fd.FDLayout;
+import org.ivis.layout.fd.FDLayoutNode;
+import org.ivis.layout.sbgn.SbgnPDConstants;
+import org.ivis.layout.sbgn.SbgnPDLayout;
+
+/**
+ * Checks repulsion forces calculated by Barnes-Hut approximation against the
+ * exact (all pairs) ones: they should be the same when no cell is
+ * approximated, and close for a small opening angle.
+ */
+public class BarnesHutRepulsionTest extends TestCase
+{
+	/*
+	 * Tolerated error relative to the largest exact force for the small
+	 * opening angle used below
+	 */
+	private static final double SMALL_THETA = 0.2;
+	private static final double SMALL_THETA_TOLERANCE = 0.01;
+
+	public void testNoApproximation() throws Exception
+	{
+		FDLayout layout = this.createLayout(new CoSELayout(), 200, false);
+
+		this.checkForces(layout, 0.0, 1e-9);
+	}
+
+	public void testSmallTheta() throws Exception
+	{
+		FDLayout layout = this.createLayout(new CoSELayout(), 400, false);
+
+		this.checkForces(layout, SMALL_THETA, SMALL_THETA_TOLERANCE);
+	}
+
+	public void testSmallThetaUniformLeafNodeSizes() throws Exception
+	{
+		FDLayout layout = this.createLayout(new CoSELayout(), 400, false);
+		layout.uniformLeafNodeSizes = true;
+
+		this.checkForces(layout, SMALL_THETA, SMALL_THETA_TOLERANCE);
+	}
+
+	public void testSbgnPDPortsExcluded() throws Exception
+	{
+		FDLayout layout = this.createLayout(new SbgnPDLayout(), 300, true);
+
+		this.checkForces(layout, 0.0, 1e-9);
+		this.checkForces(layout, SMALL_THETA, SMALL_THETA_TOLERANCE);
+	}
+
+	/*
+	 * This method compares the repulsion forces on all nodes of the input
+	 * layout calculated exactly and with Barnes-Hut approximation using the
+	 * input opening angle.
+	 */
+	private void checkForces(FDLayout layout, double theta, double tolerance)
+	{
+		Object[] nodes = layout.getAllNodes();
+		double[] exactX = new double[nodes.length];
+		double[] exactY = new double[nodes.length];
+		double maxForce = 0.0;
+		FDLayoutNode node;
+		int i;
+
+		layout.useBarnesHutApproximation = false;
+		layout.useFRGridVariant = false;
+		layout.calcRepulsionForces();
+
+		for (i = 0; i < nodes.length; i++)
+		{
+			node = (FDLayoutNode) nodes[i];
+			exactX[i] = node.repulsionForceX;
+			exactY[i] = node.repulsionForceY;
+			maxForce = Math.max(maxForce,
+				Math.hypot(exactX[i], exactY[i]));
+		}
+
+		layout.resetForces();
+		layout.useBarnesHutApproximation = true;
+		layout.barnesHutTheta = theta;
+		layout.calcRepulsionForces();
+
+		assertTrue("No repulsion at all", maxForce > 0.0);
+
+		for (i = 0; i < nodes.length; i++)
+		{
+			node = (FDLayoutNode) nodes[i];
+			double error = Math.hypot(node.repulsionForceX - exactX[i],
+				node.repulsionForceY - exactY[i]);
+
+			assertTrue("Force on node " + i + " is off by " + error,
+				error <= tolerance * maxForce);
+		}
+
+		layout.resetForces();
+	}
+
+	/*
+	 * This method creates the input layout of a random graph with a few
+	 * compounds, nodes placed randomly. Some nodes are made ports if asked.
+	 */
+	private FDLayout createLayout(FDLayout layout, int size, boolean addPorts)
+	{
+		LGraphManager gm = layout.getGraphManager();
+		LGraph root = gm.addRoot();
+		Random random = new Random(1);
+		List<LNode> nodes = new ArrayList<LNode>();
+		LNode node;
+
+		for (int i = 0; i < size; i++)
+		{
+			node = root.add(layout.newNode(null));
+			node.setWidth(20 + random.nextInt(40));
+			node.setHeight(20 + random.nextInt(40));
+			node.setLocation(2000 * random.nextDouble(),
+				2000 * random.nextDouble());
+			node.type = (addPorts && i % 5 == 0) ?
+				SbgnPDConstants.INPUT_PORT : SbgnPDConstants.MACROMOLECULE;
+			nodes.add(node);
+		}
+
+		for (int i = 0; i < 4; i++)
+		{
+			LNode compound = root.add(layout.newNode(null));
+			compound.type = SbgnPDConstants.COMPLEX;
+			LGraph child = gm.add(layout.newGraph(null), compound);
+
+			for (int j = 0; j < 20; j++)
+			{
+				node = child.add(layout.newNode(null));
+				node.setWidth(15);
+				node.setHeight(15);
+				node.setLocation(300 * (i + random.nextDouble()),
+					300 * random.nextDouble());
+				node.type = SbgnPDConstants.MACROMOLECULE;
+			}
+		}
+
+		for (int i = 1; i < size; i++)
+		{
+			root.add(layout.newEdge(null), nodes.get(i),
+				nodes.get(random.nextInt(i)));
+		}
+
+		gm.updateBounds();
+		layout.calcNoOfChildrenForAllNodes();
+
+		return layout;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(BarnesHutRepulsionTest.class);
+	}
+}
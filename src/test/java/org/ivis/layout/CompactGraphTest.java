@@ -0,0 +1,140 @@
+package org.ivis.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.cose.CoSELayout;
+
+/**
+ * Checks that CoSE layout calculating spring and repulsion forces on the
+ * compact graph ends up with exactly the same node positions as calculating
+ * them on node and edge objects, for compound graphs with inter-graph edges.
+ */
+public class CompactGraphTest extends TestCase
+{
+	public void tearDown() throws Exception
+	{
+		LayoutOptionsPack.getInstance().setDefaultLayoutProperties();
+
+		super.tearDown();
+	}
+
+	public void testAllPairs() throws Exception
+	{
+		this.checkLayouts(false, false);
+	}
+
+	public void testGrid() throws Exception
+	{
+		this.checkLayouts(true, false);
+	}
+
+	public void testUniformLeafNodeSizes() throws Exception
+	{
+		this.checkLayouts(false, true);
+	}
+
+	/*
+	 * This method lays out the same graphs with and without the compact
+	 * graph, using the input options, and checks that all nodes end up at the
+	 * same positions.
+	 */
+	private void checkLayouts(boolean useFRGridVariant,
+		boolean uniformLeafNodeSizes)
+	{
+		LayoutOptionsPack.General general =
+			LayoutOptionsPack.getInstance().getGeneral();
+		LayoutOptionsPack.CoSE options =
+			LayoutOptionsPack.getInstance().getCoSE();
+
+		// start from the input positions
+		general.incremental = true;
+		general.uniformLeafNodeSizes = uniformLeafNodeSizes;
+		options.smartRepulsionRangeCalc = useFRGridVariant;
+		options.barnesHutRepulsionCalc = false;
+		options.parallelForceCalc = false;
+
+		for (int seed = 1; seed <= 3; seed++)
+		{
+			options.compactGraphCalc = false;
+			CoSELayout layout = new CoSELayout();
+			List<LNode> expected = this.createGraph(layout, seed);
+			layout.runLayout();
+
+			options.compactGraphCalc = true;
+			CoSELayout compactLayout = new CoSELayout();
+			List<LNode> nodes = this.createGraph(compactLayout, seed);
+			compactLayout.runLayout();
+
+			for (int i = 0; i < nodes.size(); i++)
+			{
+				assertFalse(Double.isNaN(expected.get(i).getLeft()));
+				assertEquals(expected.get(i).getLeft(), nodes.get(i).getLeft(),
+					0.0);
+				assertEquals(expected.get(i).getTop(), nodes.get(i).getTop(),
+					0.0);
+			}
+		}
+	}
+
+	/*
+	 * This method creates a random graph for the input layout: simple nodes
+	 * in the root graph and in the child graphs of a few compound nodes, with
+	 * edges inside graphs and between them, nodes placed randomly, and
+	 * returns its simple nodes.
+	 */
+	private List<LNode> createGraph(Layout layout, long seed)
+	{
+		LGraphManager gm = layout.getGraphManager();
+		LGraph root = gm.addRoot();
+		Random random = new Random(seed);
+		List<LNode> nodes = new ArrayList<LNode>();
+		List<LGraph> graphs = new ArrayList<LGraph>();
+		LNode node;
+
+		graphs.add(root);
+
+		for (int i = 0; i < 3; i++)
+		{
+			graphs.add(gm.add(layout.newGraph(null),
+				root.add(layout.newNode(null))));
+		}
+
+		for (int i = 0; i < 120; i++)
+		{
+			node = graphs.get(random.nextInt(graphs.size())).add(
+				layout.newNode(null));
+			node.setWidth(10 + random.nextInt(40));
+			node.setHeight(10 + random.nextInt(40));
+			node.setLocation(600 * random.nextDouble(),
+				600 * random.nextDouble());
+			nodes.add(node);
+		}
+
+		for (int i = 1; i < nodes.size(); i++)
+		{
+			LNode source = nodes.get(i);
+			LNode target = nodes.get(random.nextInt(i));
+
+			if (source.getOwner() == target.getOwner())
+			{
+				source.getOwner().add(layout.newEdge(null), source, target);
+			}
+			else if (random.nextInt(3) == 0)
+			{
+				gm.add(layout.newEdge(null), source, target);
+			}
+		}
+
+		return nodes;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(CompactGraphTest.class);
+	}
+}
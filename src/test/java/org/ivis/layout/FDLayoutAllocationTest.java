@@ -0,0 +1,164 @@
+package org.ivis.layout;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.cose.CoSELayout;
+
+/**
+ * Checks that steady-state iterations of the spring embedder (spring,
+ * repulsion and gravitation forces, moving nodes and updating bounds) do not
+ * create garbage. Iterations are counted as in a layout, so measurement spans
+ * several re-calculations of the FR grid. Bytes allocated by the current
+ * thread are read from the HotSpot specific thread MX bean; the test is
+ * skipped on other VMs.
+ */
+public class FDLayoutAllocationTest extends TestCase
+{
+	/*
+	 * Number of iterations run before and during measurement; the latter
+	 * includes a number of FR grid re-calculations
+	 */
+	private static final int WARM_UP_ITERATIONS = 500;
+	private static final int MEASURED_ITERATIONS = 200;
+
+	/*
+	 * Bytes per iteration tolerated for allocations made by the measurement
+	 * itself
+	 */
+	private static final long MAX_BYTES_PER_ITERATION = 16;
+
+	public void testAllPairsRepulsion() throws Exception
+	{
+		this.checkIteration(false);
+	}
+
+	public void testGridRepulsion() throws Exception
+	{
+		this.checkIteration(true);
+	}
+
+	private void checkIteration(boolean useGrid) throws Exception
+	{
+		java.lang.management.ThreadMXBean bean =
+			ManagementFactory.getThreadMXBean();
+
+		if (!(bean instanceof com.sun.management.ThreadMXBean))
+		{
+			return;
+		}
+
+		com.sun.management.ThreadMXBean threadBean =
+			(com.sun.management.ThreadMXBean) bean;
+
+		if (!threadBean.isThreadAllocatedMemorySupported())
+		{
+			return;
+		}
+
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+
+		MeasuredLayout layout = this.createLayout(300);
+		layout.runLayout();
+
+		// set after layout, as parameters are reset from layout options
+		layout.useFRGridVariant = useGrid;
+		layout.useBarnesHutApproximation = false;
+
+		for (int i = 0; i < WARM_UP_ITERATIONS; i++)
+		{
+			layout.runIteration();
+		}
+
+		long threadId = Thread.currentThread().getId();
+		long before = threadBean.getThreadAllocatedBytes(threadId);
+
+		for (int i = 0; i < MEASURED_ITERATIONS; i++)
+		{
+			layout.runIteration();
+		}
+
+		long after = threadBean.getThreadAllocatedBytes(threadId);
+		long bytesPerIteration = (after - before) / MEASURED_ITERATIONS;
+
+		assertTrue("Iteration allocates " + bytesPerIteration + " bytes",
+			bytesPerIteration <= MAX_BYTES_PER_ITERATION);
+	}
+
+	/*
+	 * This method creates a layout of a random graph with a few compounds.
+	 */
+	private MeasuredLayout createLayout(int size)
+	{
+		MeasuredLayout layout = new MeasuredLayout();
+		LGraphManager gm = layout.getGraphManager();
+		LGraph root = gm.addRoot();
+		Random random = new Random(1);
+		List<LNode> nodes = new ArrayList<LNode>();
+		LNode node;
+
+		for (int i = 0; i < size; i++)
+		{
+			node = root.add(layout.newNode(null));
+			node.setWidth(20 + random.nextInt(20));
+			node.setHeight(20 + random.nextInt(20));
+			nodes.add(node);
+		}
+
+		for (int i = 0; i < 4; i++)
+		{
+			LNode compound = root.add(layout.newNode(null));
+			LGraph child = gm.add(layout.newGraph(null), compound);
+
+			for (int j = 0; j < 5; j++)
+			{
+				node = child.add(layout.newNode(null));
+				node.setWidth(15);
+				node.setHeight(15);
+				gm.add(layout.newEdge(null), node,
+					nodes.get(random.nextInt(size)));
+			}
+		}
+
+		for (int i = 1; i < size; i++)
+		{
+			root.add(layout.newEdge(null), nodes.get(i),
+				nodes.get(random.nextInt(i)));
+		}
+
+		return layout;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(FDLayoutAllocationTest.class);
+	}
+
+	/*
+	 * CoSE layout whose spring embedder iterations can be run one at a time
+	 */
+	private static class MeasuredLayout extends CoSELayout
+	{
+		/*
+		 * This method runs a single spring embedder iteration the way
+		 * runSpringEmbedder does, except for convergence checks.
+		 */
+		void runIteration()
+		{
+			this.totalIterations++;
+			this.totalDisplacement = 0;
+
+			this.calcSpringForces();
+			this.calcRepulsionForces();
+			this.calcGravitationalForces();
+			this.moveNodes();
+			this.graphManager.updateBounds();
+			this.resetForces();
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package org.ivis.layout;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Vector;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.cose.CoSELayout;
+import org.ivis.layout.fd.FDLayoutNode;
+
+/**
+ * Checks the surrounding nodes found by FR-grid variant of repulsion force
+ * calculation against those found by scanning a grid of node lists, as was
+ * done before the grid was flattened: for each node, in order, nodes of the
+ * same graph in its cells and the cells around them which are in repulsion
+ * range and not processed yet. Grids are rebuilt several times on the same
+ * layout after moving nodes, with cells smaller and larger than nodes.
+ */
+public class FRGridRepulsionTest extends TestCase
+{
+	public void testSameSurroundingAsCellScan() throws Exception
+	{
+		for (int seed = 0; seed < 20; seed++)
+		{
+			Random random = new Random(seed);
+			GridLayout layout = new GridLayout();
+			List<LNode> nodes = this.createGraph(layout, random);
+
+			for (int k = 0; k < 5; k++)
+			{
+				for (LNode node : nodes)
+				{
+					node.setLocation(1000 * random.nextDouble(),
+						1000 * random.nextDouble());
+				}
+
+				layout.getGraphManager().updateBounds();
+				layout.findSurroundings(5 + 200 * random.nextDouble());
+
+				this.checkSurroundings(layout);
+			}
+		}
+	}
+
+	/*
+	 * This method checks the surroundings found by the input layout against
+	 * those found by scanning a grid of node lists.
+	 */
+	private void checkSurroundings(GridLayout layout)
+	{
+		Object[] nodes = layout.getAllNodes();
+		LGraph root = layout.getGraphManager().getRoot();
+		double range = layout.getRepulsionRange();
+		Vector[][] grid = this.createGrid(nodes, root, range);
+		Set<Object> processed = new HashSet<Object>();
+
+		for (Object obj : nodes)
+		{
+			FDLayoutNode nodeA = (FDLayoutNode) obj;
+			Set<Object> expected = new HashSet<Object>();
+
+			for (int i = nodeA.startX - 1; i < nodeA.finishX + 2; i++)
+			{
+				for (int j = nodeA.startY - 1; j < nodeA.finishY + 2; j++)
+				{
+					if (i < 0 || j < 0 || i >= grid.length ||
+						j >= grid[0].length)
+					{
+						continue;
+					}
+
+					for (Object cellObj : grid[i][j])
+					{
+						FDLayoutNode nodeB = (FDLayoutNode) cellObj;
+
+						if (nodeA.getOwner() == nodeB.getOwner() &&
+							nodeA != nodeB &&
+							!processed.contains(nodeB) &&
+							this.isInRange(nodeA, nodeB, range))
+						{
+							expected.add(nodeB);
+						}
+					}
+				}
+			}
+
+			Set<Object> surrounding = new HashSet<Object>();
+
+			for (int i = 0; i < nodeA.noOfSurrounding; i++)
+			{
+				// each node is found once
+				assertTrue(surrounding.add(nodeA.surrounding[i]));
+			}
+
+			assertEquals(expected, surrounding);
+			processed.add(nodeA);
+		}
+	}
+
+	/*
+	 * This method returns whether the gaps between the input nodes in both
+	 * dimensions are at most the input range.
+	 */
+	private boolean isInRange(FDLayoutNode nodeA,
+		FDLayoutNode nodeB,
+		double range)
+	{
+		double distanceX = Math.abs(nodeA.getCenterX() - nodeB.getCenterX()) -
+			(nodeA.getWidth() / 2 + nodeB.getWidth() / 2);
+		double distanceY = Math.abs(nodeA.getCenterY() - nodeB.getCenterY()) -
+			(nodeA.getHeight() / 2 + nodeB.getHeight() / 2);
+
+		return distanceX <= range && distanceY <= range;
+	}
+
+	/*
+	 * This method creates a grid of node lists over the input graph with
+	 * cells of the input size, and puts the input nodes into all cells they
+	 * overlap. Grid coordinates of nodes should be the same as the ones set
+	 * by the layout.
+	 */
+	private Vector[][] createGrid(Object[] nodes, LGraph root, double range)
+	{
+		int sizeX = (int) Math.ceil((root.getRight() - root.getLeft()) / range);
+		int sizeY = (int) Math.ceil((root.getBottom() - root.getTop()) / range);
+		Vector[][] grid = new Vector[sizeX][sizeY];
+
+		for (int i = 0; i < sizeX; i++)
+		{
+			for (int j = 0; j < sizeY; j++)
+			{
+				grid[i][j] = new Vector();
+			}
+		}
+
+		for (Object obj : nodes)
+		{
+			FDLayoutNode node = (FDLayoutNode) obj;
+			int startX = (int) Math.floor(
+				(node.getRect().x - root.getLeft()) / range);
+			int finishX = (int) Math.floor(
+				(node.getRect().x + node.getRect().width - root.getLeft()) /
+					range);
+			int startY = (int) Math.floor(
+				(node.getRect().y - root.getTop()) / range);
+			int finishY = (int) Math.floor(
+				(node.getRect().y + node.getRect().height - root.getTop()) /
+					range);
+
+			assertEquals(startX, node.startX);
+			assertEquals(finishX, node.finishX);
+			assertEquals(startY, node.startY);
+			assertEquals(finishY, node.finishY);
+
+			for (int i = startX; i <= finishX; i++)
+			{
+				for (int j = startY; j <= finishY; j++)
+				{
+					grid[i][j].add(node);
+				}
+			}
+		}
+
+		return grid;
+	}
+
+	/*
+	 * This method creates a random graph for the input layout: simple nodes
+	 * of various sizes in the root graph, and in the child graphs of a few
+	 * compound nodes, and returns the simple nodes.
+	 */
+	private List<LNode> createGraph(GridLayout layout, Random random)
+	{
+		LGraphManager gm = layout.getGraphManager();
+		LGraph root = gm.addRoot();
+		List<LNode> nodes = new ArrayList<LNode>();
+		List<LGraph> graphs = new ArrayList<LGraph>();
+		LNode node;
+
+		graphs.add(root);
+
+		for (int i = 0; i < 3; i++)
+		{
+			graphs.add(gm.add(layout.newGraph(null),
+				root.add(layout.newNode(null))));
+		}
+
+		for (int i = 0; i < 150; i++)
+		{
+			node = graphs.get(random.nextInt(graphs.size())).add(
+				layout.newNode(null));
+			node.setWidth(1 + random.nextInt(i % 10 == 0 ? 300 : 40));
+			node.setHeight(1 + random.nextInt(40));
+			nodes.add(node);
+		}
+
+		layout.calcNoOfChildrenForAllNodes();
+
+		return nodes;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(FRGridRepulsionTest.class);
+	}
+
+	/*
+	 * CoSE layout finding surrounding nodes of all nodes in a new grid, as
+	 * done in the first iteration of each grid calculation period
+	 */
+	private static class GridLayout extends CoSELayout
+	{
+		void findSurroundings(double repulsionRange)
+		{
+			this.totalIterations = 1;
+			this.repulsionRange = repulsionRange;
+			this.calcGrid(this.graphManager.getRoot());
+
+			for (Object obj : this.getAllNodes())
+			{
+				this.calculateRepulsionForceOfANode(this.grid,
+					(FDLayoutNode) obj);
+				this.grid.setProcessed((FDLayoutNode) obj);
+			}
+		}
+
+		double getRepulsionRange()
+		{
+			return this.repulsionRange;
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package org.ivis.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.cose.CoSELayout;
+
+/**
+ * Checks ancestor and lowest common ancestor queries answered by the
+ * inclusion tree index of the graph manager against walking up the nesting
+ * tree, for all node pairs of random compound graphs, also after nesting
+ * changes.
+ */
+public class InclusionTreeIndexTest extends TestCase
+{
+	/*
+	 * Number of random graphs and nodes in each of them
+	 */
+	private static final int NO_OF_GRAPHS = 5;
+	private static final int SIZE = 80;
+
+	private Layout layout;
+	private LGraphManager gm;
+
+	public void testLowestCommonAncestor() throws Exception
+	{
+		for (int seed = 0; seed < NO_OF_GRAPHS; seed++)
+		{
+			this.createGraph(new Random(seed));
+			this.checkAllPairs();
+		}
+	}
+
+	public void testEdgeLowestCommonAncestors() throws Exception
+	{
+		for (int seed = 0; seed < NO_OF_GRAPHS; seed++)
+		{
+			Random random = new Random(seed);
+			List<LNode> nodes = this.createGraph(random);
+			LNode source;
+			LNode target;
+
+			for (int i = 0; i < 2 * SIZE; i++)
+			{
+				source = nodes.get(random.nextInt(nodes.size()));
+				target = nodes.get(random.nextInt(nodes.size()));
+
+				if (!LGraphManager.isOneAncestorOfOther(source, target))
+				{
+					this.gm.add(this.layout.newEdge(null), source, target);
+				}
+			}
+
+			this.gm.calcLowestCommonAncestors();
+
+			for (Object obj : this.gm.getAllEdges())
+			{
+				LEdge edge = (LEdge) obj;
+				LGraph lca = this.findLowestCommonAncestor(edge.getSource(),
+					edge.getTarget());
+
+				assertSame(lca, edge.getLca());
+				assertSame(this.findAncestorIn(edge.getSource(), lca),
+					edge.getSourceInLca());
+				assertSame(this.findAncestorIn(edge.getTarget(), lca),
+					edge.getTargetInLca());
+			}
+		}
+	}
+
+	public void testNestingChange() throws Exception
+	{
+		for (int seed = 0; seed < NO_OF_GRAPHS; seed++)
+		{
+			Random random = new Random(seed);
+			List<LNode> nodes = this.createGraph(random);
+
+			// build the index, then change nesting in a few ways
+			this.checkAllPairs();
+
+			LNode leaf = nodes.get(nodes.size() - 1);
+
+			if (leaf.getChild() == null)
+			{
+				LGraph child = this.gm.add(this.layout.newGraph(null), leaf);
+				child.add(this.layout.newNode(null));
+			}
+
+			this.checkAllPairs();
+
+			LNode removed = nodes.get(1 + random.nextInt(nodes.size() - 1));
+			removed.getOwner().remove(removed);
+
+			this.checkAllPairs();
+		}
+	}
+
+	/*
+	 * This method checks the answers of the index for all node pairs of the
+	 * current graph.
+	 */
+	private void checkAllPairs()
+	{
+		List<LNode> nodes = new ArrayList<LNode>();
+		this.collectNodes(this.gm.getRoot(), nodes);
+
+		for (LNode nodeA : nodes)
+		{
+			for (LNode nodeB : nodes)
+			{
+				assertSame(this.findLowestCommonAncestor(nodeA, nodeB),
+					this.gm.calcLowestCommonAncestor(nodeA, nodeB));
+
+				assertEquals(nodeA == nodeB ||
+					this.isAncestor(nodeA, nodeB) ||
+					this.isAncestor(nodeB, nodeA),
+					LGraphManager.isOneAncestorOfOther(nodeA, nodeB));
+			}
+		}
+	}
+
+	/*
+	 * This method creates a random compound graph, with some deep nesting,
+	 * and returns its nodes.
+	 */
+	private List<LNode> createGraph(Random random)
+	{
+		this.layout = new CoSELayout();
+		this.gm = this.layout.getGraphManager();
+
+		List<LNode> nodes = new ArrayList<LNode>();
+		List<LGraph> graphs = new ArrayList<LGraph>();
+		LGraph graph;
+		LNode node;
+
+		graphs.add(this.gm.addRoot());
+
+		for (int i = 0; i < SIZE; i++)
+		{
+			// favor the most recent graph to get deep nesting
+			if (random.nextInt(3) == 0)
+			{
+				graph = graphs.get(graphs.size() - 1);
+			}
+			else
+			{
+				graph = graphs.get(random.nextInt(graphs.size()));
+			}
+
+			node = graph.add(this.layout.newNode(null));
+			nodes.add(node);
+
+			if (random.nextInt(4) == 0)
+			{
+				graphs.add(this.gm.add(this.layout.newGraph(null), node));
+			}
+		}
+
+		return nodes;
+	}
+
+	/*
+	 * This method adds all nodes nested in the input graph to the input list.
+	 */
+	private void collectNodes(LGraph graph, List<LNode> nodes)
+	{
+		for (Object obj : graph.getNodes())
+		{
+			LNode node = (LNode) obj;
+			nodes.add(node);
+
+			if (node.getChild() != null)
+			{
+				this.collectNodes(node.getChild(), nodes);
+			}
+		}
+	}
+
+	/*
+	 * This method returns whether the first node is a proper ancestor of the
+	 * second one, by walking up the nesting tree.
+	 */
+	private boolean isAncestor(LNode ancestor, LNode node)
+	{
+		for (LGraph graph = node.getOwner();
+			graph != this.gm.getRoot();
+			graph = graph.getParent().getOwner())
+		{
+			if (graph.getParent() == ancestor)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/*
+	 * This method finds the lowest common ancestor graph of the input nodes
+	 * by walking up the nesting tree.
+	 */
+	private LGraph findLowestCommonAncestor(LNode nodeA, LNode nodeB)
+	{
+		List<LGraph> graphsA = new ArrayList<LGraph>();
+		LGraph graph;
+
+		for (graph = nodeA.getOwner();
+			graph != this.gm.getRoot();
+			graph = graph.getParent().getOwner())
+		{
+			graphsA.add(graph);
+		}
+
+		for (graph = nodeB.getOwner();
+			graph != this.gm.getRoot();
+			graph = graph.getParent().getOwner())
+		{
+			if (graphsA.contains(graph))
+			{
+				return graph;
+			}
+		}
+
+		return graph;
+	}
+
+	/*
+	 * This method returns the ancestor of the input node (possibly itself)
+	 * which is a member of the input graph.
+	 */
+	private LNode findAncestorIn(LNode node, LGraph graph)
+	{
+		while (node.getOwner() != graph)
+		{
+			node = node.getOwner().getParent();
+		}
+
+		return node;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(InclusionTreeIndexTest.class);
+	}
+}
@@ -0,0 +1,279 @@
+package org.ivis.layout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.cluster.ClusterLayout;
+import org.ivis.layout.cose.CoSELayout;
+import org.ivis.util.PointD;
+
+/**
+ * Checks that CoSE layout with lazy compound displacement ends up with the
+ * same node positions and compound bounds as eager displacement after a few
+ * iterations on deeply nested graphs, and that Cluster layout also keeps
+ * cluster polygons up to date with lazy displacement. Layouts are only
+ * compared for a small number of iterations, as rounding differences between
+ * the two modes grow chaotically afterwards.
+ */
+public class LazyCompoundDisplacementTest extends TestCase
+{
+	/*
+	 * Number of iterations run and the tolerated difference in coordinates
+	 */
+	private static final int NO_OF_ITERATIONS = 10;
+	private static final double TOLERANCE = 1e-6;
+
+	public void testSameAsEagerDisplacement() throws Exception
+	{
+		for (int seed = 1; seed <= 4; seed++)
+		{
+			BoundedLayout eager = this.createLayout(false, seed);
+			BoundedLayout lazy = this.createLayout(true, seed);
+
+			eager.runLayout();
+			lazy.runLayout();
+
+			Object[] eagerNodes = eager.getGraphManager().getAllNodes();
+			Object[] lazyNodes = lazy.getGraphManager().getAllNodes();
+			LNode eagerNode;
+			LNode lazyNode;
+
+			assertEquals(eagerNodes.length, lazyNodes.length);
+
+			for (int i = 0; i < eagerNodes.length; i++)
+			{
+				eagerNode = (LNode) eagerNodes[i];
+				lazyNode = (LNode) lazyNodes[i];
+
+				assertEquals(eagerNode.getLeft(), lazyNode.getLeft(), TOLERANCE);
+				assertEquals(eagerNode.getTop(), lazyNode.getTop(), TOLERANCE);
+				assertEquals(eagerNode.getWidth(), lazyNode.getWidth(),
+					TOLERANCE);
+				assertEquals(eagerNode.getHeight(), lazyNode.getHeight(),
+					TOLERANCE);
+			}
+		}
+	}
+
+	public void testClusterLayoutSameAsEagerDisplacement() throws Exception
+	{
+		for (int seed = 1; seed <= 4; seed++)
+		{
+			BoundedClusterLayout eager =
+				this.createClusterLayout(false, seed);
+			BoundedClusterLayout lazy = this.createClusterLayout(true, seed);
+
+			eager.runLayout();
+			lazy.runLayout();
+
+			Object[] eagerNodes = eager.getGraphManager().getAllNodes();
+			Object[] lazyNodes = lazy.getGraphManager().getAllNodes();
+
+			for (int i = 0; i < eagerNodes.length; i++)
+			{
+				assertEquals(((LNode) eagerNodes[i]).getLeft(),
+					((LNode) lazyNodes[i]).getLeft(), TOLERANCE);
+				assertEquals(((LNode) eagerNodes[i]).getTop(),
+					((LNode) lazyNodes[i]).getTop(), TOLERANCE);
+			}
+
+			List eagerClusters =
+				eager.getGraphManager().getClusterManager().getClusters();
+			List lazyClusters =
+				lazy.getGraphManager().getClusterManager().getClusters();
+
+			assertEquals(eagerClusters.size(), lazyClusters.size());
+
+			for (int i = 0; i < eagerClusters.size(); i++)
+			{
+				List<PointD> eagerPolygon =
+					((Cluster) eagerClusters.get(i)).getPolygon();
+				List<PointD> lazyPolygon =
+					((Cluster) lazyClusters.get(i)).getPolygon();
+
+				assertEquals(eagerPolygon.size(), lazyPolygon.size());
+
+				for (int j = 0; j < eagerPolygon.size(); j++)
+				{
+					assertEquals(eagerPolygon.get(j).x, lazyPolygon.get(j).x,
+						TOLERANCE);
+					assertEquals(eagerPolygon.get(j).y, lazyPolygon.get(j).y,
+						TOLERANCE);
+				}
+			}
+		}
+	}
+
+	/*
+	 * This method creates a layout of a random graph, four levels deep with
+	 * two compounds and a few simple nodes in each graph, nodes placed
+	 * randomly.
+	 */
+	private BoundedLayout createLayout(boolean useLazyDisplacement, long seed)
+	{
+		BoundedLayout layout = new BoundedLayout(useLazyDisplacement);
+		LGraphManager gm = layout.getGraphManager();
+		Random random = new Random(seed);
+		List<LNode> nodes = new ArrayList<LNode>();
+		List<LGraph> level = new ArrayList<LGraph>();
+		List<LGraph> nextLevel;
+		LNode node;
+
+		level.add(gm.addRoot());
+
+		for (int depth = 0; depth < 4; depth++)
+		{
+			nextLevel = new ArrayList<LGraph>();
+
+			for (LGraph graph : level)
+			{
+				for (int i = 0; i < 4; i++)
+				{
+					node = graph.add(layout.newNode(null));
+					node.setWidth(20 + random.nextInt(10));
+					node.setHeight(20);
+					node.setLocation(400 * random.nextDouble(),
+						400 * random.nextDouble());
+					nodes.add(node);
+				}
+
+				for (int i = 0; depth < 3 && i < 2; i++)
+				{
+					node = graph.add(layout.newNode(null));
+					nextLevel.add(gm.add(layout.newGraph(null), node));
+				}
+			}
+
+			level = nextLevel;
+		}
+
+		for (int i = 1; i < nodes.size(); i++)
+		{
+			LNode source = nodes.get(i);
+			LNode target = nodes.get(random.nextInt(i));
+
+			if (source.getOwner() == target.getOwner())
+			{
+				source.getOwner().add(layout.newEdge(null), source, target);
+			}
+			else
+			{
+				gm.add(layout.newEdge(null), source, target);
+			}
+		}
+
+		return layout;
+	}
+
+	/*
+	 * This method creates a Cluster layout of a random flat graph with nodes
+	 * in three clusters, some in two of them, placed randomly.
+	 */
+	private BoundedClusterLayout createClusterLayout(
+		boolean useLazyDisplacement,
+		long seed)
+	{
+		BoundedClusterLayout layout =
+			new BoundedClusterLayout(useLazyDisplacement);
+		LGraph root = layout.getGraphManager().addRoot();
+		Random random = new Random(seed);
+		List<LNode> nodes = new ArrayList<LNode>();
+		LNode node;
+
+		for (int i = 0; i < 40; i++)
+		{
+			node = root.add(layout.newNode(null));
+			node.setWidth(20 + random.nextInt(10));
+			node.setHeight(20);
+			node.setLocation(400 * random.nextDouble(),
+				400 * random.nextDouble());
+			node.addCluster(1 + i % 3);
+
+			if (i % 7 == 0)
+			{
+				node.addCluster(1 + (i + 1) % 3);
+			}
+
+			nodes.add(node);
+
+			if (i > 0)
+			{
+				root.add(layout.newEdge(null), node,
+					nodes.get(random.nextInt(i)));
+			}
+		}
+
+		return layout;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(LazyCompoundDisplacementTest.class);
+	}
+
+	/*
+	 * CoSE layout running a fixed number of spring embedder iterations from
+	 * input positions
+	 */
+	private static class BoundedLayout extends CoSELayout
+	{
+		private boolean useLazyDisplacement;
+
+		BoundedLayout(boolean useLazyDisplacement)
+		{
+			this.useLazyDisplacement = useLazyDisplacement;
+		}
+
+		public void initParameters()
+		{
+			super.initParameters();
+
+			this.incremental = true;
+			this.useFRGridVariant = false;
+			this.useBarnesHutApproximation = false;
+			this.useLazyCompoundDisplacement = this.useLazyDisplacement;
+		}
+
+		public void initSpringEmbedder()
+		{
+			super.initSpringEmbedder();
+
+			this.maxIterations = NO_OF_ITERATIONS;
+		}
+	}
+
+	/*
+	 * Cluster layout running a fixed number of spring embedder iterations
+	 * from input positions
+	 */
+	private static class BoundedClusterLayout extends ClusterLayout
+	{
+		private boolean useLazyDisplacement;
+
+		BoundedClusterLayout(boolean useLazyDisplacement)
+		{
+			this.useLazyDisplacement = useLazyDisplacement;
+		}
+
+		public void initParameters()
+		{
+			super.initParameters();
+
+			this.incremental = true;
+			this.useFRGridVariant = false;
+			this.useBarnesHutApproximation = false;
+			this.useLazyCompoundDisplacement = this.useLazyDisplacement;
+		}
+
+		public void initSpringEmbedder()
+		{
+			super.initSpringEmbedder();
+
+			this.maxIterations = NO_OF_ITERATIONS;
+		}
+	}
+}
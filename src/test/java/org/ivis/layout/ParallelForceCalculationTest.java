@@ -0,0 +1,178 @@
+package org.ivis.layout;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.cise.CiSELayout;
+import org.ivis.layout.cose.CoSELayout;
+import org.ivis.layout.fd.FDLayoutConstants;
+import org.ivis.layout.sbgn.SbgnPDConstants;
+import org.ivis.layout.sbgn.SbgnPDLayout;
+
+/**
+ * Checks that layouts calculating forces in parallel end up with exactly the
+ * same node positions whatever the number of threads. Graphs are large
+ * enough for force calculations to be distributed among threads.
+ */
+public class ParallelForceCalculationTest extends TestCase
+{
+	/*
+	 * Number of threads compared against a single thread
+	 */
+	private static final int NO_OF_THREADS = 3;
+
+	/*
+	 * Number of nodes of test graphs
+	 */
+	private static final int NO_OF_NODES =
+		FDLayoutConstants.MIN_PARALLEL_FORCE_TASK_SIZE + 44;
+
+	public void tearDown() throws Exception
+	{
+		LayoutOptionsPack.getInstance().setDefaultLayoutProperties();
+
+		super.tearDown();
+	}
+
+	public void testCoSEAllPairs() throws Exception
+	{
+		this.checkLayouts(new CoSELayout(), new CoSELayout(), false, false);
+	}
+
+	public void testCoSEGrid() throws Exception
+	{
+		this.checkLayouts(new CoSELayout(), new CoSELayout(), true, false);
+	}
+
+	public void testCoSEBarnesHut() throws Exception
+	{
+		this.checkLayouts(new CoSELayout(), new CoSELayout(), false, true);
+	}
+
+	public void testSbgnPDAllPairs() throws Exception
+	{
+		this.checkLayouts(new SbgnPDLayout(), new SbgnPDLayout(), false, false);
+	}
+
+	public void testSbgnPDGrid() throws Exception
+	{
+		this.checkLayouts(new SbgnPDLayout(), new SbgnPDLayout(), true, false);
+	}
+
+	public void testCiSE() throws Exception
+	{
+		this.checkLayouts(new CiSELayout(), new CiSELayout(), false, false);
+	}
+
+	/*
+	 * This method runs the first input layout with a single thread, and the
+	 * second one with more threads, on the same graph, and checks that all
+	 * nodes end up at the same positions.
+	 */
+	private void checkLayouts(Layout layout,
+		Layout other,
+		boolean useFRGridVariant,
+		boolean useBarnesHutApproximation) throws Exception
+	{
+		// start from the same random positions
+		LayoutOptionsPack.getInstance().getGeneral().incremental = true;
+		LayoutOptionsPack.getInstance().getGeneral().layoutQuality =
+			LayoutConstants.DRAFT_QUALITY;
+
+		LayoutOptionsPack.CoSE options =
+			LayoutOptionsPack.getInstance().getCoSE();
+		options.parallelForceCalc = true;
+		options.smartRepulsionRangeCalc = useFRGridVariant;
+		options.barnesHutRepulsionCalc = useBarnesHutApproximation;
+
+		options.noOfForceThreads = 1;
+		List<LNode> expected = this.createGraph(layout);
+		this.resetRandom();
+		layout.runLayout();
+
+		options.noOfForceThreads = NO_OF_THREADS;
+		List<LNode> nodes = this.createGraph(other);
+		this.resetRandom();
+		other.runLayout();
+
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			assertFalse(Double.isNaN(expected.get(i).getLeft()));
+			assertFalse(Double.isNaN(expected.get(i).getTop()));
+			assertEquals(expected.get(i).getLeft(), nodes.get(i).getLeft(), 0.0);
+			assertEquals(expected.get(i).getTop(), nodes.get(i).getTop(), 0.0);
+		}
+	}
+
+	/*
+	 * This method resets the random number generator used for scattering
+	 * nodes, which is shared by all layouts; CiSE scatters the clusters with
+	 * it in a sublayout.
+	 */
+	private void resetRandom() throws Exception
+	{
+		Field random = LNode.class.getDeclaredField("random");
+		random.setAccessible(true);
+		random.set(null, new Random(Layout.RANDOM_SEED));
+	}
+
+	/*
+	 * This method creates a random graph for the input layout: a tree with a
+	 * few additional edges, with half of the nodes in clusters for CiSE, nodes
+	 * placed randomly, and returns its nodes.
+	 */
+	private List<LNode> createGraph(Layout layout)
+	{
+		LGraphManager gm = layout.getGraphManager();
+		LGraph root = gm.addRoot();
+		Random random = new Random(1);
+		List<LNode> nodes = new ArrayList<LNode>();
+		LNode node;
+
+		for (int i = 0; i < NO_OF_NODES; i++)
+		{
+			node = root.add(layout.newNode(null));
+			node.setWidth(20 + random.nextInt(20));
+			node.setHeight(20 + random.nextInt(20));
+			node.setLocation(1000 * random.nextDouble(),
+				1000 * random.nextDouble());
+			node.type = SbgnPDConstants.MACROMOLECULE;
+			nodes.add(node);
+
+			if (layout instanceof CiSELayout && i % 2 == 0)
+			{
+				node.addCluster(1 + i % 6);
+			}
+		}
+
+		for (int i = 1; i < 2 * NO_OF_NODES; i++)
+		{
+			LNode source = nodes.get(i % NO_OF_NODES);
+			LNode target = nodes.get(random.nextInt(NO_OF_NODES));
+
+			if (i < NO_OF_NODES)
+			{
+				target = nodes.get(random.nextInt(i));
+			}
+			else if (source == target || random.nextInt(4) != 0)
+			{
+				continue;
+			}
+
+			root.add(layout.newEdge(null), source, target).type =
+				SbgnPDConstants.CONSUMPTION;
+		}
+
+		return nodes;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(ParallelForceCalculationTest.class);
+	}
+}
@@ -0,0 +1,148 @@
+package org.ivis.layout.avsdf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Stack;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.LNodeDegreeSort;
+
+/**
+ * Checks that nodes of random graphs are placed on the circle in the same
+ * order as by scanning all nodes for the unordered one of smallest degree,
+ * and sorting unordered neighbors of each placed node by degree, as AVSDF
+ * used to. Nodes pushed on the stack are placed out of degree order, so
+ * that they are removed from the middle of the heap.
+ */
+public class AVSDFCircleTest extends TestCase
+{
+	public void testSameOrderAsScanning() throws Exception
+	{
+		for (int seed = 0; seed < 300; seed++)
+		{
+			Random random = new Random(seed);
+			AVSDFLayout layout = new AVSDFLayout();
+			AVSDFCircle circle =
+				(AVSDFCircle) layout.getGraphManager().addRoot();
+			List<AVSDFNode> nodes = new ArrayList<AVSDFNode>();
+			int noOfNodes = 1 + random.nextInt(200);
+			int i;
+
+			for (i = 0; i < noOfNodes; i++)
+			{
+				nodes.add((AVSDFNode) circle.add(layout.newNode(null)));
+			}
+
+			// a few components, some edges repeated, and isolated nodes
+			for (i = random.nextInt(2 * noOfNodes); i > 0; i--)
+			{
+				int source = random.nextInt(noOfNodes);
+				int target = random.nextInt(noOfNodes);
+
+				if (source != target && source % 7 != 0 && target % 7 != 0)
+				{
+					circle.add(layout.newEdge(null), nodes.get(source),
+						nodes.get(target));
+				}
+			}
+
+			circle.setNodeSeperation(10);
+			circle.calculateRadius();
+			circle.initOrdering();
+
+			Stack<AVSDFNode> stack = new Stack<AVSDFNode>();
+
+			while (!circle.hasFinishedOrdering())
+			{
+				AVSDFNode expected = null;
+
+				while (expected == null && !stack.isEmpty())
+				{
+					expected = stack.pop();
+
+					if (expected.isOrdered())
+					{
+						expected = null;
+					}
+				}
+
+				if (expected == null)
+				{
+					expected = this.findUnorderedSmallestDegreeNode(nodes);
+				}
+
+				AVSDFNode[] neighbors = this.sortUnorderedNeighbors(expected);
+
+				for (i = neighbors.length - 1; i >= 0; i--)
+				{
+					stack.push(neighbors[i]);
+				}
+
+				AVSDFNode node = circle.findNodeToPlace();
+
+				assertSame(expected, node);
+
+				circle.putInOrder(node);
+			}
+		}
+	}
+
+	/*
+	 * This method returns the unordered node of smallest degree, the first
+	 * one in the input list in case of ties, by checking all nodes.
+	 */
+	private AVSDFNode findUnorderedSmallestDegreeNode(List<AVSDFNode> nodes)
+	{
+		AVSDFNode smallest = null;
+
+		for (AVSDFNode node : nodes)
+		{
+			if (!node.isOrdered() &&
+				(smallest == null || node.getDegree() < smallest.getDegree()))
+			{
+				smallest = node;
+			}
+		}
+
+		return smallest;
+	}
+
+	/*
+	 * This method returns the unordered neighbors of the input node, in the
+	 * order of incident edges, sorted by degree.
+	 */
+	private AVSDFNode[] sortUnorderedNeighbors(AVSDFNode node)
+	{
+		List<AVSDFNode> neighbors = new ArrayList<AVSDFNode>();
+		Iterator iterator = node.getEdges().iterator();
+
+		while (iterator.hasNext())
+		{
+			AVSDFNode neighbor =
+				((AVSDFEdge) iterator.next()).getOtherEnd(node);
+
+			if (!neighbor.isOrdered())
+			{
+				neighbors.add(neighbor);
+			}
+		}
+
+		AVSDFNode[] array = neighbors.toArray(new AVSDFNode[0]);
+
+		if (array.length > 0)
+		{
+			new LNodeDegreeSort(array).quicksort();
+		}
+
+		return array;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(AVSDFCircleTest.class);
+	}
+}
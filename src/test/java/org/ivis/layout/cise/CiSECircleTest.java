@@ -0,0 +1,67 @@
+package org.ivis.layout.cise;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.util.IGeometry;
+
+/**
+ * Checks the pairwise order of on-circle nodes derived from their angles
+ * against the order matrix used before: for nodes with indices i < j, j is
+ * closer going clockwise from i if and only if the clockwise angle from i to
+ * j is at most pi, and the reverse holds for j to i. Angles are random, or
+ * chosen from a few multiples of pi/4, for equal and opposite angles.
+ */
+public class CiSECircleTest extends TestCase
+{
+	public void testOrder() throws Exception
+	{
+		Random random = new Random(1);
+		CiSELayout layout = new CiSELayout();
+		CiSECircle circle = (CiSECircle) layout.newGraph(null);
+
+		for (int k = 0; k < 200; k++)
+		{
+			CiSENode[] nodes = new CiSENode[1 + random.nextInt(12)];
+
+			for (int i = 0; i < nodes.length; i++)
+			{
+				nodes[i] = (CiSENode) layout.newNode(null);
+				CiSEOnCircleNodeExt ext = nodes[i].setAsOnCircleNode();
+				ext.setIndex(i);
+				ext.setAngle(k % 2 == 0 ?
+					random.nextInt(8) * Math.PI / 4 :
+					IGeometry.TWO_PI * random.nextDouble());
+			}
+
+			for (int i = 0; i < nodes.length; i++)
+			{
+				assertFalse(circle.getOrder(nodes[i], nodes[i]));
+
+				for (int j = i + 1; j < nodes.length; j++)
+				{
+					double angleDiff =
+						nodes[j].getOnCircleNodeExt().getAngle() -
+							nodes[i].getOnCircleNodeExt().getAngle();
+
+					if (angleDiff < 0)
+					{
+						angleDiff += IGeometry.TWO_PI;
+					}
+
+					assertEquals(angleDiff <= Math.PI,
+						circle.getOrder(nodes[i], nodes[j]));
+					assertEquals(angleDiff > Math.PI,
+						circle.getOrder(nodes[j], nodes[i]));
+				}
+			}
+		}
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(CiSECircleTest.class);
+	}
+}
@@ -0,0 +1,196 @@
+package org.ivis.layout.cise;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.LGraph;
+import org.ivis.layout.LNode;
+import org.ivis.layout.Layout;
+import org.ivis.layout.LayoutConstants;
+import org.ivis.layout.LayoutOptionsPack;
+
+/**
+ * Checks that CiSE lays out a graph of several clusters exactly the same way
+ * whether clusters are handled by a single thread or more, i.e. nodes end up
+ * in the same order on their circles, and at the same positions. Clusters
+ * are large enough for their AVSDF layouts and swap conditions to be
+ * distributed among threads.
+ */
+public class CiSECircleThreadsTest extends TestCase
+{
+	/*
+	 * Number of clusters and number of nodes in each
+	 */
+	private static final int NO_OF_CLUSTERS = 4;
+	private static final int CLUSTER_SIZE =
+		CiSEConstants.MIN_NODES_PER_CIRCLE_THREAD - 20;
+
+	/*
+	 * Number of nodes not in any cluster
+	 */
+	private static final int NO_OF_FREE_NODES = 20;
+
+	public void tearDown() throws Exception
+	{
+		LayoutOptionsPack.getInstance().setDefaultLayoutProperties();
+
+		super.tearDown();
+	}
+
+	public void testSameAsSingleThread() throws Exception
+	{
+		LayoutOptionsPack.getInstance().getGeneral().incremental = true;
+		LayoutOptionsPack.getInstance().getGeneral().layoutQuality =
+			LayoutConstants.DRAFT_QUALITY;
+
+		CiSELayout expectedLayout = new CiSELayout();
+		expectedLayout.noOfCircleThreads = 1;
+		List<LNode> expected = this.createGraph(expectedLayout);
+		this.resetRandom();
+		expectedLayout.runLayout();
+
+		CiSELayout layout = new CiSELayout();
+		layout.noOfCircleThreads = NO_OF_CLUSTERS;
+		List<LNode> nodes = this.createGraph(layout);
+		this.resetRandom();
+		layout.runLayout();
+
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			assertFalse(Double.isNaN(expected.get(i).getLeft()));
+			assertFalse(Double.isNaN(expected.get(i).getTop()));
+			assertEquals(expected.get(i).getLeft(), nodes.get(i).getLeft(),
+				0.0);
+			assertEquals(expected.get(i).getTop(), nodes.get(i).getTop(), 0.0);
+		}
+
+		List expectedCircles = expectedLayout.getGraphManager().getGraphs();
+		List circles = layout.getGraphManager().getGraphs();
+
+		assertEquals(expectedCircles.size(), circles.size());
+
+		for (int i = 0; i < circles.size(); i++)
+		{
+			if (circles.get(i) == layout.getGraphManager().getRoot())
+			{
+				continue;
+			}
+
+			int[] expectedOrder = this.getOrder(
+				(CiSECircle) expectedCircles.get(i), expected);
+			int[] order = this.getOrder((CiSECircle) circles.get(i), nodes);
+
+			assertTrue(expectedOrder.length > 0);
+			assertEquals(expectedOrder.length, order.length);
+
+			for (int j = 0; j < order.length; j++)
+			{
+				assertEquals(expectedOrder[j], order[j]);
+			}
+		}
+	}
+
+	/*
+	 * This method returns indices, in the input node list, of on-circle nodes
+	 * of the input circle, in their order on the circle.
+	 */
+	private int[] getOrder(CiSECircle circle, List<LNode> nodes)
+	{
+		List<CiSENode> onCircleNodes = circle.getOnCircleNodes();
+		int[] order = new int[onCircleNodes.size()];
+
+		for (CiSENode node : onCircleNodes)
+		{
+			order[node.getOnCircleNodeExt().getIndex()] = nodes.indexOf(node);
+		}
+
+		return order;
+	}
+
+	/*
+	 * This method resets the random number generator used for scattering
+	 * nodes, which is shared by all layouts; CiSE scatters the clusters with
+	 * it in a sublayout.
+	 */
+	private void resetRandom() throws Exception
+	{
+		Field random = LNode.class.getDeclaredField("random");
+		random.setAccessible(true);
+		random.set(null, new Random(Layout.RANDOM_SEED));
+	}
+
+	/*
+	 * This method creates a random graph for the input layout: a tree in each
+	 * cluster with a few additional edges, some edges between clusters, and
+	 * nodes not in any cluster attached to clustered ones, all placed
+	 * randomly. It returns the nodes of the graph.
+	 */
+	private List<LNode> createGraph(CiSELayout layout)
+	{
+		LGraph root = layout.getGraphManager().addRoot();
+		Random random = new Random(1);
+		List<LNode> nodes = new ArrayList<LNode>();
+		LNode node;
+		int noOfClusteredNodes = NO_OF_CLUSTERS * CLUSTER_SIZE;
+		int i;
+
+		for (i = 0; i < noOfClusteredNodes + NO_OF_FREE_NODES; i++)
+		{
+			node = root.add(layout.newNode(null));
+			node.setWidth(20 + random.nextInt(20));
+			node.setHeight(20 + random.nextInt(20));
+			node.setLocation(1000 * random.nextDouble(),
+				1000 * random.nextDouble());
+			nodes.add(node);
+
+			if (i < noOfClusteredNodes)
+			{
+				int cluster = i / CLUSTER_SIZE;
+				int first = cluster * CLUSTER_SIZE;
+				node.addCluster(1 + cluster);
+
+				// tree and additional edges in the cluster
+				if (i > first)
+				{
+					root.add(layout.newEdge(null), node,
+						nodes.get(first + random.nextInt(i - first)));
+				}
+
+				if (i > first + 1 && random.nextInt(3) == 0)
+				{
+					LNode other =
+						nodes.get(first + random.nextInt(i - first));
+
+					if (!node.getNeighborsList().contains(other))
+					{
+						root.add(layout.newEdge(null), node, other);
+					}
+				}
+
+				// edges to earlier clusters
+				if (cluster > 0 && random.nextInt(10) == 0)
+				{
+					root.add(layout.newEdge(null), node,
+						nodes.get(random.nextInt(first)));
+				}
+			}
+			else
+			{
+				root.add(layout.newEdge(null), node,
+					nodes.get(random.nextInt(i)));
+			}
+		}
+
+		return nodes;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(CiSECircleThreadsTest.class);
+	}
+}
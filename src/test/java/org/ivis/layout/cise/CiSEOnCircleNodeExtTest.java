@@ -0,0 +1,187 @@
+package org.ivis.layout.cise;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.LGraph;
+import org.ivis.layout.LNode;
+import org.ivis.util.IGeometry;
+
+/**
+ * Checks that counting crossings of inter-cluster edges of two on-circle
+ * nodes, where segments whose bounding boxes are apart are skipped, finds
+ * all crossings found by checking each pair of segments. Besides crossing
+ * segments, collinear overlapping segments and segments touching at an end
+ * or at an inner point count as crossings as well, just like any two zero
+ * length segments.
+ */
+public class CiSEOnCircleNodeExtTest extends TestCase
+{
+	private CiSELayout layout;
+	private LGraph root;
+
+	public void testCollinearAndTouchingSegments() throws Exception
+	{
+		// collinear, overlapping
+		assertEquals(1, this.countIntersections(0, 0, 2, 0, 1, 0, 3, 0));
+		assertEquals(1, this.countIntersections(0, 0, 0, 2, 0, 1, 0, 3));
+		assertEquals(1, this.countIntersections(0, 0, 2, 2, 3, 3, 1, 1));
+
+		// collinear, touching at an end
+		assertEquals(1, this.countIntersections(0, 0, 1, 0, 2, 0, 1, 0));
+		assertEquals(1, this.countIntersections(0, 0, 1, 1, 2, 2, 1, 1));
+
+		// touching at an end, bounding boxes sharing a corner only
+		assertEquals(1, this.countIntersections(0, 0, 1, 1, 2, 0, 1, 1));
+
+		// an end on an inner point of the other segment
+		assertEquals(1, this.countIntersections(0, 0, 2, 0, 1, 1, 1, 0));
+		assertEquals(1, this.countIntersections(0, 0, 2, 2, 0, 2, 1, 1));
+
+		// collinear or parallel, apart
+		assertEquals(0, this.countIntersections(0, 0, 1, 0, 2, 0, 3, 0));
+		assertEquals(0, this.countIntersections(0, 0, 1, 1, 0, 1, 1, 2));
+
+		// zero length segments, intersecting wherever they are as in Line2D
+		assertEquals(1, this.countIntersections(0, 0, 0, 0, 2, 2, 2, 2));
+		assertEquals(0, this.countIntersections(0, 0, 0, 0, 1, 1, 2, 2));
+	}
+
+	public void testRandomSegments() throws Exception
+	{
+		Random random = new Random(1);
+
+		for (int k = 0; k < 3000; k++)
+		{
+			// small integer coordinates for many degenerate cases
+			int size = 1 + random.nextInt(k % 2 == 0 ? 4 : 50);
+			this.createGraph();
+
+			CiSENode node = this.addNode(random.nextInt(size),
+				random.nextInt(size));
+			CiSENode other = this.addNode(random.nextInt(size),
+				random.nextInt(size));
+			List<CiSENode> ends = new ArrayList<CiSENode>();
+
+			for (int i = random.nextInt(6); i >= 0; i--)
+			{
+				ends.add(this.addNode(random.nextInt(size),
+					random.nextInt(size)));
+			}
+
+			for (int i = random.nextInt(5); i >= 0; i--)
+			{
+				this.addEdge(node, ends.get(random.nextInt(ends.size())));
+			}
+
+			for (int i = random.nextInt(5); i >= 0; i--)
+			{
+				this.addEdge(other, ends.get(random.nextInt(ends.size())));
+			}
+
+			if (random.nextInt(4) == 0)
+			{
+				this.addEdge(node, other);
+			}
+
+			assertEquals(this.countAllIntersections(node, other),
+				new CiSEOnCircleNodeExt(node).getInterClusterIntersections(
+					new CiSEOnCircleNodeExt(other)));
+		}
+	}
+
+	/*
+	 * This method returns the number of crossings counted for two nodes at
+	 * the first ends of the input segments, each with a single edge, after
+	 * checking that it is the same as the one found by checking all pairs.
+	 */
+	private int countIntersections(double x1, double y1,
+		double x2, double y2,
+		double x3, double y3,
+		double x4, double y4)
+	{
+		this.createGraph();
+
+		CiSENode node = this.addNode(x1, y1);
+		CiSENode other = this.addNode(x3, y3);
+		this.addEdge(node, this.addNode(x2, y2));
+		this.addEdge(other, this.addNode(x4, y4));
+
+		int count = new CiSEOnCircleNodeExt(node).getInterClusterIntersections(
+			new CiSEOnCircleNodeExt(other));
+
+		assertEquals(this.countAllIntersections(node, other), count);
+
+		return count;
+	}
+
+	/*
+	 * This method counts crossings of the edges of the input nodes by
+	 * checking each pair of edges not sharing their other ends.
+	 */
+	private int countAllIntersections(CiSENode node, CiSENode other)
+	{
+		int count = 0;
+
+		for (Object obj : node.getEdges())
+		{
+			LNode end = ((CiSEEdge) obj).getOtherEnd(node);
+
+			for (Object otherObj : other.getEdges())
+			{
+				LNode otherEnd = ((CiSEEdge) otherObj).getOtherEnd(other);
+
+				if (end != otherEnd &&
+					IGeometry.doIntersect(node.getCenter(), end.getCenter(),
+						other.getCenter(), otherEnd.getCenter()))
+				{
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/*
+	 * This method creates an empty graph to add nodes and edges to.
+	 */
+	private void createGraph()
+	{
+		this.layout = new CiSELayout();
+		this.root = this.layout.getGraphManager().addRoot();
+	}
+
+	/*
+	 * This method adds a new node centered at the input point to the graph.
+	 */
+	private CiSENode addNode(double x, double y)
+	{
+		CiSENode node = (CiSENode) this.root.add(this.layout.newNode(null));
+		node.setWidth(10);
+		node.setHeight(10);
+		node.setCenter(x, y);
+
+		return node;
+	}
+
+	/*
+	 * This method adds an inter-cluster edge between the input nodes to the
+	 * graph.
+	 */
+	private void addEdge(CiSENode source, CiSENode target)
+	{
+		CiSEEdge edge = (CiSEEdge) this.root.add(this.layout.newEdge(null),
+			source, target);
+		edge.isIntraCluster = false;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(CiSEOnCircleNodeExtTest.class);
+	}
+}
@@ -0,0 +1,141 @@
+package org.ivis.layout.sbgn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.LGraph;
+import org.ivis.layout.LNode;
+
+/**
+ * Checks that tiling members of nested complexes with several packing
+ * threads gives the same complex sizes and member positions as tiling them
+ * with a single thread. Complexes at each nesting level are many and large
+ * enough for more than one thread to be used.
+ */
+public class SbgnPDPackingTest extends TestCase
+{
+	public void testSameAsSingleThread() throws Exception
+	{
+		for (int seed = 0; seed < 5; seed++)
+		{
+			List<LNode> expected = this.runLayout(seed, 1);
+
+			for (int noOfThreads = 2; noOfThreads <= 8; noOfThreads *= 2)
+			{
+				List<LNode> actual = this.runLayout(seed, noOfThreads);
+
+				assertEquals(expected.size(), actual.size());
+
+				for (int i = 0; i < expected.size(); i++)
+				{
+					LNode node = actual.get(i);
+
+					assertFalse(Double.isNaN(node.getLeft()));
+					assertFalse(Double.isNaN(node.getTop()));
+					assertFalse(Double.isNaN(node.getWidth()));
+					assertFalse(Double.isNaN(node.getHeight()));
+					assertEquals(expected.get(i).getLeft(), node.getLeft(), 0.0);
+					assertEquals(expected.get(i).getTop(), node.getTop(), 0.0);
+					assertEquals(expected.get(i).getWidth(), node.getWidth(),
+						0.0);
+					assertEquals(expected.get(i).getHeight(), node.getHeight(),
+						0.0);
+				}
+			}
+		}
+	}
+
+	/*
+	 * This method creates complexes of random members nested up to three
+	 * levels, lays them out with the input number of packing threads, and
+	 * returns all nodes in the order they were created.
+	 */
+	private List<LNode> runLayout(int seed, int noOfPackingThreads)
+	{
+		Random random = new Random(seed);
+		PackingLayout layout = new PackingLayout();
+		LGraph root = layout.getGraphManager().addRoot();
+		List<LNode> nodes = new ArrayList<LNode>();
+		LNode previous = null;
+
+		layout.noOfPackingThreads = noOfPackingThreads;
+
+		for (int i = 0; i < 6; i++)
+		{
+			LNode complex = this.addComplex(layout, root, random, nodes, 2);
+
+			// connect top level complexes, so that they are not grouped
+			if (previous != null)
+			{
+				root.add(layout.newEdge(null), previous, complex).type =
+					SbgnPDConstants.CONSUMPTION;
+			}
+
+			previous = complex;
+		}
+
+		assertTrue(layout.runLayout());
+
+		return nodes;
+	}
+
+	/*
+	 * This method adds a complex with random members to the input graph,
+	 * including up to the input number of levels of complexes nested in it.
+	 */
+	private LNode addComplex(SbgnPDLayout layout,
+		LGraph graph,
+		Random random,
+		List<LNode> nodes,
+		int depth)
+	{
+		LNode complex = graph.add(layout.newNode(null));
+		complex.type = SbgnPDConstants.COMPLEX;
+		complex.setLocation(1000 * random.nextDouble(),
+			1000 * random.nextDouble());
+		nodes.add(complex);
+
+		LGraph child = layout.getGraphManager().add(layout.newGraph(null),
+			complex);
+
+		for (int i = 20 + random.nextInt(20); i > 0; i--)
+		{
+			LNode member = child.add(layout.newNode(null));
+			member.type = SbgnPDConstants.MACROMOLECULE;
+
+			// fractional sizes, so that sums depend on the order of terms
+			member.setWidth(10 + 40 * random.nextDouble());
+			member.setHeight(10 + 20 * random.nextDouble());
+			nodes.add(member);
+		}
+
+		for (int i = depth > 0 ? random.nextInt(4) : 0; i > 0; i--)
+		{
+			this.addComplex(layout, child, random, nodes, depth - 1);
+		}
+
+		return complex;
+	}
+
+	/**
+	 * Layout that only groups and tiles complexes, keeping them where they
+	 * are, so that member positions only depend on the packing.
+	 */
+	private static class PackingLayout extends SbgnPDLayout
+	{
+		@Override
+		protected boolean classicLayout()
+		{
+			return true;
+		}
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(SbgnPDPackingTest.class);
+	}
+}
@@ -0,0 +1,242 @@
+package org.ivis.layout.sbgn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.LEdge;
+import org.ivis.layout.LGraph;
+import org.ivis.layout.sbgn.Compaction.CompactionDirection;
+
+/**
+ * Checks visibility graphs built by the plane sweep against checking each
+ * pair of vertices, in both compaction directions. Two vertices see each
+ * other if, over some part of positive length of the interval they share on
+ * the sweep line, no vertex swept between them covers it; with vertices not
+ * overlapping, this is a strip of positive width between them crossing no
+ * other vertex. Vertices are placed on a grid or at random, overlapping,
+ * touching or apart, some with empty intervals.
+ */
+public class VisibilityGraphTest extends TestCase
+{
+	public void testSameAsCheckingAllPairs() throws Exception
+	{
+		Random random = new Random(1);
+
+		for (int k = 0; k < 2000; k++)
+		{
+			for (CompactionDirection direction : CompactionDirection.values())
+			{
+				SbgnPDLayout layout = new SbgnPDLayout();
+				LGraph root = layout.getGraphManager().addRoot();
+				ArrayList<SbgnPDNode> vertices = new ArrayList<SbgnPDNode>();
+
+				for (int i = random.nextInt(15); i >= 0; i--)
+				{
+					SbgnPDNode vertex =
+						(SbgnPDNode) root.add(layout.newNode(null));
+
+					if (k % 3 == 0)
+					{
+						// grid cells, vertices touching or apart
+						vertex.setWidth(5 * (1 + random.nextInt(4)));
+						vertex.setHeight(5 * (1 + random.nextInt(4)));
+						vertex.setLocation(5 * random.nextInt(12),
+							5 * random.nextInt(12));
+					}
+					else
+					{
+						vertex.setWidth(random.nextInt(10) == 0 ? 0 :
+							30 * random.nextDouble());
+						vertex.setHeight(random.nextInt(10) == 0 ? 0 :
+							30 * random.nextDouble());
+						vertex.setLocation(60 * random.nextDouble(),
+							60 * random.nextDouble());
+					}
+
+					vertices.add(vertex);
+				}
+
+				VisibilityGraph graph = new VisibilityGraph(null,
+					layout.getGraphManager(), null);
+				graph.construct(direction, vertices);
+
+				List<String> edges = new ArrayList<String>();
+
+				for (Object obj : graph.getEdges())
+				{
+					LEdge edge = (LEdge) obj;
+					edges.add(vertices.indexOf(edge.getSource()) + ">" +
+						vertices.indexOf(edge.getTarget()));
+				}
+
+				assertEquals(this.findVisibilityEdges(direction, vertices),
+					edges);
+			}
+		}
+	}
+
+	/*
+	 * This method returns the edges of the visibility graph of the input
+	 * vertices, as source and target indices, by checking each pair of
+	 * vertices in order. Edges are directed downwards or rightwards, from
+	 * the second vertex of the pair in case of ties.
+	 */
+	private List<String> findVisibilityEdges(
+		final CompactionDirection direction,
+		final List<SbgnPDNode> vertices)
+	{
+		// vertices in sweep order, those with equal coordinates in list order
+		Integer[] sweepOrder = new Integer[vertices.size()];
+		int[] sweepIndices = new int[vertices.size()];
+		int i, j;
+
+		for (i = 0; i < sweepOrder.length; i++)
+		{
+			sweepOrder[i] = i;
+		}
+
+		Arrays.sort(sweepOrder, new Comparator<Integer>()
+		{
+			public int compare(Integer i, Integer j)
+			{
+				return Double.compare(
+					getSweepStart(direction, vertices.get(i)),
+					getSweepStart(direction, vertices.get(j)));
+			}
+		});
+
+		for (i = 0; i < sweepOrder.length; i++)
+		{
+			sweepIndices[sweepOrder[i]] = i;
+		}
+
+		List<String> edges = new ArrayList<String>();
+
+		for (i = 0; i < vertices.size(); i++)
+		{
+			for (j = i + 1; j < vertices.size(); j++)
+			{
+				if (!this.isVisible(direction, vertices, sweepOrder,
+					Math.min(sweepIndices[i], sweepIndices[j]),
+					Math.max(sweepIndices[i], sweepIndices[j])))
+				{
+					continue;
+				}
+
+				if (getSweepStart(direction, vertices.get(i)) <
+					getSweepStart(direction, vertices.get(j)))
+				{
+					edges.add(i + ">" + j);
+				}
+				else
+				{
+					edges.add(j + ">" + i);
+				}
+			}
+		}
+
+		return edges;
+	}
+
+	/*
+	 * This method returns whether the vertices at the input places of the
+	 * sweep order see each other, i.e. some elementary part of their shared
+	 * interval, between end points of intervals of vertices swept between
+	 * them, is not covered by any of those.
+	 */
+	private boolean isVisible(CompactionDirection direction,
+		List<SbgnPDNode> vertices,
+		Integer[] sweepOrder,
+		int first,
+		int second)
+	{
+		double[] interval1 =
+			getInterval(direction, vertices.get(sweepOrder[first]));
+		double[] interval2 =
+			getInterval(direction, vertices.get(sweepOrder[second]));
+		double low = Math.max(interval1[0], interval2[0]);
+		double high = Math.min(interval1[1], interval2[1]);
+		List<Double> points = new ArrayList<Double>();
+		int k;
+
+		if (!(interval1[0] < interval1[1]) || !(interval2[0] < interval2[1]) ||
+			!(low < high))
+		{
+			return false;
+		}
+
+		points.add(low);
+		points.add(high);
+
+		for (k = first + 1; k < second; k++)
+		{
+			double[] interval =
+				getInterval(direction, vertices.get(sweepOrder[k]));
+
+			for (double point : interval)
+			{
+				if (low < point && point < high)
+				{
+					points.add(point);
+				}
+			}
+		}
+
+		Collections.sort(points);
+
+		for (int p = 0; p + 1 < points.size(); p++)
+		{
+			double middle = (points.get(p) + points.get(p + 1)) / 2;
+			boolean isCovered = !(points.get(p) < points.get(p + 1));
+
+			for (k = first + 1; k < second && !isCovered; k++)
+			{
+				double[] interval =
+					getInterval(direction, vertices.get(sweepOrder[k]));
+				isCovered = interval[0] < middle && middle < interval[1];
+			}
+
+			if (!isCovered)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/*
+	 * This method returns the coordinate of the input vertex in the input
+	 * direction.
+	 */
+	private static double getSweepStart(CompactionDirection direction,
+		SbgnPDNode vertex)
+	{
+		return direction == CompactionDirection.VERTICAL ?
+			vertex.getTop() : vertex.getLeft();
+	}
+
+	/*
+	 * This method returns the interval the input vertex covers on the sweep
+	 * line, perpendicular to the input direction.
+	 */
+	private static double[] getInterval(CompactionDirection direction,
+		SbgnPDNode vertex)
+	{
+		return direction == CompactionDirection.VERTICAL ?
+			new double[] {vertex.getLeft(), vertex.getRight()} :
+			new double[] {vertex.getTop(), vertex.getBottom()};
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(VisibilityGraphTest.class);
+	}
+}
@@ -0,0 +1,237 @@
+package org.ivis.layout.sgym;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.LEdge;
+import org.ivis.layout.LGraph;
+
+/**
+ * Checks grid positions assigned by the Brandes-Koepf coordinate assignment:
+ * nodes on a level should keep their order at least one apart, with the
+ * smallest position being 0; segments between dummy nodes should be
+ * vertical as long as they do not cross each other; and parallel paths
+ * should be drawn as straight, adjacent lines.
+ */
+public class SgymCoordinateAssignmentTest extends TestCase
+{
+	private SgymLayout layout;
+	private LGraph root;
+
+	public void testParallelPaths() throws Exception
+	{
+		for (int noOfPaths = 1; noOfPaths <= 5; noOfPaths++)
+		{
+			for (int noOfLevels = 1; noOfLevels <= 5; noOfLevels++)
+			{
+				this.createGraph();
+				Vector levels = new Vector();
+				Vector level;
+				Vector previousLevel = null;
+
+				for (int i = 0; i < noOfLevels; i++)
+				{
+					level = new Vector();
+
+					for (int j = 0; j < noOfPaths; j++)
+					{
+						level.add(this.addNode(false));
+
+						if (previousLevel != null)
+						{
+							this.addEdge((SgymNode) previousLevel.get(j),
+								(SgymNode) level.get(j));
+						}
+					}
+
+					levels.add(level);
+					previousLevel = level;
+				}
+
+				new SgymCoordinateAssignment(levels).assignGridPositions();
+
+				for (int i = 0; i < noOfLevels; i++)
+				{
+					level = (Vector) levels.get(i);
+
+					for (int j = 0; j < noOfPaths; j++)
+					{
+						assertEquals(j,
+							((SgymNode) level.get(j)).getGridPosition());
+					}
+				}
+			}
+		}
+	}
+
+	public void testRandomLevels() throws Exception
+	{
+		for (int seed = 0; seed < 300; seed++)
+		{
+			Random random = new Random(seed);
+			Vector levels = this.createLevels(random);
+
+			new SgymCoordinateAssignment(levels).assignGridPositions();
+
+			// nodes on a level in order and at least one apart
+
+			int minGridPosition = Integer.MAX_VALUE;
+
+			for (Object obj : levels)
+			{
+				Vector level = (Vector) obj;
+
+				for (int j = 0; j < level.size(); j++)
+				{
+					int position = ((SgymNode) level.get(j)).getGridPosition();
+					minGridPosition = Math.min(minGridPosition, position);
+
+					if (j > 0)
+					{
+						assertTrue(position >= 1 +
+							((SgymNode) level.get(j - 1)).getGridPosition());
+					}
+				}
+			}
+
+			assertEquals(0, minGridPosition);
+
+			// segments between dummy nodes vertical
+
+			for (Object obj : this.root.getEdges())
+			{
+				LEdge edge = (LEdge) obj;
+				SgymNode source = (SgymNode) edge.getSource();
+				SgymNode target = (SgymNode) edge.getTarget();
+
+				if (source.isDummy && target.isDummy)
+				{
+					assertEquals(source.getGridPosition(),
+						target.getGridPosition());
+				}
+			}
+		}
+	}
+
+	/*
+	 * This method creates random levels of nodes with edges between adjacent
+	 * levels, along with long edges split by dummy nodes. Dummy nodes keep
+	 * the same relative order on all levels, so that segments between them
+	 * do not cross each other.
+	 */
+	private Vector createLevels(Random random)
+	{
+		this.createGraph();
+
+		int noOfLevels = 2 + random.nextInt(6);
+		List<List<SgymNode>> realNodes = new ArrayList<List<SgymNode>>();
+		List<List<SgymNode>> dummyNodes = new ArrayList<List<SgymNode>>();
+		int i, j;
+
+		for (i = 0; i < noOfLevels; i++)
+		{
+			realNodes.add(new ArrayList<SgymNode>());
+			dummyNodes.add(new ArrayList<SgymNode>());
+
+			for (j = random.nextInt(6); j >= 0; j--)
+			{
+				realNodes.get(i).add(this.addNode(false));
+			}
+		}
+
+		// edges between real nodes of adjacent levels
+
+		for (i = 1; i < noOfLevels; i++)
+		{
+			for (SgymNode node : realNodes.get(i))
+			{
+				for (j = random.nextInt(4); j > 0; j--)
+				{
+					List<SgymNode> upperNodes = realNodes.get(i - 1);
+					this.addEdge(
+						upperNodes.get(random.nextInt(upperNodes.size())),
+						node);
+				}
+			}
+		}
+
+		// long edges, dummy nodes of each added after the previous ones
+
+		for (int k = random.nextInt(5); noOfLevels > 3 && k > 0; k--)
+		{
+			int start = random.nextInt(noOfLevels - 3);
+			int end = start + 3 + random.nextInt(noOfLevels - start - 3);
+			List<SgymNode> startNodes = realNodes.get(start);
+			SgymNode previous =
+				startNodes.get(random.nextInt(startNodes.size()));
+
+			for (i = start + 1; i < end; i++)
+			{
+				SgymNode dummy = this.addNode(true);
+				dummyNodes.get(i).add(dummy);
+				this.addEdge(previous, dummy);
+				previous = dummy;
+			}
+
+			List<SgymNode> endNodes = realNodes.get(end);
+			this.addEdge(previous,
+				endNodes.get(random.nextInt(endNodes.size())));
+		}
+
+		// merge real and dummy nodes of each level, at random
+
+		Vector levels = new Vector();
+
+		for (i = 0; i < noOfLevels; i++)
+		{
+			Vector level = new Vector(dummyNodes.get(i));
+
+			for (SgymNode node : realNodes.get(i))
+			{
+				level.add(random.nextInt(level.size() + 1), node);
+			}
+
+			levels.add(level);
+		}
+
+		return levels;
+	}
+
+	/*
+	 * This method creates an empty graph to add nodes and edges to.
+	 */
+	private void createGraph()
+	{
+		this.layout = new SgymLayout();
+		this.root = this.layout.getGraphManager().addRoot();
+	}
+
+	/*
+	 * This method adds a new node to the graph.
+	 */
+	private SgymNode addNode(boolean isDummy)
+	{
+		SgymNode node = (SgymNode) this.root.add(this.layout.newNode(null));
+		node.isDummy = isDummy;
+
+		return node;
+	}
+
+	/*
+	 * This method adds an edge between the input nodes to the graph.
+	 */
+	private void addEdge(SgymNode source, SgymNode target)
+	{
+		this.root.add(this.layout.newEdge(null), source, target);
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(SgymCoordinateAssignmentTest.class);
+	}
+}
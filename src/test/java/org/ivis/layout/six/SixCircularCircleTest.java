@@ -0,0 +1,263 @@
+package org.ivis.layout.six;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.LGraph;
+import org.ivis.layout.LNode;
+import org.ivis.layout.LayoutOptionsPack;
+import org.ivis.layout.cise.CiSENode;
+import org.ivis.layout.cise.CiSEOnCircleNodeExt;
+
+/**
+ * Checks that the optimal orientation of Six circles, found by placing out
+ * nodes for each rotation, is the same as the one found by rotating all
+ * nodes of the circle one position at a time and recalculating their
+ * angles and positions, as the layout used to: nodes should end up with
+ * the same indices and at the same positions.
+ */
+public class SixCircularCircleTest extends TestCase
+{
+	public void tearDown() throws Exception
+	{
+		LayoutOptionsPack.getInstance().setDefaultLayoutProperties();
+
+		super.tearDown();
+	}
+
+	public void testSameOrientationAsRotating() throws Exception
+	{
+		LayoutOptionsPack.getInstance().getGeneral().incremental = true;
+
+		for (int seed = 0; seed < 10; seed++)
+		{
+			ClusterLayout layout = new ClusterLayout();
+			this.createGraph(layout, new Random(seed));
+			layout.runLayout();
+
+			for (Object obj : layout.getGraphManager().getGraphs())
+			{
+				if (obj == layout.getGraphManager().getRoot())
+				{
+					continue;
+				}
+
+				SixCircularCircle circle = (SixCircularCircle) obj;
+				List<CiSENode> nodes =
+					new ArrayList<CiSENode>(circle.getOnCircleNodes());
+				double[][] state = this.saveState(nodes);
+
+				this.calculateOptimalOrientationByRotating(circle);
+				double[][] expected = this.saveState(nodes);
+
+				this.restoreState(nodes, state);
+				circle.calculateOptimalOrientation();
+				double[][] actual = this.saveState(nodes);
+
+				for (int i = 0; i < nodes.size(); i++)
+				{
+					assertEquals(expected[i][0], actual[i][0], 0.0);
+					assertEquals(expected[i][1], actual[i][1], 0.0);
+					assertEquals(expected[i][2], actual[i][2], 0.0);
+					assertEquals(expected[i][3], actual[i][3], 0.0);
+				}
+			}
+		}
+	}
+
+	/*
+	 * This method finds the optimal orientation of the input circle by
+	 * trying each rotation of its current order and then of the reverse
+	 * order, rotating all nodes by one position at a time, and leaves nodes
+	 * in the optimal orientation.
+	 */
+	private void calculateOptimalOrientationByRotating(
+		SixCircularCircle circle)
+	{
+		int noOfNodesOnCircle = circle.getOnCircleNodes().size();
+		double minimalPotentialEnergy = circle.calcPotentialEnergy();
+		int minimalPotentialIndex = 0;
+		double potentialEnergy;
+		int i;
+
+		for (i = 1; i < noOfNodesOnCircle; i++)
+		{
+			this.rotate(circle, 1, false);
+			potentialEnergy = circle.calcPotentialEnergy();
+
+			if (potentialEnergy < minimalPotentialEnergy)
+			{
+				minimalPotentialEnergy = potentialEnergy;
+				minimalPotentialIndex = i;
+			}
+		}
+
+		// back to the original orientation, and then reverse
+		this.rotate(circle, 1, false);
+		this.rotate(circle, 0, true);
+
+		boolean reverseOrderIsBetter = false;
+
+		for (i = 0; i < noOfNodesOnCircle; i++)
+		{
+			potentialEnergy = circle.calcPotentialEnergy();
+
+			if (potentialEnergy < minimalPotentialEnergy)
+			{
+				minimalPotentialEnergy = potentialEnergy;
+				minimalPotentialIndex = i;
+				reverseOrderIsBetter = true;
+			}
+
+			this.rotate(circle, 1, false);
+		}
+
+		if (!reverseOrderIsBetter)
+		{
+			this.rotate(circle, 0, true);
+		}
+
+		if (minimalPotentialIndex != 0)
+		{
+			this.rotate(circle, minimalPotentialIndex, false);
+		}
+	}
+
+	/*
+	 * This method increases the index of each node of the input circle by the
+	 * input amount, after reversing the order if specified, and recalculates
+	 * angles and positions of nodes.
+	 */
+	private void rotate(SixCircularCircle circle,
+		int amount,
+		boolean reverse)
+	{
+		int noOfNodesOnCircle = circle.getOnCircleNodes().size();
+
+		for (CiSENode node : circle.getOnCircleNodes())
+		{
+			CiSEOnCircleNodeExt ext = node.getOnCircleNodeExt();
+			int index = reverse ?
+				(noOfNodesOnCircle - ext.getIndex()) % noOfNodesOnCircle :
+				ext.getIndex();
+
+			ext.setIndex((index + amount) % noOfNodesOnCircle);
+		}
+
+		circle.reCalculateNodeAnglesAndPositions();
+	}
+
+	/*
+	 * This method returns the index, angle and center of each input node.
+	 */
+	private double[][] saveState(List<CiSENode> nodes)
+	{
+		double[][] state = new double[nodes.size()][];
+
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			CiSENode node = nodes.get(i);
+			CiSEOnCircleNodeExt ext = node.getOnCircleNodeExt();
+
+			state[i] = new double[] {ext.getIndex(), ext.getAngle(),
+				node.getCenterX(), node.getCenterY()};
+		}
+
+		return state;
+	}
+
+	/*
+	 * This method sets the index, angle and center of each input node as
+	 * saved before.
+	 */
+	private void restoreState(List<CiSENode> nodes, double[][] state)
+	{
+		for (int i = 0; i < nodes.size(); i++)
+		{
+			CiSENode node = nodes.get(i);
+			CiSEOnCircleNodeExt ext = node.getOnCircleNodeExt();
+
+			ext.setIndex((int) state[i][0]);
+			ext.setAngle(state[i][1]);
+			node.setCenter(state[i][2], state[i][3]);
+		}
+	}
+
+	/*
+	 * This method creates a random graph of a few clusters of different sizes
+	 * and nodes of different sizes, with edges in clusters and between them.
+	 */
+	private void createGraph(SixCircularLayout layout, Random random)
+	{
+		LGraph root = layout.getGraphManager().addRoot();
+		List<LNode> nodes = new ArrayList<LNode>();
+		int noOfClusters = 2 + random.nextInt(3);
+		LNode node;
+
+		for (int cluster = 1; cluster <= noOfClusters; cluster++)
+		{
+			int first = nodes.size();
+
+			for (int i = 3 + random.nextInt(10); i > 0; i--)
+			{
+				node = root.add(layout.newNode(null));
+				node.setWidth(10 + random.nextInt(30));
+				node.setHeight(10 + random.nextInt(30));
+				node.setLocation(500 * random.nextDouble(),
+					500 * random.nextDouble());
+				node.addCluster(cluster);
+
+				if (nodes.size() > first)
+				{
+					root.add(layout.newEdge(null), node,
+						nodes.get(first + random.nextInt(nodes.size() - first)));
+				}
+
+				nodes.add(node);
+			}
+		}
+
+		for (int i = nodes.size(); i > 0; i--)
+		{
+			LNode source = nodes.get(random.nextInt(nodes.size()));
+			LNode target = nodes.get(random.nextInt(nodes.size()));
+
+			if (!source.getClusters().equals(target.getClusters()) &&
+				!source.getNeighborsList().contains(target))
+			{
+				root.add(layout.newEdge(null), source, target);
+			}
+		}
+	}
+
+	/*
+	 * Six layout laying out clusters and the cluster graph only, before
+	 * circles are oriented
+	 */
+	private static class ClusterLayout extends SixCircularLayout
+	{
+		public boolean layout()
+		{
+			if (!this.convertToClusteredGraph())
+			{
+				return false;
+			}
+
+			this.graphManager.getRoot().calcEstimatedSize();
+
+			this.doStep1();
+			this.doStep2();
+
+			return true;
+		}
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(SixCircularCircleTest.class);
+	}
+}
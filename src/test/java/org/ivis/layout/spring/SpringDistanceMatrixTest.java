@@ -0,0 +1,152 @@
+package org.ivis.layout.spring;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.LGraph;
+import org.ivis.layout.LNode;
+
+/**
+ * Checks that the compact distance matrix switches from byte to short to int
+ * entries as the maximum distance grows, keeping distances right below each
+ * limit apart from infinity, and that compact distances of random graphs
+ * are the same as the dense ones.
+ */
+public class SpringDistanceMatrixTest extends TestCase
+{
+	public void testEntryWidths() throws Exception
+	{
+		this.checkWidth(0, "byteRows");
+		this.checkWidth(0xFE, "byteRows");
+		this.checkWidth(0xFF, "shortRows");
+		this.checkWidth(0xFFFE, "shortRows");
+		this.checkWidth(0xFFFF, "intRows");
+		this.checkWidth(100000, "intRows");
+	}
+
+	public void testSameAsDense() throws Exception
+	{
+		for (int seed = 0; seed < 20; seed++)
+		{
+			Random random = new Random(seed);
+
+			// long paths for short entries
+			this.checkSameAsDense(random, 1 + random.nextInt(60),
+				seed % 4 == 0 ? 300 : 1);
+		}
+	}
+
+	/*
+	 * This method checks that a matrix for the input maximum distance uses
+	 * the expected entry type, and keeps distances up to the maximum, as
+	 * well as infinity, as they are set. Symmetric entries and the diagonal
+	 * are checked as well.
+	 */
+	private void checkWidth(int maxDistance, String expectedRows)
+		throws Exception
+	{
+		int n = 5;
+		SpringDistanceMatrix matrix = new SpringDistanceMatrix(n, maxDistance);
+		int[][] expected = new int[n][n];
+		int[] values = {maxDistance, Math.max(maxDistance - 1, 0),
+			SpringNodeDistances.INFINITY, Math.min(maxDistance, 1)};
+		int i, j;
+
+		for (String name : new String[] {"byteRows", "shortRows", "intRows"})
+		{
+			Field field = SpringDistanceMatrix.class.getDeclaredField(name);
+			field.setAccessible(true);
+
+			assertEquals(name, name.equals(expectedRows),
+				field.get(matrix) != null);
+		}
+
+		// all distances infinite initially
+
+		for (i = 0; i < n; i++)
+		{
+			for (j = 0; j < n; j++)
+			{
+				assertEquals(i == j ? 0 : SpringNodeDistances.INFINITY,
+					matrix.getDistance(i, j));
+			}
+		}
+
+		for (i = 0; i < n; i++)
+		{
+			for (j = i + 1; j < n; j++)
+			{
+				expected[i][j] = values[(i + j) % values.length];
+				expected[j][i] = expected[i][j];
+			}
+
+			matrix.setRow(i, expected[i]);
+		}
+
+		for (i = 0; i < n; i++)
+		{
+			for (j = 0; j < n; j++)
+			{
+				assertEquals(expected[i][j], matrix.getDistance(i, j));
+			}
+		}
+	}
+
+	/*
+	 * This method creates a random graph with the input number of nodes, some
+	 * of them disconnected, along with a path of the input length, and checks
+	 * that compact distances between its nodes are the same as dense ones.
+	 */
+	private void checkSameAsDense(Random random, int noOfNodes, int pathLength)
+	{
+		SpringLayout layout = new SpringLayout();
+		LGraph root = layout.getGraphManager().addRoot();
+		List<LNode> nodes = new ArrayList<LNode>();
+		LNode node;
+		int i;
+
+		for (i = 0; i < noOfNodes; i++)
+		{
+			node = root.add(layout.newNode(null));
+			nodes.add(node);
+
+			if (i > 0 && random.nextInt(5) > 0)
+			{
+				root.add(layout.newEdge(null), node,
+					nodes.get(random.nextInt(i)));
+			}
+		}
+
+		for (i = 0; i < pathLength; i++)
+		{
+			node = root.add(layout.newNode(null));
+			root.add(layout.newEdge(null), node,
+				nodes.get(nodes.size() - 1));
+			nodes.add(node);
+		}
+
+		int[][] dense = new SpringNodeDistances(nodes).calculate();
+		SpringDistanceMatrix compact =
+			new SpringNodeDistances(nodes).calculateCompact();
+
+		assertEquals(nodes.size(), compact.getNoOfNodes());
+
+		for (i = 0; i < nodes.size(); i++)
+		{
+			for (int j = 0; j < nodes.size(); j++)
+			{
+				assertEquals(dense[i][j], compact.getDistance(i, j));
+			}
+		}
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(SpringDistanceMatrixTest.class);
+	}
+}
@@ -0,0 +1,94 @@
+package org.ivis.layout.spring;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+import org.ivis.layout.LGraph;
+import org.ivis.layout.LNode;
+import org.ivis.layout.LayoutOptionsPack;
+
+/**
+ * Checks that Spring layout places nodes of a fixed graph, with a few
+ * components, an isolated node and overlapping nodes, exactly where the
+ * original implementation, recalculating all partial derivatives from dense
+ * distance, strength and rest length matrices, did.
+ */
+public class SpringLayoutTest extends TestCase
+{
+	/*
+	 * Initial locations of nodes
+	 */
+	private static final double[][] LOCATIONS = {
+		{0, 0}, {60, 10}, {120, 0}, {180, 30}, {150, 90}, {185, 35},
+		{90, 120}, {40, 80}, {10, 150}, {-40, 60}, {300, 300}, {330, 260},
+		{360, 320}, {250, -80}};
+
+	/*
+	 * Edges, as pairs of node indices
+	 */
+	private static final int[][] EDGES = {
+		{0, 1}, {1, 2}, {2, 3}, {3, 4}, {4, 5}, {5, 6}, {6, 4}, {2, 7},
+		{7, 8}, {8, 9}, {9, 0}, {10, 11}, {11, 12}, {12, 10}};
+
+	/*
+	 * Final locations of nodes, as calculated by the original implementation
+	 */
+	private static final double[][] EXPECTED_LOCATIONS = {
+		{50.661270380150484, 92.29304045107273},
+		{117.5169711532283, 96.04072737477274},
+		{153.74277892898488, 154.6754263133948},
+		{218.20416709516277, 160.35280319296086},
+		{280.7076022204095, 167.9215306419739},
+		{338.00119741098865, 144.34979708991347},
+		{332.3218008123881, 202.17359465432614},
+		{109.6137143511522, 207.87873958719757},
+		{43.298087168554225, 203.83509888554693},
+		{9.615636425132301, 145.99052376533703},
+		{288.6809738188068, 381.3358688063216},
+		{238.56669818088875, 348.5923719035378},
+		{292.75907792552005, 321.86018174114787},
+		{299.0, 10.0}};
+
+	public void tearDown() throws Exception
+	{
+		LayoutOptionsPack.getInstance().setDefaultLayoutProperties();
+
+		super.tearDown();
+	}
+
+	public void testSameAsOriginal() throws Exception
+	{
+		LayoutOptionsPack.getInstance().getGeneral().incremental = true;
+
+		SpringLayout layout = new SpringLayout();
+		LGraph root = layout.getGraphManager().addRoot();
+		LNode[] nodes = new LNode[LOCATIONS.length];
+		int i;
+
+		for (i = 0; i < nodes.length; i++)
+		{
+			nodes[i] = root.add(layout.newNode(null));
+			nodes[i].setWidth(i % 3 == 0 ? 30 : 20);
+			nodes[i].setHeight(20);
+			nodes[i].setLocation(LOCATIONS[i][0], LOCATIONS[i][1]);
+		}
+
+		for (int[] edge : EDGES)
+		{
+			root.add(layout.newEdge(null), nodes[edge[0]], nodes[edge[1]]);
+		}
+
+		layout.runLayout();
+
+		for (i = 0; i < nodes.length; i++)
+		{
+			assertEquals(EXPECTED_LOCATIONS[i][0], nodes[i].getLeft(), 0.0);
+			assertEquals(EXPECTED_LOCATIONS[i][1], nodes[i].getTop(), 0.0);
+		}
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(SpringLayoutTest.class);
+	}
+}
@@ -0,0 +1,136 @@
+package org.ivis.layout.util;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+
+/**
+ * Checks eviction and statistics of the packing cache, and that a packing
+ * found in the cache is exactly the same as packing the same rectangles,
+ * given in any order, from scratch.
+ */
+public class PackingCacheTest extends TestCase
+{
+	public void testLeastRecentlyUsedEviction() throws Exception
+	{
+		PackingCache cache = new PackingCache(2);
+		double[] a = {1.0};
+		double[] b = {2.0};
+		double[] c = {3.0};
+
+		cache.put(new double[] {1}, a);
+		cache.put(new double[] {2}, b);
+
+		// signatures are compared by value
+		assertSame(a, cache.get(new double[] {1}));
+
+		// b is now the least recently used one
+		cache.put(new double[] {3}, c);
+
+		assertEquals(2, cache.size());
+		assertNull(cache.get(new double[] {2}));
+		assertSame(a, cache.get(new double[] {1}));
+		assertSame(c, cache.get(new double[] {3}));
+		assertEquals(3, cache.getNoOfHits());
+		assertEquals(1, cache.getNoOfMisses());
+
+		// a is now the least recently used one
+		cache.setCapacity(1);
+
+		assertEquals(1, cache.size());
+		assertNull(cache.get(new double[] {1}));
+		assertSame(c, cache.get(new double[] {3}));
+
+		cache.clear();
+
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getNoOfHits());
+		assertEquals(0, cache.getNoOfMisses());
+	}
+
+	public void testZeroCapacity() throws Exception
+	{
+		PackingCache cache = new PackingCache(0);
+
+		cache.put(new double[] {1}, new double[] {1.0});
+
+		assertEquals(0, cache.size());
+		assertNull(cache.get(new double[] {1}));
+		assertEquals(0, cache.getNoOfHits());
+		assertEquals(1, cache.getNoOfMisses());
+	}
+
+	public void testCachedPackingSameAsFresh() throws Exception
+	{
+		Random random = new Random(1);
+		PackingCache cache = new PackingCache(100);
+
+		for (int k = 0; k < 200; k++)
+		{
+			int n = 1 + random.nextInt(30);
+			double[] widths = new double[n];
+			double[] heights = new double[n];
+
+			for (int i = 0; i < n; i++)
+			{
+				// fractional sizes, so that sums depend on the order of terms
+				widths[i] = 10 * random.nextDouble() + 0.1;
+				heights[i] = 10 * random.nextDouble() + 0.1;
+			}
+
+			// the same rectangles in another order
+
+			int[] permutation = new int[n];
+
+			for (int i = 0; i < n; i++)
+			{
+				permutation[i] = i;
+			}
+
+			for (int i = n - 1; i > 0; i--)
+			{
+				int j = random.nextInt(i + 1);
+				int temp = permutation[i];
+				permutation[i] = permutation[j];
+				permutation[j] = temp;
+			}
+
+			double[] permutedWidths = new double[n];
+			double[] permutedHeights = new double[n];
+
+			for (int i = 0; i < n; i++)
+			{
+				permutedWidths[i] = widths[permutation[i]];
+				permutedHeights[i] = heights[permutation[i]];
+			}
+
+			SkylinePacking cached = new SkylinePacking(1.0, 1.5, 1.5);
+			cached.setCache(cache);
+			cached.pack(widths, heights);
+
+			long noOfHits = cache.getNoOfHits();
+			cached.pack(permutedWidths, permutedHeights);
+
+			assertEquals(noOfHits + 1, cache.getNoOfHits());
+
+			SkylinePacking fresh = new SkylinePacking(1.0, 1.5, 1.5);
+			fresh.pack(permutedWidths, permutedHeights);
+
+			assertEquals(fresh.getWidth(), cached.getWidth(), 0.0);
+			assertEquals(fresh.getHeight(), cached.getHeight(), 0.0);
+
+			for (int i = 0; i < n; i++)
+			{
+				assertEquals(fresh.getX(i), cached.getX(i), 0.0);
+				assertEquals(fresh.getY(i), cached.getY(i), 0.0);
+			}
+		}
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(PackingCacheTest.class);
+	}
+}
@@ -0,0 +1,132 @@
+package org.ivis.layout.util;
+
+import java.awt.Point;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+
+/**
+ * Checks that polyomino packing places polyominoes inside the grid without
+ * overlaps, and that a packer used before places them exactly where a new
+ * one does.
+ */
+public class PolyominoPackingTest extends TestCase
+{
+	public void testNoOverlap() throws Exception
+	{
+		for (int seed = 0; seed < 20; seed++)
+		{
+			Random random = new Random(seed);
+			Polyomino[] minos = this.createPolyominoes(random,
+				1 + random.nextInt(60), 1, 1 + random.nextInt(30));
+			PolyominoPacking packer = new PolyominoPacking();
+
+			packer.pack(minos, minos.length);
+
+			Set<Point> cells = new HashSet<Point>();
+
+			for (Polyomino mino : minos)
+			{
+				for (int k = 0; k < mino.l; k++)
+				{
+					Point cell = new Point(mino.coord[k].x + mino.x,
+						mino.coord[k].y + mino.y);
+
+					assertTrue(cell.x >= 0 && cell.x < packer.sizeX);
+					assertTrue(cell.y >= 0 && cell.y < packer.sizeY);
+					assertTrue("Cell " + cell + " is occupied twice",
+						cells.add(cell));
+				}
+			}
+		}
+	}
+
+	public void testReusedPacker() throws Exception
+	{
+		PolyominoPacking reused = new PolyominoPacking();
+
+		// three 2x2 squares, packed twice by the same packer
+		for (int i = 0; i < 2; i++)
+		{
+			this.checkSamePacking(reused,
+				this.createPolyominoes(new Random(0), 3, 2, 2),
+				this.createPolyominoes(new Random(0), 3, 2, 2));
+		}
+
+		// packings that enlarge the grid, followed by smaller ones
+		for (int seed = 0; seed < 20; seed++)
+		{
+			Random random = new Random(seed);
+			int count = 1 + random.nextInt(60);
+			int maxSize = 1 + random.nextInt(30);
+
+			this.checkSamePacking(reused,
+				this.createPolyominoes(new Random(seed), count, 1, maxSize),
+				this.createPolyominoes(new Random(seed), count, 1, maxSize));
+		}
+	}
+
+	/*
+	 * This method packs the first input polyominoes with the input packer and
+	 * the second ones, which are the same, with a new one, and checks that
+	 * they are placed at the same positions.
+	 */
+	private void checkSamePacking(PolyominoPacking packer,
+		Polyomino[] minos,
+		Polyomino[] expected)
+	{
+		packer.pack(minos, minos.length);
+		new PolyominoPacking().pack(expected, expected.length);
+
+		for (int i = 0; i < minos.length; i++)
+		{
+			assertEquals(expected[i].x, minos[i].x);
+			assertEquals(expected[i].y, minos[i].y);
+		}
+	}
+
+	/*
+	 * This method creates the input number of polyominoes made up of
+	 * rectangles of random size within the input range, those of unequal
+	 * sizes having an L shape at random.
+	 */
+	private Polyomino[] createPolyominoes(Random random,
+		int count,
+		int minSize,
+		int maxSize)
+	{
+		Polyomino[] minos = new Polyomino[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			int width = minSize + random.nextInt(maxSize - minSize + 1);
+			int height = minSize + random.nextInt(maxSize - minSize + 1);
+			boolean isLShaped = minSize < maxSize && random.nextInt(3) == 0;
+			minos[i] = new Polyomino();
+			minos[i].coord = new Point[width * height];
+
+			for (int y = 0; y < height; y++)
+			{
+				for (int x = 0; x < width; x++)
+				{
+					// cut the upper right quarter for an L shape
+					if (!isLShaped || 2 * x < width || 2 * y >= height)
+					{
+						minos[i].coord[minos[i].l++] = new Point(x, y);
+					}
+				}
+			}
+		}
+
+		return minos;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(PolyominoPackingTest.class);
+	}
+}
@@ -0,0 +1,129 @@
+package org.ivis.layout.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+
+/**
+ * Checks that skyline packing places rectangles inside the drawing, which is
+ * no larger than needed, with the desired gaps between any two of them.
+ * Rectangles are compared pairwise, for random sizes, gaps and aspect
+ * ratios.
+ */
+public class SkylinePackingTest extends TestCase
+{
+	/*
+	 * Tolerated error in coordinates
+	 */
+	private static final double TOLERANCE = 1e-9;
+
+	/*
+	 * Aspect ratios tried
+	 */
+	private static final double[] ASPECT_RATIOS = {1.0, 2.0, 0.5, 1.6};
+
+	public void testRandomRectangles() throws Exception
+	{
+		Random random = new Random(1);
+
+		for (int k = 0; k < 400; k++)
+		{
+			int n = 1 + random.nextInt(150);
+			double[] widths = new double[n];
+			double[] heights = new double[n];
+
+			for (int i = 0; i < n; i++)
+			{
+				// mix of similar and very different sizes
+				widths[i] = 1 + random.nextInt(k % 2 == 0 ? 50 : 300);
+				heights[i] = 1 + random.nextInt(k % 3 == 0 ? 200 : 50);
+
+				if (k % 5 == 0)
+				{
+					widths[i] += random.nextDouble();
+				}
+			}
+
+			double gap = k % 4;
+			SkylinePacking packing = new SkylinePacking(
+				ASPECT_RATIOS[k % ASPECT_RATIOS.length], gap, 2 * gap);
+
+			packing.pack(widths, heights);
+			this.checkPacking(packing, widths, heights, gap, 2 * gap);
+		}
+	}
+
+	public void testEqualSquares() throws Exception
+	{
+		for (int n = 1; n <= 30; n++)
+		{
+			double[] sizes = new double[n];
+			Arrays.fill(sizes, 10.0);
+
+			SkylinePacking packing = new SkylinePacking(1.0, 5.0, 5.0);
+			packing.pack(sizes, sizes);
+			this.checkPacking(packing, sizes, sizes, 5.0, 5.0);
+		}
+	}
+
+	public void testNoRectangles() throws Exception
+	{
+		SkylinePacking packing = new SkylinePacking(1.0, 5.0, 5.0);
+		packing.pack(new double[0], new double[0]);
+
+		assertEquals(0.0, packing.getWidth(), 0.0);
+		assertEquals(0.0, packing.getHeight(), 0.0);
+	}
+
+	/*
+	 * This method checks that all rectangles are inside the drawing, some
+	 * touching its right and bottom, and that any two rectangles are at
+	 * least the input gaps apart in one of the dimensions.
+	 */
+	private void checkPacking(SkylinePacking packing,
+		double[] widths,
+		double[] heights,
+		double horizontalGap,
+		double verticalGap)
+	{
+		double right = 0.0;
+		double bottom = 0.0;
+
+		for (int i = 0; i < widths.length; i++)
+		{
+			double x = packing.getX(i);
+			double y = packing.getY(i);
+
+			assertTrue(x >= -TOLERANCE && y >= -TOLERANCE);
+			assertTrue(x + widths[i] <= packing.getWidth() + TOLERANCE);
+			assertTrue(y + heights[i] <= packing.getHeight() + TOLERANCE);
+
+			right = Math.max(right, x + widths[i]);
+			bottom = Math.max(bottom, y + heights[i]);
+
+			for (int j = 0; j < i; j++)
+			{
+				assertTrue("Rectangles " + j + " and " + i + " overlap",
+					x >= packing.getX(j) + widths[j] + horizontalGap -
+						TOLERANCE ||
+					packing.getX(j) >= x + widths[i] + horizontalGap -
+						TOLERANCE ||
+					y >= packing.getY(j) + heights[j] + verticalGap -
+						TOLERANCE ||
+					packing.getY(j) >= y + heights[i] + verticalGap -
+						TOLERANCE);
+			}
+		}
+
+		assertEquals(right, packing.getWidth(), TOLERANCE);
+		assertEquals(bottom, packing.getHeight(), TOLERANCE);
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(SkylinePackingTest.class);
+	}
+}
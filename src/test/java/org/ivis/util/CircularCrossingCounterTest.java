@@ -0,0 +1,221 @@
+package org.ivis.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+
+/**
+ * Checks total crossing counts, crossing counts at a position and swap deltas
+ * of the circular crossing counter against checking all pairs of chords, for
+ * all sets of distinct chords on small circles and for random chords with
+ * repeated chords, loops and unplaced end points.
+ */
+public class CircularCrossingCounterTest extends TestCase
+{
+	public void testAllChordSets() throws Exception
+	{
+		for (int n = 1; n <= 6; n++)
+		{
+			// all chords between distinct positions
+			List<int[]> chords = new ArrayList<int[]>();
+
+			for (int a = 0; a < n; a++)
+			{
+				for (int b = a + 1; b < n; b++)
+				{
+					chords.add(new int[] {a, b});
+				}
+			}
+
+			for (int set = 0; set < (1 << chords.size()); set++)
+			{
+				int[] ends1 = new int[Integer.bitCount(set)];
+				int[] ends2 = new int[ends1.length];
+				int count = 0;
+
+				for (int i = 0; i < chords.size(); i++)
+				{
+					if ((set & (1 << i)) != 0)
+					{
+						// alternate the order of end points
+						ends1[count] = chords.get(i)[count % 2];
+						ends2[count] = chords.get(i)[1 - count % 2];
+						count++;
+					}
+				}
+
+				this.checkChords(n, ends1, ends2);
+			}
+		}
+	}
+
+	public void testRandomChords() throws Exception
+	{
+		Random random = new Random(1);
+
+		for (int k = 0; k < 2000; k++)
+		{
+			int n = 1 + random.nextInt(12);
+			int[] ends1 = new int[random.nextInt(25)];
+			int[] ends2 = new int[ends1.length];
+
+			for (int i = 0; i < ends1.length; i++)
+			{
+				// -1 stands for an end not placed on the circle
+				ends1[i] = random.nextInt(n + 1) - 1;
+				ends2[i] = random.nextInt(n + 1) - 1;
+			}
+
+			this.checkChords(n, ends1, ends2);
+		}
+	}
+
+	/*
+	 * This method checks all counts of the counter for the input chords on a
+	 * circle with the input number of positions.
+	 */
+	private void checkChords(int n, int[] ends1, int[] ends2)
+	{
+		CircularCrossingCounter counter = new CircularCrossingCounter(n);
+		int total = this.countAllCrossings(ends1, ends2);
+
+		assertEquals(total, counter.countCrossings(ends1, ends2));
+
+		for (int p = 0; p < n; p++)
+		{
+			int q = (p + 1) % n;
+			int[] otherEndsP = this.findOtherEnds(p, ends1, ends2);
+			int[] otherEndsQ = this.findOtherEnds(q, ends1, ends2);
+			int crossingsAtP = 0;
+
+			for (int i = 0; i < ends1.length; i++)
+			{
+				if (ends1[i] == p || ends2[i] == p)
+				{
+					for (int j = 0; j < ends1.length; j++)
+					{
+						if (ends1[j] != p && ends2[j] != p &&
+							this.isCrossing(ends1[i], ends2[i],
+								ends1[j], ends2[j]))
+						{
+							crossingsAtP++;
+						}
+					}
+				}
+			}
+
+			assertEquals(crossingsAtP,
+				counter.countCrossingsAt(p, otherEndsP, ends1, ends2));
+
+			// swap chords of p and the next position, and recount
+			int[] swapped1 = new int[ends1.length];
+			int[] swapped2 = new int[ends2.length];
+
+			for (int i = 0; i < ends1.length; i++)
+			{
+				swapped1[i] = this.swap(ends1[i], p, q);
+				swapped2[i] = this.swap(ends2[i], p, q);
+			}
+
+			assertEquals(this.countAllCrossings(swapped1, swapped2) - total,
+				counter.calcSwapDelta(p, otherEndsP, q, otherEndsQ));
+		}
+	}
+
+	/*
+	 * This method counts crossing pairs of the input chords by checking all
+	 * pairs.
+	 */
+	private int countAllCrossings(int[] ends1, int[] ends2)
+	{
+		int count = 0;
+
+		for (int i = 0; i < ends1.length; i++)
+		{
+			for (int j = i + 1; j < ends1.length; j++)
+			{
+				if (this.isCrossing(ends1[i], ends2[i], ends1[j], ends2[j]))
+				{
+					count++;
+				}
+			}
+		}
+
+		return count;
+	}
+
+	/*
+	 * This method returns whether the input chords cross, i.e. all their end
+	 * points are placed and distinct, and they are interleaved.
+	 */
+	private boolean isCrossing(int a, int b, int c, int d)
+	{
+		if (a < 0 || b < 0 || c < 0 || d < 0 ||
+			a == b || a == c || a == d || b == c || b == d || c == d)
+		{
+			return false;
+		}
+
+		int low = Math.min(a, b);
+		int high = Math.max(a, b);
+
+		return (low < c && c < high) != (low < d && d < high);
+	}
+
+	/*
+	 * This method returns the other end points of the input chords incident
+	 * to the input position.
+	 */
+	private int[] findOtherEnds(int position, int[] ends1, int[] ends2)
+	{
+		List<Integer> otherEnds = new ArrayList<Integer>();
+
+		for (int i = 0; i < ends1.length; i++)
+		{
+			if (ends1[i] == position)
+			{
+				otherEnds.add(ends2[i]);
+			}
+			else if (ends2[i] == position)
+			{
+				otherEnds.add(ends1[i]);
+			}
+		}
+
+		int[] result = new int[otherEnds.size()];
+
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = otherEnds.get(i);
+		}
+
+		return result;
+	}
+
+	/*
+	 * This method returns the input position after positions p and q are
+	 * swapped.
+	 */
+	private int swap(int position, int p, int q)
+	{
+		if (position == p)
+		{
+			return q;
+		}
+		else if (position == q)
+		{
+			return p;
+		}
+
+		return position;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(CircularCrossingCounterTest.class);
+	}
+}
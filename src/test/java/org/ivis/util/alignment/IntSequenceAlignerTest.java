@@ -0,0 +1,197 @@
+package org.ivis.util.alignment;
+
+import java.io.CharArrayReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+
+/**
+ * Checks alignment scores of integer sequences against the whole matrix
+ * alignment of NeedlemanWunsch on the same sequences written as characters,
+ * for all pairs of short sequences over a small alphabet and for random
+ * longer ones.
+ */
+public class IntSequenceAlignerTest extends TestCase
+{
+	/*
+	 * Characters standing for integers 0, 1, ... of a sequence
+	 */
+	private static final String ALPHABET =
+		"abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+	/*
+	 * Scores tried: those of CiSE, and ones where mismatches cost as much as
+	 * gaps (NeedlemanWunsch assumes mismatches cost no more than gaps)
+	 */
+	private static final int[][] SCORES = {{20, -1, -2}, {3, -1, -1}};
+
+	public void testAllShortSequences() throws Exception
+	{
+		List<int[]> sequences = new ArrayList<int[]>();
+
+		for (int length = 1; length <= 4; length++)
+		{
+			this.addAllSequences(new int[length], 0, 3, sequences);
+		}
+
+		for (int[] scores : SCORES)
+		{
+			IntSequenceAligner aligner =
+				new IntSequenceAligner(scores[0], scores[1], scores[2]);
+
+			for (int[] sequence1 : sequences)
+			{
+				for (int[] sequence2 : sequences)
+				{
+					assertEquals(this.computeWholeMatrixScore(sequence1,
+							sequence2, scores),
+						aligner.computeScore(sequence1, sequence2));
+				}
+			}
+		}
+	}
+
+	public void testRandomSequences() throws Exception
+	{
+		Random random = new Random(1);
+
+		for (int i = 0; i < 200; i++)
+		{
+			int alphabetSize = 2 + random.nextInt(ALPHABET.length() - 1);
+			int[] sequence1 = this.createSequence(random, alphabetSize,
+				1 + random.nextInt(40));
+			int[] sequence2 = this.createSequence(random, alphabetSize,
+				1 + random.nextInt(40));
+			int[] scores = SCORES[i % SCORES.length];
+
+			assertEquals(this.computeWholeMatrixScore(sequence1, sequence2,
+					scores),
+				new IntSequenceAligner(scores[0], scores[1], scores[2]).
+					computeScore(sequence1, sequence2));
+		}
+	}
+
+	public void testLargeIntegers() throws Exception
+	{
+		// only equality of integers matters, not their values
+		Random random = new Random(2);
+		IntSequenceAligner aligner = new IntSequenceAligner(20, -1, -2);
+
+		for (int i = 0; i < 50; i++)
+		{
+			int[] sequence1 = this.createSequence(random, 5, 20);
+			int[] sequence2 = this.createSequence(random, 5, 15);
+			int score = aligner.computeScore(sequence1, sequence2);
+
+			this.spread(sequence1);
+			this.spread(sequence2);
+
+			assertEquals(score, aligner.computeScore(sequence1, sequence2));
+		}
+	}
+
+	public void testEmptySequence() throws Exception
+	{
+		IntSequenceAligner aligner = new IntSequenceAligner(20, -1, -2);
+
+		assertEquals(Integer.MIN_VALUE,
+			aligner.computeScore(new int[0], new int[] {1, 2}));
+		assertEquals(Integer.MIN_VALUE,
+			aligner.computeScore(new int[] {1, 2}, new int[0]));
+		assertEquals(Integer.MIN_VALUE,
+			aligner.computeScore(new int[0], new int[0]));
+	}
+
+	/*
+	 * This method adds all sequences of the input array's length over an
+	 * alphabet of the input size to the input list, filling the array from
+	 * the input index on.
+	 */
+	private void addAllSequences(int[] sequence,
+		int index,
+		int alphabetSize,
+		List<int[]> sequences)
+	{
+		if (index == sequence.length)
+		{
+			sequences.add(sequence.clone());
+			return;
+		}
+
+		for (int i = 0; i < alphabetSize; i++)
+		{
+			sequence[index] = i;
+			this.addAllSequences(sequence, index + 1, alphabetSize, sequences);
+		}
+	}
+
+	/*
+	 * This method creates a random sequence of the input length over an
+	 * alphabet of the input size.
+	 */
+	private int[] createSequence(Random random, int alphabetSize, int length)
+	{
+		int[] sequence = new int[length];
+
+		for (int i = 0; i < length; i++)
+		{
+			sequence[i] = random.nextInt(alphabetSize);
+		}
+
+		return sequence;
+	}
+
+	/*
+	 * This method maps integers of the input sequence to far apart values,
+	 * negative ones included.
+	 */
+	private void spread(int[] sequence)
+	{
+		for (int i = 0; i < sequence.length; i++)
+		{
+			sequence[i] = Integer.MIN_VALUE + sequence[i] * 987654321;
+		}
+	}
+
+	/*
+	 * This method returns the score of the alignment NeedlemanWunsch builds
+	 * from the whole dynamic programming matrix, for the input sequences
+	 * written as characters.
+	 */
+	private int computeWholeMatrixScore(int[] sequence1,
+		int[] sequence2,
+		int[] scores) throws Exception
+	{
+		NeedlemanWunsch nw = new NeedlemanWunsch();
+		nw.setScoringScheme(
+			new BasicScoringScheme(scores[0], scores[1], scores[2]));
+		nw.loadSequences(this.toReader(sequence1), this.toReader(sequence2));
+
+		return nw.getPairwiseAlignment().getScore();
+	}
+
+	/*
+	 * This method returns a reader of the input sequence written as
+	 * characters.
+	 */
+	private CharArrayReader toReader(int[] sequence)
+	{
+		char[] chars = new char[sequence.length];
+
+		for (int i = 0; i < sequence.length; i++)
+		{
+			chars[i] = ALPHABET.charAt(sequence[i]);
+		}
+
+		return new CharArrayReader(chars);
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(IntSequenceAlignerTest.class);
+	}
+}
@@ -0,0 +1,255 @@
+package org.ivis.util.alignment;
+
+import java.io.CharArrayReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import junit.framework.TestCase;
+
+/**
+ * Checks the linear space computations of NeedlemanWunsch (score only, whole
+ * and banded) and Hirschberg (alignment) against the whole matrix alignment
+ * of NeedlemanWunsch, for all pairs of short sequences over a small alphabet
+ * and for random longer ones. Alignments built by Hirschberg are also checked
+ * to be valid and to score as reported.
+ */
+public class LinearSpaceAlignmentTest extends TestCase
+{
+	/*
+	 * Scores tried: those of CiSE, and ones where mismatches cost as much as
+	 * gaps (NeedlemanWunsch assumes mismatches cost no more than gaps)
+	 */
+	private static final int[][] SCORES = {{20, -1, -2}, {3, -1, -1}};
+
+	public void testAllShortSequences() throws Exception
+	{
+		List<char[]> sequences = new ArrayList<char[]>();
+
+		for (int length = 1; length <= 4; length++)
+		{
+			this.addAllSequences(new char[length], 0, "abc", sequences);
+		}
+
+		for (int[] scores : SCORES)
+		{
+			for (char[] seq1 : sequences)
+			{
+				for (char[] seq2 : sequences)
+				{
+					this.checkPair(seq1, seq2, scores);
+				}
+			}
+		}
+	}
+
+	public void testRandomSequences() throws Exception
+	{
+		Random random = new Random(1);
+
+		for (int i = 0; i < 200; i++)
+		{
+			char[] seq1 = this.createSequence(random, 1 + random.nextInt(60));
+			char[] seq2 = this.createSequence(random, 1 + random.nextInt(60));
+
+			this.checkPair(seq1, seq2, SCORES[i % SCORES.length]);
+		}
+	}
+
+	public void testBandedScore() throws Exception
+	{
+		Random random = new Random(2);
+
+		for (int i = 0; i < 200; i++)
+		{
+			char[] seq1 = this.createSequence(random, 1 + random.nextInt(60));
+			char[] seq2 = this.createSequence(random, 1 + random.nextInt(60));
+			int[] scores = SCORES[i % SCORES.length];
+			int score = this.createAlgorithm(new NeedlemanWunsch(), seq1, seq2,
+				scores).getPairwiseAlignment().getScore();
+
+			// a band covering the whole matrix gives the exact score, a
+			// narrower one never more than that
+			NeedlemanWunsch banded = this.createAlgorithm(new NeedlemanWunsch(),
+				seq1, seq2, scores);
+
+			banded.setBandWidth(Math.max(seq1.length, seq2.length));
+			assertEquals(score, banded.getScore());
+
+			banded.setBandWidth(1 + random.nextInt(5));
+			assertTrue(banded.getScore() <= score);
+		}
+	}
+
+	/*
+	 * This method compares the score only and Hirschberg computations for the
+	 * input sequences with the whole matrix alignment of NeedlemanWunsch, and
+	 * validates the alignment built by Hirschberg.
+	 */
+	private void checkPair(char[] seq1, char[] seq2, int[] scores)
+		throws Exception
+	{
+		int score = this.createAlgorithm(new NeedlemanWunsch(), seq1, seq2,
+			scores).getPairwiseAlignment().getScore();
+
+		assertEquals(score, this.createAlgorithm(new NeedlemanWunsch(), seq1,
+			seq2, scores).getScore());
+
+		PairwiseAlignment alignment = this.createAlgorithm(new Hirschberg(),
+			seq1, seq2, scores).getPairwiseAlignment();
+
+		assertEquals(score, alignment.getScore());
+		this.checkAlignment(alignment, seq1, seq2, scores);
+	}
+
+	/*
+	 * This method checks that the input alignment is made up of a part of
+	 * each sequence starting at the beginning of at least one of them and
+	 * ending at the end of at least one of them, that its first and last
+	 * positions are substitutions, and that it scores as reported.
+	 */
+	private void checkAlignment(PairwiseAlignment alignment,
+		char[] seq1,
+		char[] seq2,
+		int[] scores)
+	{
+		String gapped1 = alignment.getGappedSequence1();
+		String gapped2 = alignment.getGappedSequence2();
+		char gap = PairwiseAlignmentAlgorithm.GAP_CHARACTER;
+		StringBuffer part1 = new StringBuffer();
+		StringBuffer part2 = new StringBuffer();
+		int score = 0;
+		char c1, c2;
+
+		assertEquals(gapped1.length(), gapped2.length());
+		assertEquals(gapped1.length(), alignment.getScoreTagLine().length());
+		assertTrue(gapped1.length() > 0);
+
+		for (int i = 0; i < gapped1.length(); i++)
+		{
+			c1 = gapped1.charAt(i);
+			c2 = gapped2.charAt(i);
+
+			assertFalse(c1 == gap && c2 == gap);
+
+			if (c1 == gap || c2 == gap)
+			{
+				assertTrue(i > 0 && i < gapped1.length() - 1);
+				score += scores[2];
+			}
+			else
+			{
+				score += (c1 == c2) ? scores[0] : scores[1];
+			}
+
+			if (c1 != gap)
+			{
+				part1.append(c1);
+			}
+
+			if (c2 != gap)
+			{
+				part2.append(c2);
+			}
+		}
+
+		assertEquals(alignment.getScore(), score);
+
+		assertTrue(this.isPlaceable(new String(seq1), part1.toString(),
+			new String(seq2), part2.toString()));
+	}
+
+	/*
+	 * This method returns whether the input parts occur in the respective
+	 * sequences such that at least one of them starts at the beginning of its
+	 * sequence, and at least one of them ends at the end of its sequence.
+	 */
+	private boolean isPlaceable(String seq1,
+		String part1,
+		String seq2,
+		String part2)
+	{
+		int end1 = seq1.length() - part1.length();
+		int end2 = seq2.length() - part2.length();
+
+		for (int i = seq1.indexOf(part1);
+			i >= 0;
+			i = seq1.indexOf(part1, i + 1))
+		{
+			for (int j = seq2.indexOf(part2);
+				j >= 0;
+				j = seq2.indexOf(part2, j + 1))
+			{
+				if ((i == 0 || j == 0) && (i == end1 || j == end2))
+				{
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/*
+	 * This method adds all sequences of the input array's length over the
+	 * input alphabet to the input list, filling the array from the input
+	 * index on.
+	 */
+	private void addAllSequences(char[] sequence,
+		int index,
+		String alphabet,
+		List<char[]> sequences)
+	{
+		if (index == sequence.length)
+		{
+			sequences.add(sequence.clone());
+			return;
+		}
+
+		for (int i = 0; i < alphabet.length(); i++)
+		{
+			sequence[index] = alphabet.charAt(i);
+			this.addAllSequences(sequence, index + 1, alphabet, sequences);
+		}
+	}
+
+	/*
+	 * This method creates a random sequence of the input length over a four
+	 * letter alphabet.
+	 */
+	private char[] createSequence(Random random, int length)
+	{
+		char[] sequence = new char[length];
+
+		for (int i = 0; i < length; i++)
+		{
+			sequence[i] = "acgt".charAt(random.nextInt(4));
+		}
+
+		return sequence;
+	}
+
+	/*
+	 * This method loads the input sequences and a basic scoring scheme with
+	 * the input scores to the input algorithm, and returns it.
+	 */
+	private NeedlemanWunsch createAlgorithm(NeedlemanWunsch algorithm,
+		char[] seq1,
+		char[] seq2,
+		int[] scores) throws Exception
+	{
+		algorithm.setScoringScheme(
+			new BasicScoringScheme(scores[0], scores[1], scores[2]));
+		algorithm.loadSequences(new CharArrayReader(seq1),
+			new CharArrayReader(seq2));
+
+		return algorithm;
+	}
+
+	public static Test suite()
+	{
+		return new TestSuite(LinearSpaceAlignmentTest.class);
+	}
+}
@@ -0,0 +1,104 @@
+package org.ivis.util.alignment;
+
+import java.io.CharArrayReader;
+import java.util.Random;
+
+/**
+ * Compares the time taken by alignments of random sequences of increasing
+ * length: the whole matrix alignment of NeedlemanWunsch, its score only
+ * computation (whole and banded), and the linear space alignment of
+ * Hirschberg. Each measurement is preceded by warm up runs, and reports the
+ * average of a number of runs. Not a unit test; run its main method.
+ */
+public class NeedlemanWunschBenchmark
+{
+	/*
+	 * Lengths of the first sequences; second ones are half as long
+	 */
+	private static final int[] LENGTHS = {200, 1000, 4000};
+
+	/*
+	 * Number of distinct characters in sequences
+	 */
+	private static final int ALPHABET_SIZE = 52;
+
+	private static final int WARM_UP_RUNS = 3;
+	private static final int MEASURED_RUNS = 5;
+
+	public static void main(String[] args) throws Exception
+	{
+		Random random = new Random(1);
+
+		for (int length : LENGTHS)
+		{
+			char[] seq1 = createSequence(random, length);
+			char[] seq2 = createSequence(random, length / 2);
+			int bandWidth = length / 20;
+
+			System.out.println(length + " x " + length / 2 + ":");
+
+			measure("  whole matrix alignment",
+				new NeedlemanWunsch(), 0, true, seq1, seq2);
+			measure("  score only",
+				new NeedlemanWunsch(), 0, false, seq1, seq2);
+			measure("  score only, band width " + bandWidth,
+				new NeedlemanWunsch(), bandWidth, false, seq1, seq2);
+			measure("  Hirschberg alignment",
+				new Hirschberg(), 0, true, seq1, seq2);
+		}
+	}
+
+	/*
+	 * This method prints the average time taken by the input algorithm to
+	 * compute the alignment (or just the score) of the input sequences.
+	 */
+	private static void measure(String name,
+		NeedlemanWunsch algorithm,
+		int bandWidth,
+		boolean align,
+		char[] seq1,
+		char[] seq2) throws Exception
+	{
+		algorithm.setScoringScheme(new BasicScoringScheme(20, -1, -2));
+		algorithm.setBandWidth(bandWidth);
+
+		int score = 0;
+		long totalTime = 0;
+
+		for (int i = 0; i < WARM_UP_RUNS + MEASURED_RUNS; i++)
+		{
+			long startTime = System.nanoTime();
+
+			algorithm.loadSequences(new CharArrayReader(seq1),
+				new CharArrayReader(seq2));
+			score = align ?
+				algorithm.getPairwiseAlignment().getScore() :
+				algorithm.getScore();
+
+			if (i >= WARM_UP_RUNS)
+			{
+				totalTime += System.nanoTime() - startTime;
+			}
+		}
+
+		System.out.println(name + ": " +
+			(totalTime / MEASURED_RUNS / 1000) / 1000.0 + " ms (score " +
+			score + ")");
+	}
+
+	/*
+	 * This method creates a random sequence of the input length.
+	 */
+	private static char[] createSequence(Random random, int length)
+	{
+		char[] sequence = new char[length];
+
+		for (int i = 0; i < length; i++)
+		{
+			int code = random.nextInt(ALPHABET_SIZE);
+			sequence[i] = (char) (code < 26 ? 'a' + code : 'A' + code - 26);
+		}
+
+		return sequence;
+	}
+}